@@ -1,19 +1,22 @@
 package io.jenkins.plugins.coverage.metrics.source;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.text.StringEscapeUtils;
 
 import edu.hm.hafner.coverage.FileNode;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.Serial;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 import io.jenkins.plugins.prism.Sanitizer;
 
-import static j2html.TagCreator.*;
-
 /**
  * Provides all required information for a {@link FileNode} so that its source code can be rendered together with the
  * line and branch coverage in HTML.
@@ -28,8 +31,12 @@ class CoverageSourcePrinter implements Serializable {
     static final String NO_COVERAGE = "coverNone";
     static final String FULL_COVERAGE = "coverFull";
     static final String PARTIAL_COVERAGE = "coverPart";
+    static final String SKIPPED = "coverSkip";
     static final String NBSP = "&nbsp;";
 
+    /** Number of lines before and after a covered or modified line that are painted in large files. */
+    static final int CONTEXT_LINES = 3;
+
     private final String path;
     private final int[] linesToPaint;
     private final int[] coveredPerLine;
@@ -48,26 +55,53 @@ class CoverageSourcePrinter implements Serializable {
     }
 
     public String renderLine(final int line, final String sourceCode) {
+        var output = new StringWriter();
+        try {
+            renderLine(line, sourceCode, new SourceCodeRowWriter(output));
+        }
+        catch (IOException exception) {
+            throw new UncheckedIOException(exception); // not thrown by a StringWriter
+        }
+        return output.toString();
+    }
+
+    /**
+     * Renders the specified line as a table row.
+     *
+     * @param line
+     *         the line number
+     * @param sourceCode
+     *         the source code of the line
+     * @param row
+     *         the writer for the table row
+     *
+     * @throws IOException
+     *         if the row could not be written
+     */
+    void renderLine(final int line, final String sourceCode, final SourceCodeRowWriter row) throws IOException {
         var isPainted = isPainted(line);
-        return tr()
-                .withClasses(isPainted ? getColorClass(line) : UNDEFINED, getModifiedClass(line))
-                .condAttr(isPainted, "data-html-tooltip", isPainted ? getTooltip(line) : StringUtils.EMPTY)
-                .with(
-                        td().withClass("line")
-                                .with(a().withName(String.valueOf(line)).withText(String.valueOf(line))),
-                        td().withClass("hits")
-                                .with(isPainted ? text(getSummaryColumn(line)) : text(StringUtils.EMPTY)),
-                        td().withClass("code")
-                                .with(rawHtml(SANITIZER.render(cleanupCode(sourceCode)))))
-                .render();
-    }
-
-    protected String cleanupCode(final String content) {
-        var escaped = StringEscapeUtils.escapeHtml4(content);
-        return escaped.replace("\n", StringUtils.EMPTY)
-                .replace("\r", StringUtils.EMPTY)
-                .replace(" ", NBSP)
-                .replace("\t", NBSP.repeat(8));
+        row.startRow(isPainted ? getColorClass(line) : UNDEFINED, getModifiedClass(line),
+                isPainted ? getTooltip(line) : null);
+        row.appendLineNumber(line);
+        row.appendHits(isPainted ? getSummaryColumn(line) : StringUtils.EMPTY);
+        renderAdditionalColumns(line, isPainted, row);
+        row.appendCode(sourceCode);
+        row.endRow();
+    }
+
+    /**
+     * Renders additional columns with coverage counters between the hits column and the source code column. The
+     * default implementation renders no additional columns.
+     *
+     * @param line
+     *         the line number
+     * @param isPainted
+     *         determines whether the line has coverage information
+     * @param row
+     *         the writer for the table row
+     */
+    void renderAdditionalColumns(final int line, final boolean isPainted, final SourceCodeRowWriter row) {
+        // no additional columns
     }
 
     final int size() {
@@ -154,4 +188,99 @@ class CoverageSourcePrinter implements Serializable {
     public String getColumnHeader() {
         return StringUtils.EMPTY;
     }
+
+    /**
+     * Renders the specified source code lines as HTML. The HTML consists of the column header and a table row for each
+     * line.
+     *
+     * @param lines
+     *         the lines of the source code file
+     * @param output
+     *         the writer to write the HTML to
+     *
+     * @throws IOException
+     *         if the HTML could not be written
+     */
+    void render(final List<String> lines, final Writer output) throws IOException {
+        // added a header to display what is being shown in each column
+        output.write(getColumnHeader());
+        var row = new SourceCodeRowWriter(output);
+        for (int line = 0; line < lines.size(); line++) {
+            renderLine(line + 1, lines.get(line), row);
+        }
+    }
+
+    /**
+     * Renders the lines of the specified reader as HTML. The lines are rendered one by one while they are read, so
+     * the memory consumption does not depend on the size of the source code file. If the file has more lines than
+     * the specified threshold, then the remaining lines are painted only if they are part of a covered region, i.e.,
+     * a covered or modified line and its surrounding lines. Each sequence of skipped lines is replaced by a single
+     * skip line, just like in the views of the modified lines.
+     *
+     * @param reader
+     *         the reader that provides the lines of the source code file
+     * @param output
+     *         the writer to write the HTML to
+     * @param maxLines
+     *         the number of lines that are painted in any case, if the value is zero or negative, then all lines are
+     *         painted
+     *
+     * @throws IOException
+     *         if the source code could not be read or the HTML could not be written
+     */
+    void render(final BufferedReader reader, final Writer output, final int maxLines) throws IOException {
+        output.write(getColumnHeader());
+        var row = new SourceCodeRowWriter(output);
+        var isSkipping = false;
+        var line = 1;
+        for (var sourceCode = reader.readLine(); sourceCode != null; sourceCode = reader.readLine()) {
+            if (maxLines > 0 && line > maxLines && !isInCoveredRegion(line)) {
+                isSkipping = true;
+            }
+            else {
+                if (isSkipping) {
+                    renderSkipLine(row);
+                    isSkipping = false;
+                }
+                renderLine(line, sourceCode, row);
+            }
+            line++;
+        }
+    }
+
+    private void renderSkipLine(final SourceCodeRowWriter row) throws IOException {
+        row.startRow(SKIPPED, StringUtils.EMPTY, null);
+        row.appendColumn("line", "..");
+        row.appendHits(StringUtils.EMPTY);
+        renderAdditionalColumns(0, false, row);
+        row.appendColumn("code", StringUtils.EMPTY);
+        row.endRow();
+    }
+
+    /**
+     * Returns whether the specified line is part of a covered region, i.e., the line or one of its surrounding lines
+     * has coverage information or has been modified.
+     *
+     * @param line
+     *         the line number
+     *
+     * @return {@code true} if the line is part of a covered region, {@code false} otherwise
+     */
+    boolean isInCoveredRegion(final int line) {
+        var index = findIndexOfLine(line);
+        if (index >= 0) {
+            return true;
+        }
+        var next = -index - 1;
+        if (next < linesToPaint.length && linesToPaint[next] - line <= CONTEXT_LINES
+                || next > 0 && line - linesToPaint[next - 1] <= CONTEXT_LINES) {
+            return true;
+        }
+        for (int surrounding = line - CONTEXT_LINES; surrounding <= line + CONTEXT_LINES; surrounding++) {
+            if (isModified(surrounding)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
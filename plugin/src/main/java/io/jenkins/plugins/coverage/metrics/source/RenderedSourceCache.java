@@ -0,0 +1,335 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import jenkins.util.SystemProperties;
+
+/**
+ * A controller-wide cache for the rendered views of source code files. Reading a source code file requires reading
+ * and inflating the stored file, painting raw source code files, and filtering the lines of the modified lines or
+ * indirect coverage changes views. Since often several users open the same file of the same build, the most recently
+ * viewed files are cached. The cache is bounded by the size of the cached views, the least recently used views are
+ * evicted first.
+ *
+ * <p>
+ * The cached views of a build are invalidated if the build or its job is deleted, otherwise a new build that reuses
+ * the folder of a deleted build would show the source code of the deleted build.
+ * </p>
+ *
+ * <p>
+ * The maximum size of the cache can be changed using the system property {@value #MAX_BYTES_PROPERTY}. The statistics
+ * of the cache are logged with level {@code FINE} whenever views are evicted or invalidated.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+public final class RenderedSourceCache {
+    /** Default size of the cache: 64 MB. */
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    /** Name of the system property that defines the maximum size of the cache in bytes. */
+    static final String MAX_BYTES_PROPERTY = "io.jenkins.plugins.coverage.metrics.source.RenderedSourceCache.maxBytes";
+
+    private static final Logger LOGGER = Logger.getLogger(RenderedSourceCache.class.getName());
+
+    static final RenderedSourceCache INSTANCE = new RenderedSourceCache(
+            SystemProperties.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+
+    private final long maxBytes;
+    private final Map<Key, String> views = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates a new instance of {@link RenderedSourceCache}.
+     *
+     * @param maxBytes
+     *         the maximum size of all cached views in bytes
+     */
+    RenderedSourceCache(final long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached view for the specified key. If the view is not cached yet, then the view is created using the
+     * specified loader and added to the cache. Empty views are not cached, since the source code might not be
+     * available yet.
+     *
+     * @param key
+     *         the key of the view
+     * @param loader
+     *         the loader that creates the view
+     *
+     * @return the view
+     * @throws IOException
+     *         if the loader could not read the source code
+     * @throws InterruptedException
+     *         if the loader has been interrupted
+     */
+    String get(final Key key, final ViewLoader loader) throws IOException, InterruptedException {
+        var cached = getIfPresent(key);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        var view = loader.load();
+        if (!view.isEmpty()) {
+            put(key, view);
+        }
+        return view;
+    }
+
+    synchronized Optional<String> getIfPresent(final Key key) {
+        var view = views.get(key);
+        if (view == null) {
+            misses++;
+            return Optional.empty();
+        }
+        hits++;
+        return Optional.of(view);
+    }
+
+    synchronized void put(final Key key, final String view) {
+        var size = sizeOf(view);
+        if (size > maxBytes) {
+            return; // do not evict all other views for a single huge file
+        }
+        var previous = views.put(key, view);
+        if (previous != null) {
+            bytes -= sizeOf(previous);
+        }
+        bytes += size;
+        Iterator<String> eldest = views.values().iterator();
+        int evicted = 0;
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= sizeOf(eldest.next());
+            eldest.remove();
+            evicted++;
+        }
+        if (evicted > 0) {
+            evictions += evicted;
+            logStatistics("Evicted %d rendered source code views", evicted);
+        }
+    }
+
+    /**
+     * Removes all cached views of the builds in the specified folder.
+     *
+     * @param folder
+     *         the folder of a build or the folder of a job that contains the builds
+     */
+    synchronized void invalidate(final File folder) {
+        var prefix = normalize(folder);
+        var entries = views.entrySet().iterator();
+        int invalidated = 0;
+        while (entries.hasNext()) {
+            var entry = entries.next();
+            if (entry.getKey().buildFolder.startsWith(prefix)) {
+                bytes -= sizeOf(entry.getValue());
+                entries.remove();
+                invalidated++;
+            }
+        }
+        if (invalidated > 0) {
+            invalidations += invalidated;
+            logStatistics("Invalidated %d rendered source code views of '%s'", invalidated, prefix);
+        }
+    }
+
+    /**
+     * Removes all cached views.
+     */
+    synchronized void invalidateAll() {
+        int invalidated = views.size();
+        invalidations += invalidated;
+        views.clear();
+        bytes = 0;
+        logStatistics("Invalidated all %d rendered source code views", invalidated);
+    }
+
+    /**
+     * Returns the current statistics of this cache.
+     *
+     * @return the statistics
+     */
+    synchronized CacheStatistics getStatistics() {
+        return new CacheStatistics(views.size(), bytes, maxBytes, hits, misses, evictions, invalidations);
+    }
+
+    private void logStatistics(final String message, final Object... arguments) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(message.formatted(arguments) + ", cache statistics: " + getStatistics());
+        }
+    }
+
+    private static long sizeOf(final String view) {
+        return (long) view.length() * Character.BYTES;
+    }
+
+    private static Path normalize(final File folder) {
+        return folder.toPath().toAbsolutePath().normalize();
+    }
+
+    /**
+     * Creates the view of a source code file.
+     */
+    @FunctionalInterface
+    interface ViewLoader {
+        /**
+         * Creates the view of a source code file.
+         *
+         * @return the rendered view
+         * @throws IOException
+         *         if the source code could not be read
+         * @throws InterruptedException
+         *         if the user canceled the reading
+         */
+        String load() throws IOException, InterruptedException;
+    }
+
+    /**
+     * Identifies a view of a source code file: the view is defined by the build, the ID of the coverage result, the
+     * path of the file, and the type of the view.
+     */
+    static final class Key {
+        private final Path buildFolder;
+        private final String id;
+        private final String path;
+        private final SourceCodeView view;
+
+        Key(final File buildFolder, final String id, final String path, final SourceCodeView view) {
+            this.buildFolder = normalize(buildFolder);
+            this.id = id;
+            this.path = path;
+            this.view = view;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            var key = (Key) o;
+            return buildFolder.equals(key.buildFolder) && id.equals(key.id) && path.equals(key.path)
+                    && view == key.view;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(buildFolder, id, path, view);
+        }
+    }
+
+    /**
+     * Statistics of the cache: the number of cached views, their size, and the number of hits, misses, evictions,
+     * and invalidations since the start of Jenkins.
+     */
+    static final class CacheStatistics {
+        private final int size;
+        private final long bytes;
+        private final long maxBytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long invalidations;
+
+        @SuppressWarnings("checkstyle:ParameterNumber")
+        CacheStatistics(final int size, final long bytes, final long maxBytes, final long hits, final long misses,
+                final long evictions, final long invalidations) {
+            this.size = size;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+        }
+
+        int getSize() {
+            return size;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        long getMaxBytes() {
+            return maxBytes;
+        }
+
+        long getHits() {
+            return hits;
+        }
+
+        long getMisses() {
+            return misses;
+        }
+
+        long getEvictions() {
+            return evictions;
+        }
+
+        long getInvalidations() {
+            return invalidations;
+        }
+
+        @Override
+        public String toString() {
+            return "%d views (%d of %d bytes), %d hits, %d misses, %d evictions, %d invalidations".formatted(
+                    size, bytes, maxBytes, hits, misses, evictions, invalidations);
+        }
+    }
+
+    /**
+     * Invalidates the cached views and source code availabilities of deleted builds.
+     */
+    @Extension
+    public static class DeletedBuildListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onDeleted(final Run<?, ?> run) {
+            INSTANCE.invalidate(run.getRootDir());
+            SourceCodeAvailability.invalidate(run.getRootDir().toPath());
+        }
+    }
+
+    /**
+     * Invalidates the cached views and source code availabilities of deleted, renamed, or moved jobs.
+     */
+    @Extension
+    public static class DeletedJobListener extends ItemListener {
+        @Override
+        public void onDeleted(final Item item) {
+            INSTANCE.invalidate(item.getRootDir());
+            SourceCodeAvailability.invalidate(item.getRootDir().toPath());
+            if (item instanceof Job<?, ?> job) {
+                INSTANCE.invalidate(job.getBuildDir());
+                SourceCodeAvailability.invalidate(job.getBuildDir().toPath());
+            }
+        }
+
+        @Override
+        public void onLocationChanged(final Item item, final String oldFullName, final String newFullName) {
+            INSTANCE.invalidateAll(); // the folders of the old location are not known anymore
+            SourceCodeAvailability.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The names of all source code files that are available for a coverage result. The coverage table checks the
+ * availability of each file in the table, so the names are read once from the manifest (or the pack and ZIP files of
+ * older builds) and then kept in memory as a sorted array. The snapshots of the most recently used coverage results are
+ * cached.
+ *
+ * <p>
+ * The source code files of a coverage result are written once at the end of the recording. Snapshots without any
+ * files are not cached, since the files of a running build might not have been written yet. Writing a manifest or
+ * removing source code folders of old builds invalidates the cached snapshots.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+final class SourceCodeAvailability {
+    private static final SourceCodeAvailability EMPTY = new SourceCodeAvailability(new String[0]);
+
+    private static final int CACHED_RESULTS = 64;
+    private static final Map<Path, SourceCodeAvailability> SNAPSHOTS = Collections.synchronizedMap(
+            new LinkedHashMap<>(CACHED_RESULTS, 0.75f, true) {
+                private static final long serialVersionUID = -3866318470155823212L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Path, SourceCodeAvailability> eldest) {
+                    return size() > CACHED_RESULTS;
+                }
+            });
+
+    private final String[] names;
+
+    private SourceCodeAvailability(final String[] names) {
+        this.names = names;
+    }
+
+    /**
+     * Creates a snapshot with the specified names of source code files.
+     *
+     * @param names
+     *         the sanitized names of the available source code files
+     *
+     * @return the snapshot
+     */
+    static SourceCodeAvailability of(final Collection<String> names) {
+        if (names.isEmpty()) {
+            return EMPTY;
+        }
+        var sorted = names.stream().distinct().toArray(String[]::new);
+        Arrays.sort(sorted);
+        return new SourceCodeAvailability(sorted);
+    }
+
+    /**
+     * Returns the snapshot of the specified coverage result. If the snapshot is not cached, it is created using the
+     * specified loader.
+     *
+     * @param resultsFolder
+     *         the folder with the source code files of the coverage result
+     * @param loader
+     *         the loader that creates the snapshot
+     *
+     * @return the snapshot
+     */
+    static SourceCodeAvailability get(final Path resultsFolder, final Supplier<SourceCodeAvailability> loader) {
+        var key = resultsFolder.toAbsolutePath().normalize();
+        var cached = SNAPSHOTS.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        var snapshot = loader.get();
+        if (!snapshot.isEmpty()) {
+            SNAPSHOTS.put(key, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Removes the cached snapshots of all coverage results in the specified folder.
+     *
+     * @param folder
+     *         the folder of a coverage result, a build, or a job
+     */
+    static void invalidate(final Path folder) {
+        var prefix = folder.toAbsolutePath().normalize();
+        synchronized (SNAPSHOTS) {
+            SNAPSHOTS.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    /**
+     * Removes all cached snapshots.
+     */
+    static void invalidateAll() {
+        SNAPSHOTS.clear();
+    }
+
+    /**
+     * Returns whether the specified source code file is available.
+     *
+     * @param name
+     *         the sanitized name of the source code file
+     *
+     * @return {@code true} if the file is available, {@code false} otherwise
+     */
+    boolean contains(final String name) {
+        return Arrays.binarySearch(names, name) >= 0;
+    }
+
+    boolean isEmpty() {
+        return names.length == 0;
+    }
+
+    int size() {
+        return names.length;
+    }
+}
@@ -1,26 +1,21 @@
 package io.jenkins.plugins.coverage.metrics.source;
 
 import org.apache.commons.lang3.StringUtils;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.parser.Parser;
 
 import edu.hm.hafner.coverage.FileNode;
+import edu.hm.hafner.coverage.Node;
 import edu.hm.hafner.util.FilteredLog;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import hudson.FilePath;
@@ -37,7 +32,6 @@ import hudson.util.TextFile;
 public class SourceCodeFacade {
     /** Toplevel directory in the build folder of the controller that contains the zipped source files. */
     static final String COVERAGE_SOURCES_DIRECTORY = "coverage-sources";
-    static final String COVERAGE_SOURCES_ZIP = "coverage-sources.zip";
     static final int MAX_FILENAME_LENGTH = 245; // Windows has limitations on long file names
     static final String ZIP_FILE_EXTENSION = ".zip";
 
@@ -46,7 +40,10 @@ public class SourceCodeFacade {
     }
 
     /**
-     * Reads the contents of the source file of the given file into a String.
+     * Reads the contents of the source file of the given file into a String. The file is read from the
+     * content-addressed store of the job that is referenced by the manifest of the coverage result. Builds that have
+     * been recorded with an older version of the plugin store the files in an indexed pack file or as individual ZIP
+     * files: these files are read as a fallback.
      *
      * @param buildResults
      *         Jenkins directory for build results
@@ -59,6 +56,231 @@ public class SourceCodeFacade {
      */
     public String read(final File buildResults, final String id, final String path)
             throws IOException, InterruptedException {
+        var manifestFile = createManifestInBuildFolder(buildResults, id);
+        var manifest = SourceCodeManifest.read(manifestFile);
+        if (manifest.isPresent() && manifest.get().getStorage() == SourceCodeStorage.PAINTED) {
+            var content = readBlob(manifestFile, manifest.get(), path);
+            if (content.isPresent()) {
+                return content.get();
+            }
+        }
+        var pack = createPackInBuildFolder(buildResults, id, SourceCodeStorage.PAINTED);
+        if (Files.exists(pack)) {
+            var content = SourceCodePackFile.read(pack, sanitizeFilename(path));
+            if (content.isPresent()) {
+                return content.get();
+            }
+        }
+        return readZip(buildResults, id, path);
+    }
+
+    /**
+     * Reads the contents of the source file of the given file node into a String. If the source code has been stored
+     * as raw source code (see {@link SourceCodeStorage#RAW}), then the HTML is rendered on demand using the coverage
+     * information of the file node. The rendered HTML of the most recently viewed files is cached.
+     *
+     * @param buildResults
+     *         Jenkins directory for build results
+     * @param id
+     *         if of the coverage results
+     * @param fileNode
+     *         the file node of the coverage tree
+     *
+     * @return the file content as String
+     */
+    public String read(final File buildResults, final String id, final FileNode fileNode)
+            throws IOException, InterruptedException {
+        return read(buildResults, id, fileNode, SourceCodeView.ALL);
+    }
+
+    /**
+     * Reads the contents of the source file of the given file node into a String and filters the lines that are part
+     * of the specified view. The views of the most recently viewed files are cached, see {@link RenderedSourceCache}.
+     *
+     * @param buildResults
+     *         Jenkins directory for build results
+     * @param id
+     *         if of the coverage results
+     * @param fileNode
+     *         the file node of the coverage tree
+     * @param view
+     *         the lines of the file that should be shown
+     *
+     * @return the file content as String
+     */
+    public String read(final File buildResults, final String id, final FileNode fileNode, final SourceCodeView view)
+            throws IOException, InterruptedException {
+        var key = new RenderedSourceCache.Key(buildResults, id, fileNode.getRelativePath(), view);
+        return RenderedSourceCache.INSTANCE.get(key, () -> createView(buildResults, id, fileNode, view));
+    }
+
+    private String createView(final File buildResults, final String id, final FileNode fileNode,
+            final SourceCodeView view) throws IOException, InterruptedException {
+        if (view == SourceCodeView.ALL) {
+            return readOrRender(buildResults, id, fileNode);
+        }
+        var content = read(buildResults, id, fileNode, SourceCodeView.ALL);
+        if (content.isEmpty()) {
+            return content;
+        }
+        if (view == SourceCodeView.MODIFIED_LINES) {
+            return calculateModifiedLinesCoverageSourceCode(content, fileNode);
+        }
+        return calculateIndirectCoverageChangesSourceCode(content, fileNode);
+    }
+
+    private String readOrRender(final File buildResults, final String id, final FileNode fileNode)
+            throws IOException, InterruptedException {
+        var path = fileNode.getRelativePath();
+        var manifestFile = createManifestInBuildFolder(buildResults, id);
+        var manifest = SourceCodeManifest.read(manifestFile);
+        if (manifest.isPresent() && manifest.get().getStorage() == SourceCodeStorage.RAW) {
+            var content = readBlob(manifestFile, manifest.get(), path);
+            if (content.isPresent()) {
+                return render(fileNode, content.get());
+            }
+        }
+        var rawPack = createPackInBuildFolder(buildResults, id, SourceCodeStorage.RAW);
+        if (Files.exists(rawPack)) {
+            var content = SourceCodePackFile.read(rawPack, sanitizeFilename(path));
+            if (content.isPresent()) {
+                return render(fileNode, content.get());
+            }
+        }
+        return read(buildResults, id, path);
+    }
+
+    /**
+     * Returns the painted source file of the given file in its compressed form, so that it can be sent to a client
+     * without decompressing it. This is only possible for source files that have been painted on the agent and that
+     * are stored in the content-addressed store of the job.
+     *
+     * @param buildResults
+     *         Jenkins directory for build results
+     * @param id
+     *         if of the coverage results
+     * @param path
+     *         relative path to the coverage node base filename of the coverage node
+     *
+     * @return the compressed source file, or an empty optional if the file is not available in compressed form
+     * @throws IOException
+     *         if the store could not be read
+     */
+    Optional<SourceCodeStore.CompressedBlob> readCompressed(final File buildResults, final String id,
+            final String path) throws IOException {
+        var manifestFile = createManifestInBuildFolder(buildResults, id);
+        var manifest = SourceCodeManifest.read(manifestFile);
+        if (manifest.isPresent() && manifest.get().getStorage() == SourceCodeStorage.PAINTED) {
+            var hash = manifest.get().getHash(sanitizeFilename(path));
+            if (hash.isPresent()) {
+                return manifest.get().getStore(manifestFile).readCompressed(hash.get());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Reads the rows of the specified range of lines of the given view. Source files that have been painted on the
+     * agent are read using the line index of the blob in the content-addressed store: the blob is decompressed as a
+     * stream up to the last requested row, and only the requested rows are kept in memory. The line index is created
+     * on the controller when a blob is requested for the first time, this requires decompressing the whole blob once.
+     * For all other files, the rows are taken from the (cached) view of the whole file.
+     *
+     * @param buildResults
+     *         Jenkins directory for build results
+     * @param id
+     *         if of the coverage results
+     * @param fileNode
+     *         the file node of the coverage tree
+     * @param view
+     *         the lines of the file that should be shown
+     * @param fromLine
+     *         the first line of the range (inclusive)
+     * @param toLine
+     *         the last line of the range (inclusive)
+     *
+     * @return the rows of the range
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public SourceCodeLines readLines(final File buildResults, final String id, final FileNode fileNode,
+            final SourceCodeView view, final int fromLine, final int toLine)
+            throws IOException, InterruptedException {
+        int from = Math.max(1, fromLine);
+        int to = Math.max(from, toLine);
+        if (view == SourceCodeView.ALL) {
+            var stored = readStoredLines(buildResults, id, fileNode.getRelativePath(), from, to);
+            if (stored.isPresent()) {
+                return stored.get();
+            }
+        }
+        var content = read(buildResults, id, fileNode, view);
+        var index = SourceCodeLineIndex.create(content);
+        return new SourceCodeLines(index.getRows(content, from, to), from, to, index.getLineCount());
+    }
+
+    /**
+     * Returns the number of lines of the given source file. For source files that have been painted on the agent,
+     * the number is read from the line index of the blob, otherwise the whole file is read.
+     *
+     * @param buildResults
+     *         Jenkins directory for build results
+     * @param id
+     *         if of the coverage results
+     * @param fileNode
+     *         the file node of the coverage tree
+     *
+     * @return the number of lines
+     */
+    public int countLines(final File buildResults, final String id, final FileNode fileNode)
+            throws IOException, InterruptedException {
+        return readLines(buildResults, id, fileNode, SourceCodeView.ALL, 1, 1).getLineCount();
+    }
+
+    private Optional<SourceCodeLines> readStoredLines(final File buildResults, final String id, final String path,
+            final int from, final int to) throws IOException {
+        var manifestFile = createManifestInBuildFolder(buildResults, id);
+        var manifest = SourceCodeManifest.read(manifestFile);
+        if (manifest.isPresent() && manifest.get().getStorage() == SourceCodeStorage.PAINTED) {
+            var hash = manifest.get().getHash(sanitizeFilename(path));
+            if (hash.isPresent()) {
+                var store = manifest.get().getStore(manifestFile);
+                var index = store.readLineIndex(hash.get());
+                if (index.isPresent()) {
+                    var content = store.read(hash.get(), index.get().getStart(from), index.get().getEnd(to));
+                    return Optional.of(new SourceCodeLines(content, from, to, index.get().getLineCount()));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Optional<String> readBlob(final Path manifestFile, final SourceCodeManifest manifest, final String path)
+            throws IOException {
+        var hash = manifest.getHash(sanitizeFilename(path));
+        if (hash.isPresent()) {
+            return manifest.getStore(manifestFile).read(hash.get());
+        }
+        return Optional.empty();
+    }
+
+    private String render(final FileNode fileNode, final String source) throws IOException {
+        var printer = SourceCodePainter.createPrinter(getRoot(fileNode), fileNode);
+        var lines = new BufferedReader(new StringReader(source)).lines().collect(Collectors.toList());
+        var output = new StringWriter();
+        printer.render(lines, output);
+        return output.toString();
+    }
+
+    private Node getRoot(final Node node) {
+        var root = node;
+        while (root.hasParent()) {
+            root = root.getParent();
+        }
+        return root;
+    }
+
+    private String readZip(final File buildResults, final String id, final String path)
+            throws IOException, InterruptedException {
         Path tempDir = Files.createTempDirectory(COVERAGE_SOURCES_DIRECTORY);
         var unzippedSourcesDir = new FilePath(tempDir.toFile());
         try {
@@ -75,7 +297,9 @@ public class SourceCodeFacade {
     }
 
     /**
-     * Returns whether the source code is available for the specified source file.
+     * Returns whether the source code is available for the specified source file. The names of all available files
+     * of a coverage result are read once and kept in memory, so checking many files of the same result does not
+     * access the file system again, see {@link SourceCodeAvailability}.
      *
      * @param buildResults
      *         Jenkins directory for build results
@@ -87,7 +311,39 @@ public class SourceCodeFacade {
      * @return the file content as String
      */
     public boolean canRead(final File buildResults, final String id, final String path) {
-        return createFileInBuildFolder(buildResults, id, path).canRead();
+        return getAvailability(buildResults, id).contains(sanitizeFilename(path));
+    }
+
+    private SourceCodeAvailability getAvailability(final File buildResults, final String id) {
+        var resultsFolder = buildResults.toPath().resolve(COVERAGE_SOURCES_DIRECTORY).resolve(id);
+        return SourceCodeAvailability.get(resultsFolder, () -> loadAvailability(buildResults, id));
+    }
+
+    private SourceCodeAvailability loadAvailability(final File buildResults, final String id) {
+        Set<String> names = new HashSet<>();
+        var manifestFile = createManifestInBuildFolder(buildResults, id);
+        try {
+            var manifest = SourceCodeManifest.read(manifestFile);
+            if (manifest.isPresent()) {
+                var storedHashes = manifest.get().getStore(manifestFile).getHashes();
+                names.addAll(manifest.get().getNames(storedHashes::contains));
+            }
+        }
+        catch (IOException exception) {
+            // ignore and try the pack and ZIP files
+        }
+        for (SourceCodeStorage storage : SourceCodeStorage.values()) {
+            names.addAll(SourceCodePackFile.getNames(createPackInBuildFolder(buildResults, id, storage)));
+        }
+        var files = manifestFile.getParent().toFile().list();
+        if (files != null) {
+            for (String file : files) {
+                if (file.endsWith(ZIP_FILE_EXTENSION)) {
+                    names.add(StringUtils.removeEnd(file, ZIP_FILE_EXTENSION));
+                }
+            }
+        }
+        return SourceCodeAvailability.of(names);
     }
 
     /**
@@ -102,10 +358,7 @@ public class SourceCodeFacade {
      * @return {@code true} whether source files has been stored, else {@code false}
      */
     public boolean hasStoredSourceCode(final File buildResults, final String id) {
-        var sourceFolder = new File(buildResults, COVERAGE_SOURCES_DIRECTORY);
-        var elementFolder = new File(sourceFolder, id);
-        var files = elementFolder.listFiles();
-        return files != null && files.length > 0;
+        return !getAvailability(buildResults, id).isEmpty();
     }
 
     String getCoverageSourcesDirectory() {
@@ -113,35 +366,147 @@ public class SourceCodeFacade {
     }
 
     /**
-     * Copies the zipped source files from the agent to the controller and unpacks them in the coverage-sources folder
-     * of the current build.
+     * Returns the content-addressed store of the specified job that contains the source files of all builds.
+     *
+     * @param build
+     *         a build of the job
+     * @param id
+     *         id of the coverage results
+     *
+     * @return the store
+     */
+    SourceCodeStore getStore(final Run<?, ?> build, final String id) {
+        return new SourceCodeStore(build.getParent().getRootDir().toPath()
+                .resolve(SourceCodeStore.STORE_DIRECTORY).resolve(id));
+    }
+
+    /**
+     * Writes the manifest of the current build. The manifest references the source files that have been added to the
+     * content-addressed store of the job by the agent. Files that the agent did not transfer since the reference
+     * build already stored a blob with the same hash are linked from the store of the reference build. Callers need
+     * to hold the read lock of the store, so that the blobs are not removed before the manifest has been written.
      *
      * @param build
      *         the build with the coverage result
-     * @param workspace
-     *         the workspace on the agent that created the ZIP file
+     * @param id
+     *         id of the coverage results
+     * @param manifest
+     *         the manifest with all files that have been processed on the agent
+     * @param referenceStore
+     *         the store that contains the blobs of the reference build
      * @param log
      *         the log
-     *
-     * @throws InterruptedException
-     *         in case the user terminated the job
      */
-    void copySourcesToBuildFolder(final Run<?, ?> build, final FilePath workspace, final FilteredLog log)
-            throws InterruptedException {
+    void writeManifest(final Run<?, ?> build, final String id, final SourceCodeManifest manifest,
+            final SourceCodeStore referenceStore, final FilteredLog log) {
         try {
-            var buildFolder = new FilePath(build.getRootDir()).child(COVERAGE_SOURCES_DIRECTORY);
-            var buildZip = buildFolder.child(COVERAGE_SOURCES_ZIP);
-            workspace.child(COVERAGE_SOURCES_ZIP).copyTo(buildZip);
-            log.logInfo("-> extracting...");
-            buildZip.unzip(buildFolder);
-            buildZip.delete();
+            var store = getStore(build, id);
+            manifest.getHashes().forEach(hash -> store.link(hash, referenceStore));
+
+            var buildManifest = createManifestInBuildFolder(build.getRootDir(), id);
+            Files.createDirectories(buildManifest.getParent());
+            var relocated = manifest.relocate(buildManifest, store, store::contains);
+            relocated.write(buildManifest);
+            SourceCodeAvailability.invalidate(buildManifest.getParent());
+            if (relocated.size() < manifest.size()) {
+                log.logError("-> %d source files are missing in the store '%s'",
+                        manifest.size() - relocated.size(), store.getDirectory());
+            }
             log.logInfo("-> done");
         }
         catch (IOException exception) {
-            log.logException(exception, "Can't copy zipped sources from agent to controller");
+            log.logException(exception, "Can't write the source code manifest of the build");
         }
     }
 
+    /**
+     * Removes all source files from the store of the job that are not referenced by the manifest of any build
+     * anymore. The manifests of builds might have been removed by the
+     * {@link io.jenkins.plugins.prism.SourceCodeRetention retention strategy} or by deleting the builds.
+     *
+     * @param build
+     *         the current build of the job
+     * @param id
+     *         id of the coverage results
+     * @param log
+     *         the log
+     */
+    void removeUnusedSources(final Run<?, ?> build, final String id, final FilteredLog log) {
+        var store = getStore(build, id);
+        if (!Files.isDirectory(store.getDirectory())) {
+            return;
+        }
+        var lock = store.getLock().writeLock();
+        if (!lock.tryLock()) {
+            return; // another build is adding files right now, unused files will be removed by a subsequent build
+        }
+        try {
+            var builds = build.getRootDir().getParentFile().listFiles(File::isDirectory);
+            if (builds == null) {
+                return;
+            }
+            Set<String> referenced = new HashSet<>();
+            for (File buildFolder : builds) {
+                var manifestFile = createManifestInBuildFolder(buildFolder, id);
+                try {
+                    SourceCodeManifest.read(manifestFile)
+                            .filter(manifest -> isSameStore(manifest.getStore(manifestFile), store))
+                            .ifPresent(manifest -> referenced.addAll(manifest.getHashes()));
+                }
+                catch (IOException exception) {
+                    log.logException(exception, "Can't read source code manifest '%s'", manifestFile);
+                    return; // do not remove any files that might be referenced by this manifest
+                }
+            }
+            int removed = store.removeUnreferenced(referenced);
+            if (removed > 0) {
+                log.logInfo("Removed %d source files that are not used by any build anymore", removed);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isSameStore(final SourceCodeStore actual, final SourceCodeStore expected) {
+        return actual.getDirectory().normalize().equals(expected.getDirectory());
+    }
+
+    /**
+     * Returns the manifest of the source files of a coverage result in Jenkins' build folder. Note that the file might
+     * not exist.
+     *
+     * @param buildResults
+     *         Jenkins directory for build results
+     * @param id
+     *         id of the coverage results
+     *
+     * @return the manifest file
+     */
+    Path createManifestInBuildFolder(final File buildResults, final String id) {
+        return buildResults.toPath().resolve(COVERAGE_SOURCES_DIRECTORY).resolve(id)
+                .resolve(SourceCodeManifest.FILE_NAME);
+    }
+
+    /**
+     * Returns the pack file of the source files of a coverage result in Jenkins' build folder. These pack files have
+     * been written by previous versions of the plugin, see {@link SourceCodePackFile}. Note that the file might not
+     * exist.
+     *
+     * @param buildResults
+     *         Jenkins directory for build results
+     * @param id
+     *         id of the coverage results
+     * @param storage
+     *         the storage mode that has been used to record the source files
+     *
+     * @return the pack file
+     */
+    Path createPackInBuildFolder(final File buildResults, final String id, final SourceCodeStorage storage) {
+        return buildResults.toPath().resolve(COVERAGE_SOURCES_DIRECTORY).resolve(id)
+                .resolve(storage.getPackFileName());
+    }
+
     /**
      * Returns a file to a source file in Jenkins' build folder. Note that the file might not exist.
      *
@@ -172,31 +537,7 @@ public class SourceCodeFacade {
      * @return the filtered HTML sourcecode view
      */
     public String calculateModifiedLinesCoverageSourceCode(final String content, final FileNode fileNode) {
-        Set<Integer> lines = fileNode.getLinesWithCoverage();
-        lines.retainAll(fileNode.getModifiedLines());
-        Set<String> linesAsText = lines.stream().map(String::valueOf).collect(Collectors.toSet());
-        Document doc = Jsoup.parse(content, Parser.xmlParser());
-        int maxLine = Integer.parseInt(Objects.requireNonNull(
-                doc.select("tr").last()).select("a").text());
-        Map<String, Boolean> linesMapping = calculateLineMapping(lines, maxLine);
-        var elements = doc.select("tr");
-        for (Element element : elements) {
-            var line = element.select("td > a").text();
-            if (linesMapping.containsKey(line)) {
-                if (linesMapping.get(line)) {
-                    changeCodeToSkipLine(element);
-                }
-                else if (!linesAsText.contains(line)) {
-                    element.removeClass(element.className());
-                    element.addClass("noCover");
-                    Objects.requireNonNull(element.select("td.hits").first()).text("");
-                }
-            }
-            else {
-                element.remove();
-            }
-        }
-        return doc.html();
+        return SourceCodeRowFilter.createModifiedLinesFilter(fileNode).filter(content);
     }
 
     /**
@@ -210,113 +551,6 @@ public class SourceCodeFacade {
      * @return the filtered HTML sourcecode view
      */
     public String calculateIndirectCoverageChangesSourceCode(final String content, final FileNode fileNode) {
-        Map<Integer, Integer> lines = fileNode.getIndirectCoverageChanges();
-        Map<String, String> indirectCoverageChangesAsText = lines.entrySet().stream()
-                .collect(Collectors
-                        .toMap(entry -> String.valueOf(entry.getKey()), entry -> String.valueOf(entry.getValue())));
-        Document doc = Jsoup.parse(content, Parser.xmlParser());
-        int maxLine = Integer.parseInt(Objects.requireNonNull(
-                doc.select("tr").last()).select("a").text());
-        Map<String, Boolean> linesMapping = calculateLineMapping(lines.keySet(), maxLine);
-        doc.select("tr").forEach(element -> {
-            var line = element.select("td > a").text();
-            if (linesMapping.containsKey(line)) {
-                colorIndirectCoverageChangeLine(element, line, linesMapping, indirectCoverageChangesAsText);
-            }
-            else {
-                element.remove();
-            }
-        });
-        return doc.html();
-    }
-
-    /**
-     * Highlights a line to be a skip line which represents a bunch of not visible lines.
-     *
-     * @param element
-     *         The HTML element which represents the line
-     */
-    private void changeCodeToSkipLine(final Element element) {
-        element.removeClass(element.className());
-        element.addClass("coverSkip");
-        Objects.requireNonNull(element.select("td.line").first()).text("..");
-        Objects.requireNonNull(element.select("td.hits").first()).text("");
-        Objects.requireNonNull(element.select("td.code").first()).text("");
-    }
-
-    /**
-     * Colors one line within the indirect coverage changes code view.
-     *
-     * @param element
-     *         The HTML element which represents the line
-     * @param line
-     *         The line number
-     * @param linesMapping
-     *         The mapping which classifies how the line should be treated
-     * @param indirectCoverageChangesAsText
-     *         The indirect coverage changes mapping
-     */
-    private void colorIndirectCoverageChangeLine(final Element element, final String line,
-            final Map<String, Boolean> linesMapping, final Map<String, String> indirectCoverageChangesAsText) {
-        if (linesMapping.get(line)) {
-            changeCodeToSkipLine(element);
-        }
-        else if (indirectCoverageChangesAsText.containsKey(line)) {
-            element.removeClass(element.className());
-            var hits = indirectCoverageChangesAsText.get(line);
-            if (hits.startsWith("-")) {
-                element.addClass("coverNone");
-            }
-            else {
-                element.addClass("coverFull");
-            }
-            Objects.requireNonNull(element.select("td.hits").first()).text(hits);
-        }
-        else {
-            element.removeClass(element.className());
-            element.addClass("noCover");
-            Objects.requireNonNull(element.select("td.hits").first()).text("");
-        }
-    }
-
-    /**
-     * Calculates a mapping of lines which should be shown. The mapping contains the passed line intervals surrounded by
-     * +-3 lines each.
-     *
-     * @param lines
-     *         The lines which build the line intervals to be shown
-     * @param maxLine
-     *         The maximum line number
-     *
-     * @return the line mapping as a map with the line number text as key and {@code true} if the line should be marked
-     *         as a filling line, {@code false} if the line shows code
-     */
-    private Map<String, Boolean> calculateLineMapping(final Set<Integer> lines, final int maxLine) {
-        SortedSet<Integer> linesWithSurroundings = new TreeSet<>(lines);
-        lines.forEach(line -> {
-            for (int i = 1; i <= 3; i++) {
-                linesWithSurroundings.add(line + i);
-                linesWithSurroundings.add(line - i);
-            }
-        });
-        List<Integer> sortedLines = linesWithSurroundings.stream()
-                .filter(line -> line >= 1 && line <= maxLine)
-                .collect(Collectors.toList());
-        SortedMap<String, Boolean> linesMapping = new TreeMap<>();
-        for (int i = 0; i < sortedLines.size(); i++) {
-            int line = sortedLines.get(i);
-            linesMapping.put(String.valueOf(line), false);
-            if (i < sortedLines.size() - 1 && line + 1 != sortedLines.get(i + 1)) {
-                linesMapping.put(String.valueOf(line + 1), true);
-            }
-        }
-        int highestLine = sortedLines.get(sortedLines.size() - 1);
-        if (sortedLines.get(0) > 1) {
-            linesMapping.put("1", true);
-        }
-        if (highestLine < maxLine) {
-            linesMapping.put(String.valueOf(highestLine + 1), true);
-        }
-        return linesMapping;
+        return SourceCodeRowFilter.createIndirectCoverageChangesFilter(fileNode).filter(content);
     }
 }
@@ -0,0 +1,287 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * An index of the rows of a painted source code file. For each row, the index stores the position of the row in the
+ * painted file and the line number the row belongs to. Rows without a line number (e.g., column headers or skip lines)
+ * belong to the next line, or to the last line if they are at the end of the file. The index is used to read only the
+ * rows of a range of lines, so that huge files can be shown in windows.
+ *
+ * <p>
+ * The index is created by scanning the painted file once, it is persisted in a small binary file:
+ * </p>
+ *
+ * <pre>
+ * header:  version (int), length of the painted file in characters (int), number of rows (int)
+ * rows:    for each row: line (int), position of the row in characters (int)
+ * </pre>
+ *
+ * @author Ullrich Hafner
+ */
+final class SourceCodeLineIndex {
+    static final int VERSION = 1;
+
+    private static final String ROW_START = "<tr";
+    private static final String ANCHOR = "<a name=\"";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int length;
+    private final int[] lines;
+    private final int[] positions;
+
+    private SourceCodeLineIndex(final int length, final int[] lines, final int[] positions) {
+        this.length = length;
+        this.lines = lines;
+        this.positions = positions;
+    }
+
+    /**
+     * Creates the index of the specified painted source code file.
+     *
+     * @param content
+     *         the painted source code file
+     *
+     * @return the index
+     */
+    static SourceCodeLineIndex create(final String content) {
+        try {
+            return create(new StringReader(content));
+        }
+        catch (IOException exception) {
+            throw new IllegalStateException("Unexpected exception of a StringReader", exception);
+        }
+    }
+
+    /**
+     * Creates the index of the painted source code file that is provided by the specified reader. The file is read
+     * in small chunks, so the memory consumption does not depend on the size of the file.
+     *
+     * @param reader
+     *         the reader that provides the painted source code file
+     *
+     * @return the index
+     * @throws IOException
+     *         if the file could not be read
+     */
+    static SourceCodeLineIndex create(final Reader reader) throws IOException {
+        var scanner = new RowScanner();
+        var buffer = new char[BUFFER_SIZE];
+        for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+            scanner.scan(buffer, read);
+        }
+        return scanner.createIndex();
+    }
+
+    /**
+     * Returns the number of lines of the file, i.e., the number of the last line that has been painted.
+     *
+     * @return the number of lines
+     */
+    int getLineCount() {
+        return lines.length == 0 ? 0 : lines[lines.length - 1];
+    }
+
+    /**
+     * Returns the position of the first row of the specified line range in the painted file.
+     *
+     * @param fromLine
+     *         the first line of the range
+     *
+     * @return the position of the first row in characters
+     */
+    int getStart(final int fromLine) {
+        return getPosition(findFirstRow(fromLine));
+    }
+
+    /**
+     * Returns the position after the last row of the specified line range in the painted file.
+     *
+     * @param toLine
+     *         the last line of the range
+     *
+     * @return the position after the last row in characters
+     */
+    int getEnd(final int toLine) {
+        if (toLine == Integer.MAX_VALUE) {
+            return length;
+        }
+        return getPosition(findFirstRow(toLine + 1));
+    }
+
+    /**
+     * Returns the rows of the specified line range.
+     *
+     * @param content
+     *         the painted source code file of this index
+     * @param fromLine
+     *         the first line of the range
+     * @param toLine
+     *         the last line of the range
+     *
+     * @return the rows of the range
+     */
+    String getRows(final String content, final int fromLine, final int toLine) {
+        var start = getStart(fromLine);
+        return content.substring(start, Math.max(start, getEnd(toLine)));
+    }
+
+    private int getPosition(final int row) {
+        return row < positions.length ? positions[row] : length;
+    }
+
+    private int findFirstRow(final int line) {
+        int low = 0;
+        int high = lines.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lines[middle] < line) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Writes this index to the specified file. The file is replaced atomically.
+     *
+     * @param file
+     *         the file to write the index to
+     *
+     * @throws IOException
+     *         if the file could not be written
+     */
+    void write(final Path file) throws IOException {
+        var temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(VERSION);
+                output.writeInt(length);
+                output.writeInt(lines.length);
+                for (int row = 0; row < lines.length; row++) {
+                    output.writeInt(lines[row]);
+                    output.writeInt(positions[row]);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads the index from the specified file.
+     *
+     * @param file
+     *         the file to read the index from
+     *
+     * @return the index
+     * @throws IOException
+     *         if the file could not be read or has an unsupported format
+     */
+    static SourceCodeLineIndex read(final Path file) throws IOException {
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != VERSION) {
+                throw new IOException("Unsupported line index " + file);
+            }
+            int length = input.readInt();
+            int rows = input.readInt();
+            if (length < 0 || rows < 0 || (long) rows * 2 * Integer.BYTES > Files.size(file)) {
+                throw new IOException("Corrupt line index " + file);
+            }
+            var lines = new int[rows];
+            var positions = new int[rows];
+            for (int row = 0; row < rows; row++) {
+                lines[row] = input.readInt();
+                positions[row] = input.readInt();
+            }
+            return new SourceCodeLineIndex(length, lines, positions);
+        }
+    }
+
+    /**
+     * Finds the rows and their line numbers in a painted file. The file is scanned character by character, so the
+     * file can be provided in chunks of any size.
+     */
+    private static class RowScanner {
+        private int[] lines = new int[BUFFER_SIZE];
+        private int[] positions = new int[BUFFER_SIZE];
+        private int rows;
+        private int firstUnresolvedRow;
+        private int position;
+        private int rowMatch;
+        private int anchorMatch;
+        private boolean isParsingLine;
+        private int line;
+
+        void scan(final char[] buffer, final int count) {
+            for (int i = 0; i < count; i++, position++) {
+                char c = buffer[i];
+                if (isParsingLine) {
+                    if (c >= '0' && c <= '9') {
+                        line = line * 10 + c - '0';
+                        continue;
+                    }
+                    isParsingLine = false;
+                    if (c == '"') {
+                        resolveRows(line);
+                    }
+                }
+                rowMatch = advance(ROW_START, rowMatch, c);
+                if (rowMatch == ROW_START.length()) {
+                    addRow(position - ROW_START.length() + 1);
+                    rowMatch = 0;
+                }
+                anchorMatch = advance(ANCHOR, anchorMatch, c);
+                if (anchorMatch == ANCHOR.length()) {
+                    isParsingLine = true;
+                    line = 0;
+                    anchorMatch = 0;
+                }
+            }
+        }
+
+        private int advance(final String pattern, final int matched, final char c) {
+            if (c == pattern.charAt(matched)) {
+                return matched + 1;
+            }
+            return c == pattern.charAt(0) ? 1 : 0;
+        }
+
+        private void addRow(final int start) {
+            if (rows == lines.length) {
+                lines = Arrays.copyOf(lines, rows * 2);
+                positions = Arrays.copyOf(positions, rows * 2);
+            }
+            positions[rows] = start;
+            rows++;
+        }
+
+        private void resolveRows(final int lineNumber) {
+            if (firstUnresolvedRow < rows) {
+                Arrays.fill(lines, firstUnresolvedRow, rows, lineNumber);
+                firstUnresolvedRow = rows; // other anchors of the same row are ignored
+            }
+        }
+
+        SourceCodeLineIndex createIndex() {
+            int lastLine = firstUnresolvedRow > 0 ? lines[firstUnresolvedRow - 1] : 0;
+            Arrays.fill(lines, firstUnresolvedRow, rows, lastLine);
+            return new SourceCodeLineIndex(position, Arrays.copyOf(lines, rows), Arrays.copyOf(positions, rows));
+        }
+    }
+}
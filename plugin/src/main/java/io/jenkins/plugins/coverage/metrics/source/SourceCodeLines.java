@@ -0,0 +1,49 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+/**
+ * The painted rows of a range of lines of a source code file. This model is serialized to JSON and used by the
+ * source code views that show large files in windows of lines.
+ *
+ * @author Ullrich Hafner
+ */
+public final class SourceCodeLines {
+    private final String content;
+    private final int fromLine;
+    private final int toLine;
+    private final int lineCount;
+
+    /**
+     * Creates a new instance of {@link SourceCodeLines}.
+     *
+     * @param content
+     *         the painted rows of the range
+     * @param fromLine
+     *         the first line of the range (inclusive)
+     * @param toLine
+     *         the last line of the range (inclusive)
+     * @param lineCount
+     *         the number of lines of the whole file
+     */
+    public SourceCodeLines(final String content, final int fromLine, final int toLine, final int lineCount) {
+        this.content = content;
+        this.fromLine = fromLine;
+        this.toLine = toLine;
+        this.lineCount = lineCount;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public int getFromLine() {
+        return fromLine;
+    }
+
+    public int getToLine() {
+        return toLine;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+}
@@ -0,0 +1,303 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Maps the source code files of a coverage result to the blobs in a {@link SourceCodeStore}. Each build stores a
+ * manifest for each coverage result, the content of the files is shared by all builds of a job. The format of a
+ * manifest is a text file:
+ *
+ * <pre>
+ * storage PAINTED
+ * encoding UTF-8
+ * store ../../coverage-sources-store/coverage
+ * max-lines 10000
+ * 4f0c...e1 src_main_java_Foo.java
+ * </pre>
+ *
+ * <p>
+ * The line {@code max-lines} is optional and only written if the number of painted lines has been limited.
+ * </p>
+ *
+ * <p>
+ * The location of the store is relative to the folder of the manifest, so that the job can be moved or renamed. The
+ * parsed manifests are cached for a small number of builds, so that checking the availability of many files (e.g., in
+ * the coverage table) does not require reading the manifest again.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+final class SourceCodeManifest {
+    /** Name of the manifest file in the folder of a coverage result. */
+    static final String FILE_NAME = "coverage-sources.manifest";
+
+    private static final String STORAGE = "storage ";
+    private static final String ENCODING = "encoding ";
+    private static final String STORE = "store ";
+    private static final String MAX_LINES = "max-lines ";
+    private static final char SEPARATOR = ' ';
+
+    private static final int CACHED_MANIFESTS = 16;
+    private static final Map<Path, CachedManifest> MANIFESTS = Collections.synchronizedMap(
+            new LinkedHashMap<>(CACHED_MANIFESTS, 0.75f, true) {
+                private static final long serialVersionUID = 6283015591946279372L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Path, CachedManifest> eldest) {
+                    return size() > CACHED_MANIFESTS;
+                }
+            });
+
+    private final SourceCodeStorage storage;
+    private final String encoding;
+    private final int maxLines;
+    private final String store;
+    private final Map<String, String> hashes;
+
+    /**
+     * Creates a new instance of {@link SourceCodeManifest}.
+     *
+     * @param storage
+     *         the storage mode of the referenced blobs
+     * @param encoding
+     *         the encoding that has been used to read the source code files
+     * @param store
+     *         the location of the store, relative to the folder of the manifest
+     * @param hashes
+     *         the mapping of sanitized file names to the hashes of the blobs
+     */
+    SourceCodeManifest(final SourceCodeStorage storage, final String encoding, final String store,
+            final Map<String, String> hashes) {
+        this(storage, encoding, 0, store, hashes);
+    }
+
+    /**
+     * Creates a new instance of {@link SourceCodeManifest}.
+     *
+     * @param storage
+     *         the storage mode of the referenced blobs
+     * @param encoding
+     *         the encoding that has been used to read the source code files
+     * @param maxLines
+     *         the number of lines that have been painted in any case, or 0 if all lines have been painted
+     * @param store
+     *         the location of the store, relative to the folder of the manifest
+     * @param hashes
+     *         the mapping of sanitized file names to the hashes of the blobs
+     */
+    SourceCodeManifest(final SourceCodeStorage storage, final String encoding, final int maxLines,
+            final String store, final Map<String, String> hashes) {
+        this.storage = storage;
+        this.encoding = encoding;
+        this.maxLines = maxLines;
+        this.store = store;
+        this.hashes = new HashMap<>(hashes);
+    }
+
+    SourceCodeStorage getStorage() {
+        return storage;
+    }
+
+    String getEncoding() {
+        return encoding;
+    }
+
+    int getMaxLines() {
+        return maxLines;
+    }
+
+    /**
+     * Returns the hash of the blob that contains the specified file.
+     *
+     * @param name
+     *         the sanitized name of the source code file
+     *
+     * @return the hash of the blob, or an empty optional if the file is not part of this manifest
+     */
+    Optional<String> getHash(final String name) {
+        return Optional.ofNullable(hashes.get(name));
+    }
+
+    /**
+     * Returns the hashes of all referenced blobs.
+     *
+     * @return the hashes
+     */
+    Collection<String> getHashes() {
+        return Collections.unmodifiableCollection(hashes.values());
+    }
+
+    int size() {
+        return hashes.size();
+    }
+
+    /**
+     * Returns the names of all files with a blob that matches the specified filter.
+     *
+     * @param filter
+     *         the filter for the hashes of the blobs
+     *
+     * @return the sanitized names of the files
+     */
+    Set<String> getNames(final Predicate<String> filter) {
+        return hashes.entrySet().stream()
+                .filter(entry -> filter.test(entry.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Returns the store that contains the referenced blobs.
+     *
+     * @param manifest
+     *         the location of this manifest
+     *
+     * @return the store
+     */
+    SourceCodeStore getStore(final Path manifest) {
+        return new SourceCodeStore(manifest.toAbsolutePath().getParent().resolve(store));
+    }
+
+    /**
+     * Creates a copy of this manifest that references the specified store. Only the files with a blob that matches
+     * the specified filter are retained.
+     *
+     * @param manifest
+     *         the location of the new manifest
+     * @param target
+     *         the store that contains the blobs
+     * @param filter
+     *         the filter for the hashes of the blobs
+     *
+     * @return the new manifest
+     */
+    SourceCodeManifest relocate(final Path manifest, final SourceCodeStore target, final Predicate<String> filter) {
+        var relativeStore = manifest.toAbsolutePath().getParent().relativize(target.getDirectory());
+        var retained = hashes.entrySet().stream()
+                .filter(entry -> filter.test(entry.getValue()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        return new SourceCodeManifest(storage, encoding, maxLines, relativeStore.toString().replace('\\', '/'),
+                retained);
+    }
+
+    /**
+     * Writes this manifest to the specified file.
+     *
+     * @param file
+     *         the file to write the manifest to
+     *
+     * @throws IOException
+     *         if the file could not be written
+     */
+    void write(final Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(STORAGE + storage.name());
+            writer.newLine();
+            writer.write(ENCODING + encoding);
+            writer.newLine();
+            writer.write(STORE + store);
+            writer.newLine();
+            if (maxLines > 0) {
+                writer.write(MAX_LINES + maxLines);
+                writer.newLine();
+            }
+            for (Map.Entry<String, String> entry : hashes.entrySet()) {
+                writer.write(entry.getValue());
+                writer.write(SEPARATOR);
+                writer.write(entry.getKey());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads the manifest from the specified file.
+     *
+     * @param file
+     *         the file to read the manifest from
+     *
+     * @return the manifest, or an empty optional if the file does not exist
+     * @throws IOException
+     *         if the file could not be read or is not a valid manifest
+     */
+    static Optional<SourceCodeManifest> read(final Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+
+        var lastModified = Files.getLastModifiedTime(file);
+        var size = Files.size(file);
+        var cached = MANIFESTS.get(file);
+        if (cached != null && cached.isValid(lastModified, size)) {
+            return Optional.of(cached.manifest);
+        }
+
+        var manifest = parse(file);
+        MANIFESTS.put(file, new CachedManifest(lastModified, size, manifest));
+        return Optional.of(manifest);
+    }
+
+    private static SourceCodeManifest parse(final Path file) throws IOException {
+        var lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.size() < 3 || !lines.get(0).startsWith(STORAGE) || !lines.get(1).startsWith(ENCODING)
+                || !lines.get(2).startsWith(STORE)) {
+            throw new IOException("Not a source code manifest: " + file);
+        }
+        try {
+            var storage = SourceCodeStorage.valueOf(StringUtils.removeStart(lines.get(0), STORAGE));
+            var encoding = StringUtils.removeStart(lines.get(1), ENCODING);
+            var store = StringUtils.removeStart(lines.get(2), STORE);
+            var maxLines = 0;
+            var start = 3;
+            if (lines.size() > start && lines.get(start).startsWith(MAX_LINES)) {
+                maxLines = Integer.parseInt(StringUtils.removeStart(lines.get(start), MAX_LINES));
+                start++;
+            }
+            Map<String, String> hashes = new HashMap<>();
+            for (String line : lines.subList(start, lines.size())) {
+                var hash = StringUtils.substringBefore(line, SEPARATOR);
+                if (!SourceCodeStore.isHash(hash)) {
+                    throw new IOException("Corrupt source code manifest: " + file);
+                }
+                hashes.put(StringUtils.substringAfter(line, SEPARATOR), hash);
+            }
+            return new SourceCodeManifest(storage, encoding, maxLines, store, hashes);
+        }
+        catch (IllegalArgumentException exception) {
+            throw new IOException("Unsupported source code manifest: " + file, exception);
+        }
+    }
+
+    private static class CachedManifest {
+        private final FileTime lastModified;
+        private final long size;
+        private final SourceCodeManifest manifest;
+
+        CachedManifest(final FileTime lastModified, final long size, final SourceCodeManifest manifest) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.manifest = manifest;
+        }
+
+        boolean isValid(final FileTime modified, final long fileSize) {
+            return Objects.equals(lastModified, modified) && size == fileSize;
+        }
+    }
+}
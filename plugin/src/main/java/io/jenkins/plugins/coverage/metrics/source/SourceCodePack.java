@@ -0,0 +1,248 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads painted source code files from a pack stream. A pack stores the painted source code files of a coverage result
+ * in a single stream, each file is compressed individually. The format of a pack is:
+ *
+ * <pre>
+ * header:  magic (int), version (int)
+ * entries: for each file: marker 1 (byte), name (modified UTF-8), followed by the deflated content of the file
+ *          (without ZIP headers) in chunks: chunk size (int, at most {@link #MAX_CHUNK_SIZE}) and chunk data. The
+ *          content is terminated by a chunk size of 0 and a trailer: size (int), compressed size (int), CRC-32 of the
+ *          compressed content (int). A size of -1 marks an entry that could not be written completely, such an entry
+ *          is skipped when reading the pack.
+ * end:     marker 0 (byte)
+ * </pre>
+ *
+ * <p>
+ * Since the size and the checksum of an entry are written after its content, an entry can be written while it is
+ * compressed and read while it is decompressed: neither the writer nor the reader needs to hold the whole content in
+ * memory.
+ * </p>
+ *
+ * <p>
+ * Packs are used to transfer the source code files from the agent to the controller, where the entries are imported
+ * into the {@link SourceCodeStore} of the job. Therefore, a pack is read sequentially only
+ * (see {@link #readEntries(InputStream, EntryVisitor)}).
+ * </p>
+ *
+ * @author Ullrich Hafner
+ * @see SourceCodePackWriter
+ */
+final class SourceCodePack {
+    static final int MAGIC = 0x4350_534B; // "CPSK"
+    static final int VERSION = 4;
+    static final int ENTRY = 1;
+    static final int END = 0;
+    static final int DISCARDED = -1;
+    static final int MAX_CHUNK_SIZE = 64 * 1024;
+    static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+
+    private SourceCodePack() {
+        // prevents instantiation
+    }
+
+    /**
+     * Reads all entries of a pack sequentially from the specified stream. The entries are passed in their compressed
+     * form, so that they can be copied without decompressing and compressing the content again. The CRC-32 checksum
+     * of each entry is verified when the end of its content has been read. Content that has not been read by the
+     * visitor is skipped. The stream is read until its end, but it is not closed.
+     *
+     * @param input
+     *         the stream to read the pack from
+     * @param visitor
+     *         the visitor that will be called for each entry
+     *
+     * @throws IOException
+     *         if the pack could not be read, is corrupt, or the visitor failed
+     */
+    static void readEntries(final InputStream input, final EntryVisitor visitor) throws IOException {
+        var data = new DataInputStream(new BufferedInputStream(input));
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Unsupported pack stream format");
+        }
+        int marker = data.readByte();
+        while (marker == ENTRY) {
+            var entry = new EntryInputStream(data, data.readUTF());
+            try {
+                visitor.visit(entry.getName(), entry);
+                entry.transferTo(OutputStream.nullOutputStream()); // skip the content that has not been read
+            }
+            catch (IOException exception) {
+                if (!entry.isDiscarded()) {
+                    throw exception;
+                }
+            }
+            marker = data.readByte();
+        }
+        if (marker != END) {
+            throw new IOException("Corrupt pack stream");
+        }
+        data.transferTo(OutputStream.nullOutputStream()); // consume the stream until its end
+    }
+
+    /**
+     * Inflates the specified compressed content.
+     *
+     * @param compressed
+     *         the deflated content (without ZIP headers)
+     * @param size
+     *         the size of the inflated content
+     *
+     * @return the inflated content
+     * @throws IOException
+     *         if the content is corrupt
+     */
+    static byte[] inflate(final ByteBuffer compressed, final int size) throws IOException {
+        var inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            var content = new byte[size];
+            int position = 0;
+            while (position < size && !inflater.finished()) {
+                int inflated = inflater.inflate(content, position, size - position);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                position += inflated;
+            }
+            if (position != size) {
+                throw new IOException("Corrupt entry in pack file: expected " + size + " bytes but got " + position);
+            }
+            return content;
+        }
+        catch (DataFormatException exception) {
+            throw new IOException("Corrupt entry in pack file", exception);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Visits the compressed entries of a pack file.
+     */
+    @FunctionalInterface
+    interface EntryVisitor {
+        /**
+         * Called for each entry of the pack file.
+         *
+         * @param name
+         *         the name of the entry
+         * @param compressed
+         *         the deflated content, the size of the inflated content is available after the content has been
+         *         read completely
+         *
+         * @throws IOException
+         *         if the entry could not be processed
+         */
+        void visit(String name, EntryInputStream compressed) throws IOException;
+    }
+
+    /**
+     * Provides the deflated content of an entry. The chunks of the entry are read on demand, so only the data of the
+     * current read call is kept in memory. When the end of the content has been reached, the trailer of the entry is
+     * verified: if the entry is corrupt or has been discarded by the writer, an {@link IOException} is thrown.
+     */
+    static final class EntryInputStream extends InputStream {
+        private final DataInputStream data;
+        private final String name;
+        private final CRC32 crc = new CRC32();
+        private long compressedSize;
+        private int remaining;
+        private int size = -1;
+        private boolean isFinished;
+        private boolean isDiscarded;
+
+        EntryInputStream(final DataInputStream data, final String name) {
+            super();
+
+            this.data = data;
+            this.name = name;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the size of the inflated content. The size is available after the content has been read
+         * completely.
+         *
+         * @return the size of the inflated content
+         * @throws IllegalStateException
+         *         if the content has not been read completely
+         */
+        int getSize() {
+            if (!isFinished || isDiscarded) {
+                throw new IllegalStateException("The content of entry " + name + " has not been read completely");
+            }
+            return size;
+        }
+
+        boolean isDiscarded() {
+            return isDiscarded;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (remaining == 0) {
+                if (isFinished) {
+                    return -1;
+                }
+                int chunkSize = data.readInt();
+                if (chunkSize == 0) {
+                    readTrailer();
+                    return -1;
+                }
+                if (chunkSize < 0 || chunkSize > MAX_CHUNK_SIZE) {
+                    throw new IOException("Corrupt entry in pack stream: " + name);
+                }
+                remaining = chunkSize;
+            }
+            int read = data.read(buffer, offset, Math.min(length, remaining));
+            if (read < 0) {
+                throw new EOFException("Unexpected end of entry in pack stream: " + name);
+            }
+            crc.update(buffer, offset, read);
+            compressedSize += read;
+            remaining -= read;
+            return read;
+        }
+
+        private void readTrailer() throws IOException {
+            int inflatedSize = data.readInt();
+            int expectedSize = data.readInt();
+            int expectedCrc = data.readInt();
+            isFinished = true;
+            if (inflatedSize == DISCARDED) {
+                isDiscarded = true;
+                throw new IOException("Entry has been discarded by the writer: " + name);
+            }
+            if (inflatedSize < 0 || expectedSize != compressedSize || expectedCrc != (int) crc.getValue()) {
+                throw new IOException("Corrupt entry in pack stream: " + name);
+            }
+            size = inflatedSize;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reads painted or raw source code files from an indexed pack file in the build folder. Builds that have been
+ * recorded before the source code files were moved into the {@link SourceCodeStore} of the job store all files of a
+ * coverage result in such a pack file, each file is compressed individually. The format of a pack file is:
+ *
+ * <pre>
+ * header:  magic (int), version (int)
+ * entries: for each file: marker 1 (byte), name (modified UTF-8), size (int), compressed size (int), CRC-32 of the
+ *          compressed content (int), followed by the deflated content of the file (without ZIP headers)
+ * end:     marker 0 (byte)
+ * index:   for each file: name (modified UTF-8), offset of the content (long), compressed size (int), size (int)
+ * trailer: offset of the index (long), number of entries (int), magic (int)
+ * </pre>
+ *
+ * <p>
+ * Packs of version 1 have no entry headers and no end marker. Both versions are read using the index only: the index
+ * of a pack file is read using a memory-mapped {@link FileChannel} and is cached for a small number of pack files, so
+ * that checking the availability of many files (e.g., in the coverage table) does not require reading the index
+ * again. The content of a single file is mapped and decompressed on demand. New pack files are not written anymore,
+ * so this class is read-only.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+final class SourceCodePackFile {
+    static final int LAST_INDEXED_VERSION = 2;
+    static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    private static final int CACHED_INDEXES = 16;
+    private static final Map<Path, PackIndex> INDEXES = Collections.synchronizedMap(
+            new LinkedHashMap<>(CACHED_INDEXES, 0.75f, true) {
+                private static final long serialVersionUID = -8173469184227374856L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Path, PackIndex> eldest) {
+                    return size() > CACHED_INDEXES;
+                }
+            });
+
+    private SourceCodePackFile() {
+        // prevents instantiation
+    }
+
+    /**
+     * Returns whether the specified pack file contains the specified file.
+     *
+     * @param pack
+     *         the pack file
+     * @param name
+     *         the sanitized name of the source code file
+     *
+     * @return {@code true} if the pack contains the file, {@code false} if the pack or the file does not exist
+     */
+    static boolean contains(final Path pack, final String name) {
+        try {
+            return readIndex(pack).contains(name);
+        }
+        catch (IOException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the names of all files in the specified pack file.
+     *
+     * @param pack
+     *         the pack file
+     *
+     * @return the sanitized names of the source code files, empty if the pack does not exist
+     */
+    static Set<String> getNames(final Path pack) {
+        try {
+            return readIndex(pack).getNames();
+        }
+        catch (IOException exception) {
+            return Set.of();
+        }
+    }
+
+    /**
+     * Reads the specified file from the specified pack file.
+     *
+     * @param pack
+     *         the pack file
+     * @param name
+     *         the sanitized name of the source code file
+     *
+     * @return the content of the file, or an empty optional if the pack does not contain the file
+     * @throws IOException
+     *         if the pack file could not be read
+     */
+    static Optional<String> read(final Path pack, final String name) throws IOException {
+        var entry = readIndex(pack).get(name);
+        if (entry == null) {
+            return Optional.empty();
+        }
+
+        try (var channel = FileChannel.open(pack, StandardOpenOption.READ)) {
+            var compressed = channel.map(MapMode.READ_ONLY, entry.offset, entry.compressedSize);
+            return Optional.of(new String(SourceCodePack.inflate(compressed, entry.size), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static PackIndex readIndex(final Path pack) throws IOException {
+        var lastModified = Files.getLastModifiedTime(pack);
+        var size = Files.size(pack);
+        var cached = INDEXES.get(pack);
+        if (cached != null && cached.isValid(lastModified, size)) {
+            return cached;
+        }
+
+        var index = new PackIndex(lastModified, size, parseIndex(pack, size));
+        INDEXES.put(pack, index);
+        return index;
+    }
+
+    private static Map<String, Entry> parseIndex(final Path pack, final long size) throws IOException {
+        if (size < SourceCodePack.HEADER_SIZE + TRAILER_SIZE) {
+            throw new IOException("Not a pack file: " + pack);
+        }
+        try (var channel = FileChannel.open(pack, StandardOpenOption.READ)) {
+            var header = channel.map(MapMode.READ_ONLY, 0, SourceCodePack.HEADER_SIZE);
+            int magic = header.getInt();
+            int version = header.getInt();
+            if (magic != SourceCodePack.MAGIC || version < 1 || version > LAST_INDEXED_VERSION) {
+                throw new IOException("Unsupported pack file format: " + pack);
+            }
+
+            var trailer = channel.map(MapMode.READ_ONLY, size - TRAILER_SIZE, TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            int count = trailer.getInt();
+            if (trailer.getInt() != SourceCodePack.MAGIC
+                    || indexOffset < SourceCodePack.HEADER_SIZE || indexOffset > size - TRAILER_SIZE) {
+                throw new IOException("Corrupt pack file: " + pack);
+            }
+
+            var index = channel.map(MapMode.READ_ONLY, indexOffset, size - TRAILER_SIZE - indexOffset);
+            Map<String, Entry> entries = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                var name = readName(index);
+                var entry = new Entry(index.getLong(), index.getInt(), index.getInt());
+                if (entry.offset < SourceCodePack.HEADER_SIZE || entry.compressedSize < 0 || entry.size < 0
+                        || entry.offset + entry.compressedSize > indexOffset) {
+                    throw new IOException("Corrupt pack file: " + pack);
+                }
+                entries.put(name, entry);
+            }
+            return entries;
+        }
+        catch (IndexOutOfBoundsException | BufferUnderflowException exception) {
+            throw new IOException("Corrupt pack file: " + pack, exception);
+        }
+    }
+
+    /**
+     * Reads a string that has been written using {@link java.io.DataOutput#writeUTF(String)}. The names are
+     * sanitized file names, so they contain ASCII characters only.
+     */
+    private static String readName(final ByteBuffer index) {
+        int length = Short.toUnsignedInt(index.getShort());
+        var bytes = new byte[length];
+        index.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class PackIndex {
+        private final FileTime lastModified;
+        private final long size;
+        private final Map<String, Entry> entries;
+
+        PackIndex(final FileTime lastModified, final long size, final Map<String, Entry> entries) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.entries = entries;
+        }
+
+        boolean isValid(final FileTime modified, final long fileSize) {
+            return Objects.equals(lastModified, modified) && size == fileSize;
+        }
+
+        boolean contains(final String name) {
+            return entries.containsKey(name);
+        }
+
+        Set<String> getNames() {
+            return Collections.unmodifiableSet(entries.keySet());
+        }
+
+        @CheckForNull
+        Entry get(final String name) {
+            return entries.get(name);
+        }
+    }
+
+    private static class Entry {
+        private final long offset;
+        private final int compressedSize;
+        private final int size;
+
+        Entry(final long offset, final int compressedSize, final int size) {
+            this.offset = offset;
+            this.compressedSize = compressedSize;
+            this.size = size;
+        }
+    }
+}
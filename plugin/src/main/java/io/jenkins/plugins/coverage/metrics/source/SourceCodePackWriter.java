@@ -0,0 +1,258 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the painted source code files into a single pack file, see {@link SourceCodePack} for the format. Entries can
+ * be added concurrently from several threads: the painting and compression of a file is done in the calling thread
+ * using a buffer of a fixed size. If the compressed content of a file fits into this buffer, then only the copying of
+ * the buffer into the pack is synchronized. Otherwise, the calling thread acquires the pack while the buffer is full
+ * and streams the remaining chunks of the file directly into the pack, so the memory required for a file does not
+ * depend on its size.
+ *
+ * <p>
+ * Since the pack is written sequentially, it can be written to any output stream, e.g., a stream that transfers the
+ * pack from the agent to the controller. The SHA-256 checksum of all written bytes is available after closing the
+ * writer.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodePackWriter implements Closeable {
+    private final DataOutputStream output;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final MessageDigest digest;
+    private String checksum = StringUtils.EMPTY;
+
+    /**
+     * Creates a new pack in the specified file. An existing file will be overwritten.
+     *
+     * @param file
+     *         the file to write the pack to
+     *
+     * @throws IOException
+     *         if the file could not be created
+     */
+    SourceCodePackWriter(final Path file) throws IOException {
+        this(Files.newOutputStream(file));
+    }
+
+    /**
+     * Creates a new pack that will be written to the specified stream. The stream will be closed when this writer is
+     * closed.
+     *
+     * @param stream
+     *         the stream to write the pack to
+     *
+     * @throws IOException
+     *         if the header could not be written
+     */
+    SourceCodePackWriter(final OutputStream stream) throws IOException {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException exception) {
+            stream.close();
+            throw new IOException("SHA-256 is not supported", exception);
+        }
+        output = new DataOutputStream(new BufferedOutputStream(new DigestOutputStream(stream, digest)));
+        output.writeInt(SourceCodePack.MAGIC);
+        output.writeInt(SourceCodePack.VERSION);
+    }
+
+    /**
+     * Adds a new painted source code file to the pack. If the file could not be rendered after some of its chunks have
+     * been written, then the entry is marked as discarded so that the pack remains readable.
+     *
+     * @param fileName
+     *         the sanitized file name of the painted source code file
+     * @param content
+     *         the writer that renders the content of the painted source code file
+     *
+     * @throws IOException
+     *         if the file could not be rendered or written
+     */
+    void add(final String fileName, final ContentWriter content) throws IOException {
+        var entry = new EntryOutputStream(fileName);
+        var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new DeflaterOutputStream(entry, deflater), StandardCharsets.UTF_8))) {
+                content.write(writer);
+            }
+            entry.finish(deflater.getBytesRead());
+        }
+        catch (IOException | RuntimeException exception) {
+            entry.discard(exception);
+            throw exception;
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns the SHA-256 checksum of the written pack. The checksum is available after this writer has been closed.
+     *
+     * @return the checksum
+     */
+    String getChecksum() {
+        return checksum;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            try (output) {
+                output.writeByte(SourceCodePack.END);
+            }
+            checksum = HexFormat.of().formatHex(digest.digest());
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Collects the deflated content of an entry in chunks. The first chunk is buffered, so that small files are
+     * written in a single step. As soon as the buffer is full, the pack is acquired until the entry is finished or
+     * discarded and the chunks are written directly into the pack.
+     */
+    private final class EntryOutputStream extends OutputStream {
+        private final String fileName;
+        private final byte[] chunk = new byte[SourceCodePack.MAX_CHUNK_SIZE];
+        private final CRC32 crc = new CRC32();
+        private int position;
+        private long compressedSize;
+        private boolean isStreaming;
+
+        EntryOutputStream(final String fileName) {
+            super();
+
+            this.fileName = fileName;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            int start = offset;
+            int end = offset + length;
+            while (start < end) {
+                if (position == chunk.length) {
+                    writeChunk();
+                }
+                int copied = Math.min(end - start, chunk.length - position);
+                System.arraycopy(bytes, start, chunk, position, copied);
+                position += copied;
+                start += copied;
+            }
+        }
+
+        @Override
+        public void close() {
+            // the entry is completed using finish or discard
+        }
+
+        void finish(final long size) throws IOException {
+            if (size > Integer.MAX_VALUE || compressedSize + position > Integer.MAX_VALUE) {
+                throw new IOException("Painted source code file is too large: " + fileName);
+            }
+            startEntry();
+            try {
+                if (position > 0) {
+                    writeChunk();
+                }
+                output.writeInt(0);
+                output.writeInt((int) size);
+                output.writeInt((int) compressedSize);
+                output.writeInt((int) crc.getValue());
+            }
+            finally {
+                endEntry();
+            }
+        }
+
+        void discard(final Exception cause) {
+            if (!isStreaming) {
+                return; // nothing has been written yet
+            }
+            try {
+                output.writeInt(0);
+                output.writeInt(SourceCodePack.DISCARDED);
+                output.writeInt(0);
+                output.writeInt(0);
+            }
+            catch (IOException exception) {
+                cause.addSuppressed(exception);
+            }
+            finally {
+                endEntry();
+            }
+        }
+
+        private void writeChunk() throws IOException {
+            startEntry();
+            output.writeInt(position);
+            output.write(chunk, 0, position);
+            crc.update(chunk, 0, position);
+            compressedSize += position;
+            position = 0;
+        }
+
+        private void startEntry() throws IOException {
+            if (!isStreaming) {
+                lock.lock();
+                isStreaming = true;
+                output.writeByte(SourceCodePack.ENTRY);
+                output.writeUTF(fileName);
+            }
+        }
+
+        private void endEntry() {
+            isStreaming = false;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Renders the content of a painted source code file.
+     */
+    @FunctionalInterface
+    interface ContentWriter {
+        /**
+         * Writes the content to the specified writer.
+         *
+         * @param output
+         *         the writer to write the content to
+         *
+         * @throws IOException
+         *         if the content could not be written
+         */
+        void write(Writer output) throws IOException;
+    }
+}
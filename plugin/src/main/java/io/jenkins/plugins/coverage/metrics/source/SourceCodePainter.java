@@ -1,27 +1,53 @@
 package io.jenkins.plugins.coverage.metrics.source;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 
 import edu.hm.hafner.coverage.FileNode;
 import edu.hm.hafner.coverage.Metric;
 import edu.hm.hafner.coverage.Node;
 import edu.hm.hafner.util.FilteredLog;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 
-import java.io.BufferedWriter;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import hudson.FilePath;
+import hudson.model.Computer;
 import hudson.model.Run;
+import hudson.remoting.Pipe;
 import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import jenkins.MasterToSlaveFileCallable;
 
 import io.jenkins.plugins.prism.SourceCodeRetention;
@@ -32,9 +58,23 @@ import io.jenkins.plugins.util.ValidationUtilities;
  * has all source files checked out.
  */
 public class SourceCodePainter {
+    /**
+     * Version of the rendered HTML, part of the entity tag of the source code responses. Needs to be incremented if
+     * the rendering of the printers changes, so that browsers do not reuse cached responses of previous versions.
+     */
+    static final int RENDERING_VERSION = 1;
+
     private final Run<?, ?> build;
     private final FilePath workspace;
     private final String id;
+    private final SourceCodeStorage storage;
+
+    @CheckForNull
+    private Run<?, ?> referenceBuild;
+    private Set<String> changedFiles = Set.of();
+    private int painterThreads = 0;
+    private boolean virtualThreads = false;
+    private int maxPaintedLines = 0;
 
     /**
      * Creates a painter for the passed build, using the passed properties.
@@ -47,9 +87,74 @@ public class SourceCodePainter {
      *         the ID of the coverage results - each ID will store the files in a separate directory
      */
     public SourceCodePainter(@NonNull final Run<?, ?> build, @NonNull final FilePath workspace, final String id) {
+        this(build, workspace, id, SourceCodeStorage.PAINTED);
+    }
+
+    /**
+     * Creates a painter for the passed build, using the passed properties.
+     *
+     * @param build
+     *         The build which processes the source code
+     * @param workspace
+     *         The workspace which contains the source code files
+     * @param id
+     *         the ID of the coverage results - each ID will store the files in a separate directory
+     * @param storage
+     *         determines whether the painted or the raw source code files will be stored
+     */
+    public SourceCodePainter(@NonNull final Run<?, ?> build, @NonNull final FilePath workspace, final String id,
+            final SourceCodeStorage storage) {
         this.build = build;
         this.workspace = workspace;
         this.id = id;
+        this.storage = storage;
+    }
+
+    /**
+     * Enables the reuse of the stored source files of the specified reference build. The hashes of all files that
+     * have not been changed in the SCM are sent to the agent: if the agent renders a file with the same content hash,
+     * then the file is not transferred again and the new build references the stored file of the reference build
+     * instead.
+     *
+     * @param build
+     *         the reference build
+     * @param changes
+     *         the coverage report paths of all files that have been changed in the SCM since the reference build
+     */
+    public void reuseUnchangedFiles(final Run<?, ?> build, final Set<String> changes) {
+        this.referenceBuild = build;
+        this.changedFiles = Set.copyOf(changes);
+    }
+
+    /**
+     * Configures the executor that paints the source code files on the agent.
+     *
+     * @param threads
+     *         the number of files that are painted in parallel, if the value is zero or negative, then the number of
+     *         available processors of the agent will be used
+     * @param useVirtualThreads
+     *         determines whether each file should be painted in a virtual thread (if supported by the agent)
+     */
+    public void configureThreads(final int threads, final boolean useVirtualThreads) {
+        this.painterThreads = threads;
+        this.virtualThreads = useVirtualThreads;
+    }
+
+    /**
+     * Limits the number of lines that are painted in any case. Files with more lines are still painted completely up
+     * to this threshold, the remaining lines are only painted if they are part of a covered region. This limit is
+     * used for painted source code files only.
+     *
+     * @param maxLines
+     *         the number of lines that are painted in any case, if the value is zero or negative, then all lines are
+     *         painted
+     */
+    public void setMaxPaintedLines(final int maxLines) {
+        this.maxPaintedLines = Math.max(0, maxLines);
+    }
+
+    private int getMaxLines() {
+        return storage == SourceCodeStorage.PAINTED ? maxPaintedLines : 0;
     }
 
     /**
@@ -74,20 +179,110 @@ public class SourceCodePainter {
             throws InterruptedException {
         var sourceCodeFacade = new SourceCodeFacade();
         if (sourceCodeRetention != SourceCodeRetention.NEVER) {
+            var store = sourceCodeFacade.getStore(build, id);
+            var lock = store.getLock().readLock();
+            lock.lock();
+            try {
+                storeSourceFiles(rootNode, files, sourceCodeEncoding, sourceCodeFacade, store, log);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+        sourceCodeRetention.cleanup(build, sourceCodeFacade.getCoverageSourcesDirectory(), log);
+        SourceCodeAvailability.invalidateAll(); // the retention might have removed the sources of older builds
+        sourceCodeFacade.removeUnusedSources(build, id, log);
+    }
+
+    private void storeSourceFiles(final Node rootNode, final List<FileNode> files, final String sourceCodeEncoding,
+            final SourceCodeFacade sourceCodeFacade, final SourceCodeStore store, final FilteredLog log)
+            throws InterruptedException {
+        Set<String> knownHashes = new HashSet<>(store.getHashes());
+        var reference = findReferenceManifest(sourceCodeFacade, sourceCodeEncoding, log);
+        var referenceStore = reference.map(manifest -> manifest.getStore(getReferenceManifestFile(sourceCodeFacade)))
+                .orElse(store);
+        if (reference.isPresent()) {
+            var unchangedHashes = findUnchangedHashes(files, reference.get(), referenceStore);
+            log.logInfo("-> Reusing stored source files of reference build '%s' if unchanged (%d candidates)",
+                    referenceBuild, unchangedHashes.size());
+            knownHashes.addAll(unchangedHashes);
+        }
+
+        var pipe = Pipe.createRemoteToLocal();
+        AgentSourceCodeWriter<?> writer;
+        if (storage == SourceCodeStorage.RAW) {
+            var paths = files.stream().map(FileNode::getRelativePath).collect(Collectors.toList());
+            log.logInfo("Collecting %d source files on agent (painting on demand)", paths.size());
+
+            writer = new AgentSourceCollector(paths, sourceCodeEncoding, knownHashes, pipe);
+        }
+        else {
             var paintedFiles = files.stream()
-                    .map(f -> createFileModel(rootNode, f))
+                    .map(f -> createPrinter(rootNode, f))
                     .collect(Collectors.toList());
             log.logInfo("Painting %d source files on agent", paintedFiles.size());
 
-            paintFilesOnAgent(paintedFiles, sourceCodeEncoding, log);
-            log.logInfo("Copying painted sources from agent to build folder");
+            writer = new AgentCoveragePainter(paintedFiles, sourceCodeEncoding, knownHashes, pipe, getMaxLines());
+        }
+        writer.configureThreads(painterThreads, virtualThreads);
+        var agentManifest = writeFilesOnAgent(writer, pipe, store, log);
+        if (agentManifest.isPresent()) {
+            sourceCodeFacade.writeManifest(build, id, agentManifest.get(), referenceStore, log);
+        }
+    }
 
-            sourceCodeFacade.copySourcesToBuildFolder(build, workspace, log);
+    private Optional<SourceCodeManifest> findReferenceManifest(
+            final SourceCodeFacade sourceCodeFacade, final String sourceCodeEncoding, final FilteredLog log) {
+        if (referenceBuild == null) {
+            return Optional.empty();
         }
-        sourceCodeRetention.cleanup(build, sourceCodeFacade.getCoverageSourcesDirectory(), log);
+        var manifestFile = getReferenceManifestFile(sourceCodeFacade);
+        try {
+            var manifest = SourceCodeManifest.read(manifestFile);
+            var encoding = new ValidationUtilities().getCharset(sourceCodeEncoding).name();
+            if (manifest.isPresent() && manifest.get().getStorage() == storage
+                    && manifest.get().getEncoding().equals(encoding)
+                    && manifest.get().getMaxLines() == getMaxLines()) {
+                return manifest;
+            }
+        }
+        catch (IOException exception) {
+            log.logException(exception, "Can't read source code manifest of reference build '%s'", referenceBuild);
+        }
+        return Optional.empty();
     }
 
-    private CoverageSourcePrinter createFileModel(final Node rootNode, final FileNode fileNode) {
+    private Path getReferenceManifestFile(final SourceCodeFacade sourceCodeFacade) {
+        return sourceCodeFacade.createManifestInBuildFolder(Objects.requireNonNull(referenceBuild).getRootDir(), id);
+    }
+
+    /**
+     * Returns the hashes of the stored files of the reference build that might be reused. The agent reuses such a
+     * file only if the rendered content of the file in the workspace has the same hash.
+     */
+    private Set<String> findUnchangedHashes(final List<FileNode> files, final SourceCodeManifest reference,
+            final SourceCodeStore referenceStore) {
+        return files.stream()
+                .map(FileNode::getRelativePath)
+                .filter(path -> !changedFiles.contains(path))
+                .map(path -> reference.getHash(SourceCodeFacade.sanitizeFilename(path)))
+                .flatMap(Optional::stream)
+                .filter(referenceStore::contains)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Creates the printer that renders the source code of the specified file. The type of the printer depends on the
+     * metrics of the coverage tree.
+     *
+     * @param rootNode
+     *         the root of the coverage tree
+     * @param fileNode
+     *         the file to render
+     *
+     * @return the printer
+     */
+    static CoverageSourcePrinter createPrinter(final Node rootNode, final FileNode fileNode) {
         if (rootNode.getValue(Metric.MUTATION).isPresent()) {
             return new MutationSourcePrinter(fileNode);
         }
@@ -100,131 +295,402 @@ public class SourceCodePainter {
         }
     }
 
-    private void paintFilesOnAgent(final List<? extends CoverageSourcePrinter> paintedFiles,
-            final String sourceCodeEncoding, final FilteredLog log) throws InterruptedException {
+    /**
+     * Writes the source files on the agent. The agent streams the new files through the specified pipe, the files are
+     * added to the store while they are received. The pipe provides flow control, so the agent is slowed down if the
+     * controller cannot write the files fast enough. The files are received in a separate thread while this thread
+     * waits for the agent: if the agent fails before the pipe has been closed, then the receiving end of the pipe is
+     * closed so that the receiving thread does not block forever.
+     */
+    private Optional<SourceCodeManifest> writeFilesOnAgent(final AgentSourceCodeWriter<?> writer, final Pipe pipe,
+            final SourceCodeStore store, final FilteredLog log) throws InterruptedException {
+        DigestInputStream input;
         try {
-            var painter = new AgentCoveragePainter(paintedFiles, sourceCodeEncoding, id);
-            var agentLog = workspace.act(painter);
-            log.merge(agentLog);
+            input = new DigestInputStream(pipe.getIn(), MessageDigest.getInstance("SHA-256"));
+        }
+        catch (NoSuchAlgorithmException exception) {
+            log.logException(exception, "Can't receive painted sources from agent");
+            return Optional.empty();
+        }
+
+        Future<AgentResult> future;
+        try {
+            future = workspace.actAsync(writer);
         }
         catch (IOException exception) {
-            log.logException(exception, "Can't paint and zip sources on the agent");
+            log.logException(exception, "Can't paint sources on the agent");
+            return Optional.empty();
+        }
+
+        log.logInfo("Streaming painted sources from agent to '%s'", store.getDirectory());
+        var receiver = Computer.threadPoolForRemoting.submit(() -> receiveFiles(input, store));
+        AgentResult result;
+        try {
+            result = future.get();
+        }
+        catch (ExecutionException exception) {
+            log.logException(exception, "Can't paint sources on the agent");
+            stopReceiving(input, receiver);
+            return Optional.empty();
+        }
+        catch (InterruptedException exception) {
+            future.cancel(true);
+            stopReceiving(input, receiver);
+            throw exception;
+        }
+
+        int added;
+        try {
+            added = receiver.get();
+        }
+        catch (ExecutionException exception) {
+            log.logException(exception, "Can't receive painted sources from agent");
+            return Optional.empty();
+        }
+        catch (InterruptedException exception) {
+            stopReceiving(input, receiver);
+            throw exception;
+        }
+
+        log.merge(result.getLog());
+        var checksum = HexFormat.of().formatHex(input.getMessageDigest().digest());
+        if (!result.getChecksum().equals(checksum)) {
+            log.logError("Checksum mismatch of painted sources: agent sent %s, controller received %s",
+                    result.getChecksum(), checksum);
+            return Optional.empty();
         }
+        log.logInfo("-> stored %d new source files", added);
+        return Optional.of(new SourceCodeManifest(storage, result.getEncoding(), getMaxLines(),
+                StringUtils.EMPTY, result.getHashes()));
+    }
+
+    private int receiveFiles(final DigestInputStream input, final SourceCodeStore store) throws IOException {
+        try (input) {
+            return store.importPack(input);
+        }
+    }
+
+    private void stopReceiving(final DigestInputStream input, final Future<Integer> receiver) {
+        try {
+            input.close(); // unblocks the receiving thread if the agent did not close the pipe
+        }
+        catch (IOException ignored) {
+            // the receiving thread is cancelled anyway
+        }
+        receiver.cancel(true);
     }
 
     /**
-     * Paints source code files on the agent using the recorded coverage information. All files are stored as zipped
-     * HTML files that contain the painted source code. In the last step all zipped source files are aggregated into a
-     * single archive to simplify copying to the controller.
+     * Writes source code files on the agent into a pack that is streamed to the controller. All files are stored as
+     * compressed entries of a single pack, so that no intermediate files are required in the workspace or in the
+     * build folder.
+     *
+     * <p>
+     * Each entry is named by the SHA-256 hash of its content, see {@link SourceCodeStore#createHash}. Files with a
+     * hash that is already part of the {@link SourceCodeStore} of the job or of the reference build are not written
+     * again; the mapping of all files to their hashes is returned as part of the {@link AgentResult}. So the content
+     * of a new file is rendered twice: once to compute the hash and once to write the entry.
+     * </p>
+     *
+     * @param <T>
+     *         the type of the files to write
      */
-    static class AgentCoveragePainter extends MasterToSlaveFileCallable<FilteredLog> {
-        private static final long serialVersionUID = 3966282357309568323L;
+    abstract static class AgentSourceCodeWriter<T> extends MasterToSlaveFileCallable<AgentResult> {
+        private static final long serialVersionUID = -4507937471370426093L;
+        private static final int CANCEL_TIMEOUT = 10;
 
-        private final List<? extends CoverageSourcePrinter> paintedFiles;
+        private final List<? extends T> files;
         private final String sourceCodeEncoding;
-        private final String directory;
+        private final Set<String> knownHashes;
+        private final Pipe pipe;
+        private int threads = 0;
+        private boolean virtualThreads = false;
 
         /**
-         * Creates a new instance of {@link AgentCoveragePainter}.
+         * Creates a new instance of {@link AgentSourceCodeWriter}.
          *
          * @param files
-         *         the pretty printers for the files to create the HTML reports for
+         *         the files to write
          * @param sourceCodeEncoding
          *         the encoding of the source code files
-         * @param directory
-         *         the subdirectory where the source files will be stored in
+         * @param knownHashes
+         *         the hashes of the files that are already stored on the controller and need not to be written again
+         * @param pipe
+         *         the pipe to stream the pack to the controller
          */
-        AgentCoveragePainter(final List<? extends CoverageSourcePrinter> files, final String sourceCodeEncoding,
-                final String directory) {
+        AgentSourceCodeWriter(final List<? extends T> files, final String sourceCodeEncoding,
+                final Set<String> knownHashes, final Pipe pipe) {
             super();
 
-            this.paintedFiles = files;
+            this.files = files;
             this.sourceCodeEncoding = sourceCodeEncoding;
-            this.directory = directory;
+            this.knownHashes = new HashSet<>(knownHashes);
+            this.pipe = pipe;
         }
 
+        /**
+         * Configures the executor that writes the files.
+         *
+         * @param threadCount
+         *         the number of files that are written in parallel, if the value is zero or negative, then the number
+         *         of available processors of the agent will be used
+         * @param useVirtualThreads
+         *         determines whether each file should be written in a virtual thread (if supported by the agent)
+         */
+        void configureThreads(final int threadCount, final boolean useVirtualThreads) {
+            this.threads = threadCount;
+            this.virtualThreads = useVirtualThreads;
+        }
+
+        /**
+         * Returns the relative path of the specified file.
+         *
+         * @param file
+         *         the file
+         *
+         * @return the relative path of the source code file
+         */
+        abstract String getPath(T file);
+
+        /**
+         * Writes the content of the specified file. The lines of the source code file should be processed one by
+         * one, so that large files do not need to be stored in memory.
+         *
+         * @param file
+         *         the file
+         * @param reader
+         *         the reader that provides the lines of the source code file
+         * @param output
+         *         the writer to write the content to
+         *
+         * @throws IOException
+         *         if the source code could not be read or the content could not be written
+         */
+        abstract void write(T file, BufferedReader reader, Writer output) throws IOException;
+
         @Override
-        public FilteredLog invoke(final File workspaceFile, final VirtualChannel channel) {
+        public AgentResult invoke(final File workspaceFile, final VirtualChannel channel) {
             var log = new FilteredLog("Errors during source code painting:");
             var workspace = new FilePath(workspaceFile);
 
-            try {
-                var outputFolder = workspace.child(directory);
-                outputFolder.mkdirs();
+            Map<String, String> hashes = new ConcurrentHashMap<>();
+            Map<String, CompletableFuture<Void>> written = new ConcurrentHashMap<>();
+            var checksum = StringUtils.EMPTY;
+            try (var output = pipe.getOut()) {
+                var pack = new SourceCodePackWriter(output);
+                try (pack) {
+                    var statistics = writeSources(workspace, pack, hashes, written, log);
+                    int count = statistics.getCount();
+                    if (count == files.size()) {
+                        log.logInfo("-> finished painting successfully");
+                    }
+                    else {
+                        log.logInfo("-> finished painting (%d files have been painted, %d files failed)",
+                                count, files.size() - count);
+                    }
+                    statistics.log(log);
+                }
+                checksum = pack.getChecksum();
+                log.logInfo("-> streamed %d new source files (%d of %d files are already stored)",
+                        written.size(), hashes.size() - written.size(), hashes.size());
+            }
+            catch (IOException | InvalidPathException exception) {
+                log.logException(exception, "Cannot stream the painted source files to the controller");
+            }
 
-                Path temporaryFolder = Files.createTempDirectory(directory);
+            return new AgentResult(log, hashes, getCharset().name(), checksum);
+        }
 
-                int count = paintedFiles.parallelStream()
-                        .mapToInt(file -> paintSource(file, workspace, temporaryFolder, log))
-                        .sum();
+        /**
+         * Writes all files using a dedicated executor. The agent process might use the common fork-join pool for
+         * other tasks as well, so the painting uses its own threads. If the executing thread is interrupted, then all
+         * pending files are skipped and the files that are currently written are interrupted.
+         */
+        private PaintingStatistics writeSources(final FilePath workspace, final SourceCodePackWriter pack,
+                final Map<String, String> hashes, final Map<String, CompletableFuture<Void>> written,
+                final FilteredLog log) {
+            var charset = getCharset();
+            var statistics = new PaintingStatistics();
+            if (files.isEmpty()) {
+                return statistics;
+            }
 
-                if (count == paintedFiles.size()) {
-                    log.logInfo("-> finished painting successfully");
+            int parallelism = getThreadCount();
+            var permits = new Semaphore(parallelism);
+            ExecutorService executor = createExecutor(parallelism, log);
+            try {
+                var futures = new ArrayList<Future<?>>();
+                for (T file : files) {
+                    futures.add(executor.submit(() -> {
+                        permits.acquire();
+                        try {
+                            if (!Thread.currentThread().isInterrupted()) {
+                                long start = System.nanoTime();
+                                int painted = writeSource(file, workspace, pack, charset, hashes, written, log);
+                                statistics.add(getPath(file), painted > 0, System.nanoTime() - start);
+                            }
+                        }
+                        finally {
+                            permits.release();
+                        }
+                        return null;
+                    }));
                 }
-                else {
-                    log.logInfo("-> finished painting (%d files have been painted, %d files failed)",
-                            count, paintedFiles.size() - count);
+                for (int index = 0; index < files.size(); index++) {
+                    try {
+                        futures.get(index).get();
+                    }
+                    catch (ExecutionException exception) {
+                        log.logException(exception, "Painting of file '%s' failed due to an exception:",
+                                getPath(files.get(index)));
+                    }
                 }
-
-                var zipFile = workspace.child(SourceCodeFacade.COVERAGE_SOURCES_ZIP);
-                outputFolder.zip(zipFile);
-                log.logInfo("-> zipping sources from folder '%s' as '%s'", outputFolder, zipFile);
-
-                deleteFolder(temporaryFolder.toFile(), log);
             }
-            catch (IOException exception) {
-                log.logException(exception,
-                        "Cannot create temporary directory in folder '%s' for the painted source files", workspace);
+            catch (InterruptedException exception) {
+                log.logError("Painting has been interrupted, skipping the remaining source files");
+                cancel(executor, log);
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                executor.shutdownNow();
+            }
+            return statistics;
+        }
+
+        /**
+         * Interrupts all running tasks and waits until they are finished, so that no task writes to the pack after it
+         * has been closed.
+         */
+        private void cancel(final ExecutorService executor, final FilteredLog log) {
+            executor.shutdownNow();
+            try {
+                if (!executor.awaitTermination(CANCEL_TIMEOUT, TimeUnit.SECONDS)) {
+                    log.logError("-> some painter threads did not terminate after %d seconds", CANCEL_TIMEOUT);
+                }
             }
             catch (InterruptedException exception) {
-                log.logException(exception,
-                        "Processing has been interrupted: skipping zipping of source files", workspace);
+                log.logError("-> interrupted while waiting for the painter threads to terminate");
             }
+        }
 
-            return log;
+        private ExecutorService createExecutor(final int parallelism, final FilteredLog log) {
+            if (virtualThreads) {
+                try {
+                    // virtual threads require Java 21, the agent might run an older JVM
+                    var executor = (ExecutorService) Executors.class
+                            .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                    log.logInfo("-> painting up to %d files in parallel using virtual threads", parallelism);
+                    return executor;
+                }
+                catch (ReflectiveOperationException exception) {
+                    log.logInfo("-> virtual threads are not supported by the JVM of the agent");
+                }
+            }
+            log.logInfo("-> painting up to %d files in parallel", parallelism);
+            return Executors.newFixedThreadPool(parallelism,
+                    new NamingThreadFactory(new DaemonThreadFactory(), "CoverageSourcePainter"));
+        }
+
+        private int getThreadCount() {
+            int maximum = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+            return Math.max(1, Math.min(maximum, files.size()));
         }
 
         private Charset getCharset() {
             return new ValidationUtilities().getCharset(sourceCodeEncoding);
         }
 
-        private int paintSource(final CoverageSourcePrinter fileNode, final FilePath workspace,
-                final Path temporaryFolder, final FilteredLog log) {
-            var relativePathIdentifier = fileNode.getPath();
-            var paintedFilesDirectory = workspace.child(directory);
+        private int writeSource(final T file, final FilePath workspace,
+                final SourceCodePackWriter pack, final Charset charset, final Map<String, String> hashes,
+                final Map<String, CompletableFuture<Void>> written, final FilteredLog log) {
+            var relativePathIdentifier = getPath(file);
             return findSourceFile(workspace, relativePathIdentifier, log)
-                    .map(resolvedPath -> paint(fileNode, relativePathIdentifier, resolvedPath,
-                            paintedFilesDirectory, temporaryFolder, getCharset(), log))
+                    .map(resolvedPath -> writeFile(file, relativePathIdentifier, resolvedPath, pack, charset,
+                            hashes, written, log))
                     .orElse(0);
         }
 
-        private int paint(final CoverageSourcePrinter paint, final String relativePathIdentifier,
-                final FilePath resolvedPath, final FilePath paintedFilesDirectory,
-                final Path temporaryFolder, final Charset charset, final FilteredLog log) {
+        @SuppressWarnings("checkstyle:ParameterNumber")
+        private int writeFile(final T file, final String relativePathIdentifier,
+                final FilePath resolvedPath, final SourceCodePackWriter pack, final Charset charset,
+                final Map<String, String> hashes, final Map<String, CompletableFuture<Void>> written,
+                final FilteredLog log) {
             String sanitizedFileName = SourceCodeFacade.sanitizeFilename(relativePathIdentifier);
-            var zipOutputPath = paintedFilesDirectory.child(
-                    sanitizedFileName + SourceCodeFacade.ZIP_FILE_EXTENSION);
             try {
-                Path paintedFilesFolder = Files.createTempDirectory(temporaryFolder, directory);
-                var fullSourcePath = paintedFilesFolder.resolve(sanitizedFileName);
-                try (BufferedWriter output = Files.newBufferedWriter(fullSourcePath)) {
-                    List<String> lines = Files.readAllLines(Path.of(resolvedPath.getRemote()), charset);
-
-                    // added a header to display what is being shown in each column
-                    output.write(paint.getColumnHeader());
-                    for (int line = 0; line < lines.size(); line++) {
-                        output.write(paint.renderLine(line + 1, lines.get(line)));
-                    }
+                var sourceFile = Path.of(resolvedPath.getRemote());
+                var hash = createHash(file, sourceFile, charset);
+                if (!knownHashes.contains(hash)) {
+                    writeEntryOnce(file, sourceFile, hash, pack, charset, written);
                 }
-                new FilePath(fullSourcePath.toFile()).zip(zipOutputPath);
-                FileUtils.deleteDirectory(paintedFilesFolder.toFile());
+                hashes.put(sanitizedFileName, hash);
                 return 1;
             }
-            catch (IOException | InterruptedException exception) {
-                log.logException(exception, "Can't write coverage paint of '%s' to zipped source file '%s'",
-                        relativePathIdentifier, zipOutputPath);
+            catch (IOException | InvalidPathException exception) {
+                log.logException(exception, "Can't write coverage paint of '%s' to pack file entry '%s'",
+                        relativePathIdentifier, sanitizedFileName);
                 return 0;
             }
+            catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return 0;
+            }
+        }
+
+        /**
+         * Writes the pack entry of the specified file unless an entry with the same hash has been written already. If
+         * another thread is currently writing an entry with the same hash, then this method waits for the result of
+         * that thread. If that entry could not be written, then the entry is written by this thread, so that a file
+         * is never mapped to a blob that has not been transferred.
+         */
+        @SuppressWarnings("checkstyle:ParameterNumber")
+        private void writeEntryOnce(final T file, final Path sourceFile, final String hash,
+                final SourceCodePackWriter pack, final Charset charset,
+                final Map<String, CompletableFuture<Void>> written) throws IOException, InterruptedException {
+            while (true) {
+                var entry = new CompletableFuture<Void>();
+                var existing = written.putIfAbsent(hash, entry);
+                if (existing == null) {
+                    try {
+                        writeEntry(file, sourceFile, hash, pack, charset);
+                        entry.complete(null);
+                        return;
+                    }
+                    catch (IOException | RuntimeException exception) {
+                        written.remove(hash, entry);
+                        entry.completeExceptionally(exception);
+                        throw exception;
+                    }
+                }
+                try {
+                    existing.get();
+                    return;
+                }
+                catch (ExecutionException exception) {
+                    // the entry of the other file could not be written, try again with this file
+                }
+            }
+        }
+
+        /**
+         * Writes the pack entry of the specified file. The file is read a second time (after computing the hash), so
+         * that only the current line needs to be stored in memory. Malformed input of the given charset is reported
+         * as an error.
+         */
+        private void writeEntry(final T file, final Path sourceFile, final String hash,
+                final SourceCodePackWriter pack, final Charset charset) throws IOException {
+            pack.add(hash, output -> {
+                try (var reader = Files.newBufferedReader(sourceFile, charset)) {
+                    write(file, reader, output);
+                }
+            });
+        }
+
+        private String createHash(final T file, final Path sourceFile, final Charset charset) throws IOException {
+            return SourceCodeStore.createHash(output -> {
+                try (var reader = Files.newBufferedReader(sourceFile, charset)) {
+                    write(file, reader, output);
+                }
+            });
         }
 
         private Optional<FilePath> findSourceFile(final FilePath workspace, final String fileName,
@@ -245,25 +711,215 @@ public class SourceCodePainter {
             }
             return Optional.empty();
         }
+    }
+
+    /**
+     * Paints source code files on the agent using the recorded coverage information. All files are stored as
+     * compressed HTML files that contain the painted source code.
+     */
+    static class AgentCoveragePainter extends AgentSourceCodeWriter<CoverageSourcePrinter> {
+        private static final long serialVersionUID = 3966282357309568323L;
+
+        private final int maxLines;
+
+        /**
+         * Creates a new instance of {@link AgentCoveragePainter}.
+         *
+         * @param files
+         *         the pretty printers for the files to create the HTML reports for
+         * @param sourceCodeEncoding
+         *         the encoding of the source code files
+         * @param knownHashes
+         *         the hashes of the files that are already part of the store
+         * @param pipe
+         *         the pipe to stream the painted files to the controller
+         * @param maxLines
+         *         the number of lines that are painted in any case, the remaining lines of larger files are painted
+         *         only if they are part of a covered region; if the value is zero, then all lines are painted
+         */
+        AgentCoveragePainter(final List<? extends CoverageSourcePrinter> files, final String sourceCodeEncoding,
+                final Set<String> knownHashes, final Pipe pipe, final int maxLines) {
+            super(files, sourceCodeEncoding, knownHashes, pipe);
+
+            this.maxLines = maxLines;
+        }
+
+        @Override
+        String getPath(final CoverageSourcePrinter file) {
+            return file.getPath();
+        }
+
+        @Override
+        void write(final CoverageSourcePrinter file, final BufferedReader reader, final Writer output)
+                throws IOException {
+            file.render(reader, output, maxLines);
+        }
+    }
+
+    /**
+     * Collects the source code files on the agent without painting them. The lines of each file are stored using a
+     * line feed as separator, the painting is done on demand on the controller.
+     */
+    static class AgentSourceCollector extends AgentSourceCodeWriter<String> {
+        private static final long serialVersionUID = 1226396522461718512L;
+
+        /**
+         * Creates a new instance of {@link AgentSourceCollector}.
+         *
+         * @param files
+         *         the relative paths of the source code files
+         * @param sourceCodeEncoding
+         *         the encoding of the source code files
+         * @param knownHashes
+         *         the hashes of the files that are already part of the store
+         * @param pipe
+         *         the pipe to stream the source files to the controller
+         */
+        AgentSourceCollector(final List<String> files, final String sourceCodeEncoding,
+                final Set<String> knownHashes, final Pipe pipe) {
+            super(files, sourceCodeEncoding, knownHashes, pipe);
+        }
+
+        @Override
+        String getPath(final String file) {
+            return file;
+        }
+
+        @Override
+        void write(final String file, final BufferedReader reader, final Writer output) throws IOException {
+            for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+                output.write(line);
+                output.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Collects the time that is required to paint each source code file.
+     */
+    static class PaintingStatistics {
+        private static final int SLOWEST_FILES = 5;
+        private static final long NANOS_PER_MILLI = 1_000_000L;
+
+        private final List<FileTiming> timings = new ArrayList<>();
+        private final long start = System.nanoTime();
+
+        /**
+         * Records the painting time of the specified file.
+         *
+         * @param path
+         *         the relative path of the file
+         * @param successful
+         *         determines whether the file has been painted successfully
+         * @param duration
+         *         the painting time in nanoseconds
+         */
+        synchronized void add(final String path, final boolean successful, final long duration) {
+            timings.add(new FileTiming(path, successful, duration));
+        }
+
+        /**
+         * Returns the number of files that have been painted successfully.
+         *
+         * @return the number of painted files
+         */
+        synchronized int getCount() {
+            return (int) timings.stream().filter(timing -> timing.successful).count();
+        }
+
+        /**
+         * Returns the relative paths of the files that took the longest time to paint, the slowest file first.
+         *
+         * @param limit
+         *         the maximum number of files to return
+         *
+         * @return the slowest files
+         */
+        synchronized List<String> getSlowestFiles(final int limit) {
+            return getSlowest(limit).stream().map(timing -> timing.path).collect(Collectors.toList());
+        }
 
         /**
-         * Deletes a folder.
+         * Logs a summary of the painting times and the slowest files.
          *
-         * @param folder
-         *         The directory to be deleted
          * @param log
-         *         The log
+         *         the log to write the summary to
          */
-        private void deleteFolder(final File folder, final FilteredLog log) {
-            if (folder.isDirectory()) {
-                try {
-                    FileUtils.deleteDirectory(folder);
-                }
-                catch (IOException e) {
-                    log.logError("The folder '%s' could not be deleted",
-                            folder.getAbsolutePath());
-                }
+        synchronized void log(final FilteredLog log) {
+            if (timings.isEmpty()) {
+                return;
             }
+            long total = timings.stream().mapToLong(timing -> timing.duration).sum();
+            log.logInfo("-> painting took %d ms (%d ms for all %d files, %d ms on average per file)",
+                    toMillis(System.nanoTime() - start), toMillis(total), timings.size(),
+                    toMillis(total / timings.size()));
+            for (FileTiming timing : getSlowest(SLOWEST_FILES)) {
+                log.logInfo("   %s: %d ms", timing.path, toMillis(timing.duration));
+            }
+        }
+
+        private List<FileTiming> getSlowest(final int limit) {
+            return timings.stream()
+                    .sorted(Comparator.comparingLong((FileTiming timing) -> timing.duration).reversed())
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+
+        private static long toMillis(final long nanos) {
+            return nanos / NANOS_PER_MILLI;
+        }
+
+        private static class FileTiming {
+            private final String path;
+            private final boolean successful;
+            private final long duration;
+
+            FileTiming(final String path, final boolean successful, final long duration) {
+                this.path = path;
+                this.successful = successful;
+                this.duration = duration;
+            }
+        }
+    }
+
+    /**
+     * The result of writing the source code files on the agent.
+     */
+    static class AgentResult implements Serializable {
+        private static final long serialVersionUID = 5617342850718734913L;
+
+        private final FilteredLog log;
+        private final HashMap<String, String> hashes;
+        private final String encoding;
+        private final String checksum;
+
+        AgentResult(final FilteredLog log, final Map<String, String> hashes, final String encoding,
+                final String checksum) {
+            this.log = log;
+            this.hashes = new HashMap<>(hashes);
+            this.encoding = encoding;
+            this.checksum = checksum;
+        }
+
+        FilteredLog getLog() {
+            return log;
+        }
+
+        /**
+         * Returns the hashes of all source code files that have been processed on the agent.
+         *
+         * @return the mapping of sanitized file names to the hashes of the blobs
+         */
+        Map<String, String> getHashes() {
+            return hashes;
+        }
+
+        String getEncoding() {
+            return encoding;
+        }
+
+        String getChecksum() {
+            return checksum;
         }
     }
 }
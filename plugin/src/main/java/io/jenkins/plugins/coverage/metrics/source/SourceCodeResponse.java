@@ -0,0 +1,197 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.apache.commons.lang3.StringUtils;
+
+import edu.hm.hafner.coverage.FileNode;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import hudson.model.Run;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Sends a view of a source code file to the browser. The source code of a finished build never changes, so the
+ * response contains a strong entity tag that is derived from the build, the ID of the coverage result, the file, and
+ * the view. If the browser already has the current version of the view, the response has the status 304 (not
+ * modified) and no content.
+ *
+ * <p>
+ * If the browser accepts GZIP encoding, then source files that have been painted on the agent are sent as stored in
+ * the content-addressed store, i.e., without decompressing and compressing them again on the controller. All other
+ * views are compressed while they are sent.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+final class SourceCodeResponse {
+    static final String ETAG = "ETag";
+    static final String IF_NONE_MATCH = "If-None-Match";
+    static final String CACHE_CONTROL = "Cache-Control";
+    static final String CONTENT_ENCODING = "Content-Encoding";
+    static final String GZIP = "gzip";
+
+    private static final String CONTENT_TYPE = "text/html;charset=UTF-8";
+    private static final String REVALIDATE = "private, no-cache";
+    private static final String ANY = "*";
+    private static final String WEAK_PREFIX = "W/";
+
+    private final SourceCodeFacade facade;
+
+    /**
+     * Creates a new instance of {@link SourceCodeResponse}.
+     *
+     * @param facade
+     *         the facade to read the source code files
+     */
+    SourceCodeResponse(final SourceCodeFacade facade) {
+        this.facade = facade;
+    }
+
+    /**
+     * Sends the specified view of a source code file.
+     *
+     * @param build
+     *         the build with the coverage result
+     * @param id
+     *         id of the coverage results
+     * @param fileNode
+     *         the file node of the coverage tree
+     * @param view
+     *         the lines of the file that should be shown
+     * @param request
+     *         Stapler request
+     * @param response
+     *         Stapler response
+     *
+     * @throws IOException
+     *         if the source code could not be read or the response could not be written
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    void send(final Run<?, ?> build, final String id, final FileNode fileNode, final SourceCodeView view,
+            final StaplerRequest2 request, final StaplerResponse2 response) throws IOException {
+        var buildResults = build.getRootDir();
+        var path = fileNode.getRelativePath();
+        if (!facade.canRead(buildResults, id, path)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        response.setHeader("Vary", "Accept-Encoding");
+        if (!build.isBuilding()) {
+            var etag = createEntityTag(build, id, path, view);
+            response.setHeader(ETAG, etag);
+            response.setHeader(CACHE_CONTROL, REVALIDATE);
+            if (matches(request.getHeader(IF_NONE_MATCH), etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+        response.setContentType(CONTENT_TYPE);
+
+        if (view == SourceCodeView.ALL && acceptsGzip(request.getHeader("Accept-Encoding"))) {
+            var compressed = facade.readCompressed(buildResults, id, path);
+            if (compressed.isPresent()) {
+                response.setHeader(CONTENT_ENCODING, GZIP);
+                compressed.get().writeGzip(response.getOutputStream());
+                return;
+            }
+        }
+
+        try {
+            var content = facade.read(buildResults, id, fileNode, view);
+            try (var writer = response.getCompressedWriter(request)) {
+                writer.write(content);
+            }
+        }
+        catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * Creates a strong entity tag for a view of a source code file. The tag changes if the build is deleted and
+     * another build reuses the build number, or if the rendering of the source code changes.
+     *
+     * @param build
+     *         the build with the coverage result
+     * @param id
+     *         id of the coverage results
+     * @param path
+     *         relative path to the source code file
+     * @param view
+     *         the lines of the file that should be shown
+     *
+     * @return the entity tag, including the quotes
+     */
+    static String createEntityTag(final Run<?, ?> build, final String id, final String path,
+            final SourceCodeView view) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.join("\n", String.valueOf(SourceCodePainter.RENDERING_VERSION),
+                    build.getExternalizableId(), String.valueOf(build.getTimeInMillis()), id, path, view.name())
+                    .getBytes(StandardCharsets.UTF_8));
+            return '"' + HexFormat.of().formatHex(digest.digest(), 0, 16) + '"';
+        }
+        catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not supported", exception);
+        }
+    }
+
+    /**
+     * Returns whether the specified value of the header {@code If-None-Match} matches the entity tag. According to RFC
+     * 9110 the weak comparison is used, i.e., weak tags match as well.
+     *
+     * @param ifNoneMatch
+     *         the value of the header, might be {@code null}
+     * @param etag
+     *         the entity tag of the current view
+     *
+     * @return {@code true} if the client has the current view, {@code false} otherwise
+     */
+    static boolean matches(@CheckForNull final String ifNoneMatch, final String etag) {
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            var trimmed = StringUtils.removeStart(tag.trim(), WEAK_PREFIX);
+            if (ANY.equals(trimmed) || etag.equals(trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the specified value of the header {@code Accept-Encoding} accepts GZIP encoding.
+     *
+     * @param acceptEncoding
+     *         the value of the header, might be {@code null}
+     *
+     * @return {@code true} if GZIP is accepted, {@code false} otherwise
+     */
+    static boolean acceptsGzip(@CheckForNull final String acceptEncoding) {
+        if (StringUtils.isBlank(acceptEncoding)) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            var parts = coding.split(";");
+            if (GZIP.equalsIgnoreCase(parts[0].trim())) {
+                return parts.length == 1 || !isZeroQuality(parts[1].trim());
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZeroQuality(final String parameter) {
+        return parameter.replace(" ", "").matches("q=0(\\.0{0,3})?");
+    }
+}
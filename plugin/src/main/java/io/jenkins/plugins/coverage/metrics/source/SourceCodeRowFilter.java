@@ -0,0 +1,287 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.apache.commons.lang3.StringUtils;
+
+import edu.hm.hafner.coverage.FileNode;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Filters the rows of a painted source code file so that only some lines and their surrounding lines are shown. All
+ * other lines are hidden: each sequence of hidden lines is replaced by a single skip line. The visible lines are
+ * stored as sorted intervals of line numbers. The painted rows are scanned as text, so the HTML is not parsed into a
+ * DOM: each visible row is copied as it is or with a different color and hits column.
+ *
+ * @author Ullrich Hafner
+ */
+abstract class SourceCodeRowFilter {
+    private static final String ROW_START = "<tr";
+    private static final String ROW_END = "</tr>";
+    private static final String CELL_START = "<td";
+    private static final String CELL_END = "</td>";
+    private static final String CLASS_ATTRIBUTE = "class=\"";
+    private static final String LINE_CLASS = "class=\"line\"";
+    private static final String HITS_CELL = "<td class=\"hits\">";
+    private static final String ANCHOR = "<a name=\"";
+
+    private final int[] starts;
+    private final int[] ends;
+
+    /**
+     * Creates a new instance of {@link SourceCodeRowFilter}.
+     *
+     * @param lines
+     *         the lines that should be shown together with their surrounding lines
+     */
+    SourceCodeRowFilter(final Collection<Integer> lines) {
+        var sorted = lines.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+        var intervalStarts = new int[sorted.length];
+        var intervalEnds = new int[sorted.length];
+        int count = 0;
+        for (int line : sorted) {
+            int start = line - CoverageSourcePrinter.CONTEXT_LINES;
+            int end = line + CoverageSourcePrinter.CONTEXT_LINES;
+            if (count > 0 && start <= intervalEnds[count - 1] + 1) {
+                intervalEnds[count - 1] = end;
+            }
+            else {
+                intervalStarts[count] = start;
+                intervalEnds[count] = end;
+                count++;
+            }
+        }
+        starts = Arrays.copyOf(intervalStarts, count);
+        ends = Arrays.copyOf(intervalEnds, count);
+    }
+
+    /**
+     * Creates a filter that shows the modified lines with coverage. The other visible lines are shown without
+     * coverage.
+     *
+     * @param file
+     *         the file with the modified lines
+     *
+     * @return the filter
+     */
+    static SourceCodeRowFilter createModifiedLinesFilter(final FileNode file) {
+        var lines = file.getLinesWithCoverage();
+        lines.retainAll(file.getModifiedLines());
+        return new ModifiedLinesFilter(lines);
+    }
+
+    /**
+     * Creates a filter that shows the lines with indirect coverage changes. The other visible lines are shown without
+     * coverage.
+     *
+     * @param file
+     *         the file with the indirect coverage changes
+     *
+     * @return the filter
+     */
+    static SourceCodeRowFilter createIndirectCoverageChangesFilter(final FileNode file) {
+        return new IndirectCoverageChangesFilter(file.getIndirectCoverageChanges());
+    }
+
+    /**
+     * Returns whether the specified line is visible, i.e., the line is one of the lines to show or one of their
+     * surrounding lines.
+     *
+     * @param line
+     *         the line number
+     *
+     * @return {@code true} if the line is visible, {@code false} otherwise
+     */
+    boolean isVisible(final int line) {
+        int index = Arrays.binarySearch(starts, line);
+        if (index >= 0) {
+            return true;
+        }
+        int previous = -index - 2;
+        return previous >= 0 && line <= ends[previous];
+    }
+
+    /**
+     * Returns whether the color and the hits of the specified visible line should be replaced.
+     *
+     * @param line
+     *         the line number
+     *
+     * @return {@code true} if the row should be repainted, {@code false} if the row should be copied as it is
+     */
+    abstract boolean isRepainted(int line);
+
+    /**
+     * Returns the color class of a repainted line.
+     *
+     * @param line
+     *         the line number
+     *
+     * @return the CSS class that defines the color of the row
+     */
+    abstract String getColorClass(int line);
+
+    /**
+     * Returns the content of the hits column of a repainted line.
+     *
+     * @param line
+     *         the line number
+     *
+     * @return the hits
+     */
+    abstract String getHits(int line);
+
+    /**
+     * Filters the rows of the specified painted source code file. Rows without a line number (e.g., column headers or
+     * skip lines) are removed.
+     *
+     * @param content
+     *         the painted source code file
+     *
+     * @return the filtered rows
+     */
+    String filter(final String content) {
+        var output = new StringBuilder();
+        var isSkipping = false;
+        int start = content.indexOf(ROW_START);
+        while (start >= 0) {
+            int end = content.indexOf(ROW_END, start);
+            if (end < 0) {
+                break;
+            }
+            end += ROW_END.length();
+            int line = parseLine(content, start, end);
+            if (line > 0) {
+                if (isVisible(line)) {
+                    if (isRepainted(line)) {
+                        appendRepaintedRow(output, content, start, end, line);
+                    }
+                    else {
+                        output.append(content, start, end);
+                    }
+                    isSkipping = false;
+                }
+                else if (!isSkipping) {
+                    appendSkipRow(output, content, start, end);
+                    isSkipping = true;
+                }
+            }
+            start = content.indexOf(ROW_START, end);
+        }
+        return output.toString();
+    }
+
+    private int parseLine(final String content, final int start, final int end) {
+        int anchor = content.indexOf(ANCHOR, start);
+        if (anchor < 0 || anchor >= end) {
+            return 0;
+        }
+        int begin = anchor + ANCHOR.length();
+        int quote = content.indexOf('"', begin);
+        try {
+            return Integer.parseInt(content, begin, quote, 10);
+        }
+        catch (NumberFormatException | IndexOutOfBoundsException exception) {
+            return 0;
+        }
+    }
+
+    private void appendRepaintedRow(final StringBuilder output, final String content,
+            final int start, final int end, final int line) {
+        int position = start;
+        int tagEnd = content.indexOf('>', start);
+        int classAttribute = content.indexOf(CLASS_ATTRIBUTE, start);
+        if (classAttribute >= 0 && classAttribute < tagEnd) {
+            int colorStart = classAttribute + CLASS_ATTRIBUTE.length();
+            int colorEnd = colorStart;
+            while (content.charAt(colorEnd) != ' ' && content.charAt(colorEnd) != '"') {
+                colorEnd++;
+            }
+            output.append(content, position, colorStart).append(getColorClass(line));
+            position = colorEnd; // additional classes like 'modified' are retained
+        }
+        int hitsCell = content.indexOf(HITS_CELL, tagEnd);
+        if (hitsCell >= 0 && hitsCell < end) {
+            int hitsStart = hitsCell + HITS_CELL.length();
+            output.append(content, position, hitsStart).append(getHits(line));
+            position = content.indexOf(CELL_END, hitsStart);
+        }
+        output.append(content, position, end);
+    }
+
+    private void appendSkipRow(final StringBuilder output, final String content, final int start, final int end) {
+        output.append("<tr class=\"").append(CoverageSourcePrinter.SKIPPED).append("\">");
+        for (int cell = content.indexOf(CELL_START, start); cell >= 0 && cell < end;
+                cell = content.indexOf(CELL_START, cell + CELL_START.length())) {
+            int tagEnd = content.indexOf('>', cell) + 1;
+            output.append(content, cell, tagEnd);
+            if (content.startsWith(LINE_CLASS, cell + CELL_START.length() + 1)) {
+                output.append("..");
+            }
+            output.append(CELL_END);
+        }
+        output.append(ROW_END);
+    }
+
+    /**
+     * Shows the modified lines with coverage together with their surrounding lines.
+     */
+    private static class ModifiedLinesFilter extends SourceCodeRowFilter {
+        private final int[] modifiedLines;
+
+        ModifiedLinesFilter(final Collection<Integer> modifiedLines) {
+            super(modifiedLines);
+
+            this.modifiedLines = modifiedLines.stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+
+        @Override
+        boolean isRepainted(final int line) {
+            return Arrays.binarySearch(modifiedLines, line) < 0;
+        }
+
+        @Override
+        String getColorClass(final int line) {
+            return CoverageSourcePrinter.UNDEFINED;
+        }
+
+        @Override
+        String getHits(final int line) {
+            return StringUtils.EMPTY;
+        }
+    }
+
+    /**
+     * Shows the lines with indirect coverage changes together with their surrounding lines.
+     */
+    private static class IndirectCoverageChangesFilter extends SourceCodeRowFilter {
+        private final Map<Integer, Integer> changes;
+
+        IndirectCoverageChangesFilter(final Map<Integer, Integer> changes) {
+            super(changes.keySet());
+
+            this.changes = changes;
+        }
+
+        @Override
+        boolean isRepainted(final int line) {
+            return true;
+        }
+
+        @Override
+        String getColorClass(final int line) {
+            var change = changes.get(line);
+            if (change == null) {
+                return CoverageSourcePrinter.UNDEFINED;
+            }
+            return change < 0 ? CoverageSourcePrinter.NO_COVERAGE : CoverageSourcePrinter.FULL_COVERAGE;
+        }
+
+        @Override
+        String getHits(final int line) {
+            var change = changes.get(line);
+            return change == null ? StringUtils.EMPTY : String.valueOf(change);
+        }
+    }
+}
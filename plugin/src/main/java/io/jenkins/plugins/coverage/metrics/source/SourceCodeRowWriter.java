@@ -0,0 +1,271 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.text.StringEscapeUtils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes the table rows of a painted source code file directly to a {@link Writer}. Each row is assembled in a buffer
+ * that is reused for all lines of a file, so no DOM and no intermediate strings are created per line. The output is
+ * identical to the HTML that has been created with j2html before: the same elements, attributes, and escaping rules
+ * are used.
+ *
+ * <p>
+ * The source code column is the hot spot: the reference implementation escapes the code, replaces all whitespace with
+ * {@code &nbsp;} and sanitizes the result using the OWASP sanitizer. For text without any markup, this pipeline maps
+ * each character independently (except an opening brace, that depends on the next character). So the painted HTML of
+ * all characters up to {@link #TABLE_SIZE} is computed once with the reference implementation and then used as a
+ * lookup table. Lines that contain other characters are painted with the reference implementation. The lookup table
+ * is verified against the reference implementation with several sample lines; if the sanitizer behaves differently,
+ * all lines are painted with the reference implementation.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+final class SourceCodeRowWriter {
+    /** Number of characters that are painted using the lookup table (Latin, Greek, Cyrillic, Hebrew, and Arabic). */
+    static final int TABLE_SIZE = 0x800;
+
+    private static final List<String> SAMPLES = List.of(
+            StringUtils.EMPTY,
+            "    public static void main(final String[] args) {",
+            "\tif (a < b && c > d) { return \"x\" + 'y'; }\r",
+            "{{ value }} {{",
+            "{ {\t{",
+            "@Override // `quoted` = äöü ß Ελληνικά Русский עברית عربي",
+            "a b\u0000c\u001f\u007f\u0080\u009f",
+            "x = y++ + --z; /* & &amp; &lt; */ {");
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final String BRACE_AT_END = paintReference("{");
+    private static final String BRACE = StringUtils.removeEnd(paintReference("{a"), paintReference("a"));
+    @CheckForNull
+    private static final String[] PAINTED_CHARACTERS = createLookupTable();
+
+    private final Writer output;
+    private final StringBuilder row = new StringBuilder(INITIAL_CAPACITY);
+    private char[] chunk = new char[INITIAL_CAPACITY];
+
+    /**
+     * Creates a new instance of {@link SourceCodeRowWriter}.
+     *
+     * @param output
+     *         the writer to write the rows to
+     */
+    SourceCodeRowWriter(final Writer output) {
+        this.output = output;
+    }
+
+    /**
+     * Returns whether the source code is painted using the lookup table. Otherwise, the sanitizer does not map the
+     * characters independently and all lines are painted with the reference implementation.
+     *
+     * @return {@code true} if the lookup table is used, {@code false} otherwise
+     */
+    static boolean hasLookupTable() {
+        return PAINTED_CHARACTERS != null;
+    }
+
+    /**
+     * Starts a new table row.
+     *
+     * @param colorClass
+     *         the CSS class that defines the color of the row
+     * @param modifiedClass
+     *         an additional CSS class that marks modified lines, might be empty
+     * @param tooltip
+     *         the tooltip of the row, or {@code null} if the row has no tooltip
+     */
+    void startRow(final String colorClass, final String modifiedClass, @CheckForNull final String tooltip) {
+        row.append("<tr class=\"");
+        appendEscaped(colorClass);
+        if (!modifiedClass.isEmpty()) {
+            row.append(' ');
+            appendEscaped(modifiedClass);
+        }
+        row.append('"');
+        if (tooltip != null) {
+            row.append(" data-html-tooltip=\"");
+            appendEscaped(tooltip);
+            row.append('"');
+        }
+        row.append('>');
+    }
+
+    /**
+     * Appends the column with the line number (and the anchor of the line).
+     *
+     * @param line
+     *         the line number
+     */
+    void appendLineNumber(final int line) {
+        row.append("<td class=\"line\"><a name=\"").append(line).append("\">").append(line).append("</a></td>");
+    }
+
+    /**
+     * Appends a column with coverage counters.
+     *
+     * @param text
+     *         the text of the column, might be empty
+     */
+    void appendHits(final String text) {
+        appendColumn("hits", text);
+    }
+
+    /**
+     * Appends a column with the specified text.
+     *
+     * @param cssClass
+     *         the CSS class of the column
+     * @param text
+     *         the text of the column, might be empty
+     */
+    void appendColumn(final String cssClass, final String text) {
+        row.append("<td class=\"").append(cssClass).append("\">");
+        appendEscaped(text);
+        row.append("</td>");
+    }
+
+    /**
+     * Appends the column with the painted source code.
+     *
+     * @param sourceCode
+     *         the source code of the line
+     */
+    void appendCode(final String sourceCode) {
+        row.append("<td class=\"code\">");
+        if (!appendPainted(sourceCode)) {
+            row.append(paintReference(sourceCode));
+        }
+        row.append("</td>");
+    }
+
+    /**
+     * Finishes the current row and writes it to the output.
+     *
+     * @throws IOException
+     *         if the row could not be written
+     */
+    void endRow() throws IOException {
+        row.append("</tr>");
+        int length = row.length();
+        if (chunk.length < length) {
+            chunk = new char[Math.max(length, chunk.length * 2)];
+        }
+        row.getChars(0, length, chunk, 0);
+        output.write(chunk, 0, length);
+        row.setLength(0);
+    }
+
+    private void appendEscaped(final String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> row.append("&lt;");
+                case '>' -> row.append("&gt;");
+                case '&' -> row.append("&amp;");
+                case '"' -> row.append("&quot;");
+                case '\'' -> row.append("&#x27;");
+                default -> row.append(c);
+            }
+        }
+    }
+
+    private boolean appendPainted(final String sourceCode) {
+        if (PAINTED_CHARACTERS == null || !isMapped(sourceCode)) {
+            return false;
+        }
+        paintCharacters(sourceCode, PAINTED_CHARACTERS, row);
+        return true;
+    }
+
+    private static boolean isMapped(final String sourceCode) {
+        for (int i = 0; i < sourceCode.length(); i++) {
+            if (sourceCode.charAt(i) >= TABLE_SIZE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void paintCharacters(final String sourceCode, final String[] table, final StringBuilder target) {
+        int length = sourceCode.length();
+        for (int i = 0; i < length; i++) {
+            char c = sourceCode.charAt(i);
+            if (c == '{') {
+                target.append(isLastOrBeforeBrace(sourceCode, i + 1) ? BRACE_AT_END : BRACE);
+            }
+            else {
+                target.append(table[c]);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the brace at the previous position is the last character of the painted line or followed by
+     * another brace. Line breaks are skipped since they are removed from the painted line.
+     */
+    private static boolean isLastOrBeforeBrace(final String sourceCode, final int start) {
+        for (int i = start; i < sourceCode.length(); i++) {
+            char c = sourceCode.charAt(i);
+            if (c != '\n' && c != '\r') {
+                return c == '{';
+            }
+        }
+        return true;
+    }
+
+    @CheckForNull
+    private static String[] createLookupTable() {
+        var table = new String[TABLE_SIZE];
+        for (char c = 0; c < TABLE_SIZE; c++) {
+            table[c] = paintReference(String.valueOf(c));
+        }
+        if (!paintReference("{a").equals(BRACE + paintReference("a"))) {
+            return null;
+        }
+        for (String sample : SAMPLES) {
+            var painted = new StringBuilder();
+            paintCharacters(sample, table, painted);
+            if (!painted.toString().equals(paintReference(sample))) {
+                return null; // the sanitizer does not map the characters independently
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Paints the specified source code using the reference implementation, i.e., the source code is escaped and
+     * sanitized.
+     *
+     * @param sourceCode
+     *         the source code of the line
+     *
+     * @return the painted source code
+     */
+    static String paintReference(final String sourceCode) {
+        return CoverageSourcePrinter.SANITIZER.render(cleanupCode(sourceCode));
+    }
+
+    /**
+     * Escapes the specified source code so that it can be shown in HTML. All whitespace characters are replaced by
+     * non-breaking spaces and line breaks are removed.
+     *
+     * @param content
+     *         the source code of the line
+     *
+     * @return the escaped source code
+     */
+    static String cleanupCode(final String content) {
+        var escaped = StringEscapeUtils.escapeHtml4(content);
+        return escaped.replace("\n", StringUtils.EMPTY)
+                .replace("\r", StringUtils.EMPTY)
+                .replace(" ", CoverageSourcePrinter.NBSP)
+                .replace("\t", CoverageSourcePrinter.NBSP.repeat(8));
+    }
+}
@@ -0,0 +1,46 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import hudson.util.ListBoxModel;
+
+/**
+ * Defines how the source code files are stored in the build folder.
+ *
+ * @author Ullrich Hafner
+ */
+public enum SourceCodeStorage {
+    /** The source code is painted on the agent and stored as HTML. */
+    PAINTED("coverage-sources.pack"),
+    /**
+     * The source code is stored as is, the HTML is rendered on demand when a file is shown in the user interface.
+     * This requires less disk space and build time, since most source files are never viewed.
+     */
+    RAW("coverage-raw-sources.pack");
+
+    private final String packFileName;
+
+    SourceCodeStorage(final String packFileName) {
+        this.packFileName = packFileName;
+    }
+
+    /**
+     * Returns the name of the pack file that builds of previous plugin versions have stored in the build folder, see
+     * {@link SourceCodePackFile}.
+     *
+     * @return the name of the pack file
+     */
+    String getPackFileName() {
+        return packFileName;
+    }
+
+    /**
+     * Returns a model with all available storage modes.
+     *
+     * @return a model with all available storage modes
+     */
+    public static ListBoxModel fillItems() {
+        var items = new ListBoxModel();
+        items.add(Messages.SourceCodeStorage_Painted(), PAINTED.name());
+        items.add(Messages.SourceCodeStorage_Raw(), RAW.name());
+        return items;
+    }
+}
@@ -0,0 +1,608 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.InflaterOutputStream;
+
+/**
+ * A content-addressed store for the source code files of a job. Each file is stored only once as a blob that is
+ * identified by the SHA-256 hash of its (painted or raw) content, see
+ * {@link #createHash(SourceCodePackWriter.ContentWriter)}. The hashes of imported blobs are verified, so a blob cannot
+ * be stored under the hash of another content. The builds of the job reference these blobs using a
+ * {@link SourceCodeManifest}. Since the source code of most files does not change between two builds, the builds
+ * share most of the blobs.
+ *
+ * <p>
+ * A blob contains the size of the content (int) followed by the deflated content (without ZIP headers). Blobs that
+ * are not referenced by a manifest anymore are removed using {@link #removeUnreferenced(Set)}.
+ * </p>
+ *
+ * <p>
+ * Since the deflated content of a blob is a valid GZIP member body, a blob can be sent to a browser that accepts GZIP
+ * encoding without decompressing it, see {@link #readCompressed(String)}. Only the CRC-32 checksum of the content is
+ * missing in the blob: it is computed when the blob is sent for the first time and cached for a large number of
+ * blobs.
+ * </p>
+ *
+ * <p>
+ * Large painted files are shown in windows of lines. In order to read such a window without holding the whole
+ * content of a blob in memory, the rows of a blob are indexed by a {@link SourceCodeLineIndex} that is created and
+ * stored next to the blob when it is requested for the first time, see {@link #readLineIndex(String)}. A window is
+ * then read by decompressing the blob as a stream up to the end of the window, see {@link #read(String, int, int)}.
+ * Since a deflated stream cannot be entered at an arbitrary position, the rows before the window are decompressed as
+ * well, but they are skipped rather than kept.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+final class SourceCodeStore {
+    /** Name of the store folder in the job directory. */
+    static final String STORE_DIRECTORY = "coverage-sources-store";
+
+    private static final String SUFFIX = ".blob";
+    private static final String LINE_INDEX_SUFFIX = ".lines";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final Duration STALE_TEMPORARY_FILE_AGE = Duration.ofHours(1);
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final Map<Path, ReadWriteLock> LOCKS = new ConcurrentHashMap<>();
+
+    private static final int CACHED_CHECKSUMS = 4096;
+    private static final Map<String, Long> CHECKSUMS = Collections.synchronizedMap(
+            new LinkedHashMap<>(CACHED_CHECKSUMS, 0.75f, true) {
+                private static final long serialVersionUID = -2745188934107360781L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+                    return size() > CACHED_CHECKSUMS;
+                }
+            });
+
+    private static final int CACHED_LINE_INDEXES = 64;
+    private static final Map<String, SourceCodeLineIndex> LINE_INDEXES = Collections.synchronizedMap(
+            new LinkedHashMap<>(CACHED_LINE_INDEXES, 0.75f, true) {
+                private static final long serialVersionUID = 5471253014870396233L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, SourceCodeLineIndex> eldest) {
+                    return size() > CACHED_LINE_INDEXES;
+                }
+            });
+    private static final int SKIP_BUFFER_SIZE = 8192;
+
+    private final Path directory;
+
+    /**
+     * Creates a new instance of {@link SourceCodeStore}.
+     *
+     * @param directory
+     *         the directory that contains the blobs
+     */
+    SourceCodeStore(final Path directory) {
+        this.directory = directory.toAbsolutePath().normalize();
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the lock that guards modifications of this store. Builds that add blobs and write their manifest
+     * acquire the read lock, so that several builds can add blobs concurrently. Removing unreferenced blobs requires
+     * the write lock, otherwise a blob of a running build might be removed before its manifest has been written.
+     *
+     * @return the lock
+     */
+    ReadWriteLock getLock() {
+        return LOCKS.computeIfAbsent(directory, key -> new ReentrantReadWriteLock());
+    }
+
+    /**
+     * Computes the hash of a blob with the specified content. The hash is the SHA-256 hash of the UTF-8 encoded
+     * content, i.e., of the decompressed blob.
+     *
+     * @param content
+     *         the writer that renders the content
+     *
+     * @return the hash
+     * @throws IOException
+     *         if the content could not be rendered
+     */
+    static String createHash(final SourceCodePackWriter.ContentWriter content) throws IOException {
+        var digest = createDigest();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new DigestOutputStream(OutputStream.nullOutputStream(), digest), StandardCharsets.UTF_8))) {
+            content.write(writer);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest createDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException exception) {
+            throw new IOException("SHA-256 is not supported", exception);
+        }
+    }
+
+    /**
+     * Returns whether the specified string is a valid hash of a blob.
+     *
+     * @param hash
+     *         the string to check
+     *
+     * @return {@code true} if the string is a valid hash, {@code false} otherwise
+     */
+    static boolean isHash(final String hash) {
+        return HASH.matcher(hash).matches();
+    }
+
+    /**
+     * Returns the hashes of all blobs that are currently stored.
+     *
+     * @return the hashes of all blobs
+     */
+    Set<String> getHashes() {
+        try (var files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .map(name -> StringUtils.removeEnd(name, SUFFIX))
+                    .filter(SourceCodeStore::isHash)
+                    .collect(Collectors.toCollection(HashSet::new));
+        }
+        catch (IOException exception) {
+            return new HashSet<>();
+        }
+    }
+
+    /**
+     * Returns whether the blob with the specified hash is stored.
+     *
+     * @param hash
+     *         the hash of the blob
+     *
+     * @return {@code true} if the blob is stored, {@code false} otherwise
+     */
+    boolean contains(final String hash) {
+        return isHash(hash) && Files.isRegularFile(getFile(hash));
+    }
+
+    /**
+     * Reads the content of the blob with the specified hash.
+     *
+     * @param hash
+     *         the hash of the blob
+     *
+     * @return the content of the blob, or an empty optional if the blob is not stored
+     * @throws IOException
+     *         if the blob could not be read
+     */
+    Optional<String> read(final String hash) throws IOException {
+        if (!isHash(hash)) {
+            return Optional.empty();
+        }
+        try {
+            var blob = ByteBuffer.wrap(Files.readAllBytes(getFile(hash)));
+            int size = blob.getInt();
+            return Optional.of(new String(SourceCodePack.inflate(blob, size), StandardCharsets.UTF_8));
+        }
+        catch (NoSuchFileException exception) {
+            return Optional.empty();
+        }
+        catch (BufferUnderflowException exception) {
+            throw new IOException("Corrupt blob " + hash, exception);
+        }
+    }
+
+    /**
+     * Returns the blob with the specified hash in its compressed form.
+     *
+     * @param hash
+     *         the hash of the blob
+     *
+     * @return the compressed blob, or an empty optional if the blob is not stored
+     * @throws IOException
+     *         if the blob could not be read
+     */
+    Optional<CompressedBlob> readCompressed(final String hash) throws IOException {
+        if (!contains(hash)) {
+            return Optional.empty();
+        }
+        var file = getFile(hash);
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var header = ByteBuffer.allocate(Integer.BYTES);
+            if (channel.read(header) != Integer.BYTES) {
+                throw new IOException("Corrupt blob " + hash);
+            }
+            int size = header.flip().getInt();
+            var checksum = CHECKSUMS.get(hash);
+            if (checksum == null) {
+                var crc = new CRC32();
+                crc.update(SourceCodePack.inflate(channel.map(FileChannel.MapMode.READ_ONLY, Integer.BYTES,
+                        channel.size() - Integer.BYTES), size));
+                checksum = crc.getValue();
+                CHECKSUMS.put(hash, checksum);
+            }
+            return Optional.of(new CompressedBlob(file, size, checksum));
+        }
+        catch (NoSuchFileException exception) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the line index of the blob with the specified hash. The index is created when it is requested for the
+     * first time and stored next to the blob, so that subsequent requests just need to read the small index file.
+     *
+     * @param hash
+     *         the hash of the blob
+     *
+     * @return the line index, or an empty optional if the blob is not stored
+     * @throws IOException
+     *         if the blob could not be read
+     */
+    Optional<SourceCodeLineIndex> readLineIndex(final String hash) throws IOException {
+        if (!contains(hash)) {
+            return Optional.empty();
+        }
+        var cached = LINE_INDEXES.get(hash);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        var indexFile = getLineIndexFile(hash);
+        try {
+            var index = readOrCreateLineIndex(hash, indexFile);
+            LINE_INDEXES.put(hash, index);
+            return Optional.of(index);
+        }
+        catch (NoSuchFileException exception) {
+            return Optional.empty();
+        }
+    }
+
+    private SourceCodeLineIndex readOrCreateLineIndex(final String hash, final Path indexFile) throws IOException {
+        if (Files.isRegularFile(indexFile)) {
+            try {
+                return SourceCodeLineIndex.read(indexFile);
+            }
+            catch (IOException exception) {
+                // the index will be created again
+            }
+        }
+        SourceCodeLineIndex index;
+        try (var reader = openReader(hash)) {
+            index = SourceCodeLineIndex.create(reader);
+        }
+        try {
+            index.write(indexFile);
+        }
+        catch (IOException exception) {
+            // the index is created again on the next request
+        }
+        return index;
+    }
+
+    /**
+     * Reads a part of the content of the blob with the specified hash. The blob is decompressed as a stream from the
+     * beginning up to the end position: the characters before the start position are skipped, only the requested
+     * characters are kept in memory.
+     *
+     * @param hash
+     *         the hash of the blob
+     * @param start
+     *         the position of the first character (inclusive)
+     * @param end
+     *         the position of the last character (exclusive)
+     *
+     * @return the requested part of the content
+     * @throws IOException
+     *         if the blob is not stored or could not be read
+     */
+    String read(final String hash, final int start, final int end) throws IOException {
+        if (!contains(hash)) {
+            throw new NoSuchFileException(getFile(hash).toString());
+        }
+        try (var reader = openReader(hash)) {
+            var skipBuffer = new char[SKIP_BUFFER_SIZE];
+            int skipped = 0;
+            while (skipped < start) {
+                int read = reader.read(skipBuffer, 0, Math.min(skipBuffer.length, start - skipped));
+                if (read < 0) {
+                    return StringUtils.EMPTY;
+                }
+                skipped += read;
+            }
+            var content = new char[Math.max(0, end - start)];
+            int length = 0;
+            while (length < content.length) {
+                int read = reader.read(content, length, content.length - length);
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+            }
+            return new String(content, 0, length);
+        }
+    }
+
+    private Reader openReader(final String hash) throws IOException {
+        var input = new BufferedInputStream(Files.newInputStream(getFile(hash)));
+        if (input.skip(Integer.BYTES) != Integer.BYTES) {
+            input.close();
+            throw new IOException("Corrupt blob " + hash);
+        }
+        var inflater = new Inflater(true);
+        return new InputStreamReader(new InflaterInputStream(input, inflater) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                }
+                finally {
+                    inflater.end();
+                }
+            }
+        }, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Imports all entries of the pack in the specified stream as new blobs. The entries of the pack must be named by
+     * the hashes of their content. Entries that are already stored are skipped. The blobs are written while the pack
+     * is read, so the pack does not need to be stored in a temporary file. The content of each new blob is
+     * decompressed while it is written in order to verify its hash.
+     *
+     * @param pack
+     *         the stream that provides the pack
+     *
+     * @return the number of new blobs
+     * @throws IOException
+     *         if the pack could not be read, a blob could not be written, or the content of an entry does not match
+     *         its hash
+     */
+    int importPack(final InputStream pack) throws IOException {
+        Files.createDirectories(directory);
+        int[] count = {0};
+        SourceCodePack.readEntries(pack, (name, compressed) -> {
+            if (isHash(name) && !contains(name)) {
+                write(name, compressed);
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Adds the blob with the specified hash from another store to this store. The blob is linked if possible,
+     * otherwise it is copied.
+     *
+     * @param hash
+     *         the hash of the blob
+     * @param source
+     *         the store that contains the blob
+     *
+     * @return {@code true} if this store contains the blob now, {@code false} if the blob is not available
+     */
+    boolean link(final String hash, final SourceCodeStore source) {
+        if (contains(hash)) {
+            return true;
+        }
+        if (!source.contains(hash)) {
+            return false;
+        }
+        try {
+            Files.createDirectories(directory);
+            try {
+                Files.createLink(getFile(hash), source.getFile(hash));
+            }
+            catch (IOException | UnsupportedOperationException exception) {
+                var temporary = Files.createTempFile(directory, hash, TEMPORARY_SUFFIX);
+                try {
+                    Files.copy(source.getFile(hash), temporary, StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(temporary, getFile(hash),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                finally {
+                    Files.deleteIfExists(temporary);
+                }
+            }
+            return true;
+        }
+        catch (IOException exception) {
+            return contains(hash); // might have been added in the meantime
+        }
+    }
+
+    private void write(final String hash, final SourceCodePack.EntryInputStream compressed) throws IOException {
+        var temporary = Files.createTempFile(directory, hash, TEMPORARY_SUFFIX);
+        var digest = createDigest();
+        var inflater = new Inflater(true);
+        try {
+            try (var channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+                    var content = new InflaterOutputStream(
+                            new DigestOutputStream(OutputStream.nullOutputStream(), digest), inflater)) {
+                channel.position(Integer.BYTES); // the size is known after the content has been read
+                var blob = Channels.newOutputStream(channel);
+                var buffer = new byte[SKIP_BUFFER_SIZE];
+                for (int read = compressed.read(buffer); read >= 0; read = compressed.read(buffer)) {
+                    blob.write(buffer, 0, read);
+                    content.write(buffer, 0, read);
+                }
+                content.finish();
+                channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, compressed.getSize()), 0);
+            }
+            if (!inflater.finished() || inflater.getBytesWritten() != compressed.getSize()
+                    || !hash.equals(HexFormat.of().formatHex(digest.digest()))) {
+                throw new IOException("Content of pack entry does not match its hash " + hash);
+            }
+            Files.move(temporary, getFile(hash), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            inflater.end();
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Removes all blobs that are not referenced anymore. Temporary files of blobs or line indexes that have not been
+     * completed (e.g., since the controller has been stopped while writing them) are removed as well. Callers need to
+     * hold the write lock of the store.
+     *
+     * @param referenced
+     *         the hashes of all blobs that are referenced by the manifests of the retained builds
+     *
+     * @return the number of removed blobs
+     */
+    int removeUnreferenced(final Set<String> referenced) {
+        int removed = 0;
+        for (String hash : getHashes()) {
+            if (!referenced.contains(hash)) {
+                try {
+                    Files.deleteIfExists(getFile(hash));
+                    Files.deleteIfExists(getLineIndexFile(hash));
+                    removed++;
+                }
+                catch (IOException ignored) {
+                    // skip this blob, it will be removed in a subsequent run
+                }
+            }
+        }
+        removeStaleTemporaryFiles();
+        return removed;
+    }
+
+    /**
+     * Removes the temporary files that are older than {@link #STALE_TEMPORARY_FILE_AGE}. Line indexes are written
+     * without holding the lock of the store, so recent temporary files might still be in use.
+     */
+    private void removeStaleTemporaryFiles() {
+        var threshold = Instant.now().minus(STALE_TEMPORARY_FILE_AGE);
+        try (var files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(TEMPORARY_SUFFIX))
+                    .filter(file -> isOlderThan(file, threshold))
+                    .forEach(this::deleteQuietly);
+        }
+        catch (IOException ignored) {
+            // the files will be removed in a subsequent run
+        }
+    }
+
+    private boolean isOlderThan(final Path file, final Instant threshold) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(threshold);
+        }
+        catch (IOException exception) {
+            return false;
+        }
+    }
+
+    private void deleteQuietly(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException ignored) {
+            // the file will be removed in a subsequent run
+        }
+    }
+
+    private Path getFile(final String hash) {
+        return directory.resolve(hash + SUFFIX);
+    }
+
+    private Path getLineIndexFile(final String hash) {
+        return directory.resolve(hash + LINE_INDEX_SUFFIX);
+    }
+
+    /**
+     * A blob in its compressed form. The blob can be written as a GZIP stream without decompressing the content.
+     */
+    static final class CompressedBlob {
+        private static final byte[] GZIP_HEADER = {
+                0x1f, (byte) 0x8b, // magic
+                8, // compression method: deflate
+                0, // flags
+                0, 0, 0, 0, // modification time: not available
+                0, // extra flags
+                (byte) 0xff // operating system: unknown
+        };
+
+        private final Path file;
+        private final int size;
+        private final long checksum;
+
+        CompressedBlob(final Path file, final int size, final long checksum) {
+            this.file = file;
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        int getSize() {
+            return size;
+        }
+
+        /**
+         * Writes the content of this blob as a GZIP stream. The deflated content is transferred from the file to the
+         * output as it is.
+         *
+         * @param output
+         *         the output to write the GZIP stream to
+         *
+         * @throws IOException
+         *         if the blob could not be read or the output could not be written
+         */
+        void writeGzip(final OutputStream output) throws IOException {
+            output.write(GZIP_HEADER);
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                var target = Channels.newChannel(output);
+                long position = Integer.BYTES;
+                long end = channel.size();
+                while (position < end) {
+                    position += channel.transferTo(position, end - position, target);
+                }
+            }
+            var trailer = ByteBuffer.allocate(Integer.BYTES + Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putInt((int) checksum).putInt(size);
+            output.write(trailer.array());
+            output.flush();
+        }
+    }
+}
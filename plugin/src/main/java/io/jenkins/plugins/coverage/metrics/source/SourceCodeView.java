@@ -0,0 +1,15 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+/**
+ * Defines which lines of a source code file are shown in the user interface.
+ *
+ * @author Ullrich Hafner
+ */
+public enum SourceCodeView {
+    /** All lines of the source code file are shown. */
+    ALL,
+    /** Only the modified lines with coverage and their surrounding lines are shown. */
+    MODIFIED_LINES,
+    /** Only the lines with indirect coverage changes and their surrounding lines are shown. */
+    INDIRECT_COVERAGE_CHANGES
+}
@@ -3,9 +3,13 @@ package io.jenkins.plugins.coverage.metrics.source;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import edu.hm.hafner.coverage.FileNode;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 
 import java.io.IOException;
 
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.bind.JavaScriptMethod;
 import hudson.model.ModelObject;
 import hudson.model.Run;
 
@@ -17,6 +21,9 @@ import hudson.model.Run;
  */
 public class SourceViewModel implements ModelObject {
     private static final SourceCodeFacade SOURCE_CODE_FACADE = new SourceCodeFacade();
+    private static final SourceCodeResponse SOURCE_CODE_RESPONSE = new SourceCodeResponse(SOURCE_CODE_FACADE);
+    /** Files with more lines are shown in windows of lines that are loaded while scrolling. */
+    static final int MAX_INLINE_LINES = 5000;
 
     private final Run<?, ?> owner;
     private final String id;
@@ -54,13 +61,86 @@ public class SourceViewModel implements ModelObject {
     @SuppressWarnings("unused") // Called by jelly view
     public String getSourceFileContent() {
         try {
-            return SOURCE_CODE_FACADE.read(getOwner().getRootDir(), id, getNode().getRelativePath());
+            return SOURCE_CODE_FACADE.read(getOwner().getRootDir(), id, getNode());
         }
         catch (IOException | InterruptedException exception) {
             return ExceptionUtils.getStackTrace(exception);
         }
     }
 
+    /**
+     * Returns whether the source file is too large to be shown as a whole. Such files are shown in windows of lines
+     * that are loaded using {@link #getSourceLines(int, int)} while scrolling.
+     *
+     * @return {@code true} if the source file is shown in windows of lines, {@code false} otherwise
+     */
+    @SuppressWarnings("unused") // Called by jelly view
+    public boolean isWindowed() {
+        return getLineCount() > MAX_INLINE_LINES;
+    }
+
+    /**
+     * Returns the number of lines of the source file.
+     *
+     * @return the number of lines
+     */
+    public int getLineCount() {
+        try {
+            return SOURCE_CODE_FACADE.countLines(getOwner().getRootDir(), id, getNode());
+        }
+        catch (IOException | InterruptedException exception) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the rows of a range of lines of the source file rendered in HTML.
+     *
+     * @param fromLine
+     *         the first line of the range (inclusive)
+     * @param toLine
+     *         the last line of the range (inclusive)
+     *
+     * @return the colored rows of the range
+     */
+    @JavaScriptMethod
+    public SourceCodeLines getSourceLines(final int fromLine, final int toLine) {
+        try {
+            return SOURCE_CODE_FACADE.readLines(getOwner().getRootDir(), id, getNode(), SourceCodeView.ALL,
+                    fromLine, toLine);
+        }
+        catch (IOException | InterruptedException exception) {
+            return new SourceCodeLines(ExceptionUtils.getStackTrace(exception), fromLine, toLine, 0);
+        }
+    }
+
+    /**
+     * Sends the rows of the source file rendered in HTML. The request parameter {@code view} selects the lines that
+     * are shown, see {@link SourceCodeView}. The response supports conditional requests and GZIP encoding.
+     *
+     * @param request
+     *         Stapler request
+     * @param response
+     *         Stapler response
+     *
+     * @throws IOException
+     *         if the source file could not be read or the response could not be written
+     */
+    @SuppressWarnings("unused") // Called by view-model.js
+    public void doSourceCode(final StaplerRequest2 request, final StaplerResponse2 response) throws IOException {
+        var view = getView(request.getParameter("view"));
+        SOURCE_CODE_RESPONSE.send(getOwner(), id, getNode(), view, request, response);
+    }
+
+    private SourceCodeView getView(@CheckForNull final String view) {
+        for (SourceCodeView value : SourceCodeView.values()) {
+            if (value.name().equals(view)) {
+                return value;
+            }
+        }
+        return SourceCodeView.ALL;
+    }
+
     /**
      * Returns whether the source file is available in Jenkins build folder.
      *
@@ -33,126 +33,29 @@ public class VectorCastSourcePrinter extends CoverageSourcePrinter {
     }
 
     /**
-     * Gets the tr HTML tag for this source line. Used for case where both MCDC and FCC are present.
+     * Renders the columns for the function call and MC/DC pair coverage, if the file contains such coverage.
      *
      * @param line
      *         line number for the summary data
-     *
-     * @param sourceCode
-     *         line of source code
-     *
-     * @param isPainted 
-     *         indicator of if the line should be painted
-     *
-     * @param third
-     *         third column string.  
-     *
-     * @param fouth
-     *         fouth column string.  
-     *
-     * @return string for the html row
-     *         
-     */      
-    private String getTr(final int line, final String sourceCode, final boolean isPainted, final String third, final String fouth) {
-        var trData = tr()
-                .withClasses(isPainted ? getColorClass(line) : UNDEFINED, getModifiedClass(line))
-                .condAttr(isPainted, "data-html-tooltip", isPainted ? getTooltip(line) : StringUtils.EMPTY);
-
-        trData.with(
-                td().withClass("line").with(a().withName(String.valueOf(line)).withText(String.valueOf(line))),
-                td().withClass("hits").with(isPainted ? text(getSummaryColumn(line)) : text(StringUtils.EMPTY))
-        );
-
-        if (!third.equals(StringUtils.EMPTY)) {
-            trData.with(td().withClass("hits").with(isPainted ? text(third) : text(StringUtils.EMPTY)));
-        }
-        if (!fouth.equals(StringUtils.EMPTY)) {
-            trData.with(td().withClass("hits").with(isPainted ? text(fouth) : text(StringUtils.EMPTY)));
-        }
-
-        trData.with(td().withClass("code").with(rawHtml(SANITIZER.render(cleanupCode(sourceCode)))));
-
-        return trData.render();
-    }
-
-    /**
-     * Gets the tr HTML tag for this source line. Used for case where neither MCDC or FCC  are present.
-     *
-     * @param line
-     *         line number for the summary data
-     *
-     * @param sourceCode
-     *         line of source code
-     *
      * @param isPainted
      *         indicator of if the line should be painted
-     *
-     * @return string for the html row
-     *         
-     */      
-    private String getTr(final int line, final String sourceCode, final boolean isPainted) {
-        return getTr(line, sourceCode, isPainted, StringUtils.EMPTY, StringUtils.EMPTY);
-    }
-
-    /**
-     * Gets the tr HTML tag for this source line. Used for MCDC or FCC but not both.
-     *
-     * @param line
-     *         line number for the summary data
-     *
-     * @param sourceCode
-     *         line of source code
-     *
-     * @param isPainted
-     *         indicator of if the line should be painted
-     *
-     * @param third
-     *         third column string.  
-     *
-     * @return string for the html row
-     *         
-     */    
-    private String getTr(final int line, final String sourceCode, final boolean isPainted, final String third) {
-        return getTr(line, sourceCode, isPainted, third, StringUtils.EMPTY);
-    }
-
-    /**
-     * Main call to render the source line in HTML table format.
-     *
-     * @param line
-     *         line number for the summary data
-     *
-     * @param sourceCode
-     *         line of source code
-     *
-     * @return string of the source code line in HTML format
-     *         
-     */    
+     * @param row
+     *         the writer for the table row
+     */
     @Override
-    public String renderLine(final int line, final String sourceCode) {
-        var isPainted = isPainted(line);
-        var hasMcdc = hasAnyMcdcPairCoverage();
-        var hasFc   = hasAnyFunctionCallCoverage();
-
-        String trString;
-
-        // If this file only has Line, St/Br, and FunctionCall
-        if (!hasMcdc && hasFc) {
-            trString = getTr(line, sourceCode, isPainted, getFunctionCallSummaryColumn(line));
-        }
-        // If this file only has Line, St/Br, and MCDC
-        else if (hasMcdc && !hasFc) {
-            trString = getTr(line, sourceCode, isPainted, getMcdcPairSummaryColumn(line));
+    void renderAdditionalColumns(final int line, final boolean isPainted, final SourceCodeRowWriter row) {
+        if (hasAnyFunctionCallCoverage()) {
+            renderColumn(getFunctionCallSummaryColumn(line), isPainted, row);
         }
-        // If this file only has Line, St/Br, FunctionCall and MCDC
-        else if (hasMcdc && hasFc) {
-            trString = getTr(line, sourceCode, isPainted, getFunctionCallSummaryColumn(line), getMcdcPairSummaryColumn(line));
+        if (hasAnyMcdcPairCoverage()) {
+            renderColumn(getMcdcPairSummaryColumn(line), isPainted, row);
         }
-        // If this file only has Line and St/Br
-        else {
-            trString = getTr(line, sourceCode, isPainted);
+    }
+
+    private void renderColumn(final String summary, final boolean isPainted, final SourceCodeRowWriter row) {
+        if (!summary.isEmpty()) {
+            row.appendHits(isPainted ? summary : StringUtils.EMPTY);
         }
-        return trString;
     }
 
     /**
@@ -4,7 +4,6 @@ import edu.hm.hafner.coverage.Node;
 import edu.hm.hafner.util.FilteredLog;
 
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -184,7 +183,8 @@ class CodeDeltaCalculator {
     }
 
     /**
-     * Creates a mapping between SCM paths and the corresponding coverage report paths.
+     * Creates a mapping between SCM paths and the corresponding coverage report paths. Each SCM path is mapped to the
+     * longest report path that is a suffix of the SCM path, or to an empty string if there is no such report path.
      *
      * @param scmPaths
      *         The SCM paths
@@ -196,15 +196,12 @@ class CodeDeltaCalculator {
     private Map<String, String> getScmToReportPathMapping(
             final Collection<String> scmPaths, final Collection<String> reportPaths) {
         Map<String, String> pathMapping = new HashMap<>();
+        if (scmPaths.isEmpty()) {
+            return pathMapping;
+        }
+        var reportPathSuffixes = new PathSuffixTrie(reportPaths);
         for (String scmPath : scmPaths) {
-            reportPaths.stream()
-                    .filter(scmPath::endsWith)
-                    .max(Comparator.comparingInt(String::length))
-                    .map(match -> {
-                        pathMapping.put(scmPath, match);
-                        return match;
-                    })
-                    .orElseGet(() -> pathMapping.put(scmPath, ""));
+            pathMapping.put(scmPath, reportPathSuffixes.findLongestSuffix(scmPath).orElse(""));
         }
         return pathMapping;
     }
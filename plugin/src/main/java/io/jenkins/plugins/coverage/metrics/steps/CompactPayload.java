@@ -0,0 +1,448 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.apache.commons.lang3.math.Fraction;
+
+import edu.hm.hafner.coverage.Node;
+import edu.hm.hafner.coverage.Value;
+import edu.hm.hafner.util.FilteredLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import io.jenkins.plugins.coverage.metrics.steps.CoverageToolsScanner.Report;
+import io.jenkins.plugins.coverage.metrics.steps.CoverageToolsScanner.ScanResult;
+import io.jenkins.plugins.coverage.metrics.steps.CoverageToolsScanner.ToolResult;
+import io.jenkins.plugins.coverage.metrics.steps.ParseCache.CachedReport;
+import io.jenkins.plugins.util.RemoteResultWrapper;
+
+/**
+ * A serializable container that transfers a (large) object graph in a compact binary format between the agent and the
+ * controller. The graph is serialized with the Java serialization, but the following optimizations are applied:
+ * <ul>
+ *     <li>equal strings and integers are written only once, all other occurrences refer to the first instance
+ *     (string table)</li>
+ *     <li>sorted maps and sets of integers (e.g., the covered and missed lines of a file) are written as delta and
+ *     variable length encoded byte arrays rather than as graphs of boxed integers</li>
+ *     <li>the resulting stream is compressed</li>
+ * </ul>
+ * Enumerations like {@code Metric} are written by the Java serialization as well: each constant is written once by
+ * name, all other occurrences are back references. A map or set that is referenced by several objects is packed only
+ * once and is shared again after reading the payload.
+ * When reading the payload, only the node and value classes of the coverage model, the JDK collections that are used
+ * by the model, and the result classes of this plugin are accepted. Additionally, the depth, the number of references,
+ * and the array lengths of the graph are limited.
+ *
+ * @param <T>
+ *         the type of the transferred object
+ *
+ * @author Ullrich Hafner
+ */
+class CompactPayload<T extends Serializable> implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1936018204127440875L;
+
+    private static final String MODEL_PACKAGE = Node.class.getPackageName() + ".";
+    private static final Set<String> ALLOWED_MODEL_CLASSES = Set.of(
+            MODEL_PACKAGE + "Mutation",
+            MODEL_PACKAGE + "TestCase");
+    /** The serialized form of the immutable collections created by {@code List.of}, {@code Set.of}, etc. */
+    private static final String IMMUTABLE_COLLECTIONS = "java.util.CollSer";
+    private static final Set<Class<?>> ALLOWED_CLASSES = Set.of(
+            Number.class, Enum.class, String.class, Boolean.class, Integer.class, Long.class,
+            Fraction.class,
+            ArrayList.class, LinkedList.class, HashMap.class, LinkedHashMap.class, HashSet.class, LinkedHashSet.class,
+            TreeMap.class, TreeSet.class, EnumMap.class,
+            Collections.emptyList().getClass(), Collections.emptySet().getClass(), Collections.emptyMap().getClass(),
+            Collections.unmodifiableList(new ArrayList<>()).getClass(),
+            Collections.unmodifiableList(new LinkedList<>()).getClass(),
+            Collections.unmodifiableSet(new HashSet<>()).getClass(),
+            Collections.unmodifiableSortedSet(new TreeSet<>()).getClass(),
+            Collections.unmodifiableNavigableSet(new TreeSet<>()).getClass(),
+            Collections.unmodifiableMap(new HashMap<>()).getClass(),
+            Collections.unmodifiableSortedMap(new TreeMap<>()).getClass(),
+            Collections.unmodifiableNavigableMap(new TreeMap<>()).getClass(),
+            Collections.unmodifiableCollection(new ArrayList<>()).getClass(),
+            Collections.reverseOrder().getClass(),
+            Arrays.asList().getClass(),
+            List.of().getClass(), List.of(0).getClass(), Set.of().getClass(), Set.of(0).getClass(),
+            Map.of().getClass(), Map.of(0, 0).getClass(),
+            FilteredLog.class, RemoteResultWrapper.class,
+            ScanResult.class, ToolResult.class, Report.class, CachedReport.class,
+            PackedIntegerMap.class, PackedIntegerSet.class);
+
+    private static final long MAX_DEPTH = 200;
+    private static final long MAX_REFERENCES = 20_000_000;
+    private static final long MAX_ARRAY_LENGTH = 16 * 1024 * 1024;
+
+    private final byte[] data;
+
+    /**
+     * Encodes the specified object into a compact payload.
+     *
+     * @param object
+     *         the object to encode
+     * @param <T>
+     *         the type of the object
+     *
+     * @return the payload
+     * @throws IOException
+     *         if the object cannot be serialized
+     */
+    static <T extends Serializable> CompactPayload<T> of(final T object) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        write(object, bytes);
+        return new CompactPayload<>(bytes.toByteArray());
+    }
+
+    /**
+     * Writes the specified object in the compact format to the specified stream. The stream will be closed.
+     *
+     * @param object
+     *         the object to write
+     * @param output
+     *         the stream to write the object to
+     *
+     * @throws IOException
+     *         if the object cannot be serialized or the stream cannot be written
+     */
+    static void write(final Serializable object, final OutputStream output) throws IOException {
+        var deflater = new Deflater(Deflater.BEST_SPEED);
+        try (var stream = new CompactObjectOutputStream(new DeflaterOutputStream(output, deflater))) {
+            stream.writeObject(object);
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads an object in the compact format from the specified stream. The stream will be closed.
+     *
+     * @param input
+     *         the stream to read the object from
+     * @param type
+     *         the type of the object
+     * @param <T>
+     *         the type of the object
+     *
+     * @return the object
+     * @throws IOException
+     *         if the stream cannot be read, or contains classes that are not permitted or an object of another type
+     */
+    static <T extends Serializable> T read(final InputStream input, final Class<T> type) throws IOException {
+        try (var stream = new CompactObjectInputStream(new InflaterInputStream(input))) {
+            var object = stream.readObject();
+            if (type.isInstance(object)) {
+                return type.cast(object);
+            }
+            throw new IOException("Coverage payload does not contain an instance of " + type.getName());
+        }
+        catch (ClassNotFoundException exception) {
+            throw new IOException("Coverage payload contains an unknown class", exception);
+        }
+    }
+
+    /**
+     * Creates a payload from the specified encoded bytes (see {@link #toByteArray()}).
+     *
+     * @param data
+     *         the encoded bytes
+     * @param <T>
+     *         the type of the object
+     *
+     * @return the payload
+     */
+    static <T extends Serializable> CompactPayload<T> fromByteArray(final byte[] data) {
+        return new CompactPayload<>(data.clone());
+    }
+
+    private CompactPayload(final byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Returns the encoded bytes of this payload.
+     *
+     * @return the encoded bytes
+     */
+    byte[] toByteArray() {
+        return data.clone();
+    }
+
+    /**
+     * Returns the size of the encoded payload in bytes.
+     *
+     * @return the size in bytes
+     */
+    int size() {
+        return data.length;
+    }
+
+    /**
+     * Decodes the object of this payload.
+     *
+     * @return the decoded object
+     * @throws IOException
+     *         if the payload cannot be deserialized or contains classes that are not permitted
+     */
+    @SuppressWarnings("unchecked")
+    T get() throws IOException {
+        try (var input = new CompactObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+            return (T) input.readObject();
+        }
+        catch (ClassNotFoundException exception) {
+            throw new IOException("Coverage payload contains an unknown class", exception);
+        }
+    }
+
+    private static boolean isPermitted(final Class<?> type) {
+        if (type.isArray()) {
+            var componentType = type.getComponentType();
+            return componentType.isPrimitive() || componentType == Object.class || isPermitted(componentType);
+        }
+        if (ALLOWED_CLASSES.contains(type) || IMMUTABLE_COLLECTIONS.equals(type.getName())) {
+            return true;
+        }
+        var name = type.getName();
+        if (!name.startsWith(MODEL_PACKAGE) || name.indexOf('.', MODEL_PACKAGE.length()) >= 0) {
+            return false;
+        }
+        return Node.class.isAssignableFrom(type) || Value.class.isAssignableFrom(type)
+                || Enum.class.isAssignableFrom(type) || ALLOWED_MODEL_CLASSES.contains(name);
+    }
+
+    private static boolean isWithinLimits(final ObjectInputFilter.FilterInfo info) {
+        return info.depth() <= MAX_DEPTH
+                && info.references() <= MAX_REFERENCES
+                && info.arrayLength() <= MAX_ARRAY_LENGTH;
+    }
+
+    /**
+     * Replaces duplicate strings and integers with the first instance and packs sorted integer collections.
+     */
+    private static class CompactObjectOutputStream extends ObjectOutputStream {
+        private final Map<Object, Object> canonicalValues = new HashMap<>();
+        private final Map<Object, Object> packedCollections = new IdentityHashMap<>();
+
+        CompactObjectOutputStream(final OutputStream output) throws IOException {
+            super(output);
+
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(final Object object) {
+            if (object instanceof String || object instanceof Integer) {
+                return canonicalValues.computeIfAbsent(object, key -> key);
+            }
+            if (object.getClass() == TreeMap.class) {
+                return packedCollections.computeIfAbsent(object, map -> PackedIntegerMap.pack((TreeMap<?, ?>) map));
+            }
+            if (object.getClass() == TreeSet.class) {
+                return packedCollections.computeIfAbsent(object, set -> PackedIntegerSet.pack((TreeSet<?>) set));
+            }
+            return object;
+        }
+    }
+
+    /**
+     * Accepts only the classes of the allow list and resolves them with the class loader of the plugin.
+     */
+    private static class CompactObjectInputStream extends ObjectInputStream {
+        CompactObjectInputStream(final InputStream input) throws IOException {
+            super(input);
+
+            setObjectInputFilter(this::checkInput);
+        }
+
+        private ObjectInputFilter.Status checkInput(final ObjectInputFilter.FilterInfo info) {
+            if (!isWithinLimits(info)) {
+                return ObjectInputFilter.Status.REJECTED;
+            }
+            var type = info.serialClass();
+            if (type == null) {
+                return ObjectInputFilter.Status.UNDECIDED;
+            }
+            return isPermitted(type) ? ObjectInputFilter.Status.ALLOWED : ObjectInputFilter.Status.REJECTED;
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass descriptor)
+                throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(descriptor.getName(), false, CompactPayload.class.getClassLoader());
+            }
+            catch (ClassNotFoundException exception) {
+                return super.resolveClass(descriptor); // the filter will check the resolved class as well
+            }
+        }
+    }
+
+    /**
+     * Writes and reads integers using a variable length encoding: small values need only a single byte.
+     */
+    private static class VarIntBuffer {
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        void write(final int value) {
+            int zigZag = (value << 1) ^ (value >> 31);
+            while ((zigZag & ~0x7F) != 0) {
+                output.write(zigZag & 0x7F | 0x80);
+                zigZag >>>= 7;
+            }
+            output.write(zigZag);
+        }
+
+        byte[] toByteArray() {
+            return output.toByteArray();
+        }
+
+        static int read(final byte[] data, final int[] position) throws InvalidObjectException {
+            int zigZag = 0;
+            int shift = 0;
+            byte current;
+            do {
+                if (position[0] >= data.length || shift >= Integer.SIZE) {
+                    throw new InvalidObjectException("Corrupt variable length integer in coverage payload");
+                }
+                current = data[position[0]++];
+                zigZag |= (current & 0x7F) << shift;
+                shift += 7;
+            }
+            while ((current & 0x80) != 0);
+            return zigZag >>> 1 ^ -(zigZag & 1);
+        }
+
+        static int readSize(final byte[] data, final int[] position) throws InvalidObjectException {
+            int size = read(data, position);
+            if (size < 0 || size > data.length - position[0]) { // each element requires at least one byte
+                throw new InvalidObjectException("Corrupt collection size in coverage payload: " + size);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * A {@link TreeMap} with integer keys and values in natural order that is encoded as a sequence of key deltas and
+     * values. The map is replaced with a {@link TreeMap} again when it is deserialized.
+     */
+    private static class PackedIntegerMap implements Serializable {
+        @Serial
+        private static final long serialVersionUID = -4390541207373412158L;
+
+        private final byte[] packed;
+
+        static Object pack(final TreeMap<?, ?> map) {
+            if (map.comparator() != null) {
+                return map;
+            }
+            var buffer = new VarIntBuffer();
+            buffer.write(map.size());
+            int previous = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!(entry.getKey() instanceof Integer) || !(entry.getValue() instanceof Integer)) {
+                    return map;
+                }
+                int key = (Integer) entry.getKey();
+                buffer.write(key - previous);
+                buffer.write((Integer) entry.getValue());
+                previous = key;
+            }
+            return new PackedIntegerMap(buffer.toByteArray());
+        }
+
+        PackedIntegerMap(final byte[] packed) {
+            this.packed = packed;
+        }
+
+        @Serial
+        protected Object readResolve() throws ObjectStreamException {
+            NavigableMap<Integer, Integer> map = new TreeMap<>();
+            int[] position = {0};
+            int size = VarIntBuffer.readSize(packed, position);
+            int key = 0;
+            for (int i = 0; i < size; i++) {
+                key += VarIntBuffer.read(packed, position);
+                map.put(key, VarIntBuffer.read(packed, position));
+            }
+            return map;
+        }
+    }
+
+    /**
+     * A {@link TreeSet} of integers in natural order that is encoded as a sequence of deltas. The set is replaced with
+     * a {@link TreeSet} again when it is deserialized.
+     */
+    private static class PackedIntegerSet implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 2712906545236917384L;
+
+        private final byte[] packed;
+
+        static Object pack(final TreeSet<?> set) {
+            if (set.comparator() != null) {
+                return set;
+            }
+            var buffer = new VarIntBuffer();
+            buffer.write(set.size());
+            int previous = 0;
+            for (Object element : set) {
+                if (!(element instanceof Integer)) {
+                    return set;
+                }
+                int value = (Integer) element;
+                buffer.write(value - previous);
+                previous = value;
+            }
+            return new PackedIntegerSet(buffer.toByteArray());
+        }
+
+        PackedIntegerSet(final byte[] packed) {
+            this.packed = packed;
+        }
+
+        @Serial
+        protected Object readResolve() throws ObjectStreamException {
+            NavigableSet<Integer> set = new TreeSet<>();
+            int[] position = {0};
+            int size = VarIntBuffer.readSize(packed, position);
+            int value = 0;
+            for (int i = 0; i < size; i++) {
+                value += VarIntBuffer.read(packed, position);
+                set.add(value);
+            }
+            return set;
+        }
+    }
+}
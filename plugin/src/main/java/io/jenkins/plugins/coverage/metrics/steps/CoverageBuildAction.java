@@ -3,6 +3,7 @@ package io.jenkins.plugins.coverage.metrics.steps;
 import org.apache.commons.lang3.StringUtils;
 
 import edu.hm.hafner.coverage.Difference;
+import edu.hm.hafner.coverage.FileNode;
 import edu.hm.hafner.coverage.Metric;
 import edu.hm.hafner.coverage.Node;
 import edu.hm.hafner.coverage.Value;
@@ -12,6 +13,7 @@ import edu.hm.hafner.util.VisibleForTesting;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+import java.io.IOException;
 import java.io.Serial;
 import java.util.ArrayList;
 import java.util.List;
@@ -663,7 +665,7 @@ public final class CoverageBuildAction extends BuildAction<Node> implements Stap
 
     @Override
     protected AbstractXmlStream<Node> createXmlStream() {
-        return new CoverageXmlStream();
+        return new CoverageResultStream();
     }
 
     @Override
@@ -678,11 +680,33 @@ public final class CoverageBuildAction extends BuildAction<Node> implements Stap
 
     @Override
     public CoverageViewModel getTarget() {
-        return new CoverageViewModel(getOwner(), getUrlName(), name, getResult(),
+        return new CoverageViewModel(getOwner(), getUrlName(), name, this::getResult, this::findFile,
                 getStatistics(), getQualityGateResult(), getReferenceBuildLink(), log,
                 this::createCoverageModel, this::createMetricsModel);
     }
 
+    /**
+     * Returns the file with the specified hash code of its relative path. If the coverage tree of this build has been
+     * stored in shards, then only the shard that contains the file is read. Otherwise, the whole tree is read.
+     *
+     * @param fileHash
+     *         the hash code of the relative path of the file
+     *
+     * @return the file, or an empty result if the coverage tree does not contain such a file
+     */
+    Optional<FileNode> findFile(final int fileHash) {
+        var resultFile = getOwner().getRootDir().toPath().resolve(getBuildResultBaseName());
+        try {
+            return CoverageResultStream.readFile(CoverageResultStream.getBinaryFile(resultFile), fileHash);
+        }
+        catch (IOException exception) {
+            // results of older builds are not split into shards
+            return getResult().findByHashCode(Metric.FILE, fileHash)
+                    .filter(FileNode.class::isInstance)
+                    .map(FileNode.class::cast);
+        }
+    }
+
     private String createCoverageModel(final String configuration) {
         return new JacksonFacade().toJson(new TrendChartFactory().createChartModel(configuration, this));
     }
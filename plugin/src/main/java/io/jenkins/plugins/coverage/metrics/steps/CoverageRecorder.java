@@ -1,25 +1,21 @@
 package io.jenkins.plugins.coverage.metrics.steps;
 
+import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 
-import edu.hm.hafner.coverage.ClassNode;
-import edu.hm.hafner.coverage.ContainerNode;
 import edu.hm.hafner.coverage.CoverageParser.ProcessingMode;
 import edu.hm.hafner.coverage.ModuleNode;
 import edu.hm.hafner.coverage.Node;
-import edu.hm.hafner.coverage.PackageNode;
 import edu.hm.hafner.util.FilteredLog;
 import edu.hm.hafner.util.TreeStringBuilder;
 import edu.umd.cs.findbugs.annotations.NonNull;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -51,11 +47,15 @@ import hudson.util.FormValidation.Kind;
 import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
 
+import io.jenkins.plugins.coverage.metrics.source.SourceCodeStorage;
 import io.jenkins.plugins.coverage.metrics.steps.CoverageTool.Parser;
 import io.jenkins.plugins.coverage.metrics.steps.CoverageTool.ParserType;
+import io.jenkins.plugins.coverage.metrics.steps.CoverageToolsScanner.Report;
+import io.jenkins.plugins.coverage.metrics.steps.CoverageToolsScanner.ScanResult;
+import io.jenkins.plugins.coverage.metrics.steps.CoverageToolsScanner.ToolPattern;
+import io.jenkins.plugins.coverage.metrics.steps.CoverageToolsScanner.ToolResult;
 import io.jenkins.plugins.prism.SourceCodeDirectory;
 import io.jenkins.plugins.prism.SourceCodeRetention;
-import io.jenkins.plugins.util.AgentFileVisitor.FileVisitorResult;
 import io.jenkins.plugins.util.EnvironmentResolver;
 import io.jenkins.plugins.util.JenkinsFacade;
 import io.jenkins.plugins.util.LogHandler;
@@ -90,14 +90,22 @@ public class CoverageRecorder extends Recorder {
     private boolean skipPublishingChecks = false;
     private String checksName = StringUtils.EMPTY;
     private ChecksAnnotationScope checksAnnotationScope = ChecksAnnotationScope.MODIFIED_LINES;
+    private Granularity granularity = Granularity.METHOD;
     private boolean ignoreParsingErrors = false;
     private boolean failOnError = false;
     private boolean enabledForFailure = false;
     private boolean skipSymbolicLinks = false;
+    private int parserThreads = 0;
+    private boolean aggregateOnAgent = false;
+    private int parseCacheSize = 0;
     private String scm = StringUtils.EMPTY;
     private String sourceCodeEncoding = StringUtils.EMPTY;
     private Set<SourceCodeDirectory> sourceDirectories = new HashSet<>();
     private SourceCodeRetention sourceCodeRetention = SourceCodeRetention.LAST_BUILD;
+    private SourceCodeStorage sourceCodeStorage = SourceCodeStorage.PAINTED;
+    private int painterThreads = 0;
+    private boolean virtualPainterThreads = false;
+    private int maxPaintedLines = 0;
 
     /**
      * Creates a new instance of {@link  CoverageRecorder}.
@@ -236,6 +244,23 @@ public class CoverageRecorder extends Recorder {
         return checksAnnotationScope;
     }
 
+    /**
+     * Sets the granularity of the stored coverage tree. All nodes below the selected level (e.g., methods and classes
+     * for {@link Granularity#FILE}) are removed from the tree. Their values are retained in the aggregated values of
+     * the remaining nodes.
+     *
+     * @param granularity
+     *         the granularity of the coverage tree
+     */
+    @DataBoundSetter
+    public void setGranularity(final Granularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public Granularity getGranularity() {
+        return ObjectUtils.defaultIfNull(granularity, Granularity.METHOD); // might be null in old configurations
+    }
+
     /**
      * Specify if traversal of symbolic links will be skipped during directory scanning for coverage reports.
      *
@@ -251,6 +276,56 @@ public class CoverageRecorder extends Recorder {
         return skipSymbolicLinks;
     }
 
+    /**
+     * Sets the number of worker threads that parse the coverage reports on the agent. If the value is zero or
+     * negative, then the number of available processors of the agent will be used.
+     *
+     * @param parserThreads
+     *         the number of threads that parse the reports in parallel
+     */
+    @DataBoundSetter
+    public void setParserThreads(final int parserThreads) {
+        this.parserThreads = parserThreads;
+    }
+
+    public int getParserThreads() {
+        return parserThreads;
+    }
+
+    /**
+     * Specify if the coverage trees of all tools should be aggregated on the agent. Then the controller receives a
+     * single merged tree rather than the trees of all individual reports.
+     *
+     * @param aggregateOnAgent
+     *         if the results should be aggregated on the agent
+     */
+    @DataBoundSetter
+    public void setAggregateOnAgent(final boolean aggregateOnAgent) {
+        this.aggregateOnAgent = aggregateOnAgent;
+    }
+
+    public boolean isAggregateOnAgent() {
+        return aggregateOnAgent;
+    }
+
+    /**
+     * Sets the maximum size of the parse cache in megabytes. If the cache is enabled (i.e., the size is positive), then
+     * parsed reports are stored on the controller and unchanged reports are not parsed again in subsequent builds.
+     * The cache is stored in the folder of the job and is shared by all builds of the job, the least recently used
+     * reports will be removed if the cache exceeds the size.
+     *
+     * @param parseCacheSize
+     *         the maximum size of the cache in megabytes, use 0 to disable the cache
+     */
+    @DataBoundSetter
+    public void setParseCacheSize(final int parseCacheSize) {
+        this.parseCacheSize = parseCacheSize;
+    }
+
+    public int getParseCacheSize() {
+        return parseCacheSize;
+    }
+
     /**
      * Specify if parsing errors should be ignored and logged instead of throwing an exception.
      *
@@ -354,6 +429,73 @@ public class CoverageRecorder extends Recorder {
         return sourceCodeRetention;
     }
 
+    /**
+     * Defines how the source code files are stored in the build folder. Either the painted source code files are
+     * stored, or the raw source code files are stored and the painting is done on demand.
+     *
+     * @param sourceCodeStorage
+     *         the storage mode for source code files
+     */
+    @DataBoundSetter
+    public void setSourceCodeStorage(final SourceCodeStorage sourceCodeStorage) {
+        this.sourceCodeStorage = sourceCodeStorage;
+    }
+
+    public SourceCodeStorage getSourceCodeStorage() {
+        return ObjectUtils.defaultIfNull(sourceCodeStorage, SourceCodeStorage.PAINTED); // might be null in old configurations;
+    }
+
+    /**
+     * Sets the number of threads that paint the source code files on the agent. The painting uses a dedicated thread
+     * pool, so that it does not compete with other tasks that use the common pool of the agent. If the value is zero
+     * or negative, then the number of available processors of the agent will be used.
+     *
+     * @param painterThreads
+     *         the number of source code files that are painted in parallel
+     */
+    @DataBoundSetter
+    public void setPainterThreads(final int painterThreads) {
+        this.painterThreads = painterThreads;
+    }
+
+    public int getPainterThreads() {
+        return painterThreads;
+    }
+
+    /**
+     * Specify if the source code files should be painted in virtual threads. Virtual threads are only available if
+     * the agent runs with Java 21 or newer, otherwise a pool of platform threads is used.
+     *
+     * @param virtualPainterThreads
+     *         if the source code files should be painted in virtual threads
+     */
+    @DataBoundSetter
+    public void setVirtualPainterThreads(final boolean virtualPainterThreads) {
+        this.virtualPainterThreads = virtualPainterThreads;
+    }
+
+    public boolean isVirtualPainterThreads() {
+        return virtualPainterThreads;
+    }
+
+    /**
+     * Limits the number of lines of a source code file that are painted in any case. The remaining lines of larger
+     * files are only painted if they are part of a covered region, i.e., a covered or modified line and its
+     * surrounding lines. This limit is used only if the painted source code files are stored.
+     *
+     * @param maxPaintedLines
+     *         the number of lines that are painted in any case, if the value is zero or negative, then all lines are
+     *         painted
+     */
+    @DataBoundSetter
+    public void setMaxPaintedLines(final int maxPaintedLines) {
+        this.maxPaintedLines = maxPaintedLines;
+    }
+
+    public int getMaxPaintedLines() {
+        return maxPaintedLines;
+    }
+
     /**
      * Sets the SCM that should be used to find the reference build for. The reference recorder will select the SCM
      * based on a substring comparison, there is no need to specify the full name.
@@ -415,11 +557,11 @@ public class CoverageRecorder extends Recorder {
 
     private void perform(final Run<?, ?> run, final FilePath workspace, final TaskListener taskListener,
             final ResultHandler resultHandler, final FilteredLog log, final LogHandler logHandler) throws InterruptedException {
-        var results = recordCoverageResults(run, workspace, resultHandler, log, logHandler);
-        var aggregatedResult = aggregateResults(log, results);
+        var aggregatedResult = recordCoverageResults(run, workspace, resultHandler, log, logHandler);
 
         if (!aggregatedResult.isEmpty()) {
-            var reporter = new CoverageReporter();
+            var reporter = new CoverageReporter(getSourceCodeStorage(), getPainterThreads(),
+                    isVirtualPainterThreads(), getMaxPaintedLines());
 
             var sources = aggregatedResult.getSourceFolders();
             sources.addAll(getSourceDirectoriesPaths());
@@ -458,6 +600,93 @@ public class CoverageRecorder extends Recorder {
         }
     }
 
+    private ScanResult scan(final Run<?, ?> run, final FilePath workspace, final List<ToolPattern> patterns,
+            final FilteredLog log) throws IOException, InterruptedException {
+        if (getParseCacheSize() <= 0) {
+            return workspace.act(createScanner(patterns)).get();
+        }
+
+        if (isAggregateOnAgent()) {
+            log.logInfo("Skipping aggregation on the agent since the parse cache is enabled");
+        }
+        var cache = new ParseCache(run.getParent().getRootDir().toPath().resolve(ParseCache.CACHE_DIRECTORY),
+                getParseCacheSize() * 1024L * 1024L, getPluginVersion());
+        var scanner = createScanner(patterns);
+        scanner.useParseCache(cache.getVersion(), cache.getKeys());
+        var scanResult = workspace.act(scanner).get();
+        if (resolveCachedReports(scanResult, cache, log)) {
+            return scanResult;
+        }
+
+        log.logInfo("Some reports have been removed from the parse cache in the meantime, parsing all reports again");
+        scanner = createScanner(patterns);
+        scanner.useParseCache(cache.getVersion(), Set.of());
+        scanResult = workspace.act(scanner).get();
+        resolveCachedReports(scanResult, cache, log);
+        return scanResult;
+    }
+
+    private CoverageToolsScanner createScanner(final List<ToolPattern> patterns) {
+        var scanner = new CoverageToolsScanner(patterns, "UTF-8", !isSkipSymbolicLinks(), ignoreErrors(),
+                getParserThreads(), isAggregateOnAgent());
+        scanner.useGranularity(getGranularity());
+        return scanner;
+    }
+
+    private boolean resolveCachedReports(final ScanResult scanResult, final ParseCache cache, final FilteredLog log) {
+        int hits = 0;
+        int misses = 0;
+        for (ToolResult toolResult : scanResult.getToolResults()) {
+            for (Report report : toolResult.getReports()) {
+                if (report.getKey().isEmpty()) {
+                    continue;
+                }
+                var key = report.getKey().get();
+                if (!cache.isValidKey(key)) {
+                    log.logError("Skipping invalid parse cache key '%s'", key);
+                    if (report.isCached()) {
+                        return false;
+                    }
+                }
+                else if (report.isCached()) {
+                    var cachedReport = cache.load(key);
+                    if (cachedReport.isEmpty()) {
+                        return false;
+                    }
+                    report.setNode(cachedReport.get().getNode());
+                    toolResult.getLog().merge(cachedReport.get().getLog());
+                    hits++;
+                }
+                else {
+                    report.getNode().ifPresent(node -> store(cache, key, node, report.getLog(), log));
+                    misses++;
+                }
+            }
+        }
+        log.logInfo("Parse cache: %d hits, %d misses", hits, misses);
+
+        int removed = cache.evict();
+        if (removed > 0) {
+            log.logInfo("-> removed %d least recently used reports from the parse cache", removed);
+        }
+        return true;
+    }
+
+    private void store(final ParseCache cache, final String key, final ModuleNode node, final FilteredLog parserLog,
+            final FilteredLog log) {
+        try {
+            cache.store(key, node, parserLog);
+        }
+        catch (IOException exception) {
+            log.logException(exception, "Can't store report in parse cache");
+        }
+    }
+
+    private String getPluginVersion() {
+        var plugin = Jenkins.get().getPluginManager().whichPlugin(CoverageRecorder.class);
+        return plugin == null ? "unknown" : plugin.getVersion();
+    }
+
     private String getIcon() {
         var icons = tools.stream()
                 .map(CoverageTool::getParser)
@@ -477,10 +706,11 @@ public class CoverageRecorder extends Recorder {
         logHandler.log(log);
     }
 
-    private Map<Parser, List<ModuleNode>> recordCoverageResults(final Run<?, ?> run, final FilePath workspace,
+    private Node recordCoverageResults(final Run<?, ?> run, final FilePath workspace,
             final ResultHandler resultHandler, final FilteredLog log, final LogHandler logHandler) throws InterruptedException {
         Map<Parser, List<ModuleNode>> results = new EnumMap<>(Parser.class);
 
+        List<ToolPattern> patterns = new ArrayList<>();
         for (CoverageTool tool : tools) {
             var parser = tool.getParser();
             log.logInfo("Creating parser for %s", tool.getDisplayName());
@@ -493,14 +723,20 @@ public class CoverageRecorder extends Recorder {
             if (!expandedPattern.equals(tool.getActualPattern())) {
                 log.logInfo("Expanding pattern '%s' to '%s'", tool.getActualPattern(), expandedPattern);
             }
+            var filter = new NodeFilter(tool.getIncludes(), tool.getExcludes());
+            if (!filter.isEmpty()) {
+                log.logInfo("Filtering the parsed reports with '%s'", filter);
+            }
+            patterns.add(new ToolPattern(parser, expandedPattern, filter));
+        }
 
-            try {
-                FileVisitorResult<ModuleNode> result = workspace.act(
-                        new CoverageReportScanner(parser, expandedPattern, "UTF-8", !isSkipSymbolicLinks(),
-                                ignoreErrors()));
+        try {
+            var scanResult = scan(run, workspace, patterns, log);
+            var toolResults = scanResult.getToolResults();
+            for (int index = 0; index < tools.size(); index++) {
+                var result = toolResults.get(index);
                 log.merge(result.getLog());
 
-                var coverageResults = result.getResults();
                 if (result.hasErrors()) {
                     if (isFailOnError()) {
                         var errorMessage = "Failing build due to some errors during recording of the coverage";
@@ -511,86 +747,28 @@ public class CoverageRecorder extends Recorder {
                         log.logInfo("Ignore errors and continue processing");
                     }
                 }
-                results.put(tool.getParser(), coverageResults);
-            }
-            catch (IOException exception) {
-                log.logException(exception, "Exception while parsing with tool " + tool);
-            }
-
-            logHandler.log(log);
-        }
-
-        return results;
-    }
-
-    private Node aggregateResults(final FilteredLog log, final Map<Parser, List<ModuleNode>> results) {
-        if (isEmpty(results)) {
-            log.logError("No coverage results were found! Configuration error?");
+                results.computeIfAbsent(tools.get(index).getParser(), parser -> new ArrayList<>())
+                        .addAll(result.getResults());
 
-            return new ModuleNode("Empty");
-        }
-        else {
-            var testCases = results.entrySet()
-                    .stream()
-                    .filter(entry -> entry.getKey().getParserType() == ParserType.TEST)
-                    .map(Entry::getValue)
-                    .flatMap(Collection::stream)
-                    .map(Node::getAllClassNodes)
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toList());
-            var coverageNodes = results.entrySet()
-                    .stream()
-                    .filter(entry -> entry.getKey().getParserType() == ParserType.COVERAGE)
-                    .map(Entry::getValue)
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toList());
-            var metricsNodes = results.entrySet()
-                    .stream()
-                    .filter(entry -> entry.getKey().getParserType() == ParserType.METRICS)
-                    .map(Entry::getValue)
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toList());
-
-            if (coverageNodes.isEmpty() && !testCases.isEmpty()) {
-                log.logError("No coverage results were found, just tests! Configuration error?");
-
-                var tests = new ModuleNode("Tests");
-                tests.addAllChildren(testCases);
-                return tests;
+                logHandler.log(log);
             }
 
-            var coverageTree = Node.merge(coverageNodes);
-
-            if (!metricsNodes.isEmpty()) {
-                var metrics = new ContainerNode("Metrics");
-                metrics.addAllChildren(metricsNodes);
-                coverageTree.addChild(metrics);
-            }
+            var aggregatedTree = scanResult.getAggregatedTree();
+            if (aggregatedTree.isPresent()) {
+                log.logInfo("Using the coverage tree that has been aggregated on the agent");
+                log.merge(scanResult.getAggregationLog());
 
-            if (!testCases.isEmpty()) {
-                var unmappedNodes = coverageTree.mergeTests(testCases);
-                unmappedNodes.forEach(node -> mapTests(node, coverageTree));
+                return aggregatedTree.get(); // the granularity has been reduced on the agent as well
             }
-
-            return coverageTree;
         }
-    }
-
-    private void mapTests(final ClassNode classNode, final Node coverageTree) {
-        var normalizedPackageName = PackageNode.normalizePackageName(classNode.getPackageName());
-
-        coverageTree.findPackage(normalizedPackageName)
-                .orElseGet(() -> createPackage(coverageTree, normalizedPackageName)).addChild(classNode);
-    }
-
-    private PackageNode createPackage(final Node coverageTree, final String normalizedPackageName) {
-        var packageNode = new PackageNode(normalizedPackageName);
-        coverageTree.addChild(packageNode);
-        return packageNode;
-    }
+        catch (IOException exception) {
+            log.logException(exception, "Exception while parsing with tools " + tools);
+            logHandler.log(log);
+        }
 
-    private boolean isEmpty(final Map<Parser, List<ModuleNode>> results) {
-        return results.values().stream().mapToInt(Collection::size).sum() == 0;
+        var coverageTree = new CoverageTreeAggregator().aggregate(results, log);
+        getGranularity().reduce(coverageTree, log);
+        return coverageTree;
     }
 
     private ProcessingMode ignoreErrors() {
@@ -647,6 +825,20 @@ public class CoverageRecorder extends Recorder {
             return new ListBoxModel();
         }
 
+        /**
+         * Returns a model with all {@link SourceCodeStorage} modes.
+         *
+         * @return a model with all {@link SourceCodeStorage} modes.
+         */
+        @POST
+        @SuppressWarnings("unused") // used by Stapler view data binding
+        public ListBoxModel doFillSourceCodeStorageItems() {
+            if (JENKINS.hasPermission(Jenkins.READ)) {
+                return SourceCodeStorage.fillItems();
+            }
+            return new ListBoxModel();
+        }
+
         /**
          * Returns a model with all {@link ChecksAnnotationScope} scopes.
          *
@@ -661,6 +853,20 @@ public class CoverageRecorder extends Recorder {
             return new ListBoxModel();
         }
 
+        /**
+         * Returns a model with all {@link Granularity} levels.
+         *
+         * @return a model with all {@link Granularity} levels.
+         */
+        @POST
+        @SuppressWarnings("unused") // used by Stapler view data binding
+        public ListBoxModel doFillGranularityItems() {
+            if (JENKINS.hasPermission(Jenkins.READ)) {
+                return Granularity.fillItems();
+            }
+            return new ListBoxModel();
+        }
+
         /**
          * Returns a model with all available charsets.
          *
@@ -736,4 +942,79 @@ public class CoverageRecorder extends Recorder {
             return items;
         }
     }
+
+    /**
+     * Defines the granularity of the stored coverage tree.
+     */
+    public enum Granularity {
+        /** The tree contains files but no classes and methods. */
+        FILE,
+        /** The tree contains files and classes but no methods. */
+        CLASS,
+        /** The tree contains all nodes (files, classes, and methods). */
+        METHOD;
+
+        static ListBoxModel fillItems() {
+            var items = new ListBoxModel();
+            items.add(Messages.Granularity_Method(), METHOD.name());
+            items.add(Messages.Granularity_Class(), CLASS.name());
+            items.add(Messages.Granularity_File(), FILE.name());
+            return items;
+        }
+
+        /**
+         * Removes all nodes below the level of this granularity from the specified tree and logs the number of
+         * removed nodes.
+         *
+         * @param tree
+         *         the tree to reduce
+         * @param log
+         *         the logger
+         */
+        void reduce(final Node tree, final FilteredLog log) {
+            if (this != METHOD) {
+                log.logInfo("Reducing the granularity of the coverage tree to %s level", this);
+                log.logInfo("-> removed %d nodes", reduce(tree));
+            }
+        }
+
+        /**
+         * Removes all nodes below the level of this granularity from the specified tree. The aggregated values of the
+         * removed nodes are stored in their remaining parent.
+         *
+         * @param tree
+         *         the tree to reduce
+         *
+         * @return the number of removed nodes
+         */
+        int reduce(final Node tree) {
+            if (this == FILE) {
+                return tree.getAllFileNodes().stream().mapToInt(Granularity::collapse).sum();
+            }
+            if (this == CLASS) {
+                return tree.getAllClassNodes().stream().mapToInt(Granularity::collapse).sum();
+            }
+            return 0;
+        }
+
+        private static int collapse(final Node node) {
+            if (node.getChildren().isEmpty()) {
+                return 0;
+            }
+
+            var ownValues = node.copy(); // contains the values of the node but no children
+            var aggregatedValues = node.aggregateValues();
+            var children = List.copyOf(node.getChildren());
+            int removed = children.stream().mapToInt(Granularity::count).sum();
+            children.forEach(node::removeChild);
+            aggregatedValues.stream()
+                    .filter(value -> ownValues.getValue(value.getMetric()).isEmpty())
+                    .forEach(node::addValue);
+            return removed;
+        }
+
+        private static int count(final Node node) {
+            return 1 + node.getChildren().stream().mapToInt(Granularity::count).sum();
+        }
+    }
 }
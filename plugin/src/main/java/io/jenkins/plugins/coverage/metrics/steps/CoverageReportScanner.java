@@ -1,6 +1,7 @@
 package io.jenkins.plugins.coverage.metrics.steps;
 
 import org.apache.commons.io.input.BOMInputStream;
+import org.apache.commons.lang3.StringUtils;
 
 import edu.hm.hafner.coverage.CoverageParser.ProcessingMode;
 import edu.hm.hafner.coverage.ModuleNode;
@@ -58,11 +59,60 @@ public class CoverageReportScanner extends AgentFileVisitor<ModuleNode> {
 
     @Override
     protected Optional<ModuleNode> processFile(final Path file, final Charset charset, final FilteredLog log) {
+        return parse(parser, processingMode, file, charset, log);
+    }
+
+    /**
+     * Parses the specified coverage report with a new instance of the specified parser.
+     *
+     * @param parser
+     *         the parser to use
+     * @param processingMode
+     *         determines whether to ignore errors
+     * @param file
+     *         the coverage report to parse
+     * @param charset
+     *         the encoding of the report
+     * @param log
+     *         the log to write to
+     *
+     * @return the parsed module node, or an empty optional if the file could not be parsed
+     */
+    static Optional<ModuleNode> parse(final Parser parser, final ProcessingMode processingMode,
+            final Path file, final Charset charset, final FilteredLog log) {
+        return parse(parser, processingMode, new NodeFilter(StringUtils.EMPTY, StringUtils.EMPTY), file, charset, log);
+    }
+
+    /**
+     * Parses the specified coverage report with a new instance of the specified parser. Afterward, all files and
+     * classes that are not accepted by the specified filter are removed from the parsed tree.
+     *
+     * @param parser
+     *         the parser to use
+     * @param processingMode
+     *         determines whether to ignore errors
+     * @param filter
+     *         the filter for the packages and files of the report
+     * @param file
+     *         the coverage report to parse
+     * @param charset
+     *         the encoding of the report
+     * @param log
+     *         the log to write to
+     *
+     * @return the parsed module node, or an empty optional if the file could not be parsed
+     */
+    static Optional<ModuleNode> parse(final Parser parser, final ProcessingMode processingMode,
+            final NodeFilter filter, final Path file, final Charset charset, final FilteredLog log) {
         var coverageParser = parser.createParser(processingMode);
         try (var inputStream = BOMInputStream.builder().setFile(file.toFile()).setCharset(charset).get();
                 var reader = new InputStreamReader(inputStream, charset)) {
             var node = coverageParser.parse(reader, file.toString(), log);
             log.logInfo("Successfully parsed file '%s'", PATH_UTIL.getAbsolutePath(file));
+            int removed = filter.apply(node);
+            if (removed > 0) {
+                log.logInfo("-> removed %d files or classes that do not match the filter '%s'", removed, filter);
+            }
             node.aggregateValues().forEach(v -> log.logInfo("%s", v));
             return Optional.of(node);
         }
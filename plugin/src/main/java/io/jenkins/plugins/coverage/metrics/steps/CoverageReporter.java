@@ -8,6 +8,7 @@ import edu.hm.hafner.coverage.Node;
 import edu.hm.hafner.coverage.Value;
 import edu.hm.hafner.util.FilteredLog;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -18,6 +19,7 @@ import hudson.model.TaskListener;
 
 import io.jenkins.plugins.coverage.metrics.model.CoverageStatistics;
 import io.jenkins.plugins.coverage.metrics.source.SourceCodePainter;
+import io.jenkins.plugins.coverage.metrics.source.SourceCodeStorage;
 import io.jenkins.plugins.forensics.delta.Delta;
 import io.jenkins.plugins.forensics.delta.FileChanges;
 import io.jenkins.plugins.forensics.reference.ReferenceFinder;
@@ -34,6 +36,48 @@ import io.jenkins.plugins.util.ResultHandler;
 public class CoverageReporter {
     private static final List<Value> EMPTY_VALUES = List.of();
 
+    private final SourceCodeStorage sourceCodeStorage;
+    private final int painterThreads;
+    private final boolean virtualPainterThreads;
+    private final int maxPaintedLines;
+
+    /**
+     * Creates a new reporter that stores the painted source code files.
+     */
+    public CoverageReporter() {
+        this(SourceCodeStorage.PAINTED);
+    }
+
+    /**
+     * Creates a new reporter.
+     *
+     * @param sourceCodeStorage
+     *         determines how the source code files are stored
+     */
+    public CoverageReporter(final SourceCodeStorage sourceCodeStorage) {
+        this(sourceCodeStorage, 0, false, 0);
+    }
+
+    /**
+     * Creates a new reporter.
+     *
+     * @param sourceCodeStorage
+     *         determines how the source code files are stored
+     * @param painterThreads
+     *         the number of threads that paint the source code files on the agent
+     * @param virtualPainterThreads
+     *         determines whether the source code files should be painted in virtual threads
+     * @param maxPaintedLines
+     *         the number of lines of a source code file that are painted in any case
+     */
+    public CoverageReporter(final SourceCodeStorage sourceCodeStorage, final int painterThreads,
+            final boolean virtualPainterThreads, final int maxPaintedLines) {
+        this.sourceCodeStorage = sourceCodeStorage;
+        this.painterThreads = painterThreads;
+        this.virtualPainterThreads = virtualPainterThreads;
+        this.maxPaintedLines = maxPaintedLines;
+    }
+
     @SuppressWarnings({"checkstyle:ParameterNumber", "checkstyle:JavaNCSS"})
     CoverageBuildAction publishAction(final String id, final String optionalName, final String icon,
             final Node rootNode,
@@ -71,7 +115,8 @@ public class CoverageReporter {
         var evaluator = new CoverageQualityGateEvaluator(qualityGates, statistics);
         var qualityGateStatus = evaluator.evaluate(notifier, log);
 
-        paintSourceFiles(build, workspace, sourceCodeEncoding, sourceCodeRetention, id, rootNode,
+        var sourceCodePainter = new SourceCodePainter(build, workspace, id, sourceCodeStorage);
+        paintSourceFiles(sourceCodePainter, sourceCodeEncoding, sourceCodeRetention, rootNode,
                 rootNode.getAllFileNodes(), log);
 
         return new CoverageBuildAction(build, id, optionalName, icon, rootNode, qualityGateStatus, log);
@@ -126,7 +171,10 @@ public class CoverageReporter {
         var qualityGateResult = evaluator.evaluate(notifier, log);
 
         var filesToStore = computePaintedFiles(rootNode, sourceCodeRetention, log, modifiedLinesCoverageRoot);
-        paintSourceFiles(build, workspace, sourceCodeEncoding, sourceCodeRetention, id, rootNode, filesToStore, log);
+        var sourceCodePainter = new SourceCodePainter(build, workspace, id, sourceCodeStorage);
+        delta.flatMap(value -> findChangedFiles(rootNode, codeDeltaCalculator, value, log))
+                .ifPresent(changes -> sourceCodePainter.reuseUnchangedFiles(referenceAction.getOwner(), changes));
+        paintSourceFiles(sourceCodePainter, sourceCodeEncoding, sourceCodeRetention, rootNode, filesToStore, log);
 
         return new CoverageBuildAction(build, id, optionalName, icon, rootNode, qualityGateResult, log,
                 referenceAction.getOwner().getExternalizableId(), overallDelta,
@@ -148,12 +196,29 @@ public class CoverageReporter {
         return filesToStore;
     }
 
-    @SuppressWarnings("checkstyle:ParameterNumber")
-    private void paintSourceFiles(final Run<?, ?> build, final FilePath workspace, final String sourceCodeEncoding,
-            final SourceCodeRetention sourceCodeRetention, final String id, final Node rootNode,
+    /**
+     * Returns the coverage report paths of all files that have been changed in the SCM. Other than the coverage
+     * relevant changes, this set also contains files where only lines without coverage information have been changed.
+     */
+    private Optional<Set<String>> findChangedFiles(final Node rootNode, final CodeDeltaCalculator codeDeltaCalculator,
+            final Delta delta, final FilteredLog log) {
+        try {
+            var changes = new HashSet<>(delta.getFileChangesMap().values());
+            return Optional.of(codeDeltaCalculator.mapScmChangesToReportPaths(changes, rootNode, log).keySet());
+        }
+        catch (IllegalStateException exception) {
+            log.logInfo("-> Painting all source files since the changed files could not be mapped: %s",
+                    exception.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void paintSourceFiles(final SourceCodePainter sourceCodePainter, final String sourceCodeEncoding,
+            final SourceCodeRetention sourceCodeRetention, final Node rootNode,
             final List<FileNode> filesToStore, final FilteredLog log) throws InterruptedException {
         log.logInfo("Executing source code painting...");
-        var sourceCodePainter = new SourceCodePainter(build, workspace, id);
+        sourceCodePainter.configureThreads(painterThreads, virtualPainterThreads);
+        sourceCodePainter.setMaxPaintedLines(maxPaintedLines);
         sourceCodePainter.processSourceCodePainting(rootNode, filesToStore,
                 sourceCodeEncoding, sourceCodeRetention, log);
         log.logInfo("Finished coverage processing - adding the action to the build...");
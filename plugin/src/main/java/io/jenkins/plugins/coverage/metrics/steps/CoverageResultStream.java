@@ -0,0 +1,384 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.apache.commons.lang3.StringUtils;
+
+import edu.hm.hafner.coverage.FileNode;
+import edu.hm.hafner.coverage.Metric;
+import edu.hm.hafner.coverage.Node;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reads and writes the coverage tree of a build. New results are stored in a versioned binary format, since reading
+ * the XML format of large trees requires a lot of time and memory. The binary file is stored next to the XML file of
+ * the result, with the suffix {@value #BINARY_SUFFIX}.
+ *
+ * <p>
+ * The tree is split into a small skeleton of the modules and packages and one shard for each module or package that
+ * contains files. The index at the start of the file maps the hash codes of the relative paths of the files to their
+ * shards, so a single file can be read without reading the whole tree:
+ * </p>
+ *
+ * <pre>
+ * header:   magic number "CVRT" (int), format version (int)
+ * index:    number of shards (int),
+ *           for each shard: position of its node in the skeleton in pre-order (int), length (int),
+ *                           number of children (int), positions of the children in the node (int...),
+ *                           number of files (int), hash codes of the relative paths of the files (int...)
+ *           length of the skeleton (int)
+ * skeleton: the modules and packages of the tree as {@link CompactPayload} stream
+ * shards:   for each shard: a copy of the node with the files as children as {@link CompactPayload} stream
+ * </pre>
+ *
+ * <p>
+ * Results of builds that have been recorded with older versions of the plugin are available as XML files or as binary
+ * files of version {@value #SINGLE_TREE_VERSION} that contain the whole tree in a single stream. These files are still
+ * read. If the binary file cannot be written, the result is written as XML file.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+class CoverageResultStream extends CoverageXmlStream {
+    static final String BINARY_SUFFIX = ".cov";
+    static final int MAGIC = 0x4356_5254; // "CVRT"
+    static final int VERSION = 2;
+    static final int SINGLE_TREE_VERSION = 1;
+
+    private static final String XML_SUFFIX = ".xml";
+    private static final Set<Metric> SKELETON_METRICS = EnumSet.of(Metric.CONTAINER, Metric.MODULE, Metric.PACKAGE);
+
+    @Override
+    public Node read(final Path file) {
+        var binary = getBinaryFile(file);
+        if (Files.isRegularFile(binary)) {
+            try {
+                return readBinary(binary);
+            }
+            catch (IOException exception) {
+                // ignore and try the XML file
+            }
+        }
+        return super.read(file);
+    }
+
+    @Override
+    public void write(final Path file, final Node entity) {
+        try {
+            writeBinary(getBinaryFile(file), entity);
+        }
+        catch (IOException exception) {
+            super.write(file, entity);
+        }
+    }
+
+    /**
+     * Returns the binary file of the specified XML file of a result.
+     *
+     * @param file
+     *         the XML file of the result
+     *
+     * @return the binary file
+     */
+    static Path getBinaryFile(final Path file) {
+        var name = file.getFileName().toString();
+        return file.resolveSibling(StringUtils.removeEnd(name, XML_SUFFIX) + BINARY_SUFFIX);
+    }
+
+    /**
+     * Reads the coverage tree from the specified binary file.
+     *
+     * @param file
+     *         the binary file
+     *
+     * @return the coverage tree
+     * @throws IOException
+     *         if the file could not be read or has an unsupported format
+     */
+    static Node readBinary(final Path file) throws IOException {
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (readVersion(input, file) == SINGLE_TREE_VERSION) {
+                return CompactPayload.read(input, Node.class);
+            }
+            var index = ShardIndex.read(input);
+            var skeleton = readSection(input, index.skeletonLength);
+            var shards = new ArrayList<List<Node>>();
+            for (int shard = 0; shard < index.size(); shard++) {
+                shards.add(readSection(input, index.lengths[shard]).getChildren());
+            }
+            return new TreeAssembler(index, shards).assemble(skeleton);
+        }
+    }
+
+    /**
+     * Reads the file with the specified hash code of its relative path from the specified binary file. Only the
+     * skeleton of the tree and the shard that contains the file are read, so the returned file is part of a tree that
+     * contains the modules and packages of the whole result but only the files of this shard.
+     *
+     * @param file
+     *         the binary file
+     * @param fileHash
+     *         the hash code of the relative path of the file
+     *
+     * @return the file, or an empty result if the coverage tree does not contain such a file
+     * @throws IOException
+     *         if the file could not be read or does not contain a sharded coverage tree
+     */
+    static Optional<FileNode> readFile(final Path file, final int fileHash) throws IOException {
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (readVersion(input, file) != VERSION) {
+                throw new IOException("Coverage result is not split into shards: " + file);
+            }
+            var index = ShardIndex.read(input);
+            int shard = index.find(fileHash);
+            if (shard < 0) {
+                return Optional.empty();
+            }
+            var skeleton = readSection(input, index.skeletonLength);
+            input.skipNBytes(index.getOffset(shard));
+            var shards = new ArrayList<List<Node>>(Collections.nCopies(index.size(), null));
+            shards.set(shard, readSection(input, index.lengths[shard]).getChildren());
+
+            return new TreeAssembler(index, shards).assemble(skeleton)
+                    .findByHashCode(Metric.FILE, fileHash)
+                    .filter(FileNode.class::isInstance)
+                    .map(FileNode.class::cast);
+        }
+    }
+
+    /**
+     * Writes the coverage tree to the specified binary file. The file is replaced atomically.
+     *
+     * @param file
+     *         the binary file
+     * @param node
+     *         the coverage tree
+     *
+     * @throws IOException
+     *         if the file could not be written
+     */
+    static void writeBinary(final Path file, final Node node) throws IOException {
+        var skeleton = node.copy();
+        var splitter = new TreeSplitter();
+        splitter.split(node, skeleton);
+
+        var payloads = new ArrayList<byte[]>();
+        for (Node shard : splitter.shards) {
+            payloads.add(toBytes(shard));
+        }
+        var skeletonPayload = toBytes(skeleton);
+
+        var temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(payloads.size());
+                for (int shard = 0; shard < payloads.size(); shard++) {
+                    output.writeInt(splitter.positions.get(shard));
+                    output.writeInt(payloads.get(shard).length);
+                    writeInts(output, splitter.childIndices.get(shard));
+                    writeInts(output, splitter.shards.get(shard).getAllFileNodes().stream()
+                            .mapToInt(fileNode -> fileNode.getRelativePath().hashCode())
+                            .toArray());
+                }
+                output.writeInt(skeletonPayload.length);
+                output.write(skeletonPayload);
+                for (byte[] payload : payloads) {
+                    output.write(payload);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static int readVersion(final DataInputStream input, final Path file) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a coverage result: " + file);
+        }
+        int version = input.readInt();
+        if (version != VERSION && version != SINGLE_TREE_VERSION) {
+            throw new IOException("Unsupported format version %d of coverage result: %s".formatted(version, file));
+        }
+        return version;
+    }
+
+    private static void writeInts(final DataOutputStream output, final int[] values) throws IOException {
+        output.writeInt(values.length);
+        for (int value : values) {
+            output.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(final DataInputStream input) throws IOException {
+        var values = new int[input.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = input.readInt();
+        }
+        return values;
+    }
+
+    private static byte[] toBytes(final Node node) throws IOException {
+        var output = new ByteArrayOutputStream();
+        CompactPayload.write(node, output);
+        return output.toByteArray();
+    }
+
+    private static Node readSection(final DataInputStream input, final int length) throws IOException {
+        var payload = new byte[length];
+        input.readFully(payload);
+        return CompactPayload.read(new ByteArrayInputStream(payload), Node.class);
+    }
+
+    /**
+     * Splits a coverage tree into the skeleton and the shards. The modules and packages of the tree are copied into
+     * the skeleton. All other children of a node (files, or classes of trees without files) are copied into the shard
+     * of the node.
+     */
+    private static final class TreeSplitter {
+        private final List<Node> shards = new ArrayList<>();
+        private final List<Integer> positions = new ArrayList<>();
+        private final List<int[]> childIndices = new ArrayList<>();
+        private int position;
+
+        void split(final Node node, final Node skeletonNode) {
+            var shard = node.copy();
+            var indices = new ArrayList<Integer>();
+            var children = node.getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                var child = children.get(i);
+                if (!SKELETON_METRICS.contains(child.getMetric())) {
+                    shard.addChild(child.copyTree());
+                    indices.add(i);
+                }
+            }
+            if (!indices.isEmpty()) { // the shards must be ordered by the positions of their nodes
+                shards.add(shard);
+                positions.add(position);
+                childIndices.add(indices.stream().mapToInt(Integer::intValue).toArray());
+            }
+            position++;
+
+            for (Node child : children) {
+                if (SKELETON_METRICS.contains(child.getMetric())) {
+                    var copy = child.copy();
+                    skeletonNode.addChild(copy);
+                    split(child, copy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Assembles a coverage tree from the skeleton and the loaded shards. The children of each shard are inserted at
+     * their original positions between the modules and packages of the skeleton.
+     */
+    private static final class TreeAssembler {
+        private final ShardIndex index;
+        private final List<List<Node>> shards;
+        private int position;
+
+        TreeAssembler(final ShardIndex index, final List<List<Node>> shards) {
+            this.index = index;
+            this.shards = shards;
+        }
+
+        Node assemble(final Node skeletonNode) {
+            int shard = Arrays.binarySearch(index.positions, position++);
+            var node = skeletonNode.copy();
+            var skeletonChildren = skeletonNode.getChildren().iterator();
+            if (shard >= 0 && shards.get(shard) != null) {
+                var shardChildren = shards.get(shard).iterator();
+                var indices = index.childIndices[shard];
+                int count = skeletonNode.getChildren().size() + indices.length;
+                for (int i = 0, next = 0; i < count; i++) {
+                    if (next < indices.length && indices[next] == i) {
+                        node.addChild(shardChildren.next());
+                        next++;
+                    }
+                    else {
+                        node.addChild(assemble(skeletonChildren.next()));
+                    }
+                }
+            }
+            else {
+                skeletonChildren.forEachRemaining(child -> node.addChild(assemble(child)));
+            }
+            return node;
+        }
+    }
+
+    /**
+     * The index of the shards of a coverage tree.
+     */
+    private static final class ShardIndex {
+        private final int[] positions;
+        private final int[] lengths;
+        private final int[][] childIndices;
+        private final int[][] fileHashes;
+        private final int skeletonLength;
+
+        static ShardIndex read(final DataInputStream input) throws IOException {
+            int size = input.readInt();
+            var positions = new int[size];
+            var lengths = new int[size];
+            var childIndices = new int[size][];
+            var fileHashes = new int[size][];
+            for (int shard = 0; shard < size; shard++) {
+                positions[shard] = input.readInt();
+                lengths[shard] = input.readInt();
+                childIndices[shard] = readInts(input);
+                fileHashes[shard] = readInts(input);
+            }
+            return new ShardIndex(positions, lengths, childIndices, fileHashes, input.readInt());
+        }
+
+        private ShardIndex(final int[] positions, final int[] lengths, final int[][] childIndices,
+                final int[][] fileHashes, final int skeletonLength) {
+            this.positions = positions;
+            this.lengths = lengths;
+            this.childIndices = childIndices;
+            this.fileHashes = fileHashes;
+            this.skeletonLength = skeletonLength;
+        }
+
+        int size() {
+            return positions.length;
+        }
+
+        int find(final int fileHash) {
+            for (int shard = 0; shard < fileHashes.length; shard++) {
+                if (Arrays.stream(fileHashes[shard]).anyMatch(hash -> hash == fileHash)) {
+                    return shard;
+                }
+            }
+            return -1;
+        }
+
+        long getOffset(final int shard) {
+            long offset = 0;
+            for (int i = 0; i < shard; i++) {
+                offset += lengths[i];
+            }
+            return offset;
+        }
+    }
+}
@@ -36,6 +36,7 @@ import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
 
+import io.jenkins.plugins.coverage.metrics.source.SourceCodeStorage;
 import io.jenkins.plugins.prism.SourceCodeDirectory;
 import io.jenkins.plugins.prism.SourceCodeRetention;
 import io.jenkins.plugins.util.AbstractExecution;
@@ -64,14 +65,22 @@ public class CoverageStep extends Step implements Serializable {
     private boolean skipPublishingChecks = false;
     private String checksName =  StringUtils.EMPTY;
     private ChecksAnnotationScope checksAnnotationScope = ChecksAnnotationScope.MODIFIED_LINES;
+    private Granularity granularity = Granularity.METHOD;
     private boolean ignoreParsingErrors = false;
     private boolean failOnError = false;
     private boolean enabledForFailure = false;
     private boolean skipSymbolicLinks = false;
+    private int parserThreads = 0;
+    private boolean aggregateOnAgent = false;
+    private int parseCacheSize = 0;
     private String scm = StringUtils.EMPTY;
     private String sourceCodeEncoding = StringUtils.EMPTY;
     private Set<SourceCodeDirectory> sourceDirectories = new HashSet<>();
     private SourceCodeRetention sourceCodeRetention = SourceCodeRetention.LAST_BUILD;
+    private SourceCodeStorage sourceCodeStorage = SourceCodeStorage.PAINTED;
+    private int painterThreads = 0;
+    private boolean virtualPainterThreads = false;
+    private int maxPaintedLines = 0;
 
     /**
      * Creates a new instance of {@link  CoverageStep}.
@@ -202,6 +211,23 @@ public class CoverageStep extends Step implements Serializable {
         return checksAnnotationScope;
     }
 
+    /**
+     * Sets the granularity of the stored coverage tree. All nodes below the selected level (e.g., methods and classes
+     * for {@link Granularity#FILE}) are removed from the tree. Their values are retained in the aggregated values of
+     * the remaining nodes.
+     *
+     * @param granularity
+     *         the granularity of the coverage tree
+     */
+    @DataBoundSetter
+    public void setGranularity(final Granularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
     /**
      * Specify if traversal of symbolic links will be skipped during directory scanning for coverage reports.
      *
@@ -217,6 +243,56 @@ public class CoverageStep extends Step implements Serializable {
         return skipSymbolicLinks;
     }
 
+    /**
+     * Sets the number of worker threads that parse the coverage reports on the agent. If the value is zero or
+     * negative, then the number of available processors of the agent will be used.
+     *
+     * @param parserThreads
+     *         the number of threads that parse the reports in parallel
+     */
+    @DataBoundSetter
+    public void setParserThreads(final int parserThreads) {
+        this.parserThreads = parserThreads;
+    }
+
+    public int getParserThreads() {
+        return parserThreads;
+    }
+
+    /**
+     * Specify if the coverage trees of all tools should be aggregated on the agent. Then the controller receives a
+     * single merged tree rather than the trees of all individual reports.
+     *
+     * @param aggregateOnAgent
+     *         if the results should be aggregated on the agent
+     */
+    @DataBoundSetter
+    public void setAggregateOnAgent(final boolean aggregateOnAgent) {
+        this.aggregateOnAgent = aggregateOnAgent;
+    }
+
+    public boolean isAggregateOnAgent() {
+        return aggregateOnAgent;
+    }
+
+    /**
+     * Sets the maximum size of the parse cache in megabytes. If the cache is enabled (i.e., the size is positive), then
+     * parsed reports are stored on the controller and unchanged reports are not parsed again in subsequent builds.
+     * The cache is stored in the folder of the job and is shared by all builds of the job, the least recently used
+     * reports will be removed if the cache exceeds the size.
+     *
+     * @param parseCacheSize
+     *         the maximum size of the cache in megabytes, use 0 to disable the cache
+     */
+    @DataBoundSetter
+    public void setParseCacheSize(final int parseCacheSize) {
+        this.parseCacheSize = parseCacheSize;
+    }
+
+    public int getParseCacheSize() {
+        return parseCacheSize;
+    }
+
     /**
      * Specify if parsing errors should be ignored and logged instead of throwing an exception.
      *
@@ -312,6 +388,73 @@ public class CoverageStep extends Step implements Serializable {
         return sourceCodeRetention;
     }
 
+    /**
+     * Defines how the source code files are stored in the build folder. Either the painted source code files are
+     * stored, or the raw source code files are stored and the painting is done on demand.
+     *
+     * @param sourceCodeStorage
+     *         the storage mode for source code files
+     */
+    @DataBoundSetter
+    public void setSourceCodeStorage(final SourceCodeStorage sourceCodeStorage) {
+        this.sourceCodeStorage = sourceCodeStorage;
+    }
+
+    public SourceCodeStorage getSourceCodeStorage() {
+        return sourceCodeStorage;
+    }
+
+    /**
+     * Sets the number of threads that paint the source code files on the agent. The painting uses a dedicated thread
+     * pool, so that it does not compete with other tasks that use the common pool of the agent. If the value is zero
+     * or negative, then the number of available processors of the agent will be used.
+     *
+     * @param painterThreads
+     *         the number of source code files that are painted in parallel
+     */
+    @DataBoundSetter
+    public void setPainterThreads(final int painterThreads) {
+        this.painterThreads = painterThreads;
+    }
+
+    public int getPainterThreads() {
+        return painterThreads;
+    }
+
+    /**
+     * Specify if the source code files should be painted in virtual threads. Virtual threads are only available if
+     * the agent runs with Java 21 or newer, otherwise a pool of platform threads is used.
+     *
+     * @param virtualPainterThreads
+     *         if the source code files should be painted in virtual threads
+     */
+    @DataBoundSetter
+    public void setVirtualPainterThreads(final boolean virtualPainterThreads) {
+        this.virtualPainterThreads = virtualPainterThreads;
+    }
+
+    public boolean isVirtualPainterThreads() {
+        return virtualPainterThreads;
+    }
+
+    /**
+     * Limits the number of lines of a source code file that are painted in any case. The remaining lines of larger
+     * files are only painted if they are part of a covered region, i.e., a covered or modified line and its
+     * surrounding lines. This limit is used only if the painted source code files are stored.
+     *
+     * @param maxPaintedLines
+     *         the number of lines that are painted in any case, if the value is zero or negative, then all lines are
+     *         painted
+     */
+    @DataBoundSetter
+    public void setMaxPaintedLines(final int maxPaintedLines) {
+        this.maxPaintedLines = maxPaintedLines;
+    }
+
+    public int getMaxPaintedLines() {
+        return maxPaintedLines;
+    }
+
     /**
      * Sets the SCM that should be used to find the reference build for. The reference recorder will select the SCM
      * based on a substring comparison, there is no need to specify the full name.
@@ -355,13 +498,21 @@ public class CoverageStep extends Step implements Serializable {
             recorder.setSkipPublishingChecks(step.isSkipPublishingChecks());
             recorder.setChecksName(step.getChecksName());
             recorder.setChecksAnnotationScope(step.getChecksAnnotationScope());
+            recorder.setGranularity(step.getGranularity());
             recorder.setIgnoreParsingErrors(step.isIgnoreParsingErrors());
             recorder.setFailOnError(step.isFailOnError());
             recorder.setEnabledForFailure(step.isEnabledForFailure());
+            recorder.setParserThreads(step.getParserThreads());
+            recorder.setAggregateOnAgent(step.isAggregateOnAgent());
+            recorder.setParseCacheSize(step.getParseCacheSize());
             recorder.setScm(step.getScm());
             recorder.setSourceCodeEncoding(step.getSourceCodeEncoding());
             recorder.setSourceDirectories(List.copyOf(step.getSourceDirectories()));
             recorder.setSourceCodeRetention(step.getSourceCodeRetention());
+            recorder.setSourceCodeStorage(step.getSourceCodeStorage());
+            recorder.setPainterThreads(step.getPainterThreads());
+            recorder.setVirtualPainterThreads(step.isVirtualPainterThreads());
+            recorder.setMaxPaintedLines(step.getMaxPaintedLines());
 
             recorder.perform(getRun(), getWorkspace(), getTaskListener(), createResultHandler());
 
@@ -416,6 +567,20 @@ public class CoverageStep extends Step implements Serializable {
             return new ListBoxModel();
         }
 
+        /**
+         * Returns a model with all {@link SourceCodeStorage} modes.
+         *
+         * @return a model with all {@link SourceCodeStorage} modes.
+         */
+        @POST
+        @SuppressWarnings("unused") // used by Stapler view data binding
+        public ListBoxModel doFillSourceCodeStorageItems() {
+            if (JENKINS.hasPermission(Jenkins.READ)) {
+                return SourceCodeStorage.fillItems();
+            }
+            return new ListBoxModel();
+        }
+
         /**
          * Returns a model with all {@link ChecksAnnotationScope} scopes.
          *
@@ -430,6 +595,20 @@ public class CoverageStep extends Step implements Serializable {
             return new ListBoxModel();
         }
 
+        /**
+         * Returns a model with all {@link Granularity} levels.
+         *
+         * @return a model with all {@link Granularity} levels.
+         */
+        @POST
+        @SuppressWarnings("unused") // used by Stapler view data binding
+        public ListBoxModel doFillGranularityItems() {
+            if (JENKINS.hasPermission(Jenkins.READ)) {
+                return Granularity.fillItems();
+            }
+            return new ListBoxModel();
+        }
+
 
         /**
          * Returns a model with all available charsets.
@@ -50,6 +50,8 @@ public class CoverageTool extends AbstractDescribableImpl<CoverageTool> implemen
 
     private String pattern = StringUtils.EMPTY;
     private Parser parser = Parser.JACOCO;
+    private String includes = StringUtils.EMPTY;
+    private String excludes = StringUtils.EMPTY;
 
     /**
      * Creates a new {@link io.jenkins.plugins.coverage.metrics.steps.CoverageTool}.
@@ -115,6 +117,42 @@ public class CoverageTool extends AbstractDescribableImpl<CoverageTool> implemen
         return pattern;
     }
 
+    /**
+     * Sets the patterns of the packages or files that should be included in the coverage tree. The patterns are
+     * given as comma separated list of globs: globs that contain a slash are matched against file paths, all other
+     * globs are matched against package names.
+     *
+     * @param includes
+     *         the patterns of the packages or files to include
+     */
+    @DataBoundSetter
+    public void setIncludes(final String includes) {
+        this.includes = includes;
+    }
+
+    @CheckForNull
+    public String getIncludes() {
+        return includes;
+    }
+
+    /**
+     * Sets the patterns of the packages or files that should be excluded from the coverage tree. The patterns are
+     * given as comma separated list of globs: globs that contain a slash are matched against file paths, all other
+     * globs are matched against package names.
+     *
+     * @param excludes
+     *         the patterns of the packages or files to exclude
+     */
+    @DataBoundSetter
+    public void setExcludes(final String excludes) {
+        this.excludes = excludes;
+    }
+
+    @CheckForNull
+    public String getExcludes() {
+        return excludes;
+    }
+
     /**
      * Returns the actual pattern to work with. If no user-defined pattern is given, then the default pattern is
      * returned.
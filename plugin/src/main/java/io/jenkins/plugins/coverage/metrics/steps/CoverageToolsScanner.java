@@ -0,0 +1,516 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+import edu.hm.hafner.coverage.CoverageParser.ProcessingMode;
+import edu.hm.hafner.coverage.ModuleNode;
+import edu.hm.hafner.coverage.Node;
+import edu.hm.hafner.util.FilteredLog;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.MasterToSlaveFileCallable;
+
+import io.jenkins.plugins.coverage.metrics.steps.CoverageRecorder.Granularity;
+import io.jenkins.plugins.coverage.metrics.steps.CoverageTool.Parser;
+import io.jenkins.plugins.util.ValidationUtilities;
+
+/**
+ * Scans the workspace for the coverage reports of several coverage tools in a single round trip. The workspace is
+ * traversed only once using the union of all file patterns, each matching file is then dispatched to the parsers of
+ * all tools whose pattern matches the file. The reports are parsed on a bounded pool of worker threads on the agent,
+ * each task uses a fresh parser instance and a separate log. The results and logs are returned in the order of the
+ * tools, the results of each tool in the order of the file names. So the merged tree and the console log do not
+ * depend on the scheduling of the worker threads. If the results are aggregated on the agent, then the granularity
+ * of the aggregated tree is reduced on the agent as well, so that the removed nodes are not transferred at all. The
+ * results are transferred to the controller as {@link CompactPayload}.
+ *
+ * @author Ullrich Hafner
+ */
+class CoverageToolsScanner extends MasterToSlaveFileCallable<CompactPayload<CoverageToolsScanner.ScanResult>> {
+    @Serial
+    private static final long serialVersionUID = -2851749183683574196L;
+    private static final String PARSER_LOG_TITLE = "Errors while parsing coverage report:";
+
+    private final List<ToolPattern> tools;
+    private final String encoding;
+    private final boolean followSymbolicLinks;
+    private final ProcessingMode processingMode;
+    private final int parserThreads;
+    private final boolean aggregateOnAgent;
+    private Granularity granularity = Granularity.METHOD;
+    @CheckForNull
+    private HashSet<String> cachedKeys;
+    private String cacheVersion = StringUtils.EMPTY;
+
+    /**
+     * Creates a new instance of {@link CoverageToolsScanner}.
+     *
+     * @param tools
+     *         the parsers and the associated ant file-set patterns of the files to parse
+     * @param encoding
+     *         encoding of the files to parse
+     * @param followSymbolicLinks
+     *         if the scanner should traverse symbolic links
+     * @param processingMode
+     *         determines whether to ignore errors
+     * @param parserThreads
+     *         the maximum number of threads that parse the reports in parallel, use 0 to select the number of
+     *         available processors
+     * @param aggregateOnAgent
+     *         determines whether the results of all tools should be aggregated into a single tree on the agent
+     */
+    CoverageToolsScanner(final List<ToolPattern> tools, final String encoding,
+            final boolean followSymbolicLinks, final ProcessingMode processingMode, final int parserThreads,
+            final boolean aggregateOnAgent) {
+        super();
+
+        this.tools = new ArrayList<>(tools);
+        this.encoding = encoding;
+        this.followSymbolicLinks = followSymbolicLinks;
+        this.processingMode = processingMode;
+        this.parserThreads = parserThreads;
+        this.aggregateOnAgent = aggregateOnAgent;
+    }
+
+    /**
+     * Enables the parse cache. The scanner computes the cache key of every report. Reports whose key is part of the
+     * specified set of already cached keys are not parsed again, the results contain only the key of such reports.
+     *
+     * @param version
+     *         the version of the cache that is part of the keys
+     * @param keys
+     *         the keys of the reports that are already stored in the cache on the controller
+     */
+    void useParseCache(final String version, final Set<String> keys) {
+        cacheVersion = version;
+        cachedKeys = new HashSet<>(keys);
+    }
+
+    /**
+     * Sets the granularity of the aggregated tree. The granularity is reduced only if the results are aggregated on
+     * the agent: the individual reports of the tools are returned with all nodes, since the classes of the reports are
+     * required to merge the reports and to map the test cases.
+     *
+     * @param granularity
+     *         the granularity of the aggregated tree
+     */
+    void useGranularity(final Granularity granularity) {
+        this.granularity = granularity;
+    }
+
+    @Override
+    public CompactPayload<ScanResult> invoke(final File workspace, final VirtualChannel channel)
+            throws IOException, InterruptedException {
+        return CompactPayload.of(scan(workspace));
+    }
+
+    ScanResult scan(final File workspace) throws InterruptedException {
+        var logs = new ArrayList<FilteredLog>();
+        for (ToolPattern tool : tools) {
+            var log = new FilteredLog("Errors while scanning for coverage reports:");
+            log.logInfo("Searching for all files in '%s' that match the pattern '%s'",
+                    workspace.getAbsolutePath(), tool.getPattern());
+            if (!followSymbolicLinks) {
+                log.logInfo("Traversing of symbolic links is not enabled");
+            }
+            logs.add(log);
+        }
+
+        var fileNames = findFiles(workspace);
+        var tasks = new ArrayList<ParseTask>();
+        for (int index = 0; index < tools.size(); index++) {
+            var tool = tools.get(index);
+            var log = logs.get(index);
+            var matchingFiles = fileNames.stream()
+                    .filter(tool::matches)
+                    .collect(Collectors.toList());
+            if (matchingFiles.isEmpty()) {
+                log.logError("No files found for pattern '%s'. Configuration error?", tool.getPattern());
+            }
+            else {
+                log.logInfo("-> found %s", plural(matchingFiles.size()));
+                for (String fileName : matchingFiles) {
+                    var file = workspace.toPath().resolve(fileName);
+                    if (isReadable(file, fileName, log)) {
+                        tasks.add(new ParseTask(index, file));
+                    }
+                }
+            }
+        }
+
+        var results = new ArrayList<ToolResult>();
+        for (FilteredLog log : logs) {
+            results.add(new ToolResult(log));
+        }
+        parse(tasks, results);
+
+        if (aggregateOnAgent && cachedKeys == null) {
+            return aggregate(results);
+        }
+        return new ScanResult(results);
+    }
+
+    private ScanResult aggregate(final List<ToolResult> results) {
+        Map<Parser, List<ModuleNode>> nodes = new EnumMap<>(Parser.class);
+        for (int index = 0; index < tools.size(); index++) {
+            var result = results.get(index);
+            nodes.computeIfAbsent(tools.get(index).getParser(), parser -> new ArrayList<>())
+                    .addAll(result.getResults());
+            result.clear(); // the nodes are part of the aggregated tree and must not be transferred twice
+        }
+
+        var log = new FilteredLog("Errors while aggregating coverage results:");
+        var tree = new CoverageTreeAggregator().aggregate(nodes, log);
+        granularity.reduce(tree, log);
+        return new ScanResult(results, tree, log);
+    }
+
+    private List<String> findFiles(final File workspace) {
+        var allPatterns = tools.stream()
+                .map(ToolPattern::getIncludes)
+                .flatMap(Arrays::stream)
+                .collect(Collectors.joining(","));
+        var fileSet = Util.createFileSet(workspace, allPatterns);
+        fileSet.setFollowSymlinks(followSymbolicLinks);
+
+        var fileNames = fileSet.getDirectoryScanner(new Project()).getIncludedFiles();
+        Arrays.sort(fileNames); // the order of the file system is not stable, sort to get a reproducible tree
+        return List.of(fileNames);
+    }
+
+    private boolean isReadable(final Path file, final String fileName, final FilteredLog log) {
+        if (!Files.isReadable(file)) {
+            log.logError("Skipping file '%s' because Jenkins has no permission to read the file", fileName);
+            return false;
+        }
+        if (isEmpty(file)) {
+            log.logError("Skipping file '%s' because it's empty", fileName);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isEmpty(final Path file) {
+        try {
+            return Files.size(file) <= 0;
+        }
+        catch (IOException exception) {
+            return true;
+        }
+    }
+
+    private void parse(final List<ParseTask> tasks, final List<ToolResult> results) throws InterruptedException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        var charset = new ValidationUtilities().getCharset(encoding);
+        ExecutorService executor = Executors.newFixedThreadPool(getThreadCount(tasks.size()),
+                new NamingThreadFactory(new DaemonThreadFactory(), "CoverageReportParser"));
+        try {
+            var futures = new ArrayList<Future<ParsedReport>>();
+            for (ParseTask task : tasks) {
+                var tool = tools.get(task.getTool());
+                futures.add(executor.submit(
+                        () -> task.parse(tool, processingMode, charset, cacheVersion, cachedKeys)));
+            }
+            for (int index = 0; index < tasks.size(); index++) {
+                var result = results.get(tasks.get(index).getTool());
+                try {
+                    result.add(futures.get(index).get());
+                }
+                catch (ExecutionException exception) {
+                    result.getLog().logException(exception, "Parsing of file '%s' failed due to an exception:",
+                            tasks.get(index).getFile());
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int getThreadCount(final int size) {
+        int maximum = parserThreads > 0 ? parserThreads : Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(maximum, size));
+    }
+
+    private static String plural(final int count) {
+        return count == 1 ? "1 file" : count + " files";
+    }
+
+    /**
+     * A parser and the associated ant file-set pattern of the reports that should be parsed with this parser. The
+     * parsed reports will be filtered with the associated filter.
+     */
+    static class ToolPattern implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 3373557447040316235L;
+
+        private final Parser parser;
+        private final String pattern;
+        private final NodeFilter filter;
+
+        ToolPattern(final Parser parser, final String pattern) {
+            this(parser, pattern, new NodeFilter(StringUtils.EMPTY, StringUtils.EMPTY));
+        }
+
+        ToolPattern(final Parser parser, final String pattern, final NodeFilter filter) {
+            this.parser = parser;
+            this.pattern = pattern;
+            this.filter = filter;
+        }
+
+        Parser getParser() {
+            return parser;
+        }
+
+        String getPattern() {
+            return pattern;
+        }
+
+        NodeFilter getFilter() {
+            return filter;
+        }
+
+        /**
+         * Returns the individual include patterns of the file-set pattern. Multiple patterns are separated by comma
+         * or space.
+         *
+         * @return the include patterns
+         */
+        String[] getIncludes() {
+            return StringUtils.split(pattern, ", \t\r\n");
+        }
+
+        boolean matches(final String fileName) {
+            for (String include : getIncludes()) {
+                var normalized = include.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+                if (SelectorUtils.matchPath(normalized, fileName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The results of a single tool: the parsed module nodes and the log messages.
+     */
+    static class ToolResult implements Serializable {
+        @Serial
+        private static final long serialVersionUID = -3786391873457021622L;
+
+        private final FilteredLog log;
+        private final ArrayList<Report> reports = new ArrayList<>();
+
+        ToolResult(final FilteredLog log) {
+            this.log = log;
+        }
+
+        void add(final ParsedReport parsedReport) {
+            log.merge(parsedReport.log);
+            if (parsedReport.node.isPresent() || parsedReport.isCached) {
+                // the log of the report is required only to store the report in the parse cache
+                var reportLog = parsedReport.key == null ? new FilteredLog(PARSER_LOG_TITLE) : parsedReport.log;
+                reports.add(new Report(parsedReport.key, parsedReport.node.orElse(null), reportLog));
+            }
+        }
+
+        FilteredLog getLog() {
+            return log;
+        }
+
+        /**
+         * Returns the parsed reports. Reports that are still stored in the parse cache only, are skipped.
+         *
+         * @return the parsed reports
+         */
+        List<ModuleNode> getResults() {
+            return reports.stream()
+                    .map(Report::getNode)
+                    .flatMap(Optional::stream)
+                    .collect(Collectors.toList());
+        }
+
+        List<Report> getReports() {
+            return reports;
+        }
+
+        boolean hasErrors() {
+            return !log.getErrorMessages().isEmpty();
+        }
+
+        void clear() {
+            reports.clear();
+        }
+    }
+
+    /**
+     * A report of a tool: either the parsed report, or the cache key of a report that has not been parsed since it is
+     * already stored in the parse cache on the controller. If the report has a cache key, then the log messages of the
+     * parser are part of the report as well, so that they can be stored in the parse cache. Otherwise, the log of the
+     * report is empty since the messages are already part of the log of the tool.
+     */
+    static class Report implements Serializable {
+        @Serial
+        private static final long serialVersionUID = -2310870712465470283L;
+
+        @CheckForNull
+        private final String key;
+        @CheckForNull
+        private ModuleNode node;
+        private final FilteredLog log;
+
+        Report(@CheckForNull final String key, @CheckForNull final ModuleNode node, final FilteredLog log) {
+            this.key = key;
+            this.node = node;
+            this.log = log;
+        }
+
+        Optional<String> getKey() {
+            return Optional.ofNullable(key);
+        }
+
+        Optional<ModuleNode> getNode() {
+            return Optional.ofNullable(node);
+        }
+
+        void setNode(final ModuleNode node) {
+            this.node = node;
+        }
+
+        FilteredLog getLog() {
+            return log;
+        }
+
+        boolean isCached() {
+            return node == null;
+        }
+    }
+
+    /**
+     * The results of all tools in the order of the tools that have been passed to the scanner. If the results have
+     * been aggregated on the agent, then the tool results contain only the log messages, the nodes are part of the
+     * aggregated tree.
+     */
+    static class ScanResult implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 8012936470226718052L;
+
+        private final ArrayList<ToolResult> toolResults;
+        @CheckForNull
+        private final Node aggregatedTree;
+        private final FilteredLog aggregationLog;
+
+        ScanResult(final List<ToolResult> toolResults) {
+            this(toolResults, null, new FilteredLog("Errors while aggregating coverage results:"));
+        }
+
+        ScanResult(final List<ToolResult> toolResults, @CheckForNull final Node aggregatedTree,
+                final FilteredLog aggregationLog) {
+            this.toolResults = new ArrayList<>(toolResults);
+            this.aggregatedTree = aggregatedTree;
+            this.aggregationLog = aggregationLog;
+        }
+
+        List<ToolResult> getToolResults() {
+            return toolResults;
+        }
+
+        Optional<Node> getAggregatedTree() {
+            return Optional.ofNullable(aggregatedTree);
+        }
+
+        FilteredLog getAggregationLog() {
+            return aggregationLog;
+        }
+    }
+
+    /**
+     * A report file that should be parsed by the parser of a given tool.
+     */
+    private static class ParseTask {
+        private final int tool;
+        private final Path file;
+
+        ParseTask(final int tool, final Path file) {
+            this.tool = tool;
+            this.file = file;
+        }
+
+        int getTool() {
+            return tool;
+        }
+
+        Path getFile() {
+            return file;
+        }
+
+        ParsedReport parse(final ToolPattern tool, final ProcessingMode processingMode, final Charset charset,
+                final String cacheVersion, @CheckForNull final Set<String> cachedKeys) {
+            var log = new FilteredLog(PARSER_LOG_TITLE);
+            String key = null;
+            if (cachedKeys != null) {
+                try {
+                    key = ParseCache.createKey(tool.getParser(), processingMode, cacheVersion, tool.getFilter(), file);
+                    if (cachedKeys.contains(key)) {
+                        return new ParsedReport(key, Optional.empty(), true, log);
+                    }
+                }
+                catch (IOException exception) {
+                    log.logException(exception, "Can't compute the cache key of file '%s'", file);
+                }
+            }
+            var node = CoverageReportScanner.parse(tool.getParser(), processingMode, tool.getFilter(), file, charset,
+                    log);
+            return new ParsedReport(key, node, false, log);
+        }
+    }
+
+    /**
+     * The result of parsing a single report file: the cache key, the node, and the log of the worker thread.
+     */
+    private static class ParsedReport {
+        @CheckForNull
+        private final String key;
+        private final Optional<ModuleNode> node;
+        private final boolean isCached;
+        private final FilteredLog log;
+
+        ParsedReport(@CheckForNull final String key, final Optional<ModuleNode> node, final boolean isCached,
+                final FilteredLog log) {
+            this.key = key;
+            this.node = node;
+            this.isCached = isCached;
+            this.log = log;
+        }
+    }
+}
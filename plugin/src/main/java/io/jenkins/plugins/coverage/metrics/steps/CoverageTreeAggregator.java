@@ -0,0 +1,106 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import edu.hm.hafner.coverage.ClassNode;
+import edu.hm.hafner.coverage.ContainerNode;
+import edu.hm.hafner.coverage.ModuleNode;
+import edu.hm.hafner.coverage.Node;
+import edu.hm.hafner.coverage.PackageNode;
+import edu.hm.hafner.util.FilteredLog;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.Collectors;
+
+import io.jenkins.plugins.coverage.metrics.steps.CoverageTool.Parser;
+import io.jenkins.plugins.coverage.metrics.steps.CoverageTool.ParserType;
+
+/**
+ * Aggregates the results of all coverage tools into a single coverage tree. Coverage trees are merged, test cases are
+ * mapped to the classes under test, and the results of metrics tools are added to a separate container node. The
+ * aggregation does not depend on Jenkins, so it can be run on the controller or on the agent.
+ *
+ * @author Ullrich Hafner
+ */
+class CoverageTreeAggregator {
+    /**
+     * Aggregates the specified results into a single coverage tree.
+     *
+     * @param results
+     *         the results of the coverage tools, grouped by the parser that created the results
+     * @param log
+     *         the logger
+     *
+     * @return the aggregated tree
+     */
+    Node aggregate(final Map<Parser, List<ModuleNode>> results, final FilteredLog log) {
+        if (isEmpty(results)) {
+            log.logError("No coverage results were found! Configuration error?");
+
+            return new ModuleNode("Empty");
+        }
+        else {
+            var testCases = results.entrySet()
+                    .stream()
+                    .filter(entry -> entry.getKey().getParserType() == ParserType.TEST)
+                    .map(Entry::getValue)
+                    .flatMap(Collection::stream)
+                    .map(Node::getAllClassNodes)
+                    .flatMap(Collection::stream)
+                    .collect(Collectors.toList());
+            var coverageNodes = results.entrySet()
+                    .stream()
+                    .filter(entry -> entry.getKey().getParserType() == ParserType.COVERAGE)
+                    .map(Entry::getValue)
+                    .flatMap(Collection::stream)
+                    .collect(Collectors.toList());
+            var metricsNodes = results.entrySet()
+                    .stream()
+                    .filter(entry -> entry.getKey().getParserType() == ParserType.METRICS)
+                    .map(Entry::getValue)
+                    .flatMap(Collection::stream)
+                    .collect(Collectors.toList());
+
+            if (coverageNodes.isEmpty() && !testCases.isEmpty()) {
+                log.logError("No coverage results were found, just tests! Configuration error?");
+
+                var tests = new ModuleNode("Tests");
+                tests.addAllChildren(testCases);
+                return tests;
+            }
+
+            var coverageTree = Node.merge(coverageNodes);
+
+            if (!metricsNodes.isEmpty()) {
+                var metrics = new ContainerNode("Metrics");
+                metrics.addAllChildren(metricsNodes);
+                coverageTree.addChild(metrics);
+            }
+
+            if (!testCases.isEmpty()) {
+                var unmappedNodes = coverageTree.mergeTests(testCases);
+                unmappedNodes.forEach(node -> mapTests(node, coverageTree));
+            }
+
+            return coverageTree;
+        }
+    }
+
+    private void mapTests(final ClassNode classNode, final Node coverageTree) {
+        var normalizedPackageName = PackageNode.normalizePackageName(classNode.getPackageName());
+
+        coverageTree.findPackage(normalizedPackageName)
+                .orElseGet(() -> createPackage(coverageTree, normalizedPackageName)).addChild(classNode);
+    }
+
+    private PackageNode createPackage(final Node coverageTree, final String normalizedPackageName) {
+        var packageNode = new PackageNode(normalizedPackageName);
+        coverageTree.addChild(packageNode);
+        return packageNode;
+    }
+
+    private boolean isEmpty(final Map<Parser, List<ModuleNode>> results) {
+        return results.values().stream().mapToInt(Collection::size).sum() == 0;
+    }
+}
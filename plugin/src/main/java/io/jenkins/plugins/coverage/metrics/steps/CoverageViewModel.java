@@ -27,7 +27,9 @@ import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -48,6 +50,8 @@ import io.jenkins.plugins.coverage.metrics.model.ElementFormatter;
 import io.jenkins.plugins.coverage.metrics.restapi.CoverageApi;
 import io.jenkins.plugins.coverage.metrics.restapi.ModifiedLinesCoverageApiModel;
 import io.jenkins.plugins.coverage.metrics.source.SourceCodeFacade;
+import io.jenkins.plugins.coverage.metrics.source.SourceCodeLines;
+import io.jenkins.plugins.coverage.metrics.source.SourceCodeView;
 import io.jenkins.plugins.coverage.metrics.source.SourceViewModel;
 import io.jenkins.plugins.coverage.metrics.steps.CoverageTableModel.InlineRowRenderer;
 import io.jenkins.plugins.coverage.metrics.steps.CoverageTableModel.LinkedRowRenderer;
@@ -87,22 +91,43 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
     private final QualityGateResult qualityGateResult;
     private final String referenceBuild;
     private final FilteredLog log;
-    private final Node node;
+    private final Supplier<Node> treeLoader;
+    private final IntFunction<Optional<FileNode>> fileLoader;
     private final String id;
 
-    private final Node modifiedLinesCoverageTreeRoot;
-    private final Node indirectCoverageChangesTreeRoot;
+    @CheckForNull
+    private Node node;
+    @CheckForNull
+    private Node modifiedLinesCoverageTreeRoot;
+    @CheckForNull
+    private Node indirectCoverageChangesTreeRoot;
     private final Function<String, String> trendChartFunction;
     private final Function<String, String> metricsTrendFunction;
 
     private ColorProvider colorProvider = ColorProviderFactory.createDefaultColorProvider();
 
+    @VisibleForTesting
     @SuppressWarnings("checkstyle:ParameterNumber")
     CoverageViewModel(final Run<?, ?> owner, final String id, final String displayName, final Node node,
             final CoverageStatistics statistics, final QualityGateResult qualityGateResult,
             final String referenceBuild, final FilteredLog log,
             final Function<String, String> trendChartFunction,
             final Function<String, String> metricsTrendFunction) {
+        this(owner, id, displayName, () -> node, fileHash -> findFile(node, fileHash),
+                statistics, qualityGateResult, referenceBuild, log, trendChartFunction, metricsTrendFunction);
+    }
+
+    /**
+     * Creates a new view model. The coverage tree is loaded on first access, since the source code views of single
+     * files only need the node of the file: these nodes are loaded with the specified file loader.
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    CoverageViewModel(final Run<?, ?> owner, final String id, final String displayName,
+            final Supplier<Node> treeLoader, final IntFunction<Optional<FileNode>> fileLoader,
+            final CoverageStatistics statistics, final QualityGateResult qualityGateResult,
+            final String referenceBuild, final FilteredLog log,
+            final Function<String, String> trendChartFunction,
+            final Function<String, String> metricsTrendFunction) {
         super();
 
         this.owner = owner;
@@ -110,15 +135,14 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
         this.id = id;
         this.displayName = displayName;
 
-        this.node = node;
+        this.treeLoader = treeLoader;
+        this.fileLoader = fileLoader;
         this.statistics = statistics;
         this.qualityGateResult = qualityGateResult;
         this.referenceBuild = referenceBuild;
 
         this.log = log;
 
-        modifiedLinesCoverageTreeRoot = node.filterByModifiedLines();
-        indirectCoverageChangesTreeRoot = node.filterByIndirectChanges();
         this.trendChartFunction = trendChartFunction;
         this.metricsTrendFunction = metricsTrendFunction;
     }
@@ -136,10 +160,51 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
         return owner;
     }
 
-    public Node getNode() {
+    /**
+     * Returns the coverage tree. The tree is loaded on first access.
+     *
+     * @return the coverage tree
+     */
+    public synchronized Node getNode() {
+        if (node == null) {
+            node = treeLoader.get();
+        }
         return node;
     }
 
+    private synchronized Node getModifiedLinesCoverageTreeRoot() {
+        if (modifiedLinesCoverageTreeRoot == null) {
+            modifiedLinesCoverageTreeRoot = getNode().filterByModifiedLines();
+        }
+        return modifiedLinesCoverageTreeRoot;
+    }
+
+    private synchronized Node getIndirectCoverageChangesTreeRoot() {
+        if (indirectCoverageChangesTreeRoot == null) {
+            indirectCoverageChangesTreeRoot = getNode().filterByIndirectChanges();
+        }
+        return indirectCoverageChangesTreeRoot;
+    }
+
+    /**
+     * Returns the file with the specified hash code of its relative path. If the coverage tree has not been loaded
+     * yet, then only the file is loaded.
+     */
+    private Optional<FileNode> findFile(final int fileHash) {
+        synchronized (this) {
+            if (node != null) {
+                return findFile(node, fileHash);
+            }
+        }
+        return fileLoader.apply(fileHash);
+    }
+
+    private static Optional<FileNode> findFile(final Node tree, final int fileHash) {
+        return tree.findByHashCode(Metric.FILE, fileHash)
+                .filter(FileNode.class::isInstance)
+                .map(FileNode.class::cast);
+    }
+
     public ElementFormatter getFormatter() {
         return FORMATTER;
     }
@@ -151,7 +216,7 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
      */
     @SuppressWarnings("unused")
     public NavigableSet<Metric> getTreeMetrics() {
-        var valueMetrics = node.getValueMetrics();
+        var valueMetrics = getNode().getValueMetrics();
         valueMetrics.retainAll(TREE_METRICS);
         return valueMetrics;
     }
@@ -163,7 +228,7 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
      */
     @SuppressWarnings("unused") // Used in trend chart configuration
     public List<Metric> getCoverageMetrics() {
-        return node.aggregateValues().stream()
+        return getNode().aggregateValues().stream()
                 .map(Value::getMetric)
                 .filter(Metric::isCoverage)
                 .filter(m -> !TrendChartFactory.IGNORED_TREND_METRICS.contains(m))
@@ -177,7 +242,7 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
      */
     @SuppressWarnings("unused") // Used in trend chart configuration
     public List<Metric> getSoftwareMetrics() {
-        return node.aggregateValues().stream()
+        return getNode().aggregateValues().stream()
                 .map(Value::getMetric)
                 .filter(Predicate.not(Metric::isCoverage))
                 .filter(m -> !TrendChartFactory.IGNORED_TREND_METRICS.contains(m))
@@ -245,7 +310,7 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
 
     @JavaScriptMethod
     public CoverageOverview getOverview() {
-        return new CoverageOverview(node);
+        return new CoverageOverview(getNode());
     }
 
     /**
@@ -282,7 +347,7 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
      * @return if the last job has coverage data
      */
     public boolean hasCoverage() {
-        return node.aggregateValues().stream().map(Value::getMetric).anyMatch(Metric::isCoverage);
+        return getNode().aggregateValues().stream().map(Value::getMetric).anyMatch(Metric::isCoverage);
     }
 
     /**
@@ -349,11 +414,11 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
         return switch (actualId) {
             case ABSOLUTE_COVERAGE_TABLE_ID -> new CoverageTableModel(tableId, getNode(), renderer, colorProvider);
             case MODIFIED_LINES_COVERAGE_TABLE_ID ->
-                    new ModifiedLinesCoverageTableModel(tableId, getNode(), modifiedLinesCoverageTreeRoot, renderer,
-                            colorProvider);
+                    new ModifiedLinesCoverageTableModel(tableId, getNode(), getModifiedLinesCoverageTreeRoot(),
+                            renderer, colorProvider);
             case INDIRECT_COVERAGE_TABLE_ID ->
-                    new IndirectCoverageChangesTable(tableId, getNode(), indirectCoverageChangesTreeRoot, renderer,
-                            colorProvider);
+                    new IndirectCoverageChangesTable(tableId, getNode(), getIndirectCoverageChangesTreeRoot(),
+                            renderer, colorProvider);
             default -> throw new NoSuchElementException("No such table with id " + actualId);
         };
     }
@@ -400,12 +465,10 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
      */
     @JavaScriptMethod
     public String getSourceCode(final String fileHash, final String tableId) {
-        Optional<Node> targetResult
-                = getNode().findByHashCode(Metric.FILE, Integer.parseInt(fileHash));
+        var targetResult = findFile(Integer.parseInt(fileHash));
         if (targetResult.isPresent()) {
             try {
-                var fileNode = targetResult.get();
-                return readSourceCode((FileNode) fileNode, tableId);
+                return readSourceCode(targetResult.get(), tableId);
             }
             catch (IOException | InterruptedException exception) {
                 return ExceptionUtils.getStackTrace(exception);
@@ -414,6 +477,38 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
         return Messages.Coverage_Not_Available();
     }
 
+    /**
+     * Gets the rows of a range of lines of the source code file which is represented by the passed hash code. Large
+     * files are shown in windows of lines, so the whole file does not need to be sent to the browser. Depending on the
+     * passed table ID, only the relevant lines of code are part of the range.
+     *
+     * @param fileHash
+     *         The hash code of the requested file
+     * @param tableId
+     *         The ID of the source file table
+     * @param fromLine
+     *         The first line of the range (inclusive)
+     * @param toLine
+     *         The last line of the range (inclusive)
+     *
+     * @return the highlighted rows of the range
+     */
+    @JavaScriptMethod
+    public SourceCodeLines getSourceLines(final String fileHash, final String tableId,
+            final int fromLine, final int toLine) {
+        var targetResult = findFile(Integer.parseInt(fileHash));
+        if (targetResult.isPresent() && isSourceFileAvailable(targetResult.get())) {
+            try {
+                return SOURCE_CODE_FACADE.readLines(getOwner().getRootDir(), getId(),
+                        targetResult.get(), getSourceCodeView(tableId), fromLine, toLine);
+            }
+            catch (IOException | InterruptedException exception) {
+                return new SourceCodeLines(ExceptionUtils.getStackTrace(exception), fromLine, toLine, 0);
+            }
+        }
+        return new SourceCodeLines(Messages.Coverage_Not_Available(), fromLine, toLine, 0);
+    }
+
     /**
      * Reads the sourcecode corresponding to the passed {@link Node node} and filters the code dependent on the table
      * ID.
@@ -432,25 +527,28 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
     private String readSourceCode(final FileNode sourceNode, final String tableId)
             throws IOException, InterruptedException {
         var content = "";
-        var rootDir = getOwner().getRootDir();
         if (isSourceFileAvailable(sourceNode)) {
-            content = SOURCE_CODE_FACADE.read(rootDir, getId(), sourceNode.getRelativePath());
+            content = SOURCE_CODE_FACADE.read(getOwner().getRootDir(), getId(), sourceNode, getSourceCodeView(tableId));
         }
         if (!content.isEmpty()) {
-            String cleanTableId = StringUtils.removeEnd(tableId, INLINE_SUFFIX);
-            if (MODIFIED_LINES_COVERAGE_TABLE_ID.equals(cleanTableId)) {
-                return SOURCE_CODE_FACADE.calculateModifiedLinesCoverageSourceCode(content, sourceNode);
-            }
-            else if (INDIRECT_COVERAGE_TABLE_ID.equals(cleanTableId)) {
-                return SOURCE_CODE_FACADE.calculateIndirectCoverageChangesSourceCode(content, sourceNode);
-            }
-            else {
-                return content;
-            }
+            return content;
         }
         return Messages.Coverage_Not_Available();
     }
 
+    private SourceCodeView getSourceCodeView(final String tableId) {
+        String cleanTableId = StringUtils.removeEnd(tableId, INLINE_SUFFIX);
+        if (MODIFIED_LINES_COVERAGE_TABLE_ID.equals(cleanTableId)) {
+            return SourceCodeView.MODIFIED_LINES;
+        }
+        else if (INDIRECT_COVERAGE_TABLE_ID.equals(cleanTableId)) {
+            return SourceCodeView.INDIRECT_COVERAGE_CHANGES;
+        }
+        else {
+            return SourceCodeView.ALL;
+        }
+    }
+
     /**
      * Checks whether source files are stored.
      *
@@ -467,7 +565,7 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
      * @return {@code true} whether modified lines coverage exists, else {@code false}
      */
     public boolean hasModifiedLinesCoverage() {
-        return !modifiedLinesCoverageTreeRoot.isEmpty();
+        return !getModifiedLinesCoverageTreeRoot().isEmpty();
     }
 
     /**
@@ -476,7 +574,7 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
      * @return {@code true} whether indirect coverage changes exist, else {@code false}
      */
     public boolean hasIndirectCoverageChanges() {
-        return !indirectCoverageChangesTreeRoot.isEmpty();
+        return !getIndirectCoverageChangesTreeRoot().isEmpty();
     }
 
     /**
@@ -507,7 +605,7 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
     @CheckForNull
     public Object getDynamic(final String link, final StaplerRequest2 request, final StaplerResponse2 response) {
         if (MODIFIED_LINES_API_URL.equals(link)) {
-            return new ModifiedLinesCoverageApiModel(node);
+            return new ModifiedLinesCoverageApiModel(getNode());
         }
         if (INFO_MESSAGES_VIEW_URL.equals(link)) {
             return new MessagesViewModel(getOwner(), Messages.MessagesViewModel_Title(),
@@ -515,10 +613,9 @@ public class CoverageViewModel extends DefaultAsyncTableContentProvider implemen
         }
         if (StringUtils.isNotEmpty(link)) {
             try {
-                Optional<Node> targetResult
-                        = getNode().findByHashCode(Metric.FILE, Integer.parseInt(link));
-                if (targetResult.isPresent() && targetResult.get() instanceof FileNode) {
-                    return new SourceViewModel(getOwner(), getId(), (FileNode) targetResult.get());
+                var targetResult = findFile(Integer.parseInt(link));
+                if (targetResult.isPresent()) {
+                    return new SourceViewModel(getOwner(), getId(), targetResult.get());
                 }
             }
             catch (NumberFormatException exception) {
@@ -0,0 +1,166 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.io.File;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * An in-memory index of the file names in a directory tree. Each directory is listed at most once, the listing is
+ * created lazily when a file in that directory is queried for the first time. Directories that do not exist are
+ * detected using the listing of their parent, so a query for a file below a missing directory requires no access to
+ * the file system at all. This reduces the number of file system calls when resolving many files against several
+ * candidate folders: rather than calling {@link File#exists()} for every combination of folder and file, only the
+ * distinct directories along the queried paths are read.
+ *
+ * <p>
+ * The result of a query is definitive if the directory of the file has been listed: the file either exists or it is
+ * missing. If the directory could not be listed (e.g., since it is not readable), if the path contains relative
+ * segments like {@code ..}, or if the listing contains the name with a different case only (which is an existing
+ * file on case-insensitive file systems), then the result is {@link Presence#UNKNOWN} and the caller needs to call
+ * {@link File#exists()}.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+class DirectoryIndex {
+    private final Map<File, Listing> listings = new HashMap<>();
+
+    /**
+     * Looks up the specified file or directory in the index. Relative files are resolved against the current working
+     * directory, just like {@link File#exists()} does.
+     *
+     * @param file
+     *         the file to look up
+     *
+     * @return whether the file exists, is missing, or has not been indexed
+     */
+    Presence find(final File file) {
+        if (hasRelativeSegments(file)) {
+            return Presence.UNKNOWN;
+        }
+        var absoluteFile = file.getAbsoluteFile();
+        var parent = absoluteFile.getParentFile();
+        if (parent == null) {
+            return Presence.UNKNOWN; // file system root
+        }
+        return getListing(parent).find(absoluteFile.getName());
+    }
+
+    /**
+     * Returns whether the specified file or directory is contained in the index.
+     *
+     * @param file
+     *         the file to look up
+     *
+     * @return {@code true} if the file exists, {@code false} if the file is missing or has not been indexed
+     * @see #find(File)
+     */
+    boolean contains(final File file) {
+        return find(file) == Presence.EXISTS;
+    }
+
+    /**
+     * Returns the number of directories in this index. This number includes the missing directories that have been
+     * queried so far.
+     *
+     * @return the number of indexed directories
+     */
+    int size() {
+        return listings.size();
+    }
+
+    private boolean hasRelativeSegments(final File file) {
+        try {
+            for (Path segment : file.toPath()) {
+                var name = segment.toString();
+                if (".".equals(name) || "..".equals(name)) {
+                    return true; // listings do not contain these entries
+                }
+            }
+            return false;
+        }
+        catch (InvalidPathException exception) {
+            return true;
+        }
+    }
+
+    private Listing getListing(final File directory) {
+        var listing = listings.get(directory);
+        if (listing == null) {
+            listing = list(directory);
+            listings.put(directory, listing);
+        }
+        return listing;
+    }
+
+    private Listing list(final File directory) {
+        var parent = directory.getParentFile();
+        if (parent != null && getListing(parent).find(directory.getName()) == Presence.MISSING) {
+            return Listing.EMPTY;
+        }
+        return toListing(directory, directory.list());
+    }
+
+    private Listing toListing(final File directory, @CheckForNull final String... names) {
+        if (names == null) {
+            // not a directory (so there are no children) or a directory that cannot be read
+            return directory.isDirectory() ? Listing.UNREADABLE : Listing.EMPTY;
+        }
+        return new Listing(new HashSet<>(Arrays.asList(names)));
+    }
+
+    /**
+     * The result of a query in the index.
+     */
+    enum Presence {
+        /** The file exists. */
+        EXISTS,
+        /** The file does not exist. */
+        MISSING,
+        /** The index cannot determine whether the file exists. */
+        UNKNOWN
+    }
+
+    /**
+     * The names of the files in a directory.
+     */
+    private static final class Listing {
+        static final Listing EMPTY = new Listing(Collections.emptySet());
+        static final Listing UNREADABLE = new Listing(Collections.emptySet());
+
+        private final Set<String> names;
+        private final Set<String> lowerCaseNames;
+
+        Listing(final Set<String> names) {
+            this.names = names;
+            lowerCaseNames = names.stream().map(Listing::toLowerCase).collect(Collectors.toSet());
+        }
+
+        Presence find(final String name) {
+            if (this == UNREADABLE) {
+                return Presence.UNKNOWN;
+            }
+            if (names.contains(name)) {
+                return Presence.EXISTS;
+            }
+            if (lowerCaseNames.contains(toLowerCase(name))) {
+                return Presence.UNKNOWN; // exists on case-insensitive file systems only
+            }
+            return Presence.MISSING;
+        }
+
+        private static String toLowerCase(final String name) {
+            return name.toLowerCase(Locale.ENGLISH);
+        }
+    }
+}
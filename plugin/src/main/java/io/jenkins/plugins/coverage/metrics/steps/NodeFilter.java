@@ -0,0 +1,208 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+import edu.hm.hafner.coverage.ClassNode;
+import edu.hm.hafner.coverage.FileNode;
+import edu.hm.hafner.coverage.Metric;
+import edu.hm.hafner.coverage.Node;
+import edu.hm.hafner.coverage.PackageNode;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.io.File;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Filters the files and classes of a coverage tree using include and exclude patterns. The patterns are given as comma
+ * separated lists of globs. A glob that contains a slash is matched against the path of the file (using the Ant
+ * syntax, e.g. {@code **}{@code /generated/**}), all other globs are matched against the package name (e.g.,
+ * {@code com.company.*}, where {@code *} matches an arbitrary sequence of characters and {@code ?} a single
+ * character). A file is retained if it matches at least one of the include patterns (or if there are no include
+ * patterns) and none of the exclude patterns. Packages that become empty are removed from the tree.
+ *
+ * @author Ullrich Hafner
+ */
+class NodeFilter implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 5326816287468906337L;
+
+    private final String includes;
+    private final String excludes;
+    private final List<Glob> includeGlobs;
+    private final List<Glob> excludeGlobs;
+
+    /**
+     * Creates a new instance of {@link NodeFilter}.
+     *
+     * @param includes
+     *         comma separated list of globs that define the files to include
+     * @param excludes
+     *         comma separated list of globs that define the files to exclude
+     */
+    NodeFilter(@CheckForNull final String includes, @CheckForNull final String excludes) {
+        this.includes = StringUtils.defaultString(includes);
+        this.excludes = StringUtils.defaultString(excludes);
+
+        includeGlobs = parse(this.includes);
+        excludeGlobs = parse(this.excludes);
+    }
+
+    private static List<Glob> parse(final String patterns) {
+        return Arrays.stream(StringUtils.split(patterns, ','))
+                .map(StringUtils::strip)
+                .filter(StringUtils::isNotEmpty)
+                .map(Glob::new)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns whether this filter contains no patterns, i.e. whether all files are retained.
+     *
+     * @return {@code true} if this filter retains all files, {@code false} otherwise
+     */
+    boolean isEmpty() {
+        return includeGlobs.isEmpty() && excludeGlobs.isEmpty();
+    }
+
+    /**
+     * Returns a textual representation of the patterns of this filter. Two filters with the same representation
+     * produce the same results.
+     *
+     * @return the patterns of this filter
+     */
+    String getFingerprint() {
+        return "includes=" + includes + ";excludes=" + excludes;
+    }
+
+    /**
+     * Removes all files and classes from the specified tree that are not accepted by this filter.
+     *
+     * @param tree
+     *         the tree to filter
+     *
+     * @return the number of removed files and classes
+     */
+    int apply(final Node tree) {
+        if (isEmpty()) {
+            return 0;
+        }
+
+        int removed = 0;
+        for (FileNode file : tree.getAllFileNodes()) {
+            if (!accept(getPackageName(file), file.getRelativePath())) {
+                file.getParent().removeChild(file);
+                removed++;
+            }
+        }
+        for (ClassNode classNode : tree.getAllClassNodes()) {
+            if (classNode.hasParent() && classNode.getParent() instanceof PackageNode
+                    && !accept(getPackageName(classNode), null)) {
+                classNode.getParent().removeChild(classNode);
+                removed++;
+            }
+        }
+        removeEmptyPackages(tree);
+
+        return removed;
+    }
+
+    private void removeEmptyPackages(final Node tree) {
+        for (Node packageNode : tree.getAll(Metric.PACKAGE)) {
+            if (packageNode.hasParent()
+                    && packageNode.getAllFileNodes().isEmpty() && packageNode.getAllClassNodes().isEmpty()) {
+                packageNode.getParent().removeChild(packageNode);
+            }
+        }
+    }
+
+    private String getPackageName(final Node node) {
+        for (Node parent = node; parent.hasParent(); parent = parent.getParent()) {
+            if (parent.getParent() instanceof PackageNode) {
+                return PackageNode.normalizePackageName(parent.getParent().getName());
+            }
+        }
+        return StringUtils.EMPTY;
+    }
+
+    /**
+     * Returns whether the file with the specified package and path is accepted by this filter.
+     *
+     * @param packageName
+     *         the package name of the file
+     * @param path
+     *         the path of the file, might be {@code null} if the node has no associated file
+     *
+     * @return {@code true} if the file is retained, {@code false} if it should be removed
+     */
+    boolean accept(final String packageName, @CheckForNull final String path) {
+        if (!includeGlobs.isEmpty() && includeGlobs.stream().noneMatch(glob -> glob.matches(packageName, path))) {
+            return false;
+        }
+        return excludeGlobs.stream().noneMatch(glob -> glob.matches(packageName, path));
+    }
+
+    @Override
+    public String toString() {
+        return getFingerprint();
+    }
+
+    /**
+     * A single glob pattern that matches either package names or file paths.
+     */
+    private static class Glob implements Serializable {
+        @Serial
+        private static final long serialVersionUID = -1426339012981765143L;
+
+        private final String pattern;
+        private final boolean isPathPattern;
+        @CheckForNull
+        private final Pattern packagePattern;
+
+        Glob(final String glob) {
+            isPathPattern = glob.contains("/") || glob.contains("\\");
+            if (isPathPattern) {
+                pattern = normalize(glob);
+                packagePattern = null;
+            }
+            else {
+                pattern = glob;
+                packagePattern = Pattern.compile(toRegex(glob));
+            }
+        }
+
+        private static String toRegex(final String glob) {
+            List<String> parts = new ArrayList<>();
+            var literal = new StringBuilder();
+            for (char c : glob.toCharArray()) {
+                if (c == '*' || c == '?') {
+                    parts.add(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                    parts.add(c == '*' ? ".*" : ".");
+                }
+                else {
+                    literal.append(c);
+                }
+            }
+            parts.add(Pattern.quote(literal.toString()));
+            return String.join("", parts);
+        }
+
+        private static String normalize(final String path) {
+            return path.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        }
+
+        boolean matches(final String packageName, @CheckForNull final String path) {
+            if (isPathPattern) {
+                return path != null && SelectorUtils.matchPath(pattern, normalize(path));
+            }
+            return packagePattern != null && packagePattern.matcher(packageName).matches();
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.apache.commons.lang3.StringUtils;
+
+import edu.hm.hafner.coverage.CoverageParser.ProcessingMode;
+import edu.hm.hafner.coverage.ModuleNode;
+import edu.hm.hafner.util.FilteredLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import io.jenkins.plugins.coverage.metrics.steps.CoverageTool.Parser;
+
+/**
+ * Caches parsed coverage reports of a job on the controller. A report is identified by the parser, the processing mode,
+ * the version of the cache format and of the plugin, and the SHA-256 hash of the report file. The parsed module nodes
+ * and the log messages of the parser are stored as {@link CompactPayload} files in the cache directory. The size of
+ * the cache is bounded: if the cache exceeds the maximum size, then the least recently used entries are removed.
+ *
+ * <p>
+ * The keys are computed on the agent, so every key that is received from an agent is validated before it is used to
+ * access the cache. Since the cache is stored in the folder of the job, an agent can only access the cached reports
+ * of the jobs that are built on this agent anyway.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+class ParseCache {
+    /** Name of the cache folder in the root directory of the job. */
+    static final String CACHE_DIRECTORY = "coverage-parse-cache";
+
+    private static final String SUFFIX = ".bin";
+    private static final int FORMAT_VERSION = 2;
+    private static final Object EVICTION_LOCK = new Object();
+
+    private final Path directory;
+    private final long maximumSize;
+    private final String version;
+    private final Pattern keyPattern;
+
+    /**
+     * Creates a new instance of {@link ParseCache}.
+     *
+     * @param directory
+     *         the directory that contains the cached reports
+     * @param maximumSize
+     *         the maximum size of the cache in bytes
+     * @param pluginVersion
+     *         the version of the plugin that creates the cached reports
+     */
+    ParseCache(final Path directory, final long maximumSize, final String pluginVersion) {
+        this.directory = directory;
+        this.maximumSize = maximumSize;
+        this.version = FORMAT_VERSION + "_" + pluginVersion.replaceAll("[^a-zA-Z0-9.]", "_");
+        this.keyPattern = Pattern.compile(String.format("(%s)-(%s)-%s-[0-9a-f]{64}",
+                Arrays.stream(Parser.values()).map(Parser::name).collect(Collectors.joining("|")),
+                Arrays.stream(ProcessingMode.values()).map(ProcessingMode::name).collect(Collectors.joining("|")),
+                Pattern.quote(version)));
+    }
+
+    /**
+     * Returns the version of the cached reports, that needs to be part of the cache keys.
+     *
+     * @return the version of the cached reports
+     */
+    String getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns whether the specified key is a valid key of this cache. Keys that have been computed on the agent must
+     * be validated before they are used.
+     *
+     * @param key
+     *         the key to check
+     *
+     * @return {@code true} if the key is valid, {@code false} otherwise
+     */
+    boolean isValidKey(final String key) {
+        return keyPattern.matcher(key).matches();
+    }
+
+    /**
+     * Creates the cache key for the specified report file. The key contains the parser, the processing mode, the
+     * version of the cache, and the SHA-256 hash of the filter and the content. This method does not depend on Jenkins,
+     * so it can be called on the agent.
+     *
+     * @param parser
+     *         the parser of the report
+     * @param processingMode
+     *         the processing mode of the parser
+     * @param version
+     *         the version of the cache, see {@link #getVersion()}
+     * @param filter
+     *         the filter that is applied to the parsed report
+     * @param file
+     *         the report file
+     *
+     * @return the cache key
+     * @throws IOException
+     *         if the file could not be read
+     */
+    static String createKey(final Parser parser, final ProcessingMode processingMode, final String version,
+            final NodeFilter filter, final Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            var digest = MessageDigest.getInstance("SHA-256");
+            if (!filter.isEmpty()) {
+                digest.update(filter.getFingerprint().getBytes(StandardCharsets.UTF_8));
+            }
+            var buffer = new byte[64 * 1024];
+            for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+            return String.join("-", parser.name(), processingMode.name(), version,
+                    HexFormat.of().formatHex(digest.digest()));
+        }
+        catch (NoSuchAlgorithmException exception) {
+            throw new IOException("SHA-256 is not supported", exception);
+        }
+    }
+
+    /**
+     * Returns the keys of all reports that are currently stored in the cache and match the version of the cache.
+     *
+     * @return the keys of the cached reports
+     */
+    Set<String> getKeys() {
+        try (var files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .map(name -> StringUtils.removeEnd(name, SUFFIX))
+                    .filter(this::isValidKey)
+                    .collect(Collectors.toCollection(HashSet::new));
+        }
+        catch (IOException exception) {
+            return new HashSet<>();
+        }
+    }
+
+    /**
+     * Loads the report with the specified key from the cache. The access time of the entry is updated, so that
+     * recently used entries are retained during eviction.
+     *
+     * @param key
+     *         the key of the report
+     *
+     * @return the parsed report, or an empty optional if the report is not cached (anymore) or the key is invalid
+     */
+    Optional<CachedReport> load(final String key) {
+        if (!isValidKey(key)) {
+            return Optional.empty();
+        }
+        var file = getFile(key);
+        try {
+            var data = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(CompactPayload.read(new ByteArrayInputStream(data), CachedReport.class));
+        }
+        catch (IOException exception) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the specified report in the cache.
+     *
+     * @param key
+     *         the key of the report
+     * @param node
+     *         the parsed report
+     * @param log
+     *         the log messages of the parser
+     *
+     * @throws IOException
+     *         if the key is invalid or the report could not be written
+     */
+    void store(final String key, final ModuleNode node, final FilteredLog log) throws IOException {
+        if (!isValidKey(key)) {
+            throw new IOException("Invalid parse cache key: " + key);
+        }
+        Files.createDirectories(directory);
+        var temporary = Files.createTempFile(directory, key, ".tmp");
+        try {
+            Files.write(temporary, CompactPayload.of(new CachedReport(node, log)).toByteArray());
+            Files.move(temporary, getFile(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the size of the cache is below the maximum size.
+     *
+     * @return the number of removed entries
+     */
+    int evict() {
+        synchronized (EVICTION_LOCK) {
+            List<CacheEntry> entries = new ArrayList<>();
+            try (var files = Files.list(directory)) {
+                files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                        .forEach(file -> readEntry(file).ifPresent(entries::add));
+            }
+            catch (IOException exception) {
+                return 0;
+            }
+
+            long size = entries.stream().mapToLong(CacheEntry::getSize).sum();
+            entries.sort(Comparator.comparing(CacheEntry::getLastAccess));
+            int removed = 0;
+            for (CacheEntry entry : entries) {
+                if (size <= maximumSize) {
+                    break;
+                }
+                try {
+                    Files.deleteIfExists(entry.getFile());
+                    size -= entry.getSize();
+                    removed++;
+                }
+                catch (IOException ignored) {
+                    // skip this entry, it will be removed in a subsequent run
+                }
+            }
+            return removed;
+        }
+    }
+
+    private Optional<CacheEntry> readEntry(final Path file) {
+        try {
+            return Optional.of(new CacheEntry(file, Files.size(file), Files.getLastModifiedTime(file)));
+        }
+        catch (IOException exception) {
+            return Optional.empty(); // has been removed in the meantime
+        }
+    }
+
+    private Path getFile(final String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    /**
+     * A report that is stored in the cache: the parsed module node and the log messages of the parser.
+     */
+    static class CachedReport implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 6240818279384531277L;
+
+        private final ModuleNode node;
+        private final FilteredLog log;
+
+        CachedReport(final ModuleNode node, final FilteredLog log) {
+            this.node = node;
+            this.log = log;
+        }
+
+        ModuleNode getNode() {
+            return node;
+        }
+
+        FilteredLog getLog() {
+            return log;
+        }
+    }
+
+    private static class CacheEntry {
+        private final Path file;
+        private final long size;
+        private final FileTime lastAccess;
+
+        CacheEntry(final Path file, final long size, final FileTime lastAccess) {
+            this.file = file;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+
+        Path getFile() {
+            return file;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        FileTime getLastAccess() {
+            return lastAccess;
+        }
+    }
+}
@@ -58,7 +58,7 @@ public class PathResolver {
                     .collect(Collectors.toSet());
 
             var resolver = new AgentPathResolver(relativePaths, permittedSourceDirectories, requestedSourceDirectories);
-            var agentLog = workspace.act(resolver);
+            var agentLog = workspace.act(resolver).get();
             log.merge(agentLog);
             return agentLog.getResult();
         }
@@ -74,7 +74,8 @@ public class PathResolver {
      * evaluates the defined source paths as prefixes when resolving the absolute paths.
      */
     @SuppressWarnings("PMD.LooseCoupling")
-    static class AgentPathResolver extends MasterToSlaveFileCallable<RemoteResultWrapper<HashMap<String, String>>> {
+    static class AgentPathResolver
+            extends MasterToSlaveFileCallable<CompactPayload<RemoteResultWrapper<HashMap<String, String>>>> {
         private static final long serialVersionUID = 3966282357309568323L;
         private static final PathUtil PATH_UTIL = new PathUtil();
 
@@ -103,8 +104,8 @@ public class PathResolver {
         }
 
         @Override
-        public RemoteResultWrapper<HashMap<String, String>> invoke(
-                final File workspaceFile, final VirtualChannel channel) {
+        public CompactPayload<RemoteResultWrapper<HashMap<String, String>>> invoke(
+                final File workspaceFile, final VirtualChannel channel) throws IOException, InterruptedException {
             var log = new FilteredLog("Errors while resolving source files on agent:");
 
             Set<String> sourceDirectories = filterSourceDirectories(workspaceFile, log);
@@ -120,10 +121,14 @@ public class PathResolver {
             }
 
             var workspace = new FilePath(workspaceFile);
+            var index = new DirectoryIndex();
             var mapping = relativePaths.stream()
-                    .map(path -> new SimpleEntry<>(path, locateSource(path, workspace, sourceDirectories, log)))
+                    .map(path -> new SimpleEntry<>(path, locateSource(path, workspace, sourceDirectories, index, log)))
                     .filter(entry -> entry.getValue().isPresent())
                     .collect(Collectors.toMap(Entry::getKey, entry -> entry.getValue().get()));
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Resolving of source files has been interrupted");
+            }
 
             if (mapping.size() == relativePaths.size()) {
                 log.logInfo("-> resolved absolute paths for all %d source files", mapping.size());
@@ -139,7 +144,7 @@ public class PathResolver {
                     .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
             var result = new RemoteResultWrapper<>(new HashMap<>(changedFileMapping), "Errors during source path resolving:");
             result.merge(log);
-            return result;
+            return CompactPayload.of(result);
         }
 
         private Set<String> filterSourceDirectories(final File workspace, final FilteredLog log) {
@@ -148,34 +153,54 @@ public class PathResolver {
                     permittedSourceDirectories, requestedSourceDirectories, log);
         }
 
+        /**
+         * Locates the source file in the candidate folders. The existence of the candidates is checked using the
+         * directory index, so that no file system call is required for most of the candidates. Only candidates in
+         * directories that could not be indexed are checked using the file system.
+         */
         private Optional<String> locateSource(final String relativePath, final FilePath workspace,
-                final Set<String> sourceSearchDirectories, final FilteredLog log) {
+                final Set<String> sourceSearchDirectories, final DirectoryIndex index, final FilteredLog log) {
+            if (Thread.currentThread().isInterrupted()) {
+                return Optional.empty(); // skip the remaining files, the interruption is reported by the caller
+            }
             try {
                 var absolutePath = new FilePath(new File(relativePath));
-                if (absolutePath.exists()) {
+                if (exists(absolutePath, index)) {
                     return enforcePermissionFor(absolutePath, workspace, sourceSearchDirectories, log);
                 }
 
                 var relativePathInWorkspace = workspace.child(relativePath);
-                if (relativePathInWorkspace.exists()) {
+                if (exists(relativePathInWorkspace, index)) {
                     return enforcePermissionFor(relativePathInWorkspace, workspace, sourceSearchDirectories, log);
                 }
 
                 for (String sourceFolder : sourceSearchDirectories) {
                     var sourcePath = workspace.child(sourceFolder).child(relativePath);
-                    if (sourcePath.exists()) {
+                    if (exists(sourcePath, index)) {
                         return enforcePermissionFor(sourcePath, workspace, sourceSearchDirectories, log);
                     }
                 }
 
                 log.logError("- Source file '%s' not found", relativePath);
             }
-            catch (InvalidPathException | IOException | InterruptedException exception) {
+            catch (InvalidPathException | IOException exception) {
                 log.logException(exception, "No valid path in coverage node: '%s'", relativePath);
             }
+            catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
             return Optional.empty();
         }
 
+        private boolean exists(final FilePath candidate, final DirectoryIndex index)
+                throws IOException, InterruptedException {
+            return switch (index.find(new File(candidate.getRemote()))) {
+                case EXISTS -> true;
+                case MISSING -> false;
+                case UNKNOWN -> candidate.exists();
+            };
+        }
+
         private Optional<String> enforcePermissionFor(final FilePath absolutePath, final FilePath workspace,
                 final Set<String> sourceDirectories, final FilteredLog log) {
             var enforcer = new FilePermissionEnforcer();
@@ -0,0 +1,118 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Finds the longest path of a set of paths that is a suffix of a given path. The paths are stored in a trie of their
+ * reversed path segments, so that a lookup requires just one walk along the segments of the given path, independent
+ * of the number of stored paths.
+ *
+ * <p>
+ * The lookup has the same semantics as {@link String#endsWith(String)}: a stored path does not need to start at a
+ * segment boundary, e.g. the path {@code Test.java} is a suffix of {@code src/MyTest.java}.
+ * </p>
+ *
+ * @author Ullrich Hafner
+ */
+class PathSuffixTrie {
+    private static final String SEPARATOR = "/";
+
+    private final TrieNode root = new TrieNode();
+
+    /**
+     * Creates a new trie that contains the specified paths.
+     *
+     * @param paths
+     *         the paths to store
+     */
+    PathSuffixTrie(final Collection<String> paths) {
+        paths.forEach(this::add);
+    }
+
+    private void add(final String path) {
+        var segments = split(path);
+        var node = root;
+        if (!path.isEmpty()) {
+            for (int i = segments.length - 1; i >= 0; i--) {
+                node = node.getOrCreateChild(segments[i]);
+            }
+        }
+        node.path = path;
+    }
+
+    private static String[] split(final String path) {
+        return path.split(SEPARATOR, -1);
+    }
+
+    /**
+     * Returns the longest stored path that is a suffix of the specified path.
+     *
+     * @param path
+     *         the path to find the longest suffix for
+     *
+     * @return the longest stored suffix, or an empty optional if no stored path is a suffix
+     */
+    Optional<String> findLongestSuffix(final String path) {
+        var segments = split(path);
+        var node = root;
+        String match = node.path;
+        for (int i = segments.length - 1; i >= 0 && node != null; i--) {
+            var segment = segments[i];
+            var partialMatch = findPartialMatch(node, segment);
+            if (partialMatch != null) {
+                match = partialMatch;
+            }
+            node = node.getChild(segment);
+            if (node != null && node.path != null) {
+                match = node.path;
+            }
+        }
+        return Optional.ofNullable(match);
+    }
+
+    /**
+     * Finds the longest stored path that starts within the specified segment, i.e. its first segment is a proper
+     * suffix of the specified segment.
+     */
+    @CheckForNull
+    private String findPartialMatch(final TrieNode node, final String segment) {
+        if (!node.hasChildren()) {
+            return null;
+        }
+        for (int start = 1; start <= segment.length(); start++) {
+            var child = node.getChild(segment.substring(start));
+            if (child != null && child.path != null) {
+                return child.path;
+            }
+        }
+        return null;
+    }
+
+    private static class TrieNode {
+        @CheckForNull
+        private Map<String, TrieNode> children;
+        @CheckForNull
+        private String path;
+
+        boolean hasChildren() {
+            return children != null;
+        }
+
+        @CheckForNull
+        TrieNode getChild(final String segment) {
+            return children == null ? null : children.get(segment);
+        }
+
+        TrieNode getOrCreateChild(final String segment) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            return children.computeIfAbsent(segment, key -> new TrieNode());
+        }
+    }
+}
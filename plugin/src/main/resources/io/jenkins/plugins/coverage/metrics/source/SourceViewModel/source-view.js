@@ -0,0 +1,150 @@
+/* global sourceViewProxy */
+
+/**
+ * Shows a large source code file in windows of lines. Only a few windows are part of the DOM: windows that are
+ * scrolled out of view are replaced by spacers of the same height, and windows that are scrolled into view are loaded
+ * from the server again.
+ */
+document.addEventListener('DOMContentLoaded', function () {
+    const WINDOW_SIZE = 500;
+    const MAX_WINDOWS = 6;
+    const SCROLL_MARGIN = 1000;
+
+    const container = document.getElementById('source-file-windows');
+    if (!container) {
+        return;
+    }
+    const table = container.querySelector('table');
+    const lineCount = parseInt(container.dataset.lineCount, 10);
+    const topSpacer = createSpacer();
+    const bottomSpacer = createSpacer();
+    table.append(topSpacer.element, bottomSpacer.element);
+
+    const windows = []; // the windows in the DOM, ordered by line
+    const hiddenAbove = []; // the windows that have been replaced by the top spacer, the nearest one last
+    const hiddenBelow = []; // the windows that have been replaced by the bottom spacer, the nearest one last
+    let isLoading = false;
+
+    function createSpacer() {
+        const element = document.createElement('tbody');
+        element.appendChild(document.createElement('tr')).appendChild(document.createElement('td'));
+        element.style.display = 'none';
+        return {element: element, height: 0};
+    }
+
+    function resizeSpacer(spacer, delta) {
+        spacer.height += delta;
+        spacer.element.firstChild.firstChild.style.height = spacer.height + 'px';
+        spacer.element.style.display = spacer.height > 0 ? '' : 'none';
+    }
+
+    function loadWindow(fromLine, callback) {
+        isLoading = true;
+        const toLine = Math.min(fromLine + WINDOW_SIZE - 1, lineCount);
+        sourceViewProxy.getSourceLines(fromLine, toLine, function (response) {
+            const lines = response.responseObject();
+            const rows = document.createElement('tbody');
+            rows.innerHTML = lines.content;
+            callback({fromLine: fromLine, toLine: toLine, rows: rows});
+            isLoading = false;
+            update();
+        });
+    }
+
+    function getFirstLine() {
+        return windows.length > 0 ? windows[0].fromLine : 1;
+    }
+
+    function getLastLine() {
+        return windows.length > 0 ? windows[windows.length - 1].toLine : 0;
+    }
+
+    function appendWindow(block) {
+        table.insertBefore(block.rows, bottomSpacer.element);
+        windows.push(block);
+        if (windows.length > MAX_WINDOWS) {
+            const hidden = windows.shift();
+            hidden.height = hidden.rows.offsetHeight;
+            hidden.rows.remove();
+            hiddenAbove.push(hidden);
+            resizeSpacer(topSpacer, hidden.height);
+        }
+    }
+
+    function prependWindow(block) {
+        topSpacer.element.after(block.rows);
+        windows.unshift(block);
+        if (windows.length > MAX_WINDOWS) {
+            const hidden = windows.pop();
+            hidden.height = hidden.rows.offsetHeight;
+            hidden.rows.remove();
+            hiddenBelow.push(hidden);
+            resizeSpacer(bottomSpacer, hidden.height);
+        }
+    }
+
+    function showNext() {
+        const hidden = hiddenBelow.pop();
+        if (hidden) {
+            loadWindow(hidden.fromLine, function (block) {
+                resizeSpacer(bottomSpacer, -hidden.height);
+                appendWindow(block);
+            });
+        }
+        else if (getLastLine() < lineCount) {
+            loadWindow(getLastLine() + 1, appendWindow);
+        }
+    }
+
+    function showPrevious() {
+        const hidden = hiddenAbove.pop();
+        if (hidden) {
+            loadWindow(hidden.fromLine, function (block) {
+                resizeSpacer(topSpacer, -hidden.height);
+                prependWindow(block);
+            });
+        }
+        else if (getFirstLine() > 1) {
+            loadWindow(Math.max(1, getFirstLine() - WINDOW_SIZE), function (block) {
+                const scrollHeight = container.scrollHeight;
+                prependWindow(block);
+                container.scrollTop += container.scrollHeight - scrollHeight; // keep the visible rows in place
+            });
+        }
+    }
+
+    function getTop(spacer) {
+        return table.offsetTop + spacer.element.offsetTop;
+    }
+
+    function update() {
+        if (isLoading) {
+            return;
+        }
+        const top = container.scrollTop;
+        const bottom = top + container.clientHeight;
+        const hasNext = hiddenBelow.length > 0 || getLastLine() < lineCount;
+        const hasPrevious = hiddenAbove.length > 0 || getFirstLine() > 1;
+        if (hasNext && bottom + SCROLL_MARGIN > getTop(bottomSpacer)) {
+            showNext();
+        }
+        else if (hasPrevious && top - SCROLL_MARGIN < getTop(topSpacer) + topSpacer.height) {
+            showPrevious();
+        }
+    }
+
+    function getSelectedLine() {
+        const line = parseInt(window.location.hash.substring(1), 10);
+        return line > 0 && line <= lineCount ? line : 1;
+    }
+
+    const selectedLine = getSelectedLine();
+    loadWindow(Math.floor((selectedLine - 1) / WINDOW_SIZE) * WINDOW_SIZE + 1, function (block) {
+        appendWindow(block);
+        const anchor = block.rows.querySelector('a[name="' + selectedLine + '"]');
+        if (anchor && selectedLine > 1) {
+            container.scrollTop = table.offsetTop + anchor.closest('tr').offsetTop;
+        }
+    });
+    container.addEventListener('scroll', update, {passive: true});
+});
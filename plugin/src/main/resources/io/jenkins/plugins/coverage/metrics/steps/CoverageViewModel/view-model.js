@@ -551,10 +551,13 @@
      * Initializes a selection listener for a datatable which loads the selected source code.
      *
      * @param {String} tableId The ID of the DataTable
+     * @param {String} view The lines of the source code that should be shown (ALL, MODIFIED_LINES, or
+     *     INDIRECT_COVERAGE_CHANGES)
      */
-    function initializeSourceCodeSelection(tableId) {
+    function initializeSourceCodeSelection(tableId, view) {
         const datatable = $('#' + tableId + '-table-inline').DataTable();
         const sourceView = $('#' + tableId + '-source-file');
+        const sourceUrl = sourceView.data('source-url');
         const noFileSelectedBanner = $('#' + tableId + '-no-selection');
         const noSourceAvailableBanner = $('#' + tableId + '-no-source');
 
@@ -582,15 +585,10 @@
                 showSourceCode();
                 sourceView.html('Loading...');
                 const rowData = datatable.rows(indexes).data().toArray();
-                proxy.getSourceCode(rowData[0].fileHash, tableId + '-table', function (t) {
-                    const sourceCode = t.responseObject();
-                    if (sourceCode === "n/a") {
-                        showNoSourceCode();
-                    }
-                    else {
-                        sourceView.html(sourceCode);
-                    }
-                });
+                fetch(sourceUrl + rowData[0].fileHash + '/sourceCode?view=' + view)
+                    .then(response => response.ok ? response.text() : Promise.reject(response.status))
+                    .then(sourceCode => sourceView.html(sourceCode))
+                    .catch(() => showNoSourceCode());
             }
             else {
                 showNoSelection();
@@ -630,9 +628,9 @@
         }
 
         $(document).ready(function () {
-            initializeSourceCodeSelection('absolute-coverage');
-            initializeSourceCodeSelection('modified-lines-coverage');
-            initializeSourceCodeSelection('indirect-coverage');
+            initializeSourceCodeSelection('absolute-coverage', 'ALL');
+            initializeSourceCodeSelection('modified-lines-coverage', 'MODIFIED_LINES');
+            initializeSourceCodeSelection('indirect-coverage', 'INDIRECT_COVERAGE_CHANGES');
 
             $('input[id ^= "changed"]').on('change', function () {
                 const showChanged = $(this).prop('checked');
@@ -4,6 +4,16 @@ import org.apache.commons.lang3.StringUtils;
 import org.junit.jupiter.api.Test;
 import org.xmlunit.assertj.XmlAssert;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 import edu.hm.hafner.coverage.FileNode;
 import edu.hm.hafner.coverage.parser.JacocoParser;
 import io.jenkins.plugins.coverage.metrics.AbstractCoverageTest;
@@ -136,10 +146,36 @@ class CoverageSourcePrinterTest extends AbstractCoverageTest {
     }
 
     @Test
-    void shouldRenderXmlSymbols() {
-        var printer = new CoverageSourcePrinter(new FileNode("Test", "Path"));
+    void shouldPaintOnlyCoveredRegionsBeyondThreshold() throws IOException {
+        var node = new FileNode("Large.java", "Large.java");
+        node.addCounters(20, 1, 0);
+        node.addModifiedLines(40);
+        var printer = new CoverageSourcePrinter(node);
+
+        var source = IntStream.rangeClosed(1, 50).mapToObj(i -> "line " + i).collect(Collectors.joining("\n"));
+        var output = new StringWriter();
+        printer.render(new BufferedReader(new StringReader(source)), output, 10);
+
+        var html = output.toString();
+        var paintedLines = Pattern.compile("<a name=\"(\\d+)\">").matcher(html).results()
+                .map(result -> Integer.valueOf(result.group(1)))
+                .collect(Collectors.toList());
+        assertThat(paintedLines).containsExactlyElementsOf(Stream.of(
+                IntStream.rangeClosed(1, 10), IntStream.rangeClosed(17, 23), IntStream.rangeClosed(37, 43))
+                .flatMap(IntStream::boxed)
+                .collect(Collectors.toList()));
+        assertThat(StringUtils.countMatches(html, CoverageSourcePrinter.SKIPPED)).isEqualTo(2);
+        assertThat(html).endsWith("line&nbsp;43</td></tr>");
+
+        var unlimited = new StringWriter();
+        printer.render(new BufferedReader(new StringReader(source)), unlimited, 0);
+        assertThat(unlimited.toString()).isEqualTo(render(printer, source.lines().toList()))
+                .doesNotContain(CoverageSourcePrinter.SKIPPED);
+    }
 
-        assertThat(printer.cleanupCode("#include <string>")).isEqualTo("#include&nbsp;&lt;string&gt;");
-        assertThat(printer.cleanupCode("int a; int *p = &a;")).isEqualTo("int&nbsp;a;&nbsp;int&nbsp;*p&nbsp;=&nbsp;&amp;a;");
+    private String render(final CoverageSourcePrinter printer, final List<String> lines) throws IOException {
+        var output = new StringWriter();
+        printer.render(lines, output);
+        return output.toString();
     }
 }
@@ -0,0 +1,71 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.text.StringEscapeUtils;
+
+import j2html.tags.ContainerTag;
+
+import static j2html.TagCreator.*;
+
+/**
+ * Renders the lines of a source code file using a j2html DOM and the OWASP sanitizer for each line. This has been the
+ * implementation of the printers before the rows have been written directly. It is used as a reference for the
+ * expected HTML and as a baseline in the benchmarks.
+ *
+ * @author Ullrich Hafner
+ */
+final class DomSourcePrinter {
+    /**
+     * Renders the specified line as a table row.
+     *
+     * @param printer
+     *         the printer that provides the coverage information
+     * @param line
+     *         the line number
+     * @param sourceCode
+     *         the source code of the line
+     *
+     * @return the HTML of the table row
+     */
+    static String renderLine(final CoverageSourcePrinter printer, final int line, final String sourceCode) {
+        var isPainted = printer.isPainted(line);
+        var row = tr()
+                .withClasses(isPainted ? printer.getColorClass(line) : CoverageSourcePrinter.UNDEFINED,
+                        printer.getModifiedClass(line))
+                .condAttr(isPainted, "data-html-tooltip", isPainted ? printer.getTooltip(line) : StringUtils.EMPTY)
+                .with(
+                        td().withClass("line")
+                                .with(a().withName(String.valueOf(line)).withText(String.valueOf(line))),
+                        td().withClass("hits")
+                                .with(isPainted ? text(printer.getSummaryColumn(line)) : text(StringUtils.EMPTY)));
+        if (printer instanceof VectorCastSourcePrinter vectorCast) {
+            if (vectorCast.hasAnyFunctionCallCoverage()) {
+                addColumn(row, isPainted, vectorCast.getFunctionCallSummaryColumn(line));
+            }
+            if (vectorCast.hasAnyMcdcPairCoverage()) {
+                addColumn(row, isPainted, vectorCast.getMcdcPairSummaryColumn(line));
+            }
+        }
+        return row.with(td().withClass("code")
+                        .with(rawHtml(CoverageSourcePrinter.SANITIZER.render(cleanupCode(sourceCode)))))
+                .render();
+    }
+
+    private static void addColumn(final ContainerTag row, final boolean isPainted, final String summary) {
+        if (!summary.isEmpty()) {
+            row.with(td().withClass("hits").with(isPainted ? text(summary) : text(StringUtils.EMPTY)));
+        }
+    }
+
+    private static String cleanupCode(final String content) {
+        var escaped = StringEscapeUtils.escapeHtml4(content);
+        return escaped.replace("\n", StringUtils.EMPTY)
+                .replace("\r", StringUtils.EMPTY)
+                .replace(" ", CoverageSourcePrinter.NBSP)
+                .replace("\t", CoverageSourcePrinter.NBSP.repeat(8));
+    }
+
+    private DomSourcePrinter() {
+        // prevents instantiation
+    }
+}
@@ -0,0 +1,104 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import io.jenkins.plugins.coverage.metrics.source.RenderedSourceCache.Key;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link RenderedSourceCache}.
+ *
+ * @author Ullrich Hafner
+ */
+class RenderedSourceCacheTest {
+    private static final File JOB = new File("jobs/job");
+    private static final File FIRST_BUILD = new File(JOB, "builds/1");
+    private static final File SECOND_BUILD = new File(JOB, "builds/2");
+    private static final String ID = "coverage";
+    private static final String PATH = "Test.java";
+
+    @Test
+    void shouldLoadViewsOnlyOnce() throws IOException, InterruptedException {
+        var cache = new RenderedSourceCache(100);
+        var key = new Key(FIRST_BUILD, ID, PATH, SourceCodeView.ALL);
+
+        assertThat(cache.get(key, () -> "first")).isEqualTo("first");
+        assertThat(cache.get(key, () -> "second")).isEqualTo("first");
+        assertThat(cache.get(new Key(FIRST_BUILD, ID, PATH, SourceCodeView.MODIFIED_LINES), () -> "modified"))
+                .isEqualTo("modified");
+
+        var statistics = cache.getStatistics();
+        assertThat(statistics.getSize()).isEqualTo(2);
+        assertThat(statistics.getBytes()).isEqualTo(26);
+        assertThat(statistics.getHits()).isEqualTo(1);
+        assertThat(statistics.getMisses()).isEqualTo(2);
+        assertThat(statistics.toString()).startsWith("2 views (26 of 100 bytes), 1 hits, 2 misses");
+    }
+
+    @Test
+    void shouldNotCacheEmptyOrHugeViews() throws IOException, InterruptedException {
+        var cache = new RenderedSourceCache(10);
+        var key = new Key(FIRST_BUILD, ID, PATH, SourceCodeView.ALL);
+
+        assertThat(cache.get(key, () -> "")).isEmpty();
+        assertThat(cache.get(key, () -> "too large")).isEqualTo("too large");
+        assertThat(cache.get(key, () -> "small")).isEqualTo("small");
+
+        assertThat(cache.getStatistics().getSize()).isEqualTo(1);
+        assertThat(cache.getIfPresent(key)).contains("small");
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedViews() {
+        var cache = new RenderedSourceCache(20);
+        var first = new Key(FIRST_BUILD, ID, "First.java", SourceCodeView.ALL);
+        var second = new Key(FIRST_BUILD, ID, "Second.java", SourceCodeView.ALL);
+        var third = new Key(FIRST_BUILD, ID, "Third.java", SourceCodeView.ALL);
+
+        cache.put(first, "1111");
+        cache.put(second, "2222");
+        assertThat(cache.getIfPresent(first)).contains("1111");
+        cache.put(third, "3333");
+
+        assertThat(cache.getIfPresent(second)).isEmpty();
+        assertThat(cache.getIfPresent(first)).contains("1111");
+        assertThat(cache.getIfPresent(third)).contains("3333");
+        assertThat(cache.getStatistics().getEvictions()).isEqualTo(1);
+        assertThat(cache.getStatistics().getBytes()).isEqualTo(16);
+    }
+
+    @Test
+    void shouldInvalidateViewsOfDeletedBuildsAndJobs() {
+        var cache = new RenderedSourceCache(1000);
+        var first = new Key(FIRST_BUILD, ID, PATH, SourceCodeView.ALL);
+        var firstModified = new Key(FIRST_BUILD, ID, PATH, SourceCodeView.MODIFIED_LINES);
+        var second = new Key(SECOND_BUILD, ID, PATH, SourceCodeView.ALL);
+        var otherJob = new Key(new File("jobs/job-2/builds/1"), ID, PATH, SourceCodeView.ALL);
+        cache.put(first, "first");
+        cache.put(firstModified, "modified");
+        cache.put(second, "second");
+        cache.put(otherJob, "other");
+
+        cache.invalidate(FIRST_BUILD);
+
+        assertThat(cache.getIfPresent(first)).isEmpty();
+        assertThat(cache.getIfPresent(firstModified)).isEmpty();
+        assertThat(cache.getIfPresent(second)).contains("second");
+
+        cache.invalidate(JOB);
+
+        assertThat(cache.getIfPresent(second)).isEmpty();
+        assertThat(cache.getIfPresent(otherJob)).contains("other");
+        assertThat(cache.getStatistics().getInvalidations()).isEqualTo(3);
+        assertThat(cache.getStatistics().getBytes()).isEqualTo(10);
+
+        cache.invalidateAll();
+
+        assertThat(cache.getStatistics().getSize()).isZero();
+        assertThat(cache.getStatistics().getBytes()).isZero();
+    }
+}
@@ -3,14 +3,24 @@ package io.jenkins.plugins.coverage.metrics.source;
 import org.jsoup.Jsoup;
 import org.jsoup.parser.Parser;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import edu.hm.hafner.coverage.FileNode;
 import edu.hm.hafner.util.ResourceTest;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -23,6 +33,96 @@ class SourceCodeFacadeTest extends ResourceTest {
     private static final String WHOLE_SOURCE_CODE = "SourcecodeTest.html";
     private static final String MODIFIED_LINES_COVERAGE_SOURCE_CODE = "SourcecodeTestCC.html";
     private static final String INDIRECT_COVERAGE_SOURCE_CODE = "SourcecodeTestICC.html";
+    private static final String ID = "coverage";
+    private static final String PATH = "src/main/java/edu/hm/hafner/Ensure.java";
+
+    @TempDir
+    private Path buildFolder;
+
+    @Test
+    void shouldReadSourceCodeFromStore() throws IOException, InterruptedException {
+        var sourceCodeFacade = createSourceCodeFacade();
+        createManifest(sourceCodeFacade, SourceCodeStorage.PAINTED, "<tr>Pack</tr>");
+
+        assertThat(sourceCodeFacade.hasStoredSourceCode(buildFolder.toFile(), ID)).isTrue();
+        assertThat(sourceCodeFacade.canRead(buildFolder.toFile(), ID, PATH)).isTrue();
+        assertThat(sourceCodeFacade.read(buildFolder.toFile(), ID, PATH)).isEqualTo("<tr>Pack</tr>");
+        assertThat(sourceCodeFacade.canRead(buildFolder.toFile(), ID, "Other.java")).isFalse();
+    }
+
+    @Test
+    void shouldPaintRawSourceCodeOnDemand() throws IOException, InterruptedException {
+        var sourceCodeFacade = createSourceCodeFacade();
+        createManifest(sourceCodeFacade, SourceCodeStorage.RAW, "first\nsecond\n");
+
+        var fileNode = new FileNode("Ensure.java", PATH);
+        var expected = new StringWriter();
+        new CoverageSourcePrinter(fileNode).render(List.of("first", "second"), expected);
+
+        assertThat(sourceCodeFacade.hasStoredSourceCode(buildFolder.toFile(), ID)).isTrue();
+        assertThat(sourceCodeFacade.canRead(buildFolder.toFile(), ID, PATH)).isTrue();
+        assertThat(sourceCodeFacade.read(buildFolder.toFile(), ID, fileNode)).isEqualTo(expected.toString());
+        assertThat(sourceCodeFacade.canRead(buildFolder.toFile(), ID, "Other.java")).isFalse();
+    }
+
+    @Test
+    void shouldReadSourceCodeFromZipFilesOfOlderBuilds() throws IOException, InterruptedException {
+        var sourceCodeFacade = createSourceCodeFacade();
+        createZip(sourceCodeFacade, "<tr>Zip</tr>");
+
+        assertThat(sourceCodeFacade.hasStoredSourceCode(buildFolder.toFile(), ID)).isTrue();
+        assertThat(sourceCodeFacade.canRead(buildFolder.toFile(), ID, PATH)).isTrue();
+        assertThat(sourceCodeFacade.read(buildFolder.toFile(), ID, PATH)).isEqualTo("<tr>Zip</tr>");
+        assertThat(sourceCodeFacade.canRead(buildFolder.toFile(), ID, "Other.java")).isFalse();
+    }
+
+    @Test
+    void shouldReadSourceCodeFromPackFilesOfOlderBuilds() throws IOException, InterruptedException {
+        var sourceCodeFacade = createSourceCodeFacade();
+        SourceCodePackFileTest.writePack(
+                sourceCodeFacade.createPackInBuildFolder(buildFolder.toFile(), ID, SourceCodeStorage.PAINTED), 2,
+                Map.of(SourceCodeFacade.sanitizeFilename(PATH), "<tr>Pack</tr>"));
+
+        assertThat(sourceCodeFacade.hasStoredSourceCode(buildFolder.toFile(), ID)).isTrue();
+        assertThat(sourceCodeFacade.canRead(buildFolder.toFile(), ID, PATH)).isTrue();
+        assertThat(sourceCodeFacade.read(buildFolder.toFile(), ID, PATH)).isEqualTo("<tr>Pack</tr>");
+        assertThat(sourceCodeFacade.canRead(buildFolder.toFile(), ID, "Other.java")).isFalse();
+    }
+
+    @Test
+    void shouldPaintRawSourceCodeOfPackFilesOnDemand() throws IOException, InterruptedException {
+        var sourceCodeFacade = createSourceCodeFacade();
+        SourceCodePackFileTest.writePack(
+                sourceCodeFacade.createPackInBuildFolder(buildFolder.toFile(), ID, SourceCodeStorage.RAW), 2,
+                Map.of(SourceCodeFacade.sanitizeFilename(PATH), "first\nsecond\n"));
+
+        var fileNode = new FileNode("Ensure.java", PATH);
+        var expected = new StringWriter();
+        new CoverageSourcePrinter(fileNode).render(List.of("first", "second"), expected);
+
+        assertThat(sourceCodeFacade.canRead(buildFolder.toFile(), ID, PATH)).isTrue();
+        assertThat(sourceCodeFacade.read(buildFolder.toFile(), ID, fileNode)).isEqualTo(expected.toString());
+    }
+
+    @Test
+    void shouldAnswerAvailabilityFromSnapshot() throws IOException {
+        var sourceCodeFacade = createSourceCodeFacade();
+        assertThat(sourceCodeFacade.hasStoredSourceCode(buildFolder.toFile(), ID)).isFalse();
+
+        var zip = createZip(sourceCodeFacade, "<tr>Zip</tr>");
+        assertThat(sourceCodeFacade.hasStoredSourceCode(buildFolder.toFile(), ID))
+                .as("Results without source files are not cached")
+                .isTrue();
+
+        Files.delete(zip);
+        assertThat(sourceCodeFacade.canRead(buildFolder.toFile(), ID, PATH))
+                .as("Availability is answered from the snapshot")
+                .isTrue();
+
+        SourceCodeAvailability.invalidate(buildFolder);
+        assertThat(sourceCodeFacade.canRead(buildFolder.toFile(), ID, PATH)).isFalse();
+        assertThat(sourceCodeFacade.hasStoredSourceCode(buildFolder.toFile(), ID)).isFalse();
+    }
 
     @Test
     void shouldCalculateSourcecodeForModifiedLinesCoverage() throws IOException {
@@ -30,10 +130,10 @@ class SourceCodeFacadeTest extends ResourceTest {
         var originalHtml = readHtml(WHOLE_SOURCE_CODE);
         var node = createFileCoverageNode();
 
-        var requiredHtml = Jsoup.parse(readHtml(MODIFIED_LINES_COVERAGE_SOURCE_CODE), Parser.xmlParser()).html();
+        var requiredHtml = readHtml(MODIFIED_LINES_COVERAGE_SOURCE_CODE);
 
         var modifiedLinesCoverageHtml = sourceCodeFacade.calculateModifiedLinesCoverageSourceCode(originalHtml, node);
-        assertThat(modifiedLinesCoverageHtml).isEqualTo(requiredHtml);
+        assertThat(toRows(modifiedLinesCoverageHtml)).isEqualTo(toRows(requiredHtml));
     }
 
     @Test
@@ -42,10 +142,38 @@ class SourceCodeFacadeTest extends ResourceTest {
         var originalHtml = readHtml(WHOLE_SOURCE_CODE);
         var node = createFileCoverageNode();
 
-        var requiredHtml = Jsoup.parse(readHtml(INDIRECT_COVERAGE_SOURCE_CODE), Parser.xmlParser()).html();
+        var requiredHtml = readHtml(INDIRECT_COVERAGE_SOURCE_CODE);
 
         var modifiedLinesCoverageHtml = sourceCodeFacade.calculateIndirectCoverageChangesSourceCode(originalHtml, node);
-        assertThat(modifiedLinesCoverageHtml).isEqualTo(requiredHtml);
+        assertThat(toRows(modifiedLinesCoverageHtml)).isEqualTo(toRows(requiredHtml));
+    }
+
+    private void createManifest(final SourceCodeFacade sourceCodeFacade, final SourceCodeStorage storage,
+            final String content) throws IOException {
+        var store = new SourceCodeStore(buildFolder.resolve("store"));
+        var bytes = new ByteArrayOutputStream();
+        var hash = SourceCodeStore.createHash(output -> output.write(content));
+        try (var writer = new SourceCodePackWriter(bytes)) {
+            writer.add(hash, output -> output.write(content));
+        }
+        store.importPack(new ByteArrayInputStream(bytes.toByteArray()));
+
+        var manifestFile = sourceCodeFacade.createManifestInBuildFolder(buildFolder.toFile(), ID);
+        Files.createDirectories(manifestFile.getParent());
+        new SourceCodeManifest(storage, "UTF-8", "", Map.of(SourceCodeFacade.sanitizeFilename(PATH), hash))
+                .relocate(manifestFile, store, store::contains)
+                .write(manifestFile);
+    }
+
+    private Path createZip(final SourceCodeFacade sourceCodeFacade, final String content) throws IOException {
+        var zip = sourceCodeFacade.createFileInBuildFolder(buildFolder.toFile(), ID, PATH).toPath();
+        Files.createDirectories(zip.getParent());
+        try (var output = new ZipOutputStream(Files.newOutputStream(zip))) {
+            output.putNextEntry(new ZipEntry(SourceCodeFacade.sanitizeFilename(PATH)));
+            output.write(content.getBytes(StandardCharsets.UTF_8));
+            output.closeEntry();
+        }
+        return zip;
     }
 
     /**
@@ -73,6 +201,23 @@ class SourceCodeFacadeTest extends ResourceTest {
         return file;
     }
 
+    /**
+     * Converts the specified HTML into a list of table rows, each row is represented by its class names and the
+     * content of its cells. This makes the comparison independent of the formatting of the HTML.
+     *
+     * @param html
+     *         the HTML with the table rows
+     *
+     * @return the table rows
+     */
+    static List<String> toRows(final String html) {
+        return Jsoup.parse(html, Parser.xmlParser()).select("tr").stream()
+                .map(row -> row.className() + row.select("td").stream()
+                        .map(cell -> cell.className() + "=" + cell.html())
+                        .collect(Collectors.joining("|", "[", "]")))
+                .collect(Collectors.toList());
+    }
+
     /**
      * Reads a sourcecode HTML file for testing.
      *
@@ -0,0 +1,90 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link SourceCodeLineIndex}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodeLineIndexTest {
+    private static final String HEADER
+            = "<tr class=\"coverSkip\"><td class=\"line\"></td><td class=\"code\">..</td></tr>";
+    private static final String SKIP
+            = "<tr class=\"coverSkip\"><td class=\"line\">..</td><td class=\"code\"></td></tr>";
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldReadRowsOfLineRanges() {
+        var content = HEADER + row(1) + row(2) + row(3) + SKIP + row(10) + SKIP;
+
+        var index = SourceCodeLineIndex.create(content);
+
+        assertThat(index.getLineCount()).isEqualTo(10);
+        assertThat(index.getRows(content, 1, 1)).isEqualTo(HEADER + row(1));
+        assertThat(index.getRows(content, 2, 3)).isEqualTo(row(2) + row(3));
+        assertThat(index.getRows(content, 3, 5)).isEqualTo(row(3));
+        assertThat(index.getRows(content, 4, 10)).isEqualTo(SKIP + row(10) + SKIP);
+        assertThat(index.getRows(content, 10, 20)).isEqualTo(row(10) + SKIP);
+        assertThat(index.getRows(content, 11, 20)).isEmpty();
+        assertThat(index.getRows(content, 1, Integer.MAX_VALUE)).isEqualTo(content);
+    }
+
+    @Test
+    void shouldReadRowsInSmallChunks() throws IOException {
+        var content = new StringBuilder();
+        for (int line = 1; line <= 1000; line++) {
+            content.append(row(line)).append('\n');
+        }
+        var reader = new StringReader(content.toString()) {
+            @Override
+            public int read(final char[] buffer, final int offset, final int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 7));
+            }
+        };
+
+        var index = SourceCodeLineIndex.create(reader);
+
+        assertThat(index.getLineCount()).isEqualTo(1000);
+        assertThat(index.getRows(content.toString(), 500, 501)).isEqualTo(row(500) + "\n" + row(501) + "\n");
+    }
+
+    @Test
+    void shouldHandleFilesWithoutRows() {
+        var index = SourceCodeLineIndex.create("");
+
+        assertThat(index.getLineCount()).isZero();
+        assertThat(index.getRows("", 1, 100)).isEmpty();
+    }
+
+    @Test
+    void shouldWriteAndReadIndex() throws IOException {
+        var content = HEADER + row(1) + row(2) + SKIP + row(7);
+        var file = folder.resolve("index.lines");
+
+        SourceCodeLineIndex.create(content).write(file);
+        var index = SourceCodeLineIndex.read(file);
+
+        assertThat(index.getLineCount()).isEqualTo(7);
+        assertThat(index.getRows(content, 2, 6)).isEqualTo(row(2) + SKIP);
+        assertThat(index.getRows(content, 7, 7)).isEqualTo(row(7));
+
+        Files.write(file, new byte[] {0, 0, 0, 2});
+        assertThatExceptionOfType(IOException.class).isThrownBy(() -> SourceCodeLineIndex.read(file));
+    }
+
+    private String row(final int line) {
+        return String.format("<tr class=\"coverFull\"><td class=\"line\"><a name=\"%d\">%d</a></td>"
+                + "<td class=\"hits\">1</td><td class=\"code\">int a = 1;</td></tr>", line, line);
+    }
+}
@@ -0,0 +1,156 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link SourceCodePackFile}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodePackFileTest {
+    private static final String FIRST = "first.java";
+    private static final String SECOND = "second.java";
+
+    @TempDir
+    private Path folder;
+
+    @ParameterizedTest(name = "Version {0}")
+    @ValueSource(ints = {1, 2})
+    void shouldReadFilesOfIndexedPack(final int version) throws IOException {
+        var pack = folder.resolve("coverage-sources.pack");
+        writePack(pack, version, Map.of(FIRST, "<tr>First</tr>", SECOND, "<tr>Äöü</tr>"));
+
+        assertThat(SourceCodePackFile.getNames(pack)).containsExactlyInAnyOrder(FIRST, SECOND);
+        assertThat(SourceCodePackFile.contains(pack, FIRST)).isTrue();
+        assertThat(SourceCodePackFile.contains(pack, "other.java")).isFalse();
+        assertThat(SourceCodePackFile.read(pack, FIRST)).contains("<tr>First</tr>");
+        assertThat(SourceCodePackFile.read(pack, SECOND)).contains("<tr>Äöü</tr>");
+        assertThat(SourceCodePackFile.read(pack, "other.java")).isEmpty();
+    }
+
+    @Test
+    void shouldReadIndexAgainIfPackHasBeenModified() throws IOException {
+        var pack = folder.resolve("coverage-sources.pack");
+        writePack(pack, 2, Map.of(FIRST, "<tr>First</tr>"));
+        assertThat(SourceCodePackFile.getNames(pack)).containsExactly(FIRST);
+
+        writePack(pack, 2, Map.of(FIRST, "<tr>Changed</tr>", SECOND, "<tr>Second</tr>"));
+        assertThat(SourceCodePackFile.getNames(pack)).containsExactlyInAnyOrder(FIRST, SECOND);
+        assertThat(SourceCodePackFile.read(pack, FIRST)).contains("<tr>Changed</tr>");
+    }
+
+    @Test
+    void shouldIgnoreMissingPack() throws IOException {
+        var pack = folder.resolve("missing.pack");
+
+        assertThat(SourceCodePackFile.getNames(pack)).isEmpty();
+        assertThat(SourceCodePackFile.contains(pack, FIRST)).isFalse();
+        assertThatIOException().isThrownBy(() -> SourceCodePackFile.read(pack, FIRST));
+    }
+
+    @Test
+    void shouldRejectPacksOfOtherFormats() throws IOException {
+        var streamed = folder.resolve("streamed.pack");
+        try (var writer = new SourceCodePackWriter(Files.newOutputStream(streamed))) {
+            writer.add(FIRST, output -> output.write("<tr>First</tr>"));
+        }
+        var truncated = folder.resolve("truncated.pack");
+        writePack(truncated, 2, Map.of(FIRST, "<tr>First</tr>"));
+        var bytes = Files.readAllBytes(truncated);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+
+        for (Path pack : List.of(streamed, truncated)) {
+            assertThat(SourceCodePackFile.getNames(pack)).isEmpty();
+            assertThat(SourceCodePackFile.contains(pack, FIRST)).isFalse();
+            assertThatIOException().isThrownBy(() -> SourceCodePackFile.read(pack, FIRST));
+        }
+    }
+
+    /**
+     * Writes an indexed pack file in the format of previous versions of the plugin.
+     *
+     * @param pack
+     *         the pack file to write
+     * @param version
+     *         the format version (1 or 2)
+     * @param files
+     *         the names and contents of the files to add
+     *
+     * @throws IOException
+     *         if the file could not be written
+     */
+    static void writePack(final Path pack, final int version, final Map<String, String> files) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var data = new DataOutputStream(bytes);
+        data.writeInt(SourceCodePack.MAGIC);
+        data.writeInt(version);
+
+        Map<String, long[]> index = new LinkedHashMap<>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            var content = file.getValue().getBytes(StandardCharsets.UTF_8);
+            var compressed = deflate(content);
+            if (version > 1) {
+                var crc = new CRC32();
+                crc.update(compressed);
+                data.writeByte(1);
+                data.writeUTF(file.getKey());
+                data.writeInt(content.length);
+                data.writeInt(compressed.length);
+                data.writeInt((int) crc.getValue());
+            }
+            data.flush();
+            index.put(file.getKey(), new long[] {bytes.size(), compressed.length, content.length});
+            data.write(compressed);
+        }
+        if (version > 1) {
+            data.writeByte(0);
+        }
+
+        data.flush();
+        long indexOffset = bytes.size();
+        for (Map.Entry<String, long[]> entry : index.entrySet()) {
+            data.writeUTF(entry.getKey());
+            data.writeLong(entry.getValue()[0]);
+            data.writeInt((int) entry.getValue()[1]);
+            data.writeInt((int) entry.getValue()[2]);
+        }
+        data.writeLong(indexOffset);
+        data.writeInt(index.size());
+        data.writeInt(SourceCodePack.MAGIC);
+        data.flush();
+
+        Files.createDirectories(pack.getParent());
+        Files.write(pack, bytes.toByteArray());
+    }
+
+    private static byte[] deflate(final byte[] content) throws IOException {
+        var compressed = new ByteArrayOutputStream();
+        var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try (var output = new DeflaterOutputStream(compressed, deflater)) {
+            output.write(content);
+        }
+        finally {
+            deflater.end();
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,165 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the classes {@link SourceCodePackWriter} and {@link SourceCodePack}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodePackWriterTest {
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldCreatePackWithoutEntries() throws IOException {
+        var file = folder.resolve("empty.pack");
+
+        new SourceCodePackWriter(file).close();
+
+        assertThat(readEntries(Files.readAllBytes(file))).isEmpty();
+    }
+
+    @Test
+    void shouldStoreFilesFromSeveralThreads() throws IOException {
+        var file = folder.resolve("sources.pack");
+
+        try (var pack = new SourceCodePackWriter(file)) {
+            IntStream.range(0, 100).parallel().forEach(index -> add(pack, index));
+            pack.add("Empty.java", output -> { });
+        }
+
+        var entries = readEntries(Files.readAllBytes(file));
+        assertThat(entries).hasSize(101)
+                .containsEntry("File_42.java", createContent(42))
+                .containsEntry("File_0.java", createContent(0))
+                .containsEntry("Empty.java", "")
+                .doesNotContainKey("File_100.java");
+    }
+
+    @Test
+    void shouldRejectInvalidPacks() {
+        var bytes = "This is not a pack file at all".getBytes(StandardCharsets.UTF_8);
+
+        assertThatIOException().isThrownBy(() -> readEntries(bytes));
+    }
+
+    @Test
+    void shouldReadPackSequentially() throws IOException, NoSuchAlgorithmException {
+        var bytes = new ByteArrayOutputStream();
+        var pack = new SourceCodePackWriter(bytes);
+        try (pack) {
+            add(pack, 1);
+            add(pack, 2);
+        }
+
+        var entries = readEntries(bytes.toByteArray());
+
+        assertThat(entries).containsOnly(
+                entry("File_1.java", createContent(1)), entry("File_2.java", createContent(2)));
+        assertThat(pack.getChecksum()).isEqualTo(
+                HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray())));
+    }
+
+    @Test
+    void shouldDetectCorruptEntriesInStream() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var pack = new SourceCodePackWriter(bytes)) {
+            add(pack, 1);
+        }
+        var corrupted = bytes.toByteArray();
+        corrupted[SourceCodePack.HEADER_SIZE + 20] ^= 0x7F; // inside the compressed content
+
+        assertThatIOException().isThrownBy(() -> SourceCodePack.readEntries(
+                new ByteArrayInputStream(corrupted), (name, compressed) -> { }));
+        assertThatIOException().isThrownBy(() -> SourceCodePack.readEntries(
+                new ByteArrayInputStream(Arrays.copyOf(bytes.toByteArray(), 20)), (name, compressed) -> { }));
+    }
+
+    @Test
+    void shouldStreamLargeFilesInChunks() throws IOException {
+        var content = createRandomContent();
+        var bytes = new ByteArrayOutputStream();
+        try (var pack = new SourceCodePackWriter(bytes)) {
+            add(pack, 1);
+            pack.add("Large.java", output -> output.write(content));
+            add(pack, 2);
+        }
+
+        assertThat(bytes.size()).isGreaterThan(SourceCodePack.MAX_CHUNK_SIZE);
+        assertThat(readEntries(bytes.toByteArray())).containsOnly(entry("File_1.java", createContent(1)),
+                entry("Large.java", content), entry("File_2.java", createContent(2)));
+    }
+
+    @Test
+    void shouldSkipEntriesThatFailedWhileStreaming() throws IOException {
+        var content = createRandomContent();
+        var bytes = new ByteArrayOutputStream();
+        try (var pack = new SourceCodePackWriter(bytes)) {
+            add(pack, 1);
+            assertThatIOException().isThrownBy(() -> pack.add("Broken.java", output -> {
+                output.write(content);
+                output.flush();
+                throw new IOException("Source code file could not be read");
+            }));
+            assertThatIllegalStateException().isThrownBy(() -> pack.add("Failed.java", output -> {
+                throw new IllegalStateException("Painting failed");
+            }));
+            add(pack, 2);
+        }
+
+        assertThat(bytes.size()).isGreaterThan(SourceCodePack.MAX_CHUNK_SIZE);
+        assertThat(readEntries(bytes.toByteArray())).containsOnly(
+                entry("File_1.java", createContent(1)), entry("File_2.java", createContent(2)));
+    }
+
+    private Map<String, String> readEntries(final byte[] pack) throws IOException {
+        Map<String, String> entries = new HashMap<>();
+        SourceCodePack.readEntries(new ByteArrayInputStream(pack), (name, compressed) -> {
+            var content = compressed.readAllBytes();
+            entries.put(name, new String(SourceCodePack.inflate(ByteBuffer.wrap(content), compressed.getSize()),
+                    StandardCharsets.UTF_8));
+        });
+        return entries;
+    }
+
+    private String createRandomContent() {
+        var random = new Random(42);
+        return random.ints(4 * SourceCodePack.MAX_CHUNK_SIZE, ' ', '~' + 1)
+                .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append)
+                .toString();
+    }
+
+    private void add(final SourceCodePackWriter pack, final int index) {
+        try {
+            pack.add("File_" + index + ".java", output -> output.write(createContent(index)));
+        }
+        catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private String createContent(final int index) {
+        return "<tr>" + index + " ä</tr>".repeat(index + 1);
+    }
+}
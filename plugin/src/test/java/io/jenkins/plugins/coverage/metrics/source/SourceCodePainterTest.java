@@ -0,0 +1,49 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.junit.jupiter.api.Test;
+
+import edu.hm.hafner.util.FilteredLog;
+
+import io.jenkins.plugins.coverage.metrics.source.SourceCodePainter.PaintingStatistics;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link SourceCodePainter}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodePainterTest {
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    void shouldLogSlowestFiles() {
+        var statistics = new PaintingStatistics();
+
+        statistics.add("Fast.java", true, 2 * MILLIS);
+        statistics.add("Slow.java", true, 30 * MILLIS);
+        statistics.add("Broken.java", false, 5 * MILLIS);
+
+        assertThat(statistics.getCount()).isEqualTo(2);
+        assertThat(statistics.getSlowestFiles(2)).containsExactly("Slow.java", "Broken.java");
+
+        var log = new FilteredLog("Errors");
+        statistics.log(log);
+
+        assertThat(log.getInfoMessages()).hasSize(4)
+                .anySatisfy(message -> assertThat(message).contains("37 ms for all 3 files, 12 ms on average"))
+                .contains("   Slow.java: 30 ms", "   Broken.java: 5 ms", "   Fast.java: 2 ms");
+    }
+
+    @Test
+    void shouldNotLogEmptyStatistics() {
+        var statistics = new PaintingStatistics();
+
+        var log = new FilteredLog("Errors");
+        statistics.log(log);
+
+        assertThat(statistics.getCount()).isZero();
+        assertThat(statistics.getSlowestFiles(5)).isEmpty();
+        assertThat(log.getInfoMessages()).isEmpty();
+    }
+}
@@ -0,0 +1,139 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import edu.hm.hafner.coverage.CoverageParser;
+import edu.hm.hafner.coverage.CoverageParser.ProcessingMode;
+import edu.hm.hafner.coverage.FileNode;
+import edu.hm.hafner.coverage.parser.JacocoParser;
+import edu.hm.hafner.coverage.parser.PitestParser;
+import edu.hm.hafner.coverage.parser.VectorCastParser;
+import edu.hm.hafner.util.FilteredLog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of painting a source code file with the {@link SourceCodeRowWriter} and with the DOM based
+ * {@link DomSourcePrinter}. Run the benchmark with the {@link #main(String[])} method from the IDE or from the test
+ * class path.
+ *
+ * @author Ullrich Hafner
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SourceCodePaintingBenchmark {
+    private static final String RESOURCES = "/io/jenkins/plugins/coverage/metrics/";
+
+    @Param({"COVERAGE", "MUTATION", "VECTORCAST"})
+    private String printerType;
+
+    private CoverageSourcePrinter printer;
+    private List<String> lines;
+
+    /**
+     * Reads the source code file and creates the printer.
+     *
+     * @throws IOException
+     *         if the resources could not be read
+     */
+    @Setup
+    public void setup() throws IOException {
+        lines = read("source/AcuCobolParser.java.txt").lines().toList();
+        printer = switch (printerType) {
+            case "MUTATION" -> new MutationSourcePrinter(
+                    parse("steps/mutations.xml", new PitestParser()));
+            case "VECTORCAST" -> new VectorCastSourcePrinter(
+                    parse("steps/vectorcast-statement-mcdc-fcc.xml", new VectorCastParser(ProcessingMode.FAIL_FAST)));
+            default -> new CoverageSourcePrinter(
+                    parse("source/jacoco-acu-cobol-parser.xml", new JacocoParser()));
+        };
+    }
+
+    /**
+     * Paints all lines with a DOM for each line (j2html) and the OWASP sanitizer for each source code column.
+     *
+     * @param blackhole
+     *         consumes the painted file
+     */
+    @Benchmark
+    public void paintWithDom(final Blackhole blackhole) {
+        var output = new StringWriter();
+        output.write(printer.getColumnHeader());
+        for (int line = 0; line < lines.size(); line++) {
+            output.write(DomSourcePrinter.renderLine(printer, line + 1, lines.get(line)));
+        }
+        blackhole.consume(output.toString());
+    }
+
+    /**
+     * Paints all lines by writing the rows directly to the output.
+     *
+     * @param blackhole
+     *         consumes the painted file
+     *
+     * @throws IOException
+     *         never thrown
+     */
+    @Benchmark
+    public void paintWithRowWriter(final Blackhole blackhole) throws IOException {
+        var output = new StringWriter();
+        printer.render(lines, output);
+        blackhole.consume(output.toString());
+    }
+
+    private FileNode parse(final String fileName, final CoverageParser parser) throws IOException {
+        try (var reader = new InputStreamReader(open(fileName), StandardCharsets.UTF_8)) {
+            var root = parser.parse(reader, fileName, new FilteredLog("Errors"));
+            return root.getAllFileNodes().get(0);
+        }
+    }
+
+    private String read(final String fileName) throws IOException {
+        try (var stream = open(fileName)) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private InputStream open(final String fileName) {
+        return Objects.requireNonNull(SourceCodePaintingBenchmark.class.getResourceAsStream(RESOURCES + fileName),
+                "Resource not found: " + fileName);
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *         not used
+     *
+     * @throws RunnerException
+     *         if the benchmark fails
+     */
+    public static void main(final String... args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SourceCodePaintingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,211 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.hm.hafner.coverage.FileNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import hudson.model.Run;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the class {@link SourceCodeResponse}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodeResponseTest {
+    private static final String ID = "coverage";
+    private static final String PATH = "src/main/java/Test.java";
+    private static final String CONTENT = "<tr class=\"noCover\"><td class=\"line\"><a name=\"1\">1</a></td></tr>";
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldCreateEntityTagsForBuildFileAndView() {
+        var build = createBuild(1000L);
+
+        var etag = SourceCodeResponse.createEntityTag(build, ID, PATH, SourceCodeView.ALL);
+        assertThat(etag).startsWith("\"").endsWith("\"").hasSize(34);
+        assertThat(SourceCodeResponse.createEntityTag(build, ID, PATH, SourceCodeView.ALL)).isEqualTo(etag);
+        assertThat(SourceCodeResponse.createEntityTag(build, ID, PATH, SourceCodeView.MODIFIED_LINES))
+                .isNotEqualTo(etag);
+        assertThat(SourceCodeResponse.createEntityTag(build, ID, "Other.java", SourceCodeView.ALL))
+                .isNotEqualTo(etag);
+        assertThat(SourceCodeResponse.createEntityTag(createBuild(2000L), ID, PATH, SourceCodeView.ALL))
+                .as("Build with the same number that replaces a deleted build")
+                .isNotEqualTo(etag);
+    }
+
+    @Test
+    void shouldMatchEntityTags() {
+        assertThat(SourceCodeResponse.matches(null, "\"1\"")).isFalse();
+        assertThat(SourceCodeResponse.matches("", "\"1\"")).isFalse();
+        assertThat(SourceCodeResponse.matches("\"2\"", "\"1\"")).isFalse();
+        assertThat(SourceCodeResponse.matches("\"1\"", "\"1\"")).isTrue();
+        assertThat(SourceCodeResponse.matches("\"2\", W/\"1\"", "\"1\"")).isTrue();
+        assertThat(SourceCodeResponse.matches("*", "\"1\"")).isTrue();
+    }
+
+    @Test
+    void shouldDetectGzipEncoding() {
+        assertThat(SourceCodeResponse.acceptsGzip(null)).isFalse();
+        assertThat(SourceCodeResponse.acceptsGzip("deflate, br")).isFalse();
+        assertThat(SourceCodeResponse.acceptsGzip("gzip")).isTrue();
+        assertThat(SourceCodeResponse.acceptsGzip("deflate, GZIP;q=0.5, br")).isTrue();
+        assertThat(SourceCodeResponse.acceptsGzip("gzip;q=0, br")).isFalse();
+        assertThat(SourceCodeResponse.acceptsGzip("gzip; q=0.000")).isFalse();
+    }
+
+    @Test
+    void shouldSendStoredBlobWithoutDecompressing() throws IOException {
+        var build = createBuild(1000L);
+        createManifest(build);
+        var request = createRequest("gzip, deflate", null);
+        var response = mock(StaplerResponse2.class);
+        var output = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(createOutputStream(output));
+
+        new SourceCodeResponse(new SourceCodeFacade()).send(build, ID, new FileNode("Test.java", PATH),
+                SourceCodeView.ALL, request, response);
+
+        verify(response).setHeader(SourceCodeResponse.CONTENT_ENCODING, SourceCodeResponse.GZIP);
+        verify(response).setHeader(SourceCodeResponse.ETAG,
+                SourceCodeResponse.createEntityTag(build, ID, PATH, SourceCodeView.ALL));
+        verify(response, never()).getCompressedWriter(any());
+        try (var input = new GZIPInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(CONTENT);
+        }
+    }
+
+    @Test
+    void shouldSendRenderedViewIfGzipIsNotAccepted() throws IOException {
+        var build = createBuild(1000L);
+        createManifest(build);
+        var request = createRequest(null, null);
+        var response = mock(StaplerResponse2.class);
+        var output = new StringWriter();
+        when(response.getCompressedWriter(request)).thenReturn(new PrintWriter(output));
+
+        new SourceCodeResponse(new SourceCodeFacade()).send(build, ID, new FileNode("Test.java", PATH),
+                SourceCodeView.ALL, request, response);
+
+        verify(response, never()).setHeader(SourceCodeResponse.CONTENT_ENCODING, SourceCodeResponse.GZIP);
+        assertThat(output).hasToString(CONTENT);
+    }
+
+    @Test
+    void shouldSendNotModifiedIfEntityTagMatches() throws IOException {
+        var build = createBuild(1000L);
+        createManifest(build);
+        var request = createRequest("gzip",
+                SourceCodeResponse.createEntityTag(build, ID, PATH, SourceCodeView.MODIFIED_LINES));
+        var response = mock(StaplerResponse2.class);
+
+        new SourceCodeResponse(new SourceCodeFacade()).send(build, ID, new FileNode("Test.java", PATH),
+                SourceCodeView.MODIFIED_LINES, request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(response, never()).getOutputStream();
+        verify(response, never()).getCompressedWriter(any());
+    }
+
+    @Test
+    void shouldNotCreateEntityTagsForRunningBuilds() throws IOException {
+        var build = createBuild(1000L);
+        createManifest(build);
+        when(build.isBuilding()).thenReturn(true);
+        var request = createRequest(null, "*");
+        var response = mock(StaplerResponse2.class);
+        when(response.getCompressedWriter(request)).thenReturn(new PrintWriter(new StringWriter()));
+
+        new SourceCodeResponse(new SourceCodeFacade()).send(build, ID, new FileNode("Test.java", PATH),
+                SourceCodeView.ALL, request, response);
+
+        verify(response, never()).setHeader(eq(SourceCodeResponse.ETAG), anyString());
+        verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    @Test
+    void shouldSendNotFoundForMissingFiles() throws IOException {
+        var build = createBuild(1000L);
+        var response = mock(StaplerResponse2.class);
+
+        new SourceCodeResponse(new SourceCodeFacade()).send(build, ID, new FileNode("Test.java", PATH),
+                SourceCodeView.ALL, createRequest("gzip", null), response);
+
+        verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    private void createManifest(final Run<?, ?> build) throws IOException {
+        var store = new SourceCodeStore(folder.resolve("store"));
+        var pack = folder.resolve("sources.pack");
+        var hash = SourceCodeStore.createHash(output -> output.write(CONTENT));
+        try (var writer = new SourceCodePackWriter(pack)) {
+            writer.add(hash, output -> output.write(CONTENT));
+        }
+        try (var input = Files.newInputStream(pack)) {
+            store.importPack(input);
+        }
+        var manifestFile = new SourceCodeFacade().createManifestInBuildFolder(build.getRootDir(), ID);
+        Files.createDirectories(manifestFile.getParent());
+        new SourceCodeManifest(SourceCodeStorage.PAINTED, "UTF-8", "",
+                Map.of(SourceCodeFacade.sanitizeFilename(PATH), hash))
+                .relocate(manifestFile, store, store::contains)
+                .write(manifestFile);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Run<?, ?> createBuild(final long time) {
+        Run<?, ?> build = mock(Run.class);
+        when(build.getRootDir()).thenReturn(folder.resolve("build").toFile());
+        when(build.getExternalizableId()).thenReturn("job#1");
+        when(build.getTimeInMillis()).thenReturn(time);
+        return build;
+    }
+
+    private StaplerRequest2 createRequest(final String acceptEncoding, final String ifNoneMatch) {
+        var request = mock(StaplerRequest2.class);
+        when(request.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+        when(request.getHeader(SourceCodeResponse.IF_NONE_MATCH)).thenReturn(ifNoneMatch);
+        return request;
+    }
+
+    private ServletOutputStream createOutputStream(final ByteArrayOutputStream output) {
+        return new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+                // not required
+            }
+
+            @Override
+            public void write(final int b) {
+                output.write(b);
+            }
+        };
+    }
+}
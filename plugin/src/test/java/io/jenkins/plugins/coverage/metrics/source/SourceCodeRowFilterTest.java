@@ -0,0 +1,118 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.junit.jupiter.api.Test;
+
+import edu.hm.hafner.coverage.FileNode;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link SourceCodeRowFilter}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodeRowFilterTest {
+    private static final String SKIP_ROW = "<tr class=\"coverSkip\"><td class=\"line\">..</td><td class=\"hits\"></td>"
+            + "<td class=\"code\"></td></tr>";
+
+    @Test
+    void shouldShowModifiedLinesWithSurroundingLines() throws IOException {
+        var file = createFile();
+        var printer = new CoverageSourcePrinter(file);
+
+        var filtered = SourceCodeRowFilter.createModifiedLinesFilter(file).filter(render(printer));
+
+        assertThat(filtered).startsWith(SKIP_ROW + printer.renderLine(17, "line 17"))
+                .contains(printer.renderLine(20, "line 20"))
+                .endsWith(printer.renderLine(23, "line 23") + SKIP_ROW)
+                .doesNotContain("<a name=\"5\">", "<a name=\"16\">", "<a name=\"24\">");
+    }
+
+    @Test
+    void shouldRepaintIndirectCoverageChanges() throws IOException {
+        var file = createFile();
+        file.addIndirectCoverageChange(20, 2);
+        file.addIndirectCoverageChange(5, -1);
+        var printer = new CoverageSourcePrinter(file);
+
+        var filtered = SourceCodeRowFilter.createIndirectCoverageChangesFilter(file).filter(render(printer));
+
+        assertThat(filtered)
+                .startsWith(SKIP_ROW + printer.renderLine(2, "line 2"))
+                .contains("<tr class=\"coverNone\" data-html-tooltip=\"Covered at least once\">"
+                        + "<td class=\"line\"><a name=\"5\">5</a></td><td class=\"hits\">-1</td>")
+                .contains("<tr class=\"coverFull modified\" data-html-tooltip=\"Not covered\">"
+                        + "<td class=\"line\"><a name=\"20\">20</a></td><td class=\"hits\">2</td>")
+                .contains(printer.renderLine(8, "line 8") + SKIP_ROW + printer.renderLine(17, "line 17"))
+                .endsWith(printer.renderLine(23, "line 23") + SKIP_ROW);
+    }
+
+    @Test
+    void shouldKeepColumnsOfSkipRows() {
+        var file = new FileNode("Columns.java", "Columns.java");
+        file.addCounters(10, 1, 0);
+        file.addModifiedLines(10);
+        var content = "<tr class=\"noCover\"><td class=\"line\">Line</td><td class=\"line\">Calls</td></tr>"
+                + createRow(1) + createRow(6) + createRow(10) + "<tr class=\"coverSkip\"><td class=\"line\">..</td>"
+                + "<td class=\"hits\"></td><td class=\"hits\"></td><td class=\"code\"></td></tr>" + createRow(40);
+
+        assertThat(SourceCodeRowFilter.createModifiedLinesFilter(file).filter(content)).isEqualTo(
+                "<tr class=\"coverSkip\"><td class=\"line\">..</td><td class=\"hits\"></td><td class=\"hits\"></td>"
+                        + "<td class=\"code\"></td></tr>"
+                        + createRow(10)
+                        + "<tr class=\"coverSkip\"><td class=\"line\">..</td><td class=\"hits\"></td>"
+                        + "<td class=\"hits\"></td><td class=\"code\"></td></tr>");
+    }
+
+    @Test
+    void shouldSkipAllLinesIfNothingIsVisible() throws IOException {
+        var file = new FileNode("Empty.java", "Empty.java");
+
+        var filtered = SourceCodeRowFilter.createModifiedLinesFilter(file)
+                .filter(render(new CoverageSourcePrinter(file)));
+
+        assertThat(filtered).isEqualTo(SKIP_ROW);
+    }
+
+    @Test
+    void shouldMergeOverlappingIntervals() {
+        var filter = SourceCodeRowFilter.createIndirectCoverageChangesFilter(createFile());
+        assertThat(filter.isVisible(1)).isFalse();
+
+        var file = createFile();
+        file.addIndirectCoverageChange(10, 1);
+        file.addIndirectCoverageChange(16, 1);
+        file.addIndirectCoverageChange(30, 1);
+        var merged = SourceCodeRowFilter.createIndirectCoverageChangesFilter(file);
+
+        assertThat(IntStream.rangeClosed(1, 40).filter(merged::isVisible).boxed().collect(Collectors.toList()))
+                .containsExactlyElementsOf(IntStream.concat(IntStream.rangeClosed(7, 19), IntStream.rangeClosed(27, 33))
+                        .boxed().collect(Collectors.toList()));
+    }
+
+    private String createRow(final int line) {
+        return "<tr class=\"coverFull\"><td class=\"line\"><a name=\"" + line + "\">" + line
+                + "</a></td><td class=\"hits\">1</td><td class=\"hits\">2</td><td class=\"code\">code</td></tr>";
+    }
+
+    private FileNode createFile() {
+        var file = new FileNode("Filter.java", "Filter.java");
+        file.addCounters(5, 1, 0);
+        file.addCounters(20, 0, 1);
+        file.addModifiedLines(20);
+        return file;
+    }
+
+    private String render(final CoverageSourcePrinter printer) throws IOException {
+        var output = new StringWriter();
+        printer.render(IntStream.rangeClosed(1, 30).mapToObj(line -> "line " + line).collect(Collectors.toList()),
+                output);
+        return output.toString();
+    }
+}
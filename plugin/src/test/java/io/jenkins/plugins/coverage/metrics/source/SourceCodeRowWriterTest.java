@@ -0,0 +1,125 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import edu.hm.hafner.coverage.FileNode;
+import edu.hm.hafner.coverage.Node;
+import edu.hm.hafner.coverage.parser.JacocoParser;
+import edu.hm.hafner.coverage.parser.PitestParser;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.jenkins.plugins.coverage.metrics.AbstractCoverageTest;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link SourceCodeRowWriter}. Verifies that the rows are identical to the rows that are rendered with
+ * the DOM based {@link DomSourcePrinter}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodeRowWriterTest extends AbstractCoverageTest {
+    private static final List<String> SPECIAL_LINES = List.of(
+            "",
+            "\t\tint a = 1;\r",
+            "if (a < b && c > d) { return \"x\" + 'y'; }",
+            "{{ template }}{",
+            "{",
+            "{\n",
+            "{ {\t{{",
+            "@Override // `back-ticks` = äöüÄÖÜß €uro ½ © ® µ",
+            "Ελληνικά Русский עברית عربي 中文 日本語 한국어",
+            "emoji \uD83D\uDE00 and orphaned \uD800 surrogate",
+            "controls \u0000\u0001\u001f\u007f\u0080\u009f soft\u00adhyphen",
+            "<script>alert('XSS')</script> &amp; &lt; &#x27; &nbsp;",
+            "\uFEFF byte order mark and specials \uFFFD \uFFFF");
+
+    @ParameterizedTest(name = "{0}")
+    @ValueSource(strings = {"AcuCobolParser.java.txt", "PathUtil.java.txt"})
+    void shouldRenderSameHtmlAsDom(final String sourceFile) {
+        var lines = new ArrayList<>(toString(sourceFile).lines().toList());
+        lines.addAll(SPECIAL_LINES);
+
+        for (CoverageSourcePrinter printer : createPrinters()) {
+            for (int line = 0; line < lines.size(); line++) {
+                var sourceCode = lines.get(line);
+                assertThat(printer.renderLine(line + 1, sourceCode))
+                        .as("Line %d of printer %s", line + 1, printer.getPath())
+                        .isEqualTo(DomSourcePrinter.renderLine(printer, line + 1, sourceCode));
+            }
+        }
+    }
+
+    @Test
+    void shouldRenderAllFileRowsWithSingleWriter() throws IOException {
+        var lines = toString("PathUtil.java.txt").lines().toList();
+
+        for (CoverageSourcePrinter printer : createPrinters()) {
+            var output = new StringWriter();
+            printer.render(lines, output);
+
+            var expected = new StringBuilder(printer.getColumnHeader());
+            for (int line = 0; line < lines.size(); line++) {
+                expected.append(DomSourcePrinter.renderLine(printer, line + 1, lines.get(line)));
+            }
+            assertThat(output.toString()).isEqualTo(expected.toString());
+        }
+    }
+
+    @Test
+    void shouldPaintCharactersLikeSanitizer() throws IOException {
+        var painted = new StringBuilder();
+        for (char c = 0; c < SourceCodeRowWriter.TABLE_SIZE; c++) {
+            painted.append(c);
+        }
+        var allCharacters = painted.toString();
+
+        var output = new StringWriter();
+        var row = new SourceCodeRowWriter(output);
+        row.appendCode(allCharacters);
+
+        assertThat(output.toString()).isEmpty();
+
+        row.endRow();
+        assertThat(SourceCodeRowWriter.hasLookupTable()).isTrue();
+        assertThat(output.toString()).isEqualTo("<td class=\"code\">"
+                + SourceCodeRowWriter.paintReference(allCharacters) + "</td></tr>");
+    }
+
+    @Test
+    void shouldRenderXmlSymbols() {
+        assertThat(SourceCodeRowWriter.cleanupCode("#include <string>")).isEqualTo("#include&nbsp;&lt;string&gt;");
+        assertThat(SourceCodeRowWriter.cleanupCode("int a; int *p = &a;"))
+                .isEqualTo("int&nbsp;a;&nbsp;int&nbsp;*p&nbsp;=&nbsp;&amp;a;");
+    }
+
+    private List<CoverageSourcePrinter> createPrinters() {
+        var printers = new ArrayList<CoverageSourcePrinter>();
+
+        var jacoco = readResult("jacoco-acu-cobol-parser.xml", new JacocoParser());
+        var file = jacoco.getAllFileNodes().get(0);
+        file.addModifiedLines(1, 2, 3, 10, 20, 30, 40, 50);
+        printers.add(new CoverageSourcePrinter(file));
+
+        var mutations = readResult("../steps/mutations.xml", new PitestParser());
+        printers.add(new MutationSourcePrinter(mutations.findFile("CoberturaParser.java").orElseThrow()));
+
+        for (String report : List.of("vectorcast-statement-branch.xml", "vectorcast-statement-mcdc.xml",
+                "vectorcast-statement-mcdc-fcc.xml")) {
+            addVectorCastPrinters(readVectorCastResult("../steps/" + report), printers);
+        }
+        return printers;
+    }
+
+    private void addVectorCastPrinters(final Node root, final List<CoverageSourcePrinter> printers) {
+        for (FileNode file : root.getAllFileNodes()) {
+            printers.add(new VectorCastSourcePrinter(file));
+        }
+    }
+}
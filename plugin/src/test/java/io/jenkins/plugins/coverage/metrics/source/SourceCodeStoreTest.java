@@ -0,0 +1,240 @@
+package io.jenkins.plugins.coverage.metrics.source;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the classes {@link SourceCodeStore} and {@link SourceCodeManifest}.
+ *
+ * @author Ullrich Hafner
+ */
+class SourceCodeStoreTest {
+    private static final Map<String, String> CONTENTS = new HashMap<>();
+    private static final String FIRST = createHash("<tr>first</tr>");
+    private static final String SECOND = createHash("<tr>second</tr>");
+    private static final String THIRD = createHash("<tr>third</tr>");
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldImportNewBlobsOnly() throws IOException {
+        var store = new SourceCodeStore(folder.resolve("store"));
+
+        assertThat(store.getHashes()).isEmpty();
+        assertThat(importPack(store, createPack("first.pack", FIRST, SECOND))).isEqualTo(2);
+        assertThat(importPack(store, createPack("second.pack", SECOND, THIRD))).isEqualTo(1);
+
+        assertThat(store.getHashes()).containsExactlyInAnyOrder(FIRST, SECOND, THIRD);
+        assertThat(store.contains(FIRST)).isTrue();
+        assertThat(store.contains("no-hash")).isFalse();
+        assertThat(store.read(FIRST)).contains(createContent(FIRST));
+        assertThat(store.read(THIRD)).contains(createContent(THIRD));
+        assertThat(store.read("4".repeat(64))).isEmpty();
+    }
+
+    @Test
+    void shouldWriteBlobsAsGzipStream() throws IOException {
+        var store = new SourceCodeStore(folder.resolve("store"));
+        importPack(store, createPack("sources.pack", FIRST));
+
+        var compressed = store.readCompressed(FIRST);
+        assertThat(compressed).isPresent();
+        assertThat(compressed.get().getSize()).isEqualTo(createContent(FIRST).length());
+
+        var output = new ByteArrayOutputStream();
+        compressed.get().writeGzip(output);
+        try (var input = new GZIPInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(createContent(FIRST));
+        }
+
+        assertThat(store.readCompressed(SECOND)).isEmpty();
+    }
+
+    @Test
+    void shouldReadLineRangesUsingLineIndex() throws IOException {
+        var store = new SourceCodeStore(folder.resolve("store"));
+        var rows = new StringBuilder();
+        for (int line = 1; line <= 20_000; line++) {
+            rows.append(String.format("<tr class=\"noCover\"><td class=\"line\"><a name=\"%d\">%d</a></td></tr>",
+                    line, line));
+        }
+        var content = rows.toString();
+        var hash = createHash(content);
+        var pack = folder.resolve("sources.pack");
+        try (var writer = new SourceCodePackWriter(pack)) {
+            writer.add(hash, output -> output.write(content));
+        }
+        importPack(store, pack);
+
+        var index = store.readLineIndex(hash);
+        assertThat(index).isPresent();
+        assertThat(index.get().getLineCount()).isEqualTo(20_000);
+        assertThat(folder.resolve("store").resolve(hash + ".lines")).isRegularFile();
+
+        var start = index.get().getStart(15_000);
+        var end = index.get().getEnd(15_001);
+        assertThat(store.read(hash, start, end)).isEqualTo(index.get().getRows(content, 15_000, 15_001))
+                .startsWith("<tr class=\"noCover\"><td class=\"line\"><a name=\"15000\">")
+                .endsWith("15001</a></td></tr>");
+        assertThat(store.readLineIndex(SECOND)).isEmpty();
+
+        assertThat(store.removeUnreferenced(Set.of())).isEqualTo(1);
+        assertThat(folder.resolve("store").resolve(hash + ".lines")).doesNotExist();
+    }
+
+    @Test
+    void shouldRemoveUnreferencedBlobs() throws IOException {
+        var store = new SourceCodeStore(folder.resolve("store"));
+        importPack(store, createPack("sources.pack", FIRST, SECOND, THIRD));
+
+        assertThat(store.removeUnreferenced(Set.of(FIRST, THIRD))).isEqualTo(1);
+
+        assertThat(store.getHashes()).containsExactlyInAnyOrder(FIRST, THIRD);
+        assertThat(store.read(SECOND)).isEmpty();
+    }
+
+    @Test
+    void shouldRejectEntriesThatDoNotMatchTheirHash() throws IOException {
+        var store = new SourceCodeStore(folder.resolve("store"));
+        var pack = folder.resolve("sources.pack");
+        try (var writer = new SourceCodePackWriter(pack)) {
+            writer.add(FIRST, output -> output.write(createContent(SECOND)));
+        }
+
+        assertThatExceptionOfType(IOException.class).isThrownBy(() -> importPack(store, pack))
+                .withMessageContaining(FIRST);
+        assertThat(store.getHashes()).isEmpty();
+        try (var files = Files.list(folder.resolve("store"))) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldRemoveStaleTemporaryFiles() throws IOException {
+        var store = new SourceCodeStore(folder.resolve("store"));
+        importPack(store, createPack("sources.pack", FIRST));
+        var stale = Files.createFile(folder.resolve("store").resolve(SECOND + "1234.tmp"));
+        Files.setLastModifiedTime(stale, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+        var recent = Files.createFile(folder.resolve("store").resolve(THIRD + "5678.tmp"));
+
+        assertThat(store.removeUnreferenced(Set.of(FIRST))).isZero();
+
+        assertThat(stale).doesNotExist();
+        assertThat(recent).exists();
+        assertThat(store.getHashes()).containsExactly(FIRST);
+    }
+
+    @Test
+    void shouldRelocateManifest() throws IOException {
+        var store = new SourceCodeStore(folder.resolve("job").resolve("store"));
+        importPack(store, createPack("sources.pack", FIRST));
+
+        var agentManifest = new SourceCodeManifest(SourceCodeStorage.RAW, "UTF-8", "",
+                Map.of("First.java", FIRST, "Second.java", SECOND));
+        var file = folder.resolve("job").resolve("builds").resolve("1").resolve(SourceCodeManifest.FILE_NAME);
+        Files.createDirectories(file.getParent());
+        agentManifest.relocate(file, store, store::contains).write(file);
+
+        var manifest = SourceCodeManifest.read(file);
+        assertThat(manifest).isPresent();
+        assertThat(manifest.get().getStorage()).isEqualTo(SourceCodeStorage.RAW);
+        assertThat(manifest.get().getEncoding()).isEqualTo("UTF-8");
+        assertThat(manifest.get().getHash("First.java")).contains(FIRST);
+        assertThat(manifest.get().getHash("Second.java")).isEmpty();
+        assertThat(manifest.get().getHashes()).containsExactly(FIRST);
+        assertThat(manifest.get().getStore(file).getDirectory()).isEqualTo(store.getDirectory());
+        assertThat(Files.readAllLines(file)).contains("store ../../store");
+
+        assertThat(SourceCodeManifest.read(folder.resolve("missing"))).isEmpty();
+    }
+
+    @Test
+    void shouldStoreNumberOfPaintedLines() throws IOException {
+        var file = folder.resolve(SourceCodeManifest.FILE_NAME);
+
+        new SourceCodeManifest(SourceCodeStorage.PAINTED, "UTF-8", 500, ".", Map.of("First.java", FIRST)).write(file);
+
+        assertThat(Files.readAllLines(file)).contains("max-lines 500");
+        var manifest = SourceCodeManifest.read(file);
+        assertThat(manifest).isPresent();
+        assertThat(manifest.get().getMaxLines()).isEqualTo(500);
+        assertThat(manifest.get().getHash("First.java")).contains(FIRST);
+
+        var unlimited = new SourceCodeManifest(SourceCodeStorage.PAINTED, "UTF-8", ".", Map.of("First.java", FIRST));
+        assertThat(unlimited.getMaxLines()).isZero();
+        var other = folder.resolve("other.manifest");
+        unlimited.write(other);
+        assertThat(Files.readAllLines(other)).noneMatch(line -> line.startsWith("max-lines"));
+        assertThat(SourceCodeManifest.read(other)).hasValueSatisfying(read -> assertThat(read.getMaxLines()).isZero());
+    }
+
+    @Test
+    void shouldRejectInvalidManifest() throws IOException {
+        var file = folder.resolve(SourceCodeManifest.FILE_NAME);
+        Files.writeString(file, "storage PAINTED\nencoding UTF-8\nstore .\nnot-a-hash File.java\n");
+
+        assertThatExceptionOfType(IOException.class).isThrownBy(() -> SourceCodeManifest.read(file));
+    }
+
+    @Test
+    void shouldLinkBlobsOfOtherStores() throws IOException {
+        var source = new SourceCodeStore(folder.resolve("source"));
+        importPack(source, createPack("sources.pack", FIRST));
+        var target = new SourceCodeStore(folder.resolve("target"));
+
+        assertThat(target.link(FIRST, source)).isTrue();
+        assertThat(target.link(SECOND, source)).isFalse();
+
+        assertThat(target.read(FIRST)).contains(createContent(FIRST));
+        assertThat(target.getHashes()).containsExactly(FIRST);
+    }
+
+    private int importPack(final SourceCodeStore store, final Path pack) throws IOException {
+        try (var input = Files.newInputStream(pack)) {
+            return store.importPack(input);
+        }
+    }
+
+    private Path createPack(final String fileName, final String... hashes) throws IOException {
+        var file = folder.resolve(fileName);
+        try (var pack = new SourceCodePackWriter(file)) {
+            for (String hash : hashes) {
+                pack.add(hash, output -> output.write(createContent(hash)));
+            }
+        }
+        return file;
+    }
+
+    private String createContent(final String hash) {
+        return CONTENTS.get(hash);
+    }
+
+    private static String createHash(final String content) {
+        try {
+            var hash = SourceCodeStore.createHash(output -> output.write(content));
+            CONTENTS.put(hash, content);
+            return hash;
+        }
+        catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
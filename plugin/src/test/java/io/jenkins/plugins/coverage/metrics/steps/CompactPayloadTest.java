@@ -0,0 +1,207 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.junit.jupiter.api.Test;
+
+import edu.hm.hafner.coverage.FileNode;
+import edu.hm.hafner.coverage.Node;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import io.jenkins.plugins.coverage.metrics.AbstractCoverageTest;
+import io.jenkins.plugins.util.RemoteResultWrapper;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link CompactPayload}.
+ *
+ * @author Ullrich Hafner
+ */
+class CompactPayloadTest extends AbstractCoverageTest {
+    @Test
+    void shouldRoundTripCoverageTree() throws IOException {
+        var tree = readJacocoResult("jacoco-analysis-model.xml");
+
+        var payload = CompactPayload.of(tree);
+        var copy = payload.get();
+
+        assertThat(copy).isEqualTo(tree).isNotSameAs(tree);
+        var files = tree.getAllFileNodes();
+        var copiedFiles = copy.getAllFileNodes();
+        assertThat(copiedFiles).hasSameSizeAs(files);
+        for (int i = 0; i < files.size(); i++) {
+            FileNode file = files.get(i);
+            FileNode copiedFile = copiedFiles.get(i);
+            assertThat(copiedFile.getLinesWithCoverage()).isEqualTo(file.getLinesWithCoverage());
+            assertThat(copiedFile.getMissedCounters()).isEqualTo(file.getMissedCounters());
+            assertThat(copiedFile.getCoveredCounters()).isEqualTo(file.getCoveredCounters());
+        }
+        assertThat(payload.size()).isLessThan(serialize(tree) / 2);
+    }
+
+    @Test
+    void shouldRoundTripCoverageTreesOfScanner() throws IOException {
+        List<Node> nodes = new ArrayList<>();
+        nodes.add(readJacocoResult("jacoco-codingstyle.xml"));
+        nodes.add(readJacocoResult("jacoco-analysis-model.xml"));
+
+        var copy = CompactPayload.of(new ArrayList<>(nodes)).get();
+
+        assertThat(copy).isEqualTo(nodes);
+    }
+
+    @Test
+    void shouldRoundTripSortedIntegerCollections() throws IOException {
+        var map = new TreeMap<Integer, Integer>();
+        map.put(-5, 3);
+        map.put(1, -2);
+        map.put(100_000, Integer.MAX_VALUE);
+        map.put(Integer.MAX_VALUE, Integer.MIN_VALUE);
+        var set = new TreeSet<>(List.of(1, 2, 3, 1_000, 70_000));
+
+        var copy = CompactPayload.of(new ArrayList<Serializable>(List.of(map, set, new TreeMap<>()))).get();
+
+        assertThat(copy).containsExactly(map, set, new TreeMap<>());
+        assertThat(copy.get(0)).isInstanceOf(TreeMap.class);
+        assertThat(copy.get(1)).isInstanceOf(TreeSet.class);
+    }
+
+    @Test
+    void shouldKeepSharedCollectionsShared() throws IOException {
+        var map = new TreeMap<Integer, Integer>(Map.of(1, 2, 3, 4));
+        var set = new TreeSet<>(List.of(1, 2, 3));
+
+        var copy = CompactPayload.of(new ArrayList<Serializable>(List.of(map, set, map, set))).get();
+
+        assertThat(copy).containsExactly(map, set, map, set);
+        assertThat(copy.get(2)).isSameAs(copy.get(0));
+        assertThat(copy.get(3)).isSameAs(copy.get(1));
+    }
+
+    @Test
+    void shouldRejectCorruptPackedCollections() throws IOException {
+        var payload = CompactPayload.of(new TreeMap<>(Map.of(7, 9)));
+        var packed = new byte[] {0, 0, 0, 3, 2, 14, 18}; // length of the array, size 1, key 7, value 9
+
+        var truncated = corrupt(payload, packed, new byte[] {0, 0, 0, 3, 2, 14, (byte) 0x92});
+        assertThatIOException().isThrownBy(truncated::get);
+
+        var tooLarge = corrupt(payload, packed, new byte[] {0, 0, 0, 3, 20, 14, 18});
+        assertThatIOException().isThrownBy(tooLarge::get);
+
+        var tooLong = corrupt(payload, packed, new byte[] {0, 0, 0, 3, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF});
+        assertThatIOException().isThrownBy(tooLong::get);
+    }
+
+    private <T extends Serializable> CompactPayload<T> corrupt(final CompactPayload<T> payload,
+            final byte[] expected, final byte[] replacement) throws IOException {
+        byte[] serialized;
+        try (var input = new InflaterInputStream(new ByteArrayInputStream(payload.toByteArray()))) {
+            serialized = input.readAllBytes();
+        }
+        int start = indexOf(serialized, expected);
+        assertThat(start).isNotNegative();
+        System.arraycopy(replacement, 0, serialized, start, replacement.length);
+
+        var bytes = new ByteArrayOutputStream();
+        try (var output = new DeflaterOutputStream(bytes)) {
+            output.write(serialized);
+        }
+        return CompactPayload.fromByteArray(bytes.toByteArray());
+    }
+
+    private int indexOf(final byte[] data, final byte[] expected) {
+        for (int start = 0; start + expected.length <= data.length; start++) {
+            if (Arrays.equals(data, start, start + expected.length, expected, 0, expected.length)) {
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    void shouldKeepCollectionsWithOtherElementsOrComparators() throws IOException {
+        var strings = new TreeMap<String, Integer>(Map.of("a", 1, "b", 2));
+        var reversed = new TreeSet<Integer>(Comparator.reverseOrder());
+        reversed.addAll(List.of(1, 2, 3));
+
+        var copy = CompactPayload.of(new ArrayList<Serializable>(List.of(strings, reversed))).get();
+
+        assertThat(copy.get(0)).isEqualTo(strings);
+        assertThat(copy.get(1)).isInstanceOfSatisfying(TreeSet.class,
+                set -> assertThat(set).containsExactly(3, 2, 1));
+    }
+
+    @Test
+    void shouldRoundTripResultWrapper() throws IOException {
+        var mapping = new HashMap<String, String>();
+        mapping.put("Ensure.java", "src/main/java/edu/hm/hafner/util/Ensure.java");
+        var wrapper = new RemoteResultWrapper<>(mapping, "Errors:");
+        wrapper.logInfo("Info");
+        wrapper.logError("Error");
+
+        var copy = CompactPayload.of(wrapper).get();
+
+        assertThat(copy.getResult()).isEqualTo(mapping);
+        assertThat(copy.getInfoMessages()).containsExactly("Info");
+        assertThat(copy.getErrorMessages()).contains("Error");
+    }
+
+    @Test
+    void shouldRejectClassesThatAreNotPermitted() throws IOException {
+        var payload = CompactPayload.of(new ArrayList<Serializable>(List.of(new File("/tmp"))));
+
+        assertThatIOException().isThrownBy(payload::get);
+    }
+
+    @Test
+    void shouldRejectOtherClassesOfPermittedPackages() throws IOException {
+        var payload = CompactPayload.of(new ArrayList<Serializable>(List.of(new StringBuilder("text"))));
+
+        assertThatIOException().isThrownBy(payload::get);
+    }
+
+    @Test
+    void shouldRejectDeeplyNestedGraphs() throws IOException {
+        var root = new ArrayList<Object>();
+        var current = root;
+        for (int i = 0; i < 500; i++) {
+            var child = new ArrayList<Object>();
+            current.add(child);
+            current = child;
+        }
+        var payload = CompactPayload.of(root);
+
+        assertThatIOException().isThrownBy(payload::get);
+    }
+
+    @Test
+    void shouldRejectLargeArrays() throws IOException {
+        var payload = CompactPayload.of(new ArrayList<Serializable>(List.of(new byte[17 * 1024 * 1024])));
+
+        assertThatIOException().isThrownBy(payload::get);
+    }
+
+    private int serialize(final Serializable object) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var output = new ObjectOutputStream(bytes)) {
+            output.writeObject(object);
+        }
+        return bytes.size();
+    }
+}
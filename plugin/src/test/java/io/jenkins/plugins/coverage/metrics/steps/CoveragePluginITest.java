@@ -365,8 +365,7 @@ class CoveragePluginITest extends AbstractCoverageITest {
                 "Executing source code painting...",
                 "Painting 308 source files on agent",
                 "-> finished painting (0 files have been painted, 308 files failed)",
-                "Copying painted sources from agent to build folder",
-                "-> extracting...",
+                "-> stored 0 new source files",
                 "-> done",
                 "Finished coverage processing - adding the action to the build...");
         assertThat(log.getErrorMessages()).contains(
@@ -904,8 +903,7 @@ class CoveragePluginITest extends AbstractCoverageITest {
                 "Executing source code painting...",
                 "Painting 315 source files on agent",
                 "-> finished painting (0 files have been painted, 315 files failed)",
-                "Copying painted sources from agent to build folder",
-                "-> extracting...",
+                "-> stored 0 new source files",
                 "-> done",
                 "Finished coverage processing - adding the action to the build...");
         assertThat(log.getErrorMessages()).contains(
@@ -0,0 +1,98 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import edu.hm.hafner.coverage.FileNode;
+import edu.hm.hafner.coverage.Metric;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import io.jenkins.plugins.coverage.metrics.AbstractCoverageTest;
+import io.jenkins.plugins.coverage.metrics.steps.CoverageRecorder.Granularity;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link CoverageRecorder}.
+ *
+ * @author Ullrich Hafner
+ */
+class CoverageRecorderTest extends AbstractCoverageTest {
+    private static final String CODING_STYLE = "jacoco-codingstyle.xml";
+
+    @Test
+    void shouldUseMethodGranularityByDefault() {
+        var recorder = new CoverageRecorder();
+
+        assertThat(recorder.getGranularity()).isEqualTo(Granularity.METHOD);
+
+        recorder.setGranularity(null);
+        assertThat(recorder.getGranularity()).isEqualTo(Granularity.METHOD);
+
+        recorder.setGranularity(Granularity.FILE);
+        assertThat(recorder.getGranularity()).isEqualTo(Granularity.FILE);
+    }
+
+    @Test
+    void shouldKeepTreeWithMethodGranularity() {
+        var tree = readJacocoResult(CODING_STYLE);
+        var methods = tree.getAll(Metric.METHOD).size();
+
+        assertThat(Granularity.METHOD.reduce(tree)).isZero();
+        assertThat(tree.getAll(Metric.METHOD)).hasSize(methods);
+    }
+
+    @Test
+    void shouldRemoveMethodsWithClassGranularity() {
+        var tree = readJacocoResult(CODING_STYLE);
+        var expected = tree.aggregateValues();
+        var methods = tree.getAll(Metric.METHOD).size();
+        var classes = tree.getAll(Metric.CLASS).size();
+
+        assertThat(Granularity.CLASS.reduce(tree)).isEqualTo(methods);
+
+        assertThat(tree.getAll(Metric.METHOD)).isEmpty();
+        assertThat(tree.getAll(Metric.CLASS)).hasSize(classes);
+        assertThat(tree.aggregateValues()).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @ParameterizedTest(name = "{index} => Reducing to {0}")
+    @EnumSource(value = Granularity.class, names = {"FILE", "CLASS"})
+    void shouldRetainValuesAndLineCoverage(final Granularity granularity) {
+        var tree = readJacocoResult(CODING_STYLE);
+        var expected = tree.aggregateValues();
+        var files = tree.getAllFileNodes();
+        var lines = getLinesWithCoverage(files);
+        var fileValues = files.stream().map(FileNode::aggregateValues).collect(Collectors.toList());
+
+        granularity.reduce(tree);
+
+        assertThat(tree.aggregateValues()).containsExactlyInAnyOrderElementsOf(expected);
+        var reducedFiles = tree.getAllFileNodes();
+        assertThat(getLinesWithCoverage(reducedFiles)).isEqualTo(lines);
+        assertThat(reducedFiles.stream().map(FileNode::aggregateValues).collect(Collectors.toList()))
+                .isEqualTo(fileValues);
+    }
+
+    @Test
+    void shouldRemoveClassesAndMethodsWithFileGranularity() {
+        var tree = readJacocoResult(CODING_STYLE);
+        var methods = tree.getAll(Metric.METHOD).size();
+        var classes = tree.getAll(Metric.CLASS).size();
+
+        assertThat(Granularity.FILE.reduce(tree)).isEqualTo(methods + classes);
+
+        assertThat(tree.getAll(Metric.METHOD)).isEmpty();
+        assertThat(tree.getAll(Metric.CLASS)).isEmpty();
+        assertThat(tree.getAllFileNodes()).hasSize(10);
+        assertThat(tree.getValue(Metric.LINE)).isPresent();
+    }
+
+    private List<Set<Integer>> getLinesWithCoverage(final List<FileNode> files) {
+        return files.stream().map(FileNode::getLinesWithCoverage).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,164 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import edu.hm.hafner.coverage.CoverageParser;
+import edu.hm.hafner.coverage.Node;
+import edu.hm.hafner.coverage.parser.JacocoParser;
+import edu.hm.hafner.coverage.parser.PitestParser;
+import edu.hm.hafner.util.FilteredLog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time to write and read the coverage tree of a build with the XML format of {@link CoverageXmlStream}
+ * and with the binary format of {@link CoverageResultStream}. Run the benchmark with the {@link #main(String[])}
+ * method from the IDE or from the test class path.
+ *
+ * @author Ullrich Hafner
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoverageResultStreamBenchmark {
+    private static final String RESOURCES = "/io/jenkins/plugins/coverage/metrics/steps/";
+
+    @Param({"jacoco-analysis-model.xml", "mutations.xml"})
+    private String report;
+
+    private Node tree;
+    private Path folder;
+    private Path xmlFile;
+    private Path binaryFile;
+    private int fileHash;
+
+    /**
+     * Parses the coverage report and writes the tree in both formats.
+     *
+     * @throws IOException
+     *         if the report could not be read or the files could not be written
+     */
+    @Setup
+    public void setup() throws IOException {
+        tree = parse(report, report.startsWith("mutations") ? new PitestParser() : new JacocoParser());
+        folder = Files.createTempDirectory("coverage-result-benchmark");
+        xmlFile = folder.resolve("xml.xml");
+        new CoverageXmlStream().write(xmlFile, tree);
+        binaryFile = folder.resolve("binary.xml");
+        new CoverageResultStream().write(binaryFile, tree);
+        fileHash = tree.getAllFileNodes().get(0).getRelativePath().hashCode();
+    }
+
+    /**
+     * Removes the written files.
+     *
+     * @throws IOException
+     *         if the files could not be removed
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(folder.toFile());
+    }
+
+    /**
+     * Writes the tree as XML file.
+     */
+    @Benchmark
+    public void writeXml() {
+        new CoverageXmlStream().write(folder.resolve("write.xml"), tree);
+    }
+
+    /**
+     * Writes the tree as binary file.
+     */
+    @Benchmark
+    public void writeBinary() {
+        new CoverageResultStream().write(folder.resolve("write.xml"), tree);
+    }
+
+    /**
+     * Reads the tree from the XML file.
+     *
+     * @param blackhole
+     *         consumes the tree
+     */
+    @Benchmark
+    public void readXml(final Blackhole blackhole) {
+        blackhole.consume(new CoverageXmlStream().read(xmlFile));
+    }
+
+    /**
+     * Reads the tree from the binary file.
+     *
+     * @param blackhole
+     *         consumes the tree
+     */
+    @Benchmark
+    public void readBinary(final Blackhole blackhole) {
+        blackhole.consume(new CoverageResultStream().read(binaryFile));
+    }
+
+    /**
+     * Reads a single file from the shards of the binary file.
+     *
+     * @param blackhole
+     *         consumes the file
+     *
+     * @throws IOException
+     *         if the file could not be read
+     */
+    @Benchmark
+    public void readSingleFile(final Blackhole blackhole) throws IOException {
+        blackhole.consume(CoverageResultStream.readFile(CoverageResultStream.getBinaryFile(binaryFile), fileHash));
+    }
+
+    private Node parse(final String fileName, final CoverageParser parser) throws IOException {
+        try (var reader = new InputStreamReader(open(fileName), StandardCharsets.UTF_8)) {
+            return parser.parse(reader, fileName, new FilteredLog("Errors"));
+        }
+    }
+
+    private InputStream open(final String fileName) {
+        return Objects.requireNonNull(CoverageResultStreamBenchmark.class.getResourceAsStream(RESOURCES + fileName),
+                "Resource not found: " + fileName);
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *         not used
+     *
+     * @throws RunnerException
+     *         if the benchmark fails
+     */
+    public static void main(final String... args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CoverageResultStreamBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,137 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.hm.hafner.coverage.FileNode;
+import edu.hm.hafner.coverage.Metric;
+import edu.hm.hafner.coverage.Node;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import io.jenkins.plugins.coverage.metrics.AbstractCoverageTest;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link CoverageResultStream}.
+ *
+ * @author Ullrich Hafner
+ */
+class CoverageResultStreamTest extends AbstractCoverageTest {
+    @TempDir
+    private Path folder;
+
+    @Test
+    void shouldWriteNewResultsInBinaryFormat() {
+        var tree = readJacocoResult(JACOCO_ANALYSIS_MODEL_FILE);
+        var file = folder.resolve("coverage.xml");
+
+        var stream = new CoverageResultStream();
+        stream.write(file, tree);
+
+        assertThat(file).doesNotExist();
+        assertThat(folder.resolve("coverage" + CoverageResultStream.BINARY_SUFFIX)).isRegularFile();
+        assertThatRestoredTreeIsEqual(stream.read(file), tree);
+    }
+
+    @Test
+    void shouldReadXmlResultsOfOlderBuilds() {
+        var tree = readJacocoResult(JACOCO_CODING_STYLE_FILE);
+        var file = folder.resolve("coverage.xml");
+        new CoverageXmlStream().write(file, tree);
+
+        assertThatRestoredTreeIsEqual(new CoverageResultStream().read(file), tree);
+    }
+
+    @Test
+    void shouldFallBackToXmlIfBinaryResultIsCorrupt() throws IOException {
+        var tree = readJacocoResult(JACOCO_CODING_STYLE_FILE);
+        var file = folder.resolve("coverage.xml");
+        new CoverageXmlStream().write(file, tree);
+        Files.writeString(CoverageResultStream.getBinaryFile(file), "corrupt");
+
+        assertThatRestoredTreeIsEqual(new CoverageResultStream().read(file), tree);
+    }
+
+    @Test
+    void shouldReadSingleFilesFromShards() throws IOException {
+        var tree = readJacocoResult(JACOCO_ANALYSIS_MODEL_FILE);
+        var file = folder.resolve("coverage" + CoverageResultStream.BINARY_SUFFIX);
+        CoverageResultStream.writeBinary(file, tree);
+
+        for (FileNode expected : tree.getAllFileNodes()) {
+            var restored = CoverageResultStream.readFile(file, expected.getRelativePath().hashCode());
+
+            assertThat(restored).hasValueSatisfying(fileNode -> {
+                assertThat(fileNode).isEqualTo(expected).isNotSameAs(expected);
+                assertThat(fileNode.getParent().getName()).isEqualTo(expected.getParent().getName());
+            });
+        }
+        assertThat(CoverageResultStream.readFile(file, "Unknown.java".hashCode())).isEmpty();
+    }
+
+    @Test
+    void shouldNotLoadOtherShardsWhenReadingSingleFiles() throws IOException {
+        var tree = readJacocoResult(JACOCO_ANALYSIS_MODEL_FILE);
+        var file = folder.resolve("coverage" + CoverageResultStream.BINARY_SUFFIX);
+        CoverageResultStream.writeBinary(file, tree);
+
+        var expected = tree.getAllFileNodes().get(0);
+        var restored = CoverageResultStream.readFile(file, expected.getRelativePath().hashCode()).orElseThrow();
+        var root = restored.getParent();
+        while (root.hasParent()) {
+            root = root.getParent();
+        }
+
+        assertThat(root.getAll(Metric.PACKAGE)).hasSameSizeAs(tree.getAll(Metric.PACKAGE));
+        assertThat(root.getAllFileNodes())
+                .contains(restored)
+                .hasSizeLessThan(tree.getAllFileNodes().size())
+                .allSatisfy(fileNode -> assertThat(fileNode.getParent().getName())
+                        .isEqualTo(expected.getParent().getName()));
+    }
+
+    @Test
+    void shouldReadBinaryResultsWithoutShards() throws IOException {
+        var tree = readJacocoResult(JACOCO_CODING_STYLE_FILE);
+        var file = folder.resolve("coverage" + CoverageResultStream.BINARY_SUFFIX);
+        try (var output = new DataOutputStream(Files.newOutputStream(file))) {
+            output.writeInt(CoverageResultStream.MAGIC);
+            output.writeInt(CoverageResultStream.SINGLE_TREE_VERSION);
+            CompactPayload.write(tree, output);
+        }
+
+        assertThatRestoredTreeIsEqual(CoverageResultStream.readBinary(file), tree);
+        assertThatExceptionOfType(IOException.class)
+                .isThrownBy(() -> CoverageResultStream.readFile(file, 0))
+                .withMessageContaining("not split into shards");
+    }
+
+    @Test
+    void shouldRejectUnsupportedVersions() throws IOException {
+        var file = folder.resolve("coverage" + CoverageResultStream.BINARY_SUFFIX);
+        try (var output = new DataOutputStream(Files.newOutputStream(file))) {
+            output.writeInt(CoverageResultStream.MAGIC);
+            output.writeInt(CoverageResultStream.VERSION + 1);
+        }
+
+        assertThatExceptionOfType(IOException.class)
+                .isThrownBy(() -> CoverageResultStream.readBinary(file))
+                .withMessageContaining("Unsupported format version");
+    }
+
+    private void assertThatRestoredTreeIsEqual(final Node restored, final Node expected) {
+        assertThat(restored).isEqualTo(expected).isNotSameAs(expected);
+        assertThat(restored.getAllFileNodes()).hasSameSizeAs(expected.getAllFileNodes());
+        for (int i = 0; i < expected.getAllFileNodes().size(); i++) {
+            var file = expected.getAllFileNodes().get(i);
+            var restoredFile = restored.getAllFileNodes().get(i);
+            assertThat(restoredFile.getCoveredCounters()).isEqualTo(file.getCoveredCounters());
+            assertThat(restoredFile.getMissedCounters()).isEqualTo(file.getMissedCounters());
+        }
+    }
+}
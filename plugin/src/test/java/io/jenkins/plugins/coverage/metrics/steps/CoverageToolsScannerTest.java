@@ -0,0 +1,197 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import edu.hm.hafner.coverage.CoverageParser.ProcessingMode;
+import edu.hm.hafner.coverage.ModuleNode;
+import edu.hm.hafner.coverage.Node;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import io.jenkins.plugins.coverage.metrics.steps.CoverageRecorder.Granularity;
+import io.jenkins.plugins.coverage.metrics.steps.CoverageTool.Parser;
+import io.jenkins.plugins.coverage.metrics.steps.CoverageToolsScanner.ToolPattern;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link CoverageToolsScanner}.
+ *
+ * @author Ullrich Hafner
+ */
+class CoverageToolsScannerTest {
+    private static final String JACOCO_ANALYSIS_MODEL = "jacoco-analysis-model.xml";
+    private static final String JACOCO_CODING_STYLE = "jacoco-codingstyle.xml";
+    private static final String PIT = "mutations.xml";
+    private static final NodeFilter NO_FILTER = new NodeFilter("", "");
+    private static final String VERSION = "2_1.0";
+
+    @TempDir
+    private Path workspace;
+
+    @ParameterizedTest(name = "{index} => Parsing with {0} threads")
+    @ValueSource(ints = {0, 1, 2, 8})
+    void shouldParseAllReportsInOrderOfFileNames(final int threads) throws IOException, InterruptedException {
+        copy(JACOCO_CODING_STYLE, "b/jacoco.xml");
+        copy(JACOCO_ANALYSIS_MODEL, "a/jacoco.xml");
+        copy(PIT, "a/mutations.xml");
+
+        var scanner = new CoverageToolsScanner(List.of(
+                new ToolPattern(Parser.JACOCO, "**/jacoco.xml"),
+                new ToolPattern(Parser.PIT, "**/mutations.xml")),
+                "UTF-8", true, ProcessingMode.FAIL_FAST, threads, false);
+
+        var toolResults = scanner.invoke(workspace.toFile(), null).get().getToolResults();
+
+        assertThat(toolResults).hasSize(2);
+        var jacoco = toolResults.get(0);
+        assertThat(jacoco.hasErrors()).isFalse();
+        assertThat(jacoco.getLog().getInfoMessages()).contains("-> found 2 files");
+        assertThat(getFileCount(jacoco.getResults())).containsExactly(307, 10);
+        assertThat(jacoco.getReports()).allSatisfy(report -> assertThat(report.getLog().getInfoMessages()).isEmpty());
+
+        var pit = toolResults.get(1);
+        assertThat(pit.hasErrors()).isFalse();
+        assertThat(pit.getLog().getInfoMessages()).contains("-> found 1 file");
+        assertThat(pit.getResults()).hasSize(1);
+    }
+
+    @Test
+    void shouldSplitPatternsAtCommaAndSpace() throws IOException, InterruptedException {
+        copy(JACOCO_CODING_STYLE, "b/jacoco.xml");
+        copy(JACOCO_ANALYSIS_MODEL, "a/jacoco.xml");
+        copy(JACOCO_ANALYSIS_MODEL, "c/jacoco.xml");
+
+        var scanner = new CoverageToolsScanner(List.of(new ToolPattern(Parser.JACOCO, "a/jacoco.xml b/jacoco.xml,")),
+                "UTF-8", true, ProcessingMode.FAIL_FAST, 0, false);
+
+        var toolResults = scanner.invoke(workspace.toFile(), null).get().getToolResults();
+
+        assertThat(getFileCount(toolResults.get(0).getResults())).containsExactly(307, 10);
+    }
+
+    @Test
+    void shouldReportMissingFilesForEachTool() throws IOException, InterruptedException {
+        copy(JACOCO_CODING_STYLE, "jacoco.xml");
+
+        var scanner = new CoverageToolsScanner(List.of(
+                new ToolPattern(Parser.JACOCO, "**/jacoco.xml"),
+                new ToolPattern(Parser.COBERTURA, "**/cobertura.xml")),
+                "UTF-8", true, ProcessingMode.FAIL_FAST, 0, false);
+
+        var toolResults = scanner.invoke(workspace.toFile(), null).get().getToolResults();
+
+        assertThat(toolResults.get(0).hasErrors()).isFalse();
+        assertThat(toolResults.get(0).getResults()).hasSize(1);
+        assertThat(toolResults.get(1).hasErrors()).isTrue();
+        assertThat(toolResults.get(1).getLog().getErrorMessages())
+                .contains("No files found for pattern '**/cobertura.xml'. Configuration error?");
+        assertThat(toolResults.get(1).getResults()).isEmpty();
+    }
+
+    @Test
+    void shouldAggregateResultsOnAgent() throws IOException, InterruptedException {
+        copy(JACOCO_CODING_STYLE, "b/jacoco.xml");
+        copy(JACOCO_ANALYSIS_MODEL, "a/jacoco.xml");
+
+        var patterns = List.of(new ToolPattern(Parser.JACOCO, "**/jacoco.xml"));
+        var scanner = new CoverageToolsScanner(patterns, "UTF-8", true, ProcessingMode.FAIL_FAST, 0, true);
+
+        var scanResult = scanner.invoke(workspace.toFile(), null).get();
+
+        var toolResult = scanResult.getToolResults().get(0);
+        assertThat(toolResult.hasErrors()).isFalse();
+        assertThat(toolResult.getResults()).isEmpty();
+        assertThat(scanResult.getAggregationLog().getErrorMessages()).isEmpty();
+
+        var controllerScanner = new CoverageToolsScanner(patterns, "UTF-8", true, ProcessingMode.FAIL_FAST, 0, false);
+        var controllerResults = controllerScanner.invoke(workspace.toFile(), null).get().getToolResults();
+        assertThat(scanResult.getAggregatedTree()).contains(Node.merge(controllerResults.get(0).getResults()));
+    }
+
+    @Test
+    void shouldReduceGranularityOfAggregatedTreeOnAgent() throws IOException, InterruptedException {
+        copy(JACOCO_CODING_STYLE, "b/jacoco.xml");
+        copy(JACOCO_ANALYSIS_MODEL, "a/jacoco.xml");
+
+        var patterns = List.of(new ToolPattern(Parser.JACOCO, "**/jacoco.xml"));
+        var scanner = new CoverageToolsScanner(patterns, "UTF-8", true, ProcessingMode.FAIL_FAST, 0, true);
+        scanner.useGranularity(Granularity.FILE);
+
+        var scanResult = scanner.invoke(workspace.toFile(), null).get();
+
+        assertThat(scanResult.getAggregationLog().getInfoMessages())
+                .contains("Reducing the granularity of the coverage tree to FILE level");
+        assertThat(scanResult.getAggregatedTree()).hasValueSatisfying(
+                tree -> assertThat(tree.getAllClassNodes()).isEmpty());
+
+        var controllerScanner = new CoverageToolsScanner(patterns, "UTF-8", true, ProcessingMode.FAIL_FAST, 0, false);
+        controllerScanner.useGranularity(Granularity.FILE);
+        var controllerResults = controllerScanner.invoke(workspace.toFile(), null).get().getToolResults();
+        assertThat(controllerResults.get(0).getResults())
+                .as("Individual reports are not reduced on the agent")
+                .allSatisfy(report -> assertThat(report.getAllClassNodes()).isNotEmpty());
+
+        var expected = Node.merge(controllerResults.get(0).getResults());
+        Granularity.FILE.reduce(expected);
+        assertThat(scanResult.getAggregatedTree()).contains(expected);
+    }
+
+    @Test
+    void shouldAggregateEmptyResultsOnAgent() throws IOException, InterruptedException {
+        var scanner = new CoverageToolsScanner(List.of(new ToolPattern(Parser.JACOCO, "**/jacoco.xml")),
+                "UTF-8", true, ProcessingMode.FAIL_FAST, 0, true);
+
+        var scanResult = scanner.invoke(workspace.toFile(), null).get();
+
+        assertThat(scanResult.getAggregationLog().getErrorMessages())
+                .contains("No coverage results were found! Configuration error?");
+        assertThat(scanResult.getAggregatedTree()).hasValueSatisfying(tree -> assertThat(tree.isEmpty()).isTrue());
+    }
+
+    @Test
+    void shouldSkipReportsThatAreAlreadyCached() throws IOException, InterruptedException {
+        copy(JACOCO_CODING_STYLE, "b/jacoco.xml");
+        copy(JACOCO_ANALYSIS_MODEL, "a/jacoco.xml");
+        var cachedKey = ParseCache.createKey(Parser.JACOCO, ProcessingMode.FAIL_FAST, VERSION, NO_FILTER,
+                workspace.resolve("a/jacoco.xml"));
+
+        var scanner = new CoverageToolsScanner(List.of(new ToolPattern(Parser.JACOCO, "**/jacoco.xml")),
+                "UTF-8", true, ProcessingMode.FAIL_FAST, 0, true);
+        scanner.useParseCache(VERSION, Set.of(cachedKey));
+
+        var scanResult = scanner.invoke(workspace.toFile(), null).get();
+
+        assertThat(scanResult.getAggregatedTree()).isEmpty();
+        var reports = scanResult.getToolResults().get(0).getReports();
+        assertThat(reports).hasSize(2);
+        assertThat(reports.get(0).isCached()).isTrue();
+        assertThat(reports.get(0).getKey()).contains(cachedKey);
+        assertThat(reports.get(1).isCached()).isFalse();
+        assertThat(reports.get(1).getKey()).contains(ParseCache.createKey(
+                Parser.JACOCO, ProcessingMode.FAIL_FAST, VERSION, NO_FILTER, workspace.resolve("b/jacoco.xml")));
+        assertThat(reports.get(1).getLog().getErrorMessages()).isEmpty();
+        assertThat(getFileCount(scanResult.getToolResults().get(0).getResults())).containsExactly(10);
+    }
+
+    private List<Integer> getFileCount(final List<ModuleNode> results) {
+        return results.stream().map(node -> node.getAllFileNodes().size()).collect(Collectors.toList());
+    }
+
+    private void copy(final String resource, final String target) throws IOException {
+        var file = workspace.resolve(target);
+        Files.createDirectories(file.getParent());
+        try (var stream = CoverageToolsScannerTest.class.getResourceAsStream(resource)) {
+            assertThat(stream).as("Resource %s not found", resource).isNotNull();
+            Files.copy(stream, file);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.junit.jupiter.api.Test;
+
+import edu.hm.hafner.coverage.CoverageParser.ProcessingMode;
+import edu.hm.hafner.coverage.Metric;
+import edu.hm.hafner.coverage.ModuleNode;
+import edu.hm.hafner.coverage.Value;
+import edu.hm.hafner.util.FilteredLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import io.jenkins.plugins.coverage.metrics.AbstractCoverageTest;
+import io.jenkins.plugins.coverage.metrics.steps.CoverageTool.Parser;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link CoverageTreeAggregator}.
+ *
+ * @author Ullrich Hafner
+ */
+class CoverageTreeAggregatorTest extends AbstractCoverageTest {
+    private static final String JUNIT_CODING_STYLE_FILE = "junit-codingstyle.xml";
+
+    @Test
+    void shouldAddTestsWithoutClassUnderTestOnlyOnce() {
+        var log = new FilteredLog("Errors");
+
+        var tree = new CoverageTreeAggregator().aggregate(Map.of(
+                Parser.JACOCO, List.of(parse(Parser.JACOCO, JACOCO_CODING_STYLE_FILE)),
+                Parser.JUNIT, List.of(parse(Parser.JUNIT, JUNIT_CODING_STYLE_FILE))), log);
+
+        assertThat(log.getErrorMessages()).isEmpty();
+        assertThat(tree.getValue(Metric.TESTS)).contains(new Value(Metric.TESTS, 6));
+        assertThat(tree.getAllClassNodes())
+                .filteredOn(node -> node.getName().endsWith("ArchitectureRulesTest"))
+                .hasSize(1);
+        assertThat(tree.getAllClassNodes())
+                .filteredOn(node -> node.getName().endsWith("IntegrationTest"))
+                .hasSize(1);
+        assertThat(tree.findPackage("com.example")).isPresent();
+    }
+
+    @Test
+    void shouldReportTestsWithoutCoverage() {
+        var log = new FilteredLog("Errors");
+
+        var tree = new CoverageTreeAggregator().aggregate(
+                Map.of(Parser.JUNIT, List.of(parse(Parser.JUNIT, JUNIT_CODING_STYLE_FILE))), log);
+
+        assertThat(log.getErrorMessages()).contains("No coverage results were found, just tests! Configuration error?");
+        assertThat(tree.getValue(Metric.TESTS)).contains(new Value(Metric.TESTS, 6));
+    }
+
+    private ModuleNode parse(final Parser parser, final String fileName) {
+        try (var reader = Files.newBufferedReader(getResourceAsFile(fileName))) {
+            return parser.createParser(ProcessingMode.FAIL_FAST).parse(reader, fileName, new FilteredLog("Errors"));
+        }
+        catch (IOException exception) {
+            throw new AssertionError(exception);
+        }
+    }
+}
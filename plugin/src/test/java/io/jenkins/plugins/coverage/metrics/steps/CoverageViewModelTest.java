@@ -10,11 +10,13 @@ import edu.hm.hafner.util.FilteredLog;
 
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.function.Function;
 
 import hudson.model.Run;
 
 import io.jenkins.plugins.coverage.metrics.AbstractCoverageTest;
+import io.jenkins.plugins.coverage.metrics.source.SourceViewModel;
 import io.jenkins.plugins.coverage.metrics.steps.CoverageTableModel.CoverageRow;
 import io.jenkins.plugins.util.QualityGateResult;
 
@@ -110,6 +112,24 @@ class CoverageViewModelTest extends AbstractCoverageTest {
                 .isThrownBy(() -> model.getTableModel("wrong-id"));
     }
 
+    @Test
+    void shouldShowSourceViewsWithoutLoadingTheWholeTree() {
+        var fileNode = new FileNode("File.java", "path/File.java");
+        int hash = fileNode.getRelativePath().hashCode();
+        var model = new CoverageViewModel(mock(Run.class), "id", StringUtils.EMPTY,
+                () -> {
+                    throw new AssertionError("The tree should not be loaded");
+                },
+                fileHash -> fileHash == hash ? Optional.of(fileNode) : Optional.empty(),
+                createStatistics(), new QualityGateResult(), "-", new FilteredLog("Errors"),
+                Function.identity(), Function.identity());
+
+        assertThat(model.getDynamic(String.valueOf(hash), null, null))
+                .isInstanceOfSatisfying(SourceViewModel.class,
+                        sourceView -> assertThat(sourceView.getNode()).isSameAs(fileNode));
+        assertThat(model.getDynamic(String.valueOf(hash + 1), null, null)).isNull();
+    }
+
     private CoverageViewModel createModelFromCodingStyleReport() {
         return createModel(readJacocoResult("jacoco-codingstyle.xml"));
     }
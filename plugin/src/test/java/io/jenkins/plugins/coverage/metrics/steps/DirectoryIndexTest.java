@@ -0,0 +1,104 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import io.jenkins.plugins.coverage.metrics.steps.DirectoryIndex.Presence;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link DirectoryIndex}.
+ *
+ * @author Ullrich Hafner
+ */
+class DirectoryIndexTest {
+    @TempDir
+    private Path workspace;
+
+    @Test
+    void shouldFindExistingFilesAndDirectories() throws IOException {
+        var file = createFile("src/main/java/edu/hm/hafner/Ensure.java");
+
+        var index = new DirectoryIndex();
+
+        assertThat(index.contains(file)).isTrue();
+        assertThat(index.contains(file.getParentFile())).isTrue();
+        assertThat(index.contains(workspace.resolve("src/main/java").toFile())).isTrue();
+        assertThat(index.contains(workspace.resolve("src/main/java/edu/hm/hafner/Other.java").toFile())).isFalse();
+        assertThat(index.contains(workspace.resolve("src/main/java/Ensure.java").toFile())).isFalse();
+    }
+
+    @Test
+    void shouldListEachDirectoryOnlyOnce() throws IOException {
+        var first = createFile("src/main/java/edu/hm/hafner/First.java");
+        var second = createFile("src/main/java/edu/hm/hafner/Second.java");
+
+        var index = new DirectoryIndex();
+        assertThat(index.contains(first)).isTrue();
+        var listed = index.size();
+
+        assertThat(index.contains(second)).isTrue();
+        assertThat(index.size()).isEqualTo(listed);
+
+        Files.delete(second.toPath());
+        assertThat(index.contains(second)).as("Index is not refreshed").isTrue();
+    }
+
+    @Test
+    void shouldNotListMissingDirectories() throws IOException {
+        createFile("src/main/java/Ensure.java");
+
+        var index = new DirectoryIndex();
+        assertThat(index.contains(workspace.resolve("src/main/java/Ensure.java").toFile())).isTrue();
+        var listed = index.size();
+
+        assertThat(index.contains(workspace.resolve("src/test/java/edu/hm/hafner/Ensure.java").toFile())).isFalse();
+        assertThat(index.contains(workspace.resolve("generated/edu/hm/hafner/Ensure.java").toFile())).isFalse();
+        assertThat(index.size()).isEqualTo(listed + 9);
+    }
+
+    @Test
+    void shouldTreatFilesAsEmptyDirectories() throws IOException {
+        var file = createFile("Ensure.java");
+
+        var index = new DirectoryIndex();
+
+        assertThat(index.contains(new File(file, "Nested.java"))).isFalse();
+    }
+
+    @Test
+    void shouldReportDefinitiveResultsForIndexedDirectories() throws IOException {
+        var file = createFile("src/Ensure.java");
+
+        var index = new DirectoryIndex();
+
+        assertThat(index.find(file)).isEqualTo(Presence.EXISTS);
+        assertThat(index.find(workspace.resolve("src/Other.java").toFile())).isEqualTo(Presence.MISSING);
+        assertThat(index.find(workspace.resolve("test/Ensure.java").toFile())).isEqualTo(Presence.MISSING);
+        assertThat(index.find(new File(file, "Nested.java"))).isEqualTo(Presence.MISSING);
+    }
+
+    @Test
+    void shouldReportUnknownIfIndexCannotDecide() throws IOException {
+        createFile("src/Ensure.java");
+
+        var index = new DirectoryIndex();
+
+        assertThat(index.find(workspace.resolve("src/ENSURE.java").toFile())).isEqualTo(Presence.UNKNOWN);
+        assertThat(index.find(workspace.resolve("src/../src/Ensure.java").toFile())).isEqualTo(Presence.UNKNOWN);
+        assertThat(index.find(workspace.resolve("src/./Ensure.java").toFile())).isEqualTo(Presence.UNKNOWN);
+        assertThat(index.find(workspace.getRoot().toFile())).isEqualTo(Presence.UNKNOWN);
+    }
+
+    private File createFile(final String relativePath) throws IOException {
+        var file = workspace.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, "content").toFile();
+    }
+}
@@ -0,0 +1,86 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.junit.jupiter.api.Test;
+
+import edu.hm.hafner.coverage.FileNode;
+import edu.hm.hafner.coverage.Metric;
+import edu.hm.hafner.coverage.Node;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import io.jenkins.plugins.coverage.metrics.AbstractCoverageTest;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link NodeFilter}.
+ *
+ * @author Ullrich Hafner
+ */
+class NodeFilterTest extends AbstractCoverageTest {
+    private static final String CODING_STYLE = "jacoco-codingstyle.xml";
+
+    @Test
+    void shouldRetainAllFilesWithoutPatterns() {
+        var filter = new NodeFilter(null, " , ");
+        var tree = readJacocoResult(CODING_STYLE);
+
+        assertThat(filter.isEmpty()).isTrue();
+        assertThat(filter.apply(tree)).isZero();
+        assertThat(tree.getAllFileNodes()).hasSize(10);
+    }
+
+    @Test
+    void shouldMatchPackageNames() {
+        var filter = new NodeFilter("edu.hm.*", "edu.hm.hafner.u?il.generated");
+
+        assertThat(filter.accept("edu.hm.hafner.util", null)).isTrue();
+        assertThat(filter.accept("edu.hm", null)).isFalse();
+        assertThat(filter.accept("com.company", null)).isFalse();
+        assertThat(filter.accept("edu.hm.hafner.util.generated", null)).isFalse();
+        assertThat(filter.accept("edu.hm.hafner.util.generated.nested", null)).isTrue();
+    }
+
+    @Test
+    void shouldMatchPaths() {
+        var filter = new NodeFilter("", "**/generated/**, src\\test/**");
+
+        assertThat(filter.accept("", "src/main/java/Ensure.java")).isTrue();
+        assertThat(filter.accept("", "target/generated/Ensure.java")).isFalse();
+        assertThat(filter.accept("", "src/test/java/Ensure.java")).isFalse();
+        assertThat(filter.accept("generated", null)).isTrue();
+    }
+
+    @Test
+    void shouldKeepIncludedPackages() {
+        var tree = readJacocoResult(CODING_STYLE);
+
+        assertThat(new NodeFilter("edu.hm.hafner.*", "com.*").apply(tree)).isZero();
+        assertThat(tree.getAllFileNodes()).hasSize(10);
+    }
+
+    @Test
+    void shouldRemoveExcludedFiles() {
+        var tree = readJacocoResult(CODING_STYLE);
+
+        assertThat(new NodeFilter("", "**/Ensure.java,**/Tree*.java").apply(tree)).isEqualTo(3);
+
+        assertThat(getFileNames(tree)).hasSize(7).doesNotContain("Ensure.java", "TreeString.java");
+        assertThat(tree.getAll(Metric.PACKAGE)).hasSize(1);
+    }
+
+    @Test
+    void shouldRemoveEmptyPackages() {
+        var tree = readJacocoResult(CODING_STYLE);
+
+        assertThat(new NodeFilter("com.company.*", "").apply(tree)).isEqualTo(10);
+
+        assertThat(tree.getAllFileNodes()).isEmpty();
+        assertThat(tree.getAll(Metric.PACKAGE)).isEmpty();
+    }
+
+    private List<String> getFileNames(final Node tree) {
+        return tree.getAllFileNodes().stream().map(FileNode::getName).collect(Collectors.toList());
+    }
+}
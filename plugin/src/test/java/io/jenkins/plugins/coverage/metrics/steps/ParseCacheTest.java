@@ -0,0 +1,137 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.hm.hafner.coverage.CoverageParser.ProcessingMode;
+import edu.hm.hafner.coverage.ModuleNode;
+import edu.hm.hafner.util.FilteredLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Locale;
+
+import io.jenkins.plugins.coverage.metrics.AbstractCoverageTest;
+import io.jenkins.plugins.coverage.metrics.steps.CoverageTool.Parser;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link ParseCache}.
+ *
+ * @author Ullrich Hafner
+ */
+class ParseCacheTest extends AbstractCoverageTest {
+    private static final NodeFilter NO_FILTER = new NodeFilter("", "");
+    private static final String VERSION = "2_1.0";
+    private static final String KEY = "JACOCO-FAIL_FAST-2_1.0-" + "0123456789abcdef".repeat(4);
+    private static final String OTHER_KEY = "COBERTURA-IGNORE_ERRORS-2_1.0-" + "fedcba9876543210".repeat(4);
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void shouldCreateKeyFromParserModeAndContent() throws IOException {
+        var first = createFile("first.xml", "<report/>");
+        var same = createFile("same.xml", "<report/>");
+        var other = createFile("other.xml", "<report></report>");
+
+        var key = createKey(Parser.JACOCO, ProcessingMode.FAIL_FAST, VERSION, NO_FILTER, first);
+
+        assertThat(key).startsWith("JACOCO-FAIL_FAST-")
+                .isEqualTo(createKey(Parser.JACOCO, ProcessingMode.FAIL_FAST, VERSION, NO_FILTER, same))
+                .isNotEqualTo(createKey(Parser.JACOCO, ProcessingMode.FAIL_FAST, VERSION, NO_FILTER, other))
+                .isNotEqualTo(createKey(Parser.JACOCO, ProcessingMode.IGNORE_ERRORS, VERSION, NO_FILTER, first))
+                .isNotEqualTo(createKey(Parser.COBERTURA, ProcessingMode.FAIL_FAST, VERSION, NO_FILTER, first))
+                .isNotEqualTo(createKey(Parser.JACOCO, ProcessingMode.FAIL_FAST, "3_1.0", NO_FILTER, first))
+                .isNotEqualTo(createKey(Parser.JACOCO, ProcessingMode.FAIL_FAST, VERSION,
+                        new NodeFilter("edu.*", ""), first));
+        assertThat(new ParseCache(directory, Long.MAX_VALUE, "1.0").isValidKey(key)).isTrue();
+    }
+
+    @Test
+    void shouldRejectInvalidKeys() throws IOException {
+        var cache = new ParseCache(directory.resolve("cache"), Long.MAX_VALUE, "1.0");
+
+        assertThat(cache.getVersion()).isEqualTo(VERSION);
+        assertThat(cache.isValidKey(KEY)).isTrue();
+        assertThat(cache.isValidKey(OTHER_KEY)).isTrue();
+        assertThat(cache.isValidKey("../../config")).isFalse();
+        assertThat(cache.isValidKey(KEY + "/../../config")).isFalse();
+        assertThat(cache.isValidKey(KEY.toUpperCase(Locale.ENGLISH))).isFalse();
+        assertThat(cache.isValidKey(KEY.replace("2_1.0", "2_2.0"))).isFalse();
+        assertThat(cache.isValidKey(KEY.replace("JACOCO", "UNKNOWN"))).isFalse();
+        assertThat(cache.isValidKey(KEY.substring(0, KEY.length() - 1))).isFalse();
+
+        var node = (ModuleNode) readJacocoResult("jacoco-codingstyle.xml");
+        assertThatIOException().isThrownBy(() -> cache.store("../../config", node, new FilteredLog("Errors")));
+        assertThat(cache.load("../../config")).isEmpty();
+        assertThat(directory.resolve("cache")).doesNotExist();
+    }
+
+    @Test
+    void shouldStoreAndLoadReports() throws IOException {
+        var cache = new ParseCache(directory.resolve("cache"), Long.MAX_VALUE, "1.0");
+        assertThat(cache.getKeys()).isEmpty();
+        assertThat(cache.load(KEY)).isEmpty();
+
+        var node = (ModuleNode) readJacocoResult("jacoco-codingstyle.xml");
+        var log = new FilteredLog("Errors while parsing coverage report:");
+        log.logInfo("Info");
+        log.logError("Error");
+        cache.store(KEY, node, log);
+
+        assertThat(cache.getKeys()).containsExactly(KEY);
+        assertThat(cache.load(KEY)).hasValueSatisfying(cached -> {
+            assertThat(cached.getNode()).isEqualTo(node);
+            assertThat(cached.getLog().getInfoMessages()).containsExactly("Info");
+            assertThat(cached.getLog().getErrorMessages()).contains("Error");
+        });
+        assertThat(cache.evict()).isZero();
+
+        assertThat(new ParseCache(directory.resolve("cache"), Long.MAX_VALUE, "2.0").getKeys()).isEmpty();
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedReports() throws IOException {
+        var cacheDirectory = directory.resolve("cache");
+        var node = (ModuleNode) readJacocoResult("jacoco-codingstyle.xml");
+        var log = new FilteredLog("Errors");
+        var touched = createKey("a");
+        var old = createKey("b");
+        var recent = createKey("c");
+        new ParseCache(cacheDirectory, Long.MAX_VALUE, "1.0").store(touched, node, log);
+        var size = Files.size(cacheDirectory.resolve(touched + ".bin"));
+
+        var cache = new ParseCache(cacheDirectory, 2 * size, "1.0");
+        cache.store(old, node, log);
+        cache.store(recent, node, log);
+        setLastAccess(cacheDirectory, touched, 1000);
+        setLastAccess(cacheDirectory, old, 2000);
+        setLastAccess(cacheDirectory, recent, 3000);
+
+        assertThat(cache.load(touched)).isNotEmpty(); // touch the entry
+
+        assertThat(cache.evict()).isEqualTo(1);
+        assertThat(cache.getKeys()).containsExactlyInAnyOrder(touched, recent);
+    }
+
+    private String createKey(final Parser parser, final ProcessingMode mode, final String version,
+            final NodeFilter filter, final Path file) throws IOException {
+        return ParseCache.createKey(parser, mode, version, filter, file);
+    }
+
+    private String createKey(final String hash) {
+        return "JACOCO-FAIL_FAST-" + VERSION + "-" + hash.repeat(64);
+    }
+
+    private void setLastAccess(final Path cacheDirectory, final String key, final long time) throws IOException {
+        Files.setLastModifiedTime(cacheDirectory.resolve(key + ".bin"), FileTime.fromMillis(time));
+    }
+
+    private Path createFile(final String name, final String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content);
+    }
+}
@@ -0,0 +1,72 @@
+package io.jenkins.plugins.coverage.metrics.steps;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the class {@link PathSuffixTrie}.
+ *
+ * @author Ullrich Hafner
+ */
+class PathSuffixTrieTest {
+    private static final List<String> REPORT_PATHS = List.of(
+            "edu/hm/hafner/Ensure.java",
+            "hafner/Ensure.java",
+            "Test.java",
+            "util/TreeString.java",
+            "/absolute/Path.java",
+            "trailing/",
+            "ab/Partial.java");
+
+    @Test
+    void shouldFindLongestSuffix() {
+        var trie = new PathSuffixTrie(REPORT_PATHS);
+
+        assertThat(trie.findLongestSuffix("src/main/java/edu/hm/hafner/Ensure.java"))
+                .contains("edu/hm/hafner/Ensure.java");
+        assertThat(trie.findLongestSuffix("other/hafner/Ensure.java")).contains("hafner/Ensure.java");
+        assertThat(trie.findLongestSuffix("hafner/Ensure.java")).contains("hafner/Ensure.java");
+        assertThat(trie.findLongestSuffix("Ensure.java")).isEmpty();
+        assertThat(trie.findLongestSuffix("src/TreeString.java")).isEmpty();
+    }
+
+    @Test
+    void shouldMatchWithinSegments() {
+        var trie = new PathSuffixTrie(REPORT_PATHS);
+
+        assertThat(trie.findLongestSuffix("src/MyTest.java")).contains("Test.java");
+        assertThat(trie.findLongestSuffix("src/zab/Partial.java")).contains("ab/Partial.java");
+        assertThat(trie.findLongestSuffix("src/base/absolute/Path.java")).contains("/absolute/Path.java");
+        assertThat(trie.findLongestSuffix("absolute/Path.java")).isEmpty();
+        assertThat(trie.findLongestSuffix("src/trailing/")).contains("trailing/");
+    }
+
+    @Test
+    void shouldMatchEmptyPath() {
+        var trie = new PathSuffixTrie(List.of("", "Test.java"));
+
+        assertThat(trie.findLongestSuffix("src/Other.java")).contains("");
+        assertThat(trie.findLongestSuffix("src/Test.java")).contains("Test.java");
+        assertThat(new PathSuffixTrie(List.of()).findLongestSuffix("src/Test.java")).isEmpty();
+    }
+
+    @ParameterizedTest(name = "{index} => Path: {0}")
+    @ValueSource(strings = {"", "/", "//", "Test.java", "a/b/c/Test.java", "hm/hafner/Ensure.java",
+            "/edu/hm/hafner/Ensure.java", "x/absolute/Path.java", "xtrailing/", "trailing//", "b/Partial.java"})
+    void shouldBehaveLikeEndsWith(final String scmPath) {
+        var trie = new PathSuffixTrie(REPORT_PATHS);
+
+        assertThat(trie.findLongestSuffix(scmPath)).isEqualTo(findWithEndsWith(scmPath));
+    }
+
+    private Optional<String> findWithEndsWith(final String scmPath) {
+        return REPORT_PATHS.stream().filter(scmPath::endsWith).max(Comparator.comparingInt(String::length));
+    }
+}